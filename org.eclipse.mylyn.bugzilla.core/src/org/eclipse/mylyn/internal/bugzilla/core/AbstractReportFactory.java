@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,8 +11,6 @@
 
 package org.eclipse.mylyn.internal.bugzilla.core;
 
-import java.io.BufferedInputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -51,39 +49,21 @@ public class AbstractReportFactory {
 	 * @throws GeneralSecurityException
 	 */
 	protected void collectResults(DefaultHandler contentHandler, boolean clean) throws IOException {
-		File tempFile = null;
-
 		if (inStream == null) {
 			return;
 		}
 
-		final BufferedInputStream is = new BufferedInputStream(inStream, 1024);
-
-		InputStream iis = new InputStream() {
-			@SuppressWarnings({ "restriction" })
-			@Override
-			public int read() throws IOException {
-				int c;
-				while ((c = is.read()) != -1) {
-					if (org.eclipse.mylyn.internal.commons.core.XmlStringConverter.isValid((char) c)) {
-						return c;
-					}
-				}
-				return -1;
-			}
-		};
-
 		Reader in;
 		if (characterEncoding != null) {
-			in = new InputStreamReader(iis, characterEncoding);
+			in = new InputStreamReader(inStream, characterEncoding);
 		} else {
-			in = new InputStreamReader(iis);
+			in = new InputStreamReader(inStream);
 		}
+		// InputStreamReader decodes in bulk, filter the decoded characters in place rather than one byte at a time
+		in = new XmlCharacterFilterReader(in);
 
 		if (clean) {
-			tempFile = File.createTempFile("XmlCleaner-", "tmp"); //$NON-NLS-1$//$NON-NLS-2$
-			tempFile.deleteOnExit();
-			in = XmlCleaner.clean(in, tempFile);
+			in = XmlCleaner.clean(in);
 		}
 
 		try {
@@ -124,11 +104,5 @@ public class AbstractReportFactory {
 		} catch (SAXException e) {
 			throw new IOException(e.getMessage());
 		}
-
-		finally {
-			if (tempFile != null) {
-				tempFile.delete();
-			}
-		}
 	}
 }
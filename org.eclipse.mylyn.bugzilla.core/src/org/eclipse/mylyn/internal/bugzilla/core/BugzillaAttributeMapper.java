@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.mylyn.internal.bugzilla.core;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -280,7 +281,7 @@ public class BugzillaAttributeMapper extends TaskAttributeMapper {
 			if (attributeProduct != null && attributeProduct.getValue().length() > 0) {
 				List<String> options = configuration.getAttributeOptions(attributeProduct.getValue(), attribute);
 				if (options.size() == 0 && attribute.getId().equals("resolutionInput")) { //$NON-NLS-1$
-					options = configuration.getOptionValues(BugzillaAttribute.RESOLUTION);
+					options = new ArrayList<String>(configuration.getOptionValues(BugzillaAttribute.RESOLUTION));
 					// DUPLICATE and MOVED have special meanings so do not show as resolution
 					// TODO: COPIED FUNCTIONALITY from RepositoryConfiguration.addOperation() refactor.
 					options.remove("DUPLICATE"); //$NON-NLS-1$
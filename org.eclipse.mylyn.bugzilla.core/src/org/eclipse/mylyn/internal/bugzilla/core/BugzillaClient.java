@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -171,7 +172,7 @@ public class BugzillaClient {
 
 	protected String characterEncoding;
 
-	private boolean loggedIn;
+	private volatile boolean loggedIn;
 
 	private final Map<String, String> configParameters;
 
@@ -821,9 +822,9 @@ public class BugzillaClient {
 				//copy the response
 				InputStream instream = method.getResponseBodyAsStream();
 				if (instream != null) {
-					byte[] buffer = new byte[4096];
+					byte[] buffer = new byte[32 * 1024];
 					int len;
-					while ((len = instream.read(buffer)) > 0) {
+					while ((len = instream.read(buffer)) != -1) {
 						out.write(buffer, 0, len);
 					}
 				}
@@ -1024,12 +1025,17 @@ public class BugzillaClient {
 	private GzipPostMethod postFormData(String formUrl, NameValuePair[] formData, IProgressMonitor monitor)
 			throws IOException, CoreException {
 
-		GzipPostMethod postMethod = null;
 		monitor = Policy.monitorFor(monitor);
-		hostConfiguration = WebUtil.createHostConfiguration(httpClient, location, monitor);
+		// keep a local reference since queries may run concurrently
+		HostConfiguration hostConfiguration = WebUtil.createHostConfiguration(httpClient, location, monitor);
+		this.hostConfiguration = hostConfiguration;
 		authenticate(monitor);
+		return executePost(formUrl, formData, hostConfiguration, monitor);
+	}
 
-		postMethod = new GzipPostMethod(WebUtil.getRequestPath(repositoryUrl.toString() + formUrl), true);
+	private GzipPostMethod executePost(String formUrl, NameValuePair[] formData,
+			HostConfiguration hostConfiguration, IProgressMonitor monitor) throws IOException, CoreException {
+		GzipPostMethod postMethod = new GzipPostMethod(WebUtil.getRequestPath(repositoryUrl.toString() + formUrl), true);
 		postMethod.setRequestHeader(
 				"Content-Type", "application/x-www-form-urlencoded; charset=" + getCharacterEncoding()); //$NON-NLS-1$ //$NON-NLS-2$
 
@@ -2110,85 +2116,29 @@ public class BugzillaClient {
 			connector.addRepositoryConfiguration(repositoryConfiguration);
 		}
 
-		GzipPostMethod method = null;
-		HashMap<String, TaskData> taskDataMap = new HashMap<String, TaskData>();
 		// make a copy to modify set
-		taskIds = new HashSet<String>(taskIds);
+		taskIds = removeLeadingZeros(taskIds);
+		int maxConcurrentRequests = BugzillaUtil.getMaxConcurrentRequests(configParameters);
+		if (maxConcurrentRequests > 1 && taskIds.size() > MAX_RETRIEVED_PER_QUERY) {
+			getTaskDataConcurrently(taskIds, collector, mapper, maxConcurrentRequests, monitor);
+			return;
+		}
+
 		int authenticationAttempt = 0;
 		while (taskIds.size() > 0) {
+			Set<String> idsToRetrieve = new HashSet<String>();
+			Iterator<String> itr = taskIds.iterator();
+			for (int x = 0; itr.hasNext() && x < MAX_RETRIEVED_PER_QUERY; x++) {
+				idsToRetrieve.add(itr.next());
+			}
 
 			try {
-
-				Set<String> idsToRetrieve = new HashSet<String>();
-				Iterator<String> itr = taskIds.iterator();
-				for (int x = 0; itr.hasNext() && x < MAX_RETRIEVED_PER_QUERY; x++) {
-					String taskId = itr.next();
-					String taskIdOrg = taskId;
-					// remove leading zeros
-					boolean changed = false;
-					while (taskId.startsWith("0")) { //$NON-NLS-1$
-						taskId = taskId.substring(1);
-						changed = true;
-					}
-					idsToRetrieve.add(taskId);
-					if (changed) {
-						taskIds.remove(taskIdOrg);
-						taskIds.add(taskId);
-					}
-				}
-
-				NameValuePair[] formData = new NameValuePair[idsToRetrieve.size() + 2];
-
-				if (idsToRetrieve.size() == 0) {
-					return;
-				}
-
-				itr = idsToRetrieve.iterator();
-				int x = 0;
-				for (; itr.hasNext(); x++) {
-					String taskId = itr.next();
-					formData[x] = new NameValuePair("id", taskId); //$NON-NLS-1$
-					TaskData taskData = new TaskData(mapper, getConnectorKind(), repositoryUrl.toString(), taskId);
-					setupExistingBugAttributes(repositoryUrl.toString(), taskData);
-					taskDataMap.put(taskId, taskData);
-				}
-				formData[x++] = new NameValuePair("ctype", "xml"); //$NON-NLS-1$ //$NON-NLS-2$
-				formData[x] = new NameValuePair("excludefield", "attachmentdata"); //$NON-NLS-1$ //$NON-NLS-2$
-				method = postFormData(IBugzillaConstants.URL_POST_SHOW_BUG, formData, monitor);
-				if (method == null) {
-					throw new IOException("Could not post form, client returned null method."); //$NON-NLS-1$
-				}
-
-				boolean parseable = false;
-				if (method.getResponseHeader("Content-Type") != null) { //$NON-NLS-1$
-					Header responseTypeHeader = method.getResponseHeader("Content-Type"); //$NON-NLS-1$
-					for (String type : VALID_CONFIG_CONTENT_TYPES) {
-						if (responseTypeHeader.getValue().toLowerCase(Locale.ENGLISH).contains(type)) {
-							InputStream input = getResponseStream(method, monitor);
-							try {
-								MultiBugReportFactory factory = new MultiBugReportFactory(input,
-										getCharacterEncoding(), connector);
-								List<BugzillaCustomField> customFields = new ArrayList<BugzillaCustomField>();
-								if (repositoryConfiguration != null) {
-									customFields = repositoryConfiguration.getCustomFields();
-								}
-								factory.populateReport(taskDataMap, collector, mapper, customFields);
-								taskIds.removeAll(idsToRetrieve);
-								taskDataMap.clear();
-								parseable = true;
-								break;
-							} finally {
-								input.close();
-							}
-						}
-					}
-				}
-
-				if (!parseable) {
-					// because html is not a valid config content type it is save to get the response here
-					parseHtmlError(getResponseStream(method, monitor));
+				GzipPostMethod method = postFormData(IBugzillaConstants.URL_POST_SHOW_BUG,
+						createShowBugFormData(idsToRetrieve), monitor);
+				if (!readTaskData(method, idsToRetrieve, collector, mapper, monitor)) {
 					break;
 				}
+				taskIds.removeAll(idsToRetrieve);
 			} catch (CoreException c) {
 				if (c.getStatus().getCode() == RepositoryStatus.ERROR_REPOSITORY_LOGIN && authenticationAttempt < 1) {
 					loggedIn = false;
@@ -2197,14 +2147,114 @@ public class BugzillaClient {
 				} else {
 					throw c;
 				}
-			} finally {
-				if (method != null) {
-					WebUtil.releaseConnection(method, monitor);
+			}
+		}
+	}
+
+	private Set<String> removeLeadingZeros(Set<String> taskIds) {
+		Set<String> result = new LinkedHashSet<String>(taskIds.size());
+		for (String taskId : taskIds) {
+			while (taskId.startsWith("0")) { //$NON-NLS-1$
+				taskId = taskId.substring(1);
+			}
+			result.add(taskId);
+		}
+		return result;
+	}
+
+	private NameValuePair[] createShowBugFormData(Set<String> idsToRetrieve) {
+		NameValuePair[] formData = new NameValuePair[idsToRetrieve.size() + 2];
+		int x = 0;
+		for (String taskId : idsToRetrieve) {
+			formData[x++] = new NameValuePair("id", taskId); //$NON-NLS-1$
+		}
+		formData[x++] = new NameValuePair("ctype", "xml"); //$NON-NLS-1$ //$NON-NLS-2$
+		formData[x] = new NameValuePair("excludefield", "attachmentdata"); //$NON-NLS-1$ //$NON-NLS-2$
+		return formData;
+	}
+
+	/**
+	 * Parses the response to a show_bug.cgi request and passes the task data to <code>collector</code>. Releases the
+	 * connection of <code>method</code>.
+	 * 
+	 * @return false, if the response could not be parsed
+	 */
+	private boolean readTaskData(GzipPostMethod method, Set<String> idsToRetrieve, TaskDataCollector collector,
+			TaskAttributeMapper mapper, IProgressMonitor monitor) throws IOException, CoreException {
+		try {
+			if (method == null) {
+				throw new IOException("Could not post form, client returned null method."); //$NON-NLS-1$
+			}
+
+			Map<String, TaskData> taskDataMap = new HashMap<String, TaskData>();
+			for (String taskId : idsToRetrieve) {
+				TaskData taskData = new TaskData(mapper, getConnectorKind(), repositoryUrl.toString(), taskId);
+				setupExistingBugAttributes(repositoryUrl.toString(), taskData);
+				taskDataMap.put(taskId, taskData);
+			}
+
+			if (method.getResponseHeader("Content-Type") != null) { //$NON-NLS-1$
+				Header responseTypeHeader = method.getResponseHeader("Content-Type"); //$NON-NLS-1$
+				for (String type : VALID_CONFIG_CONTENT_TYPES) {
+					if (responseTypeHeader.getValue().toLowerCase(Locale.ENGLISH).contains(type)) {
+						InputStream input = getResponseStream(method, monitor);
+						try {
+							MultiBugReportFactory factory = new MultiBugReportFactory(input, getCharacterEncoding(),
+									connector);
+							List<BugzillaCustomField> customFields = new ArrayList<BugzillaCustomField>();
+							if (repositoryConfiguration != null) {
+								customFields = repositoryConfiguration.getCustomFields();
+							}
+							factory.populateReport(taskDataMap, collector, mapper, customFields);
+							return true;
+						} finally {
+							input.close();
+						}
+					}
 				}
 			}
+
+			// because html is not a valid config content type it is save to get the response here
+			parseHtmlError(getResponseStream(method, monitor));
+			return false;
+		} finally {
+			if (method != null) {
+				WebUtil.releaseConnection(method, monitor);
+			}
 		}
 	}
 
+	/**
+	 * Retrieves task data in chunks using up to <code>maxConcurrentRequests</code> requests at a time.
+	 * 
+	 * @see ConcurrentTaskDataRetrieval
+	 */
+	private void getTaskDataConcurrently(Set<String> taskIds, TaskDataCollector collector,
+			final TaskAttributeMapper mapper, int maxConcurrentRequests, IProgressMonitor monitor) throws IOException,
+			CoreException {
+		// authenticate once upfront to avoid concurrent logins
+		authenticate(monitor);
+
+		ConcurrentTaskDataRetrieval retrieval = new ConcurrentTaskDataRetrieval(taskIds, collector) {
+			@Override
+			protected boolean retrieve(Set<String> idsToRetrieve, TaskDataCollector collector,
+					IProgressMonitor monitor) throws IOException, CoreException {
+				// use a separate host configuration since the field is shared with other threads
+				GzipPostMethod method = executePost(IBugzillaConstants.URL_POST_SHOW_BUG,
+						createShowBugFormData(idsToRetrieve), WebUtil.createHostConfiguration(httpClient, location,
+								monitor), monitor);
+				return readTaskData(method, idsToRetrieve, collector, mapper, monitor);
+			}
+
+			@Override
+			protected void authenticate(IProgressMonitor monitor) throws CoreException {
+				loggedIn = false;
+				BugzillaClient.this.authenticate(monitor);
+			}
+		};
+		retrieval.run(maxConcurrentRequests, monitor);
+	}
+
 	protected String getConnectorKind() {
 		return BugzillaCorePlugin.CONNECTOR_KIND;
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,10 +13,8 @@ package org.eclipse.mylyn.internal.bugzilla.core;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.MessageFormat;
@@ -24,19 +22,27 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
@@ -74,6 +80,18 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 
 	private static final String CHANGED_BUGS_CGI_QUERY = "/buglist.cgi?query_format=advanced&chfieldfrom="; //$NON-NLS-1$
 
+	/**
+	 * Maximum length of a query for changed tasks for repositories that redirect queries submitted through POST to a
+	 * GET request.
+	 */
+	private static final int MAX_CHANGED_QUERY_LENGTH = 7000;
+
+	/**
+	 * Maximum number of tasks that are checked for changes by a single query. Bugzilla 4.0 and later process long
+	 * queries submitted through POST without redirecting to a length limited GET request.
+	 */
+	private static final int MAX_CHANGED_QUERY_TASKS = 1000;
+
 	private static final String CLIENT_LABEL = Messages.BugzillaRepositoryConnector_BUGZILLA_CONNECTOR_LABEL;
 
 	private static final String COMMENT_FORMAT = "yyyy-MM-dd HH:mm"; //$NON-NLS-1$
@@ -104,6 +122,23 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 
 	private final Map<String, RepositoryConfiguration> repositoryConfigurations = new HashMap<String, RepositoryConfiguration>();
 
+	private RepositoryConfigurationStore configurationStore;
+
+	/**
+	 * Repositories that do not need to be looked up in {@link #configurationStore}.
+	 */
+	private final Set<String> loadedConfigurations = new HashSet<String>();
+
+	/**
+	 * Repositories with configurations that need to be written to {@link #configurationStore}.
+	 */
+	private final Set<String> changedConfigurations = new HashSet<String>();
+
+	/**
+	 * Repositories with configurations that need to be removed from {@link #configurationStore}.
+	 */
+	private final Set<String> removedConfigurations = new HashSet<String>();
+
 	// A Map from Java's  Platform to Buzilla's
 	private static final Map<String, String> java2buzillaPlatformMap = new HashMap<String, String>();
 
@@ -149,11 +184,21 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 			BugzillaCorePlugin.getDefault().setConnector(this);
 			IPath path = BugzillaCorePlugin.getDefault().getConfigurationCachePath();
 			this.repositoryConfigurationFile = path.toFile();
+			this.configurationStore = createConfigurationStore(repositoryConfigurationFile);
 		}
 	}
 
 	public BugzillaRepositoryConnector(File repositoryConfigurationFile) {
 		this.repositoryConfigurationFile = repositoryConfigurationFile;
+		this.configurationStore = createConfigurationStore(repositoryConfigurationFile);
+	}
+
+	private static RepositoryConfigurationStore createConfigurationStore(File repositoryConfigurationFile) {
+		if (repositoryConfigurationFile == null) {
+			return null;
+		}
+		return new RepositoryConfigurationStore(new File(repositoryConfigurationFile.getParentFile(),
+				repositoryConfigurationFile.getName() + ".d")); //$NON-NLS-1$
 	}
 
 	@Override
@@ -293,32 +338,37 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 			}
 
 			String urlQueryBase = repository.getRepositoryUrl() + CHANGED_BUGS_CGI_QUERY
-					+ URLEncoder.encode(dateString, repository.getCharacterEncoding()) + CHANGED_BUGS_CGI_ENDDATE;
-
-			StringBuilder urlQueryString = new StringBuilder(Math.min(30 + 9 * session.getTasks().size(), 7009));
-			urlQueryString.append(urlQueryBase + BUG_ID);
-
-			Set<ITask> changedTasks = new HashSet<ITask>();
-			Iterator<ITask> itr = session.getTasks().iterator();
-			int queryCounter = 0;
-			Set<ITask> checking = new HashSet<ITask>();
-			while (itr.hasNext()) {
-				ITask task = itr.next();
-				checking.add(task);
-				queryCounter++;
-				urlQueryString.append(URLEncoder.encode(task.getTaskId() + ",", repository.getCharacterEncoding())); //$NON-NLS-1$
-				if (urlQueryString.length() >= 7000) {
-					queryForChanged(repository, changedTasks, urlQueryString.toString(), session,
-							new SubProgressMonitor(monitor, queryCounter));
-
-					queryCounter = 0;
-					urlQueryString.setLength(0);
-					urlQueryString.append(urlQueryBase + BUG_ID);
-				}
+					+ URLEncoder.encode(dateString, repository.getCharacterEncoding()) + CHANGED_BUGS_CGI_ENDDATE
+					+ BUG_ID;
 
-				if (!itr.hasNext() && queryCounter != 0) {
-					queryForChanged(repository, changedTasks, urlQueryString.toString(), session,
-							new SubProgressMonitor(monitor, queryCounter));
+			Map<String, ITask> taskById = new HashMap<String, ITask>();
+			for (ITask task : session.getTasks()) {
+				taskById.put(task.getTaskId(), task);
+			}
+
+			List<List<String>> chunks = createChangedQueryChunks(repository, taskById.keySet(), urlQueryBase.length());
+			Set<ITask> changedTasks = Collections.synchronizedSet(new HashSet<ITask>());
+
+			// the first query validates the login and provides the time stamp for the next synchronization
+			List<String> chunk = chunks.get(0);
+			String queryTimestamp = queryForChanged(repository, taskById, changedTasks,
+					createChangedQueryUrl(repository, urlQueryBase, chunk), true, new SubProgressMonitor(monitor,
+							chunk.size()));
+			if (session.getData() == null && queryTimestamp != null) {
+				// Bugzilla 4.2 does not parse the timezone of the time stamp properly hence it needs to be persisted in 
+				// server time and not local time
+				session.setData(queryTimestamp);
+			}
+
+			List<List<String>> remainingChunks = chunks.subList(1, chunks.size());
+			int maxConcurrentRequests = BugzillaUtil.getMaxConcurrentRequests(repository.getProperties());
+			if (maxConcurrentRequests > 1 && remainingChunks.size() > 1) {
+				queryForChangedConcurrently(repository, taskById, changedTasks, urlQueryBase, remainingChunks,
+						maxConcurrentRequests, monitor);
+			} else {
+				for (List<String> remainingChunk : remainingChunks) {
+					queryForChanged(repository, taskById, changedTasks, createChangedQueryUrl(repository,
+							urlQueryBase, remainingChunk), true, new SubProgressMonitor(monitor, remainingChunk.size()));
 				}
 			}
 
@@ -337,39 +387,117 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 		}
 	}
 
-	private void queryForChanged(final TaskRepository repository, Set<ITask> changedTasks, String urlQueryString,
-			ISynchronizationSession syncSession, IProgressMonitor monitor) throws UnsupportedEncodingException,
-			CoreException {
+	/**
+	 * Splits <code>taskIds</code> into chunks that are each checked for changes by a single query.
+	 */
+	private List<List<String>> createChangedQueryChunks(TaskRepository repository, Collection<String> taskIds,
+			int baseLength) {
+		boolean postSupported = new BugzillaVersion(repository.getVersion()).compareTo(BugzillaVersion.BUGZILLA_4_0) >= 0;
+		List<List<String>> chunks = new ArrayList<List<String>>();
+		List<String> chunk = new ArrayList<String>();
+		int length = baseLength;
+		for (String taskId : taskIds) {
+			chunk.add(taskId);
+			// task ids are numeric, the separator is encoded as %2C
+			length += taskId.length() + 3;
+			if (postSupported ? chunk.size() >= MAX_CHANGED_QUERY_TASKS : length >= MAX_CHANGED_QUERY_LENGTH) {
+				chunks.add(chunk);
+				chunk = new ArrayList<String>();
+				length = baseLength;
+			}
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
 
-		HashMap<String, ITask> taskById = new HashMap<String, ITask>();
-		for (ITask task : syncSession.getTasks()) {
-			taskById.put(task.getTaskId(), task);
+	private String createChangedQueryUrl(TaskRepository repository, String urlQueryBase, List<String> taskIds)
+			throws UnsupportedEncodingException {
+		StringBuilder sb = new StringBuilder();
+		for (String taskId : taskIds) {
+			sb.append(taskId);
+			sb.append(","); //$NON-NLS-1$
 		}
+		return urlQueryBase + URLEncoder.encode(sb.toString(), repository.getCharacterEncoding());
+	}
 
+	private void queryForChangedConcurrently(final TaskRepository repository, final Map<String, ITask> taskById,
+			final Set<ITask> changedTasks, String urlQueryBase, List<List<String>> chunks, int maxConcurrentRequests,
+			final IProgressMonitor monitor) throws UnsupportedEncodingException, CoreException {
+		// the progress monitor is not thread-safe, workers only check for cancellation
+		final IProgressMonitor workerMonitor = new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				return monitor.isCanceled();
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrentRequests, chunks.size()),
+				new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "Bugzilla Changed Tasks Query"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(chunks.size());
+			for (List<String> chunk : chunks) {
+				final String urlQueryString = createChangedQueryUrl(repository, urlQueryBase, chunk);
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						// the login was validated by the first query, a concurrent relogin would invalidate the
+						// session of queries that are in progress
+						queryForChanged(repository, taskById, changedTasks, urlQueryString, false, workerMonitor);
+						return null;
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				} catch (InterruptedException e) {
+					throw new OperationCanceledException();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof CoreException) {
+						throw (CoreException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new CoreException(new Status(IStatus.ERROR, BugzillaCorePlugin.ID_PLUGIN,
+							"Unexpected error while querying for changed tasks", cause)); //$NON-NLS-1$
+				}
+				monitor.worked(chunks.get(i).size());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Adds the tasks returned by the query for <code>urlQueryString</code> to <code>changedTasks</code>.
+	 * 
+	 * @return the time stamp of the query or <code>null</code>, if the query did not return a time stamp
+	 */
+	private String queryForChanged(TaskRepository repository, Map<String, ITask> taskById, Set<ITask> changedTasks,
+			String urlQueryString, boolean relogin, IProgressMonitor monitor) throws CoreException {
 		BugzillaTaskDataCollector collector = new BugzillaTaskDataCollector();
 
 		// TODO: Decouple from internals
 		IRepositoryQuery query = new RepositoryQuery(repository.getConnectorKind(), ""); //$NON-NLS-1$
 		query.setSummary(Messages.BugzillaRepositoryConnector_Query_for_changed_tasks);
 		query.setUrl(urlQueryString);
-		performQuery(repository, query, collector, syncSession, monitor);
+		performQuery(repository, query, collector, relogin, monitor);
 		for (TaskData data : collector.getTaskData()) {
 			ITask changedTask = taskById.get(data.getTaskId());
 			if (changedTask != null) {
 				changedTasks.add(changedTask);
 			}
 		}
-
-		if (syncSession.getData() == null && collector.getQueryTimestamp() != null) {
-			// Bugzilla 4.2 does not parse the timezone of the time stamp properly hence it needs to be persisted in 
-			// server time and not local time
-			syncSession.setData(collector.getQueryTimestamp());
-//			Date queryDate = BugzillaAttributeMapper.parseDate(collector.getQueryTimestamp());
-//			if (queryDate != null) {
-//				// Ensure time is in right format
-//				syncSession.setData(new SimpleDateFormat(TIMESTAMP_WITH_OFFSET).format(queryDate));
-//			}
-		}
+		return collector.getQueryTimestamp();
 	}
 
 	@Override
@@ -385,14 +513,18 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 	@Override
 	public IStatus performQuery(TaskRepository repository, final IRepositoryQuery query,
 			TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+		return performQuery(repository, query, resultCollector, true, monitor);
+	}
 
+	private IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+			TaskDataCollector resultCollector, boolean relogin, IProgressMonitor monitor) {
 		monitor = Policy.monitorFor(monitor);
 		try {
 			monitor.beginTask(Messages.BugzillaRepositoryConnector_running_query, IProgressMonitor.UNKNOWN);
 			BugzillaClient client = getClientManager().getClient(repository, new SubProgressMonitor(monitor, 1));
 			TaskAttributeMapper mapper = getTaskDataHandler().getAttributeMapper(repository);
 			boolean hitsReceived = client.getSearchHits(query, resultCollector, mapper, monitor);
-			if (!hitsReceived) {
+			if (!hitsReceived && relogin) {
 				// XXX: HACK in case of ip change bugzilla can return 0 hits
 				// due to invalid authorization token, forcing relogin fixes
 				client.logout(monitor);
@@ -676,12 +808,18 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 		};
 	}
 
-	/** public for testing */
+	/**
+	 * Migrates configurations from the legacy cache file that stored all configurations in a single file to
+	 * {@link RepositoryConfigurationStore}. Configurations are otherwise read from the store on first access.
+	 * <p>
+	 * public for testing
+	 */
 	public synchronized void readRepositoryConfigurationFile() {
 		if (cacheFileRead || repositoryConfigurationFile == null || !repositoryConfigurationFile.exists()) {
 			return;
 		}
 
+		boolean migrated = false;
 		synchronized (repositoryConfigurations) {
 			ObjectInputStream in = null;
 			try {
@@ -689,10 +827,14 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 				int size = in.readInt();
 				for (int nX = 0; nX < size; nX++) {
 					RepositoryConfiguration item = (RepositoryConfiguration) in.readObject();
-					if (item != null) {
+					if (item != null && item.getRepositoryUrl() != null
+							&& !loadedConfigurations.contains(item.getRepositoryUrl())) {
 						repositoryConfigurations.put(item.getRepositoryUrl(), item);
+						loadedConfigurations.add(item.getRepositoryUrl());
+						changedConfigurations.add(item.getRepositoryUrl());
 					}
 				}
+				migrated = true;
 			} catch (Exception e) {
 				StatusHandler.log(new Status(IStatus.INFO, BugzillaCorePlugin.ID_PLUGIN,
 						ERROR_INCOMPATIBLE_CONFIGURATION));
@@ -724,6 +866,31 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 				}
 			}
 		}
+
+		if (migrated) {
+			writeRepositoryConfigFile();
+			if (!repositoryConfigurationFile.delete()) {
+				StatusHandler.log(new Status(IStatus.ERROR, BugzillaCorePlugin.ID_PLUGIN,
+						ERROR_DELETING_CONFIGURATION));
+			}
+		}
+	}
+
+	/**
+	 * Returns the cached configuration for <code>repositoryUrl</code>. The configuration is read from
+	 * {@link #configurationStore} the first time a repository is accessed. Callers need to invoke
+	 * {@link #readRepositoryConfigurationFile()} first.
+	 */
+	private RepositoryConfiguration getCachedConfiguration(String repositoryUrl) {
+		synchronized (repositoryConfigurations) {
+			if (configurationStore != null && repositoryUrl != null && loadedConfigurations.add(repositoryUrl)) {
+				RepositoryConfiguration configuration = configurationStore.read(repositoryUrl);
+				if (configuration != null) {
+					repositoryConfigurations.put(repositoryUrl, configuration);
+				}
+			}
+			return repositoryConfigurations.get(repositoryUrl);
+		}
 	}
 
 	/**
@@ -735,11 +902,11 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 		try {
 			readRepositoryConfigurationFile();
 			RepositoryConfiguration configuration;
-			configuration = repositoryConfigurations.get(repository.getRepositoryUrl());
+			configuration = getCachedConfiguration(repository.getRepositoryUrl());
 			if (configuration == null || forceRefresh) {
 				synchronized (repositoryConfigurations) {
 					// check if another thread already retrieved configuration
-					configuration = repositoryConfigurations.get(repository.getRepositoryUrl());
+					configuration = getCachedConfiguration(repository.getRepositoryUrl());
 					if (configuration == null || forceRefresh) {
 						String eTag = null;
 						Date lastModifiedHeader = null;
@@ -775,7 +942,7 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 					"Error retrieving task attributes from repository.\n\n" + e.getMessage(), e)); //$NON-NLS-1$
 		} catch (CoreException e) {
 			if (e.getMessage().equals("Not changed")) { //$NON-NLS-1$
-				RepositoryConfiguration configuration = repositoryConfigurations.get(repository.getRepositoryUrl());
+				RepositoryConfiguration configuration = getCachedConfiguration(repository.getRepositoryUrl());
 				if (configuration == null) {
 					throw new CoreException(new BugzillaStatus(IStatus.ERROR, BugzillaCorePlugin.ID_PLUGIN,
 							RepositoryStatus.ERROR_INTERNAL, "Failed to retrieve repository configuration for " //$NON-NLS-1$
@@ -801,47 +968,62 @@ public class BugzillaRepositoryConnector extends AbstractRepositoryConnector {
 	private void internalAddConfiguration(RepositoryConfiguration config) {
 		repositoryConfigurations.remove(config.getRepositoryUrl());
 		repositoryConfigurations.put(config.getRepositoryUrl(), config);
+		loadedConfigurations.add(config.getRepositoryUrl());
+		changedConfigurations.add(config.getRepositoryUrl());
+		removedConfigurations.remove(config.getRepositoryUrl());
 	}
 
 	public RepositoryConfiguration getRepositoryConfiguration(String repositoryUrl) {
 		readRepositoryConfigurationFile();
-		return repositoryConfigurations.get(repositoryUrl);
+		return getCachedConfiguration(repositoryUrl);
 	}
 
 	/** public for testing */
 	public void removeConfiguration(RepositoryConfiguration config) {
 		synchronized (repositoryConfigurations) {
 			repositoryConfigurations.remove(config.getRepositoryUrl());
+			loadedConfigurations.add(config.getRepositoryUrl());
+			changedConfigurations.remove(config.getRepositoryUrl());
+			removedConfigurations.add(config.getRepositoryUrl());
 		}
 	}
 
-	/** public for testing */
+	/**
+	 * Writes configurations that were added or changed since they were last written to {@link #configurationStore}.
+	 * <p>
+	 * public for testing
+	 */
 	public void writeRepositoryConfigFile() {
-		if (repositoryConfigurationFile != null) {
-			ObjectOutputStream out = null;
-			try {
-				Set<RepositoryConfiguration> tempConfigs;
-				synchronized (repositoryConfigurations) {
-					tempConfigs = new HashSet<RepositoryConfiguration>(repositoryConfigurations.values());
-				}
-				if (tempConfigs.size() > 0) {
-					out = new ObjectOutputStream(new FileOutputStream(repositoryConfigurationFile));
-					out.writeInt(tempConfigs.size());
-					for (RepositoryConfiguration repositoryConfiguration : tempConfigs) {
-						if (repositoryConfiguration != null) {
-							out.writeObject(repositoryConfiguration);
-						}
+		if (configurationStore != null) {
+			List<RepositoryConfiguration> changed = new ArrayList<RepositoryConfiguration>();
+			List<String> removed;
+			synchronized (repositoryConfigurations) {
+				for (String repositoryUrl : changedConfigurations) {
+					RepositoryConfiguration configuration = repositoryConfigurations.get(repositoryUrl);
+					if (configuration != null && repositoryUrl != null) {
+						changed.add(configuration);
 					}
 				}
-			} catch (IOException e) {
-				StatusHandler.log(new Status(IStatus.WARNING, BugzillaCorePlugin.ID_PLUGIN, 0,
-						"Failed to write repository configuration cache", e)); //$NON-NLS-1$
-			} finally {
-				if (out != null) {
-					try {
-						out.close();
-					} catch (IOException e) {
-						// ignore
+				changedConfigurations.clear();
+				removed = new ArrayList<String>(removedConfigurations);
+				removedConfigurations.clear();
+			}
+			for (String repositoryUrl : removed) {
+				if (repositoryUrl != null) {
+					configurationStore.delete(repositoryUrl);
+				}
+			}
+			for (RepositoryConfiguration configuration : changed) {
+				try {
+					configurationStore.write(configuration);
+				} catch (IOException e) {
+					StatusHandler.log(new Status(IStatus.WARNING, BugzillaCorePlugin.ID_PLUGIN, 0,
+							"Failed to write repository configuration cache", e)); //$NON-NLS-1$
+					synchronized (repositoryConfigurations) {
+						// retry on next write unless the configuration was replaced or removed meanwhile
+						if (!removedConfigurations.contains(configuration.getRepositoryUrl())) {
+							changedConfigurations.add(configuration.getRepositoryUrl());
+						}
 					}
 				}
 			}
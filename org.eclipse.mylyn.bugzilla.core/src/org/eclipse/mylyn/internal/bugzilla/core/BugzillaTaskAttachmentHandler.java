@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,21 @@ import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
  */
 public class BugzillaTaskAttachmentHandler extends AbstractTaskAttachmentHandler {
 
+	/**
+	 * Exposes the buffer of the stream for reading to avoid copying the attachment.
+	 */
+	private static class AttachmentOutputStream extends ByteArrayOutputStream {
+
+		public AttachmentOutputStream() {
+			super(32 * 1024);
+		}
+
+		public InputStream toInputStream() {
+			return new ByteArrayInputStream(buf, 0, count);
+		}
+
+	}
+
 	private final BugzillaRepositoryConnector connector;
 
 	public BugzillaTaskAttachmentHandler(BugzillaRepositoryConnector connector) {
@@ -59,9 +74,9 @@ public class BugzillaTaskAttachmentHandler extends AbstractTaskAttachmentHandler
 		try {
 			monitor.beginTask(Messages.BugzillaTaskAttachmentHandler_Getting_attachment, IProgressMonitor.UNKNOWN);
 			TaskAttachmentMapper attachment = TaskAttachmentMapper.createFrom(attachmentAttribute);
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			AttachmentOutputStream out = new AttachmentOutputStream();
 			downloadAttachment(repository, task, attachment.getAttachmentId(), out, monitor);
-			return new ByteArrayInputStream(out.toByteArray());
+			return out.toInputStream();
 		} finally {
 			monitor.done();
 		}
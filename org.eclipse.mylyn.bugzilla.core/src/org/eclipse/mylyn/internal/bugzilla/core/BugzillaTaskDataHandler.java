@@ -535,7 +535,8 @@ public class BugzillaTaskDataHandler extends AbstractTaskDataHandler {
 		TaskAttribute productAttribute = createAttribute(taskData, BugzillaAttribute.PRODUCT);
 		productAttribute.setValue(product);
 
-		List<String> optionValues = repositoryConfiguration.getOptionValues(BugzillaAttribute.PRODUCT);
+		List<String> optionValues = new ArrayList<String>(
+				repositoryConfiguration.getOptionValues(BugzillaAttribute.PRODUCT));
 		Collections.sort(optionValues);
 		for (String optionValue : optionValues) {
 			productAttribute.putOption(optionValue, optionValue);
@@ -569,8 +570,8 @@ public class BugzillaTaskDataHandler extends AbstractTaskDataHandler {
 		createAttribute(taskData, BugzillaAttribute.SHORT_DESC);
 
 		TaskAttribute attributeVersion = createAttribute(taskData, BugzillaAttribute.VERSION);
-		optionValues = repositoryConfiguration.getProductOptionValues(BugzillaAttribute.VERSION,
-				productAttribute.getValue());
+		optionValues = new ArrayList<String>(repositoryConfiguration.getProductOptionValues(BugzillaAttribute.VERSION,
+				productAttribute.getValue()));
 		Collections.sort(optionValues);
 		for (String option : optionValues) {
 			attributeVersion.putOption(option, option);
@@ -580,8 +581,8 @@ public class BugzillaTaskDataHandler extends AbstractTaskDataHandler {
 		}
 
 		TaskAttribute attributeComponent = createAttribute(taskData, BugzillaAttribute.COMPONENT);
-		optionValues = repositoryConfiguration.getProductOptionValues(BugzillaAttribute.COMPONENT,
-				productAttribute.getValue());
+		optionValues = new ArrayList<String>(repositoryConfiguration.getProductOptionValues(
+				BugzillaAttribute.COMPONENT, productAttribute.getValue()));
 		Collections.sort(optionValues);
 		for (String option : optionValues) {
 			attributeComponent.putOption(option, option);
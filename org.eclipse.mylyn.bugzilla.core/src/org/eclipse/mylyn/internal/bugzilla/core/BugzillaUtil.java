@@ -11,12 +11,19 @@
 
 package org.eclipse.mylyn.internal.bugzilla.core;
 
+import java.util.Map;
+
 import org.eclipse.mylyn.tasks.core.TaskRepository;
 import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
 import org.eclipse.mylyn.tasks.core.data.TaskData;
 
 public class BugzillaUtil {
 
+	/**
+	 * Upper bound for {@link IBugzillaConstants#BUGZILLA_MAX_CONCURRENT_REQUESTS}.
+	 */
+	private static final int MAX_CONCURRENT_REQUESTS = 8;
+
 	private static boolean getParamValue(TaskRepository taskRepository, String propertyName, boolean trueIfUndefined) {
 		boolean result;
 		String useParam = taskRepository.getProperty(propertyName);
@@ -65,4 +72,23 @@ public class BugzillaUtil {
 		String useParam = taskRepository.getProperty(property);
 		return (useParam == null || (useParam != null && useParam.equals("true"))); //$NON-NLS-1$
 	}
+
+	/**
+	 * Returns the number of requests that may run concurrently as configured by
+	 * {@link IBugzillaConstants#BUGZILLA_MAX_CONCURRENT_REQUESTS}. Defaults to 1 which runs requests sequentially.
+	 * 
+	 * @param properties
+	 *            the properties of a task repository
+	 */
+	public static int getMaxConcurrentRequests(Map<String, String> properties) {
+		String value = properties.get(IBugzillaConstants.BUGZILLA_MAX_CONCURRENT_REQUESTS);
+		if (value != null) {
+			try {
+				return Math.max(1, Math.min(Integer.parseInt(value.trim()), MAX_CONCURRENT_REQUESTS));
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		return 1;
+	}
 }
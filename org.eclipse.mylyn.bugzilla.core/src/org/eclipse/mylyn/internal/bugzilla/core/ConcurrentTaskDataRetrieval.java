@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.bugzilla.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.commons.net.Policy;
+import org.eclipse.mylyn.tasks.core.RepositoryStatus;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+
+/**
+ * Retrieves task data in chunks using several threads. Task data is passed to the collector as each chunk is
+ * retrieved, calls to the collector are serialized. The size of chunks is adjusted to the response time of the
+ * repository.
+ * <p>
+ * If a chunk fails with a login error the session is re-authenticated once and the chunk is retried. If a chunk fails
+ * otherwise, no further chunks are started and the failure is rethrown by {@link #run(int, IProgressMonitor)} after
+ * the chunks in progress have completed.
+ * 
+ * @author Steffen Pingel
+ */
+public abstract class ConcurrentTaskDataRetrieval {
+
+	/**
+	 * Forwards progress of a worker thread to the monitor of the caller which is shared by all workers.
+	 */
+	private static class WorkerProgressMonitor extends ProgressMonitorWrapper {
+
+		public WorkerProgressMonitor(IProgressMonitor monitor) {
+			super(monitor);
+		}
+
+		@Override
+		public void beginTask(String name, int totalWork) {
+			// the shared monitor has been initialized by the caller
+		}
+
+		@Override
+		public void done() {
+			// the shared monitor is completed by the caller
+		}
+
+		@Override
+		public void internalWorked(double work) {
+			synchronized (getWrappedProgressMonitor()) {
+				super.internalWorked(work);
+			}
+		}
+
+		@Override
+		public void setCanceled(boolean canceled) {
+			// workers are stopped through cancel()
+		}
+
+		@Override
+		public void setTaskName(String name) {
+			synchronized (getWrappedProgressMonitor()) {
+				super.setTaskName(name);
+			}
+		}
+
+		@Override
+		public void subTask(String name) {
+			synchronized (getWrappedProgressMonitor()) {
+				super.subTask(name);
+			}
+		}
+
+		@Override
+		public void worked(int work) {
+			synchronized (getWrappedProgressMonitor()) {
+				super.worked(work);
+			}
+		}
+
+	}
+
+	/**
+	 * Chunks that are retrieved faster than this are grown.
+	 */
+	private static final long FAST_RESPONSE_TIME = 2 * 1000;
+
+	/**
+	 * Chunks that take longer than this to retrieve are shrunk.
+	 */
+	private static final long SLOW_RESPONSE_TIME = 10 * 1000;
+
+	public static final int MIN_CHUNK_SIZE = 10;
+
+	public static final int MAX_CHUNK_SIZE = 4 * BugzillaClient.MAX_RETRIEVED_PER_QUERY;
+
+	private final Iterator<String> remainingIds;
+
+	private final int taskCount;
+
+	private final TaskDataCollector collector;
+
+	private int chunkSize = BugzillaClient.MAX_RETRIEVED_PER_QUERY;
+
+	private int authenticationCount;
+
+	private boolean canceled;
+
+	public ConcurrentTaskDataRetrieval(Set<String> taskIds, final TaskDataCollector collector) {
+		this.remainingIds = new ArrayList<String>(taskIds).iterator();
+		this.taskCount = taskIds.size();
+		this.collector = new TaskDataCollector() {
+			@Override
+			public synchronized void accept(TaskData taskData) {
+				collector.accept(taskData);
+			}
+
+			@Override
+			public synchronized void failed(String taskId, IStatus status) {
+				collector.failed(taskId, status);
+			}
+		};
+	}
+
+	/**
+	 * Retrieves all chunks using up to <code>maxThreads</code> threads and blocks until retrieval has completed.
+	 */
+	public void run(int maxThreads, IProgressMonitor monitor) throws IOException, CoreException {
+		monitor = Policy.monitorFor(monitor);
+		int threadCount = Math.max(1, Math.min(maxThreads, (taskCount + chunkSize - 1) / chunkSize));
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Bugzilla Task Data Retrieval"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(threadCount);
+			for (int i = 0; i < threadCount; i++) {
+				// progress monitors are not thread-safe
+				final IProgressMonitor workerMonitor = new WorkerProgressMonitor(monitor);
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						try {
+							retrieveChunks(workerMonitor);
+						} catch (Exception e) {
+							// let other workers stop after the current chunk
+							cancel();
+							throw e;
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Object> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					cancel();
+					throw new InterruptedIOException();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof CoreException) {
+						throw (CoreException) cause;
+					} else if (cause instanceof IOException) {
+						throw (IOException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new CoreException(new Status(IStatus.ERROR, BugzillaCorePlugin.ID_PLUGIN,
+							"Unexpected error while retrieving task data", cause)); //$NON-NLS-1$
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void retrieveChunks(IProgressMonitor monitor) throws IOException, CoreException {
+		Set<String> idsToRetrieve;
+		while ((idsToRetrieve = nextChunk()) != null) {
+			while (true) {
+				Policy.checkCanceled(monitor);
+				int authenticationCount = getAuthenticationCount();
+				long startTime = getCurrentTime();
+				try {
+					if (!retrieve(idsToRetrieve, collector, monitor)) {
+						cancel();
+						return;
+					}
+					completed(idsToRetrieve.size(), getCurrentTime() - startTime);
+					break;
+				} catch (CoreException c) {
+					if (c.getStatus().getCode() != RepositoryStatus.ERROR_REPOSITORY_LOGIN
+							|| !reauthenticate(authenticationCount, monitor)) {
+						throw c;
+					}
+					// retry chunk with new session
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the task data of <code>taskIds</code> and passes it to <code>collector</code>. Invoked concurrently
+	 * from several threads.
+	 * 
+	 * @return false, if the response could not be processed and retrieval should stop
+	 */
+	protected abstract boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor monitor)
+			throws IOException, CoreException;
+
+	/**
+	 * Invalidates the current session and authenticates again.
+	 */
+	protected abstract void authenticate(IProgressMonitor monitor) throws CoreException;
+
+	protected long getCurrentTime() {
+		return System.currentTimeMillis();
+	}
+
+	public synchronized void cancel() {
+		canceled = true;
+	}
+
+	public synchronized int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Returns the ids of the next chunk or null, if all chunks have been handed out.
+	 */
+	private synchronized Set<String> nextChunk() {
+		if (canceled || !remainingIds.hasNext()) {
+			return null;
+		}
+		Set<String> ids = new HashSet<String>();
+		while (remainingIds.hasNext() && ids.size() < chunkSize) {
+			ids.add(remainingIds.next());
+		}
+		return ids;
+	}
+
+	private synchronized void completed(int size, long responseTime) {
+		if (responseTime < FAST_RESPONSE_TIME && size >= chunkSize) {
+			chunkSize = Math.min(chunkSize * 2, MAX_CHUNK_SIZE);
+		} else if (responseTime > SLOW_RESPONSE_TIME) {
+			chunkSize = Math.max(chunkSize / 2, MIN_CHUNK_SIZE);
+		}
+	}
+
+	private synchronized int getAuthenticationCount() {
+		return authenticationCount;
+	}
+
+	/**
+	 * Re-authenticates unless another thread has already done so since <code>authenticationCount</code> was
+	 * retrieved. A session is only re-authenticated once per retrieval.
+	 * 
+	 * @return true, if the request should be retried
+	 */
+	private synchronized boolean reauthenticate(int authenticationCount, IProgressMonitor monitor)
+			throws CoreException {
+		if (this.authenticationCount != authenticationCount) {
+			// a concurrent request has already re-authenticated
+			return true;
+		}
+		if (this.authenticationCount >= 1) {
+			return false;
+		}
+		this.authenticationCount++;
+		authenticate(monitor);
+		return true;
+	}
+
+}
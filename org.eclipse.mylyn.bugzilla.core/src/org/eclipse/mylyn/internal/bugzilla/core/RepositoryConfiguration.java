@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ package org.eclipse.mylyn.internal.bugzilla.core;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -21,13 +22,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.mylyn.internal.bugzilla.core.IBugzillaConstants.BUGZILLA_REPORT_STATUS;
 import org.eclipse.mylyn.internal.bugzilla.core.IBugzillaConstants.BUGZILLA_REPORT_STATUS_4_0;
 import org.eclipse.mylyn.internal.bugzilla.core.service.BugzillaXmlRpcClient;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
 import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
 import org.eclipse.mylyn.tasks.core.data.TaskData;
 import org.eclipse.mylyn.tasks.core.data.TaskOperation;
 
@@ -88,11 +93,25 @@ public class RepositoryConfiguration implements Serializable {
 
 	private Date lastModifiedHeader = null;
 
+	/**
+	 * Attribute options computed from this configuration, created on first use and discarded by
+	 * {@link #configurationChanged()} when the configuration is modified.
+	 */
+	private transient volatile OptionsIndex optionsIndex;
+
 	public RepositoryConfiguration() {
 	}
 
+	/**
+	 * Discards the options computed from this configuration. Needs to be invoked after each modification, lists
+	 * returned by getters can not be modified.
+	 */
+	private void configurationChanged() {
+		optionsIndex = null;
+	}
+
 	public List<String> getResolutions() {
-		return resolutionValues;
+		return Collections.unmodifiableList(resolutionValues);
 	}
 
 	/**
@@ -103,6 +122,7 @@ public class RepositoryConfiguration implements Serializable {
 			ProductEntry product = new ProductEntry(name);
 			products.put(name, product);
 		}
+		configurationChanged();
 	}
 
 	/**
@@ -121,7 +141,7 @@ public class RepositoryConfiguration implements Serializable {
 	public List<String> getComponents(String product) {
 		ProductEntry entry = products.get(product);
 		if (entry != null) {
-			return entry.getComponents();
+			return Collections.unmodifiableList(entry.getComponents());
 		} else {
 			return Collections.emptyList();
 		}
@@ -134,7 +154,7 @@ public class RepositoryConfiguration implements Serializable {
 	public List<String> getVersions(String product) {
 		ProductEntry entry = products.get(product);
 		if (entry != null) {
-			return entry.getVersions();
+			return Collections.unmodifiableList(entry.getVersions());
 		} else {
 			return Collections.emptyList();
 		}
@@ -144,28 +164,28 @@ public class RepositoryConfiguration implements Serializable {
 	 * Returns an array of names of valid severity values.
 	 */
 	public List<String> getSeverities() {
-		return severities;
+		return Collections.unmodifiableList(severities);
 	}
 
 	/**
 	 * Returns an array of names of valid OS values.
 	 */
 	public List<String> getOSs() {
-		return operatingSystems;
+		return Collections.unmodifiableList(operatingSystems);
 	}
 
 	/**
 	 * Returns an array of names of valid platform values.
 	 */
 	public List<String> getPlatforms() {
-		return platforms;
+		return Collections.unmodifiableList(platforms);
 	}
 
 	/**
 	 * Returns an array of names of valid platform values.
 	 */
 	public List<String> getPriorities() {
-		return priorities;
+		return Collections.unmodifiableList(priorities);
 	}
 
 	/**
@@ -196,7 +216,7 @@ public class RepositoryConfiguration implements Serializable {
 	}
 
 	public List<String> getKeywords() {
-		return keywords;
+		return Collections.unmodifiableList(keywords);
 	}
 
 	public void setInstallVersion(String version) {
@@ -224,7 +244,7 @@ public class RepositoryConfiguration implements Serializable {
 	public List<String> getTargetMilestones(String product) {
 		ProductEntry entry = products.get(product);
 		if (entry != null) {
-			return entry.getTargetMilestones();
+			return Collections.unmodifiableList(entry.getTargetMilestones());
 		} else {
 			return Collections.emptyList();
 		}
@@ -237,6 +257,7 @@ public class RepositoryConfiguration implements Serializable {
 			products.put(product, entry);
 		}
 		entry.setUnconfirmedAllowed(unconfirmedAllowed);
+		configurationChanged();
 	}
 
 	/**
@@ -309,37 +330,39 @@ public class RepositoryConfiguration implements Serializable {
 	}
 
 	public List<String> getOpenStatusValues() {
-		return openStatusValues;
+		return Collections.unmodifiableList(openStatusValues);
 	}
 
 	public void addOpenStatusValue(String value) {
 		openStatusValues.add(value);
+		configurationChanged();
 	}
 
 	public List<String> getClosedStatusValues() {
 		if (validTransitions != null) {
 			ArrayList<String> closedStatus = validTransitions.getClosedStatuses();
 			if (closedStatus != null && !closedStatus.isEmpty()) {
-				return closedStatus;
+				return Collections.unmodifiableList(closedStatus);
 			}
 		}
-		return closedStatusValues;
+		return Collections.unmodifiableList(closedStatusValues);
 	}
 
 	public void addClosedStatusValue(String value) {
 		closedStatusValues.add(value);
+		configurationChanged();
 	}
 
 	public List<String> getComponents() {
-		return components;
+		return Collections.unmodifiableList(components);
 	}
 
 	public List<String> getTargetMilestones() {
-		return milestones;
+		return Collections.unmodifiableList(milestones);
 	}
 
 	public List<String> getVersions() {
-		return versions;
+		return Collections.unmodifiableList(versions);
 	}
 
 	public String getRepositoryUrl() {
@@ -348,6 +371,7 @@ public class RepositoryConfiguration implements Serializable {
 
 	public void setRepositoryUrl(String repositoryUrl) {
 		this.repositoryUrl = repositoryUrl;
+		configurationChanged();
 	}
 
 	/**
@@ -389,25 +413,25 @@ public class RepositoryConfiguration implements Serializable {
 		case PRODUCT:
 			return getProducts();
 		case TARGET_MILESTONE:
-			return milestones;
+			return Collections.unmodifiableList(milestones);
 		case BUG_STATUS:
-			return bugStatus;
+			return Collections.unmodifiableList(bugStatus);
 		case VERSION:
-			return versions;
+			return Collections.unmodifiableList(versions);
 		case COMPONENT:
-			return components;
+			return Collections.unmodifiableList(components);
 		case REP_PLATFORM:
-			return platforms;
+			return Collections.unmodifiableList(platforms);
 		case OP_SYS:
-			return operatingSystems;
+			return Collections.unmodifiableList(operatingSystems);
 		case PRIORITY:
-			return priorities;
+			return Collections.unmodifiableList(priorities);
 		case BUG_SEVERITY:
-			return severities;
+			return Collections.unmodifiableList(severities);
 		case KEYWORDS:
-			return keywords;
+			return Collections.unmodifiableList(keywords);
 		case RESOLUTION:
-			return resolutionValues;
+			return Collections.unmodifiableList(resolutionValues);
 		default:
 			return Collections.emptyList();
 		}
@@ -455,6 +479,7 @@ public class RepositoryConfiguration implements Serializable {
 		default:
 			break;
 		}
+		configurationChanged();
 	}
 
 	public void addItem2ProductConfiguration(BugzillaAttribute element, String product, String value) {
@@ -470,6 +495,7 @@ public class RepositoryConfiguration implements Serializable {
 		default:
 			break;
 		}
+		configurationChanged();
 	}
 
 	/**
@@ -477,10 +503,11 @@ public class RepositoryConfiguration implements Serializable {
 	 */
 	public void addCustomField(BugzillaCustomField newField) {
 		customFields.add(newField);
+		configurationChanged();
 	}
 
 	public List<BugzillaCustomField> getCustomFields() {
-		return customFields;
+		return Collections.unmodifiableList(customFields);
 	}
 
 	public void configureTaskData(TaskData taskData, boolean localuser, BugzillaRepositoryConnector connector) {
@@ -595,11 +622,12 @@ public class RepositoryConfiguration implements Serializable {
 			return;
 		}
 		String product = attributeProduct.getValue();
-		for (TaskAttribute attribute : new HashSet<TaskAttribute>(existingReport.getRoot().getAttributes().values())) {
+		OptionsIndex index = getOptionsIndex();
+		for (TaskAttribute attribute : new ArrayList<TaskAttribute>(existingReport.getRoot().getAttributes().values())) {
 
-			List<String> optionValues = getAttributeOptions(product, attribute);
+			AttributeOptions options = index.getOptions(product, attribute);
 
-			if (attribute.getId().equals(BugzillaAttribute.TARGET_MILESTONE.getKey()) && optionValues.isEmpty()) {
+			if (attribute.getId().equals(BugzillaAttribute.TARGET_MILESTONE.getKey()) && options.values.isEmpty()) {
 				existingReport.getRoot().removeAttribute(BugzillaAttribute.TARGET_MILESTONE.getKey());
 				continue;
 			}
@@ -608,81 +636,204 @@ public class RepositoryConfiguration implements Serializable {
 				attribute = attribute.getAttribute("state"); //$NON-NLS-1$
 			}
 
-			attribute.clearOptions();
-			for (String option : optionValues) {
-				attribute.putOption(option, option);
-			}
+			index.applyTo(attribute, options);
 		}
 
 	}
 
+	/**
+	 * Returns the valid options for <code>attribute</code>. The returned list is shared and must not be modified.
+	 */
 	public List<String> getAttributeOptions(String product, TaskAttribute attribute) {
+		return getOptionsIndex().getOptions(product, attribute).values;
+	}
+
+	private OptionsIndex getOptionsIndex() {
+		OptionsIndex index = optionsIndex;
+		if (index == null) {
+			index = new OptionsIndex();
+			optionsIndex = index;
+		}
+		return index;
+	}
+
+	private List<String> computeAttributeOptions(String product, TaskAttribute attribute) {
 		List<String> options = new ArrayList<String>();
 
 		if (attribute.getId().startsWith(BugzillaCustomField.CUSTOM_FIELD_PREFIX)) {
 			for (BugzillaCustomField bugzillaCustomField : customFields) {
 				if (bugzillaCustomField.getName().equals(attribute.getId())) {
-					options = bugzillaCustomField.getOptions();
+					options.addAll(bugzillaCustomField.getOptions());
 					break;
 				}
 			}
 
-		} else if (attribute.getId().startsWith(BugzillaAttribute.KIND_FLAG)) {
+		} else {
 
-			TaskAttribute state = attribute.getAttribute("state"); //$NON-NLS-1$
-			if (state != null) {
-				String nameValue = state.getMetaData().getLabel();
-				options.add(""); //$NON-NLS-1$
-				for (BugzillaFlag bugzillaFlag : flags) {
-					if (nameValue.equals(bugzillaFlag.getName())) {
-						if (nameValue.equals(bugzillaFlag.getName())) {
-							if (bugzillaFlag.isRequestable()) {
-								options.add("?"); //$NON-NLS-1$
-							}
-							break;
-						}
-					}
-				}
-				options.add("+"); //$NON-NLS-1$
-				options.add("-"); //$NON-NLS-1$
+			BugzillaAttribute element = getElement(attribute.getId());
+			if (element == null) {
+				return options;
+			}
+			if (isProductOption(element) && (product != null && !product.equals(""))) { //$NON-NLS-1$
+				options.addAll(getProductOptionValues(element, product));
+			} else {
+				options.addAll(getOptionValues(element));
+			}
+			if (element != BugzillaAttribute.RESOLUTION && element != BugzillaAttribute.OP_SYS
+					&& element != BugzillaAttribute.BUG_SEVERITY && element != BugzillaAttribute.PRIORITY
+					&& element != BugzillaAttribute.BUG_STATUS && element != BugzillaAttribute.TARGET_MILESTONE
+					&& element != BugzillaAttribute.PRODUCT) {
+				Collections.sort(options);
 			}
 		}
+		return options;
+	}
 
-		else {
-			String type = attribute.getMetaData().getType();
+	private static BugzillaAttribute getElement(String attributeId) {
+		try {
+			return BugzillaAttribute.valueOf(attributeId.trim().toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			// ignore unrecognized tags
+			return null;
+		}
+	}
 
-			if (type != null && type.equals(IBugzillaConstants.EDITOR_TYPE_FLAG)) {
-				options.add(""); //$NON-NLS-1$
-				options.add("?"); //$NON-NLS-1$
-				options.add("+"); //$NON-NLS-1$
-				options.add("-"); //$NON-NLS-1$
-			} else {
+	private static boolean isProductOption(BugzillaAttribute element) {
+		return element == BugzillaAttribute.TARGET_MILESTONE || element == BugzillaAttribute.VERSION
+				|| element == BugzillaAttribute.COMPONENT;
+	}
 
-				BugzillaAttribute element;
-				try {
-					element = BugzillaAttribute.valueOf(attribute.getId().trim().toUpperCase(Locale.ENGLISH));
-				} catch (RuntimeException e) {
-					if (e instanceof IllegalArgumentException) {
-						// ignore unrecognized tags
-						return options;
+	/**
+	 * Immutable options of an attribute.
+	 */
+	private static class AttributeOptions {
+
+		final List<String> values;
+
+		/**
+		 * Holds the options for copying them to task data, created on first use.
+		 */
+		TaskAttribute template;
+
+		AttributeOptions(List<String> values) {
+			this.values = Collections.unmodifiableList(values);
+		}
+
+	}
+
+	/**
+	 * Options indexed by attribute and product. Each option list is computed once and shared by all task data that
+	 * are configured from the same configuration. Thread safe.
+	 */
+	private class OptionsIndex {
+
+		private final AttributeOptions noOptions = new AttributeOptions(new ArrayList<String>(0));
+
+		/**
+		 * Marks attributes in {@link #optionsById} that have options per product.
+		 */
+		private final AttributeOptions productOptions = new AttributeOptions(new ArrayList<String>(0));
+
+		private final AttributeOptions flagOptions = new AttributeOptions(Arrays.asList("", "?", "+", "-")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+		private final AttributeOptions unrequestableFlagOptions = new AttributeOptions(Arrays.asList("", "+", "-")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+		private final ConcurrentMap<String, AttributeOptions> optionsById = new ConcurrentHashMap<String, AttributeOptions>();
+
+		private final ConcurrentMap<String, ConcurrentMap<String, AttributeOptions>> optionsByProduct = new ConcurrentHashMap<String, ConcurrentMap<String, AttributeOptions>>();
+
+		private TaskData templateData;
+
+		private int templateCount;
+
+		AttributeOptions getOptions(String product, TaskAttribute attribute) {
+			String attributeId = attribute.getId();
+			if (attributeId.startsWith(BugzillaAttribute.KIND_FLAG)) {
+				return getFlagOptions(attribute);
+			}
+			String type = attribute.getMetaData().getType();
+			if (type != null && type.equals(IBugzillaConstants.EDITOR_TYPE_FLAG)
+					&& !attributeId.startsWith(BugzillaCustomField.CUSTOM_FIELD_PREFIX)) {
+				return flagOptions;
+			}
+			AttributeOptions options = optionsById.get(attributeId);
+			if (options == null) {
+				BugzillaAttribute element = getElement(attributeId);
+				options = (element != null && isProductOption(element)) ? productOptions : computeOptions(null,
+						attribute);
+				AttributeOptions existingOptions = optionsById.putIfAbsent(attributeId, options);
+				if (existingOptions != null) {
+					options = existingOptions;
+				}
+			}
+			if (options == productOptions) {
+				String key = (product != null) ? product : ""; //$NON-NLS-1$
+				ConcurrentMap<String, AttributeOptions> optionsMap = optionsByProduct.get(key);
+				if (optionsMap == null) {
+					optionsMap = new ConcurrentHashMap<String, AttributeOptions>();
+					ConcurrentMap<String, AttributeOptions> existingMap = optionsByProduct.putIfAbsent(key, optionsMap);
+					if (existingMap != null) {
+						optionsMap = existingMap;
 					}
-					throw e;
 				}
-				if ((element == BugzillaAttribute.TARGET_MILESTONE || element == BugzillaAttribute.VERSION || element == BugzillaAttribute.COMPONENT)
-						&& (product != null && !product.equals(""))) { //$NON-NLS-1$
-					options = getProductOptionValues(element, product);
-				} else {
-					options = getOptionValues(element);
+				options = optionsMap.get(attributeId);
+				if (options == null) {
+					options = computeOptions(key, attribute);
+					AttributeOptions existingOptions = optionsMap.putIfAbsent(attributeId, options);
+					if (existingOptions != null) {
+						options = existingOptions;
+					}
 				}
-				if (element != BugzillaAttribute.RESOLUTION && element != BugzillaAttribute.OP_SYS
-						&& element != BugzillaAttribute.BUG_SEVERITY && element != BugzillaAttribute.PRIORITY
-						&& element != BugzillaAttribute.BUG_STATUS && element != BugzillaAttribute.TARGET_MILESTONE
-						&& element != BugzillaAttribute.PRODUCT) {
-					Collections.sort(options);
+			}
+			return options;
+		}
+
+		private AttributeOptions computeOptions(String product, TaskAttribute attribute) {
+			List<String> values = computeAttributeOptions(product, attribute);
+			return (values.isEmpty()) ? noOptions : new AttributeOptions(values);
+		}
+
+		private AttributeOptions getFlagOptions(TaskAttribute attribute) {
+			TaskAttribute state = attribute.getAttribute("state"); //$NON-NLS-1$
+			if (state == null) {
+				return noOptions;
+			}
+			String nameValue = state.getMetaData().getLabel();
+			for (BugzillaFlag bugzillaFlag : flags) {
+				if (nameValue.equals(bugzillaFlag.getName())) {
+					return (bugzillaFlag.isRequestable()) ? flagOptions : unrequestableFlagOptions;
 				}
 			}
+			return unrequestableFlagOptions;
 		}
-		return options;
+
+		/**
+		 * Replaces the options of <code>attribute</code> by <code>options</code>.
+		 */
+		synchronized void applyTo(TaskAttribute attribute, AttributeOptions options) {
+			if (options.values.isEmpty()) {
+				attribute.clearOptions();
+				return;
+			}
+			if (options.template == null) {
+				if (templateData == null) {
+					String url = (repositoryUrl != null) ? repositoryUrl : ""; //$NON-NLS-1$
+					templateData = new TaskData(new TaskAttributeMapper(new TaskRepository(
+							BugzillaCorePlugin.CONNECTOR_KIND, url)), BugzillaCorePlugin.CONNECTOR_KIND, url, ""); //$NON-NLS-1$
+				}
+				TaskAttribute builder = templateData.getRoot().createAttribute(String.valueOf(templateCount++));
+				for (String option : options.values) {
+					builder.putOption(option, option);
+				}
+				// copies of a copy share its options without hashing them again
+				TaskAttribute template = templateData.getRoot().createAttribute(String.valueOf(templateCount++));
+				template.copyOptions(builder);
+				templateData.getRoot().removeAttribute(builder.getId());
+				options.template = template;
+			}
+			attribute.copyOptions(options.template);
+		}
+
 	}
 
 	public void addValidOperations(TaskData bugReport) {
@@ -1099,10 +1250,11 @@ public class RepositoryConfiguration implements Serializable {
 	 */
 	public void addFlag(BugzillaFlag newFlag) {
 		flags.add(newFlag);
+		configurationChanged();
 	}
 
 	public List<BugzillaFlag> getFlags() {
-		return flags;
+		return Collections.unmodifiableList(flags);
 	}
 
 	public BugzillaFlag getFlagWithId(Integer id) {
@@ -1259,6 +1411,7 @@ public class RepositoryConfiguration implements Serializable {
 			products.put(product, entry);
 		}
 		entry.setDefaultMilestone(defaultMilestone);
+		configurationChanged();
 	}
 
 	public Date getLastModifiedHeader() {
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.bugzilla.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.commons.core.StatusHandler;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Persists repository configurations in one file per repository. Each file starts with a header that identifies the
+ * format version, the version of {@link RepositoryConfiguration} and the repository url followed by the compressed
+ * configuration. Files that do not match the current versions are discarded when read.
+ */
+public class RepositoryConfigurationStore {
+
+	private static final int MAGIC = 0x425a4346;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String FILE_EXTENSION = ".config"; //$NON-NLS-1$
+
+	private static final String TEMP_FILE_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private final File directory;
+
+	public RepositoryConfigurationStore(File directory) {
+		Assert.isNotNull(directory);
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the configuration for <code>repositoryUrl</code> or <code>null</code>, if no configuration is stored or
+	 * the stored configuration is incompatible.
+	 */
+	public RepositoryConfiguration read(String repositoryUrl) {
+		File file = getFile(repositoryUrl);
+		if (!file.exists()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION && in.readLong() == getSerialVersionUID()
+					&& repositoryUrl.equals(in.readUTF())) {
+				ObjectInputStream objectIn = new ObjectInputStream(new GZIPInputStream(in));
+				return (RepositoryConfiguration) objectIn.readObject();
+			}
+		} catch (Exception e) {
+			// fall through and discard the file
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		StatusHandler.log(new Status(IStatus.INFO, BugzillaCorePlugin.ID_PLUGIN, NLS.bind(
+				"Reset Bugzilla repository configuration cache for {0} due to format change", repositoryUrl))); //$NON-NLS-1$
+		delete(repositoryUrl);
+		return null;
+	}
+
+	/**
+	 * Writes <code>configuration</code> replacing a previously stored configuration for the same repository.
+	 */
+	public void write(RepositoryConfiguration configuration) throws IOException {
+		String repositoryUrl = configuration.getRepositoryUrl();
+		Assert.isNotNull(repositoryUrl);
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		File file = getFile(repositoryUrl);
+		// write to a temporary file first to retain the previous configuration in case writing fails
+		File tempFile = new File(directory, file.getName() + TEMP_FILE_EXTENSION);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(getSerialVersionUID());
+			out.writeUTF(repositoryUrl);
+			GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+			ObjectOutputStream objectOut = new ObjectOutputStream(gzipOut);
+			objectOut.writeObject(configuration);
+			objectOut.flush();
+			gzipOut.finish();
+		} finally {
+			out.close();
+		}
+		if (!tempFile.renameTo(file)) {
+			// rename does not replace existing files on all platforms
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				tempFile.delete();
+				throw new IOException("Failed to rename " + tempFile + " to " + file); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+
+	public void delete(String repositoryUrl) {
+		File file = getFile(repositoryUrl);
+		if (file.exists() && !file.delete()) {
+			StatusHandler.log(new Status(IStatus.ERROR, BugzillaCorePlugin.ID_PLUGIN,
+					"Error removing repository configuration file " + file)); //$NON-NLS-1$
+		}
+	}
+
+	File getFile(String repositoryUrl) {
+		return new File(directory, hash(repositoryUrl) + FILE_EXTENSION);
+	}
+
+	private static long getSerialVersionUID() {
+		return ObjectStreamClass.lookup(RepositoryConfiguration.class).getSerialVersionUID();
+	}
+
+	private static String hash(String repositoryUrl) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(repositoryUrl.getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+			char[] chars = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				chars[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+				chars[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+			}
+			return new String(chars);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,9 @@
 
 package org.eclipse.mylyn.internal.bugzilla.core;
 
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
 import org.eclipse.mylyn.tasks.core.data.TaskData;
@@ -27,7 +29,9 @@ import org.xml.sax.helpers.DefaultHandler;
  */
 public class SaxBugzillaQueryContentHandler extends DefaultHandler {
 
-	private StringBuffer characters;
+	private final SaxTextBuffer characters = new SaxTextBuffer();
+
+	private final Map<String, BugzillaAttribute> tagByName = new HashMap<String, BugzillaAttribute>();
 
 	private final TaskDataCollector collector;
 
@@ -52,27 +56,19 @@ public class SaxBugzillaQueryContentHandler extends DefaultHandler {
 
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-		characters = new StringBuffer();
+		characters.clear();
 	}
 
 	@Override
 	public void endElement(String uri, String localName, String qName) throws SAXException {
 
+		BugzillaAttribute tag = getTag(localName);
+		if (tag == null) {
+			// ignore unrecognized tags
+			return;
+		}
 		String parsedText = characters.toString();
-		BugzillaAttribute tag = BugzillaAttribute.UNKNOWN;
 		try {
-			String tagName = localName.trim().toUpperCase(Locale.ENGLISH);
-			try {
-				tag = BugzillaAttribute.valueOf(tagName);
-			} catch (IllegalArgumentException e) {
-				if (tagName.equals("ASSIGNED_TO_REALNAME")) { //$NON-NLS-1$
-					tag = BugzillaAttribute.ASSIGNED_TO_NAME;
-				} else if (tagName.equals("REPORTER_REALNAME")) { //$NON-NLS-1$
-					tag = BugzillaAttribute.REPORTER_NAME;
-				} else {
-					throw e;
-				}
-			}
 			switch (tag) {
 			case QUERY_TIMESTAMP:
 				if (collector instanceof BugzillaTaskDataCollector) {
@@ -114,6 +110,28 @@ public class SaxBugzillaQueryContentHandler extends DefaultHandler {
 
 	}
 
+	/**
+	 * Returns the attribute for the element <code>localName</code> or <code>null</code>, if the element is not
+	 * recognized. Lookups are cached since the same elements are repeated for every result.
+	 */
+	private BugzillaAttribute getTag(String localName) {
+		BugzillaAttribute tag = tagByName.get(localName);
+		if (tag == null && !tagByName.containsKey(localName)) {
+			String tagName = localName.trim().toUpperCase(Locale.ENGLISH);
+			try {
+				tag = BugzillaAttribute.valueOf(tagName);
+			} catch (IllegalArgumentException e) {
+				if (tagName.equals("ASSIGNED_TO_REALNAME")) { //$NON-NLS-1$
+					tag = BugzillaAttribute.ASSIGNED_TO_NAME;
+				} else if (tagName.equals("REPORTER_REALNAME")) { //$NON-NLS-1$
+					tag = BugzillaAttribute.REPORTER_NAME;
+				}
+			}
+			tagByName.put(localName, tag);
+		}
+		return tag;
+	}
+
 	protected String getConnectorKind() {
 		return mapper.getTaskRepository().getConnectorKind();
 	}
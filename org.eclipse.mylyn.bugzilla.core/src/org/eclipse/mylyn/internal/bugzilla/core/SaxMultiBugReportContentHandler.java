@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -44,7 +44,9 @@ public class SaxMultiBugReportContentHandler extends DefaultHandler {
 
 	private static final String ID_STRING_END = ")"; //$NON-NLS-1$
 
-	private StringBuffer characters;
+	private final SaxTextBuffer characters = new SaxTextBuffer();
+
+	private final Map<String, BugzillaAttribute> tagByName = new HashMap<String, BugzillaAttribute>();
 
 	private TaskComment taskComment;
 
@@ -117,19 +119,14 @@ public class SaxMultiBugReportContentHandler extends DefaultHandler {
 
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-		characters = new StringBuffer();
-		BugzillaAttribute tag = BugzillaAttribute.UNKNOWN;
+		characters.clear();
 		if (localName.startsWith(BugzillaCustomField.CUSTOM_FIELD_PREFIX)) {
 			return;
 		}
-		try {
-			tag = BugzillaAttribute.valueOf(localName.trim().toUpperCase(Locale.ENGLISH));
-		} catch (RuntimeException e) {
-			if (e instanceof IllegalArgumentException) {
-				// ignore unrecognized tags
-				return;
-			}
-			throw e;
+		BugzillaAttribute tag = getTag(localName);
+		if (tag == null) {
+			// ignore unrecognized tags
+			return;
 		}
 		switch (tag) {
 		case BUGZILLA:
@@ -241,9 +238,7 @@ public class SaxMultiBugReportContentHandler extends DefaultHandler {
 	public void endElement(String uri, String localName, String qName) throws SAXException {
 
 		//remove whitespaces from the end of the parsed Text
-		while (characters.length() > 0 && Character.isWhitespace(characters.charAt(characters.length() - 1))) {
-			characters.setLength(characters.length() - 1);
-		}
+		characters.trimTrailingWhitespace();
 
 		String parsedText = characters.toString();
 
@@ -297,15 +292,10 @@ public class SaxMultiBugReportContentHandler extends DefaultHandler {
 			}
 		}
 
-		BugzillaAttribute tag = BugzillaAttribute.UNKNOWN;
-		try {
-			tag = BugzillaAttribute.valueOf(localName.trim().toUpperCase(Locale.ENGLISH));
-		} catch (RuntimeException e) {
-			if (e instanceof IllegalArgumentException) {
-				// ignore unrecognized tags
-				return;
-			}
-			throw e;
+		BugzillaAttribute tag = getTag(localName);
+		if (tag == null) {
+			// ignore unrecognized tags
+			return;
 		}
 		switch (tag) {
 		case BUG_ID: {
@@ -564,6 +554,23 @@ public class SaxMultiBugReportContentHandler extends DefaultHandler {
 
 	}
 
+	/**
+	 * Returns the attribute for the element <code>localName</code> or <code>null</code>, if the element is not
+	 * recognized. Lookups are cached since the same elements are repeated for every bug.
+	 */
+	private BugzillaAttribute getTag(String localName) {
+		BugzillaAttribute tag = tagByName.get(localName);
+		if (tag == null && !tagByName.containsKey(localName)) {
+			try {
+				tag = BugzillaAttribute.valueOf(localName.trim().toUpperCase(Locale.ENGLISH));
+			} catch (IllegalArgumentException e) {
+				// unrecognized tag
+			}
+			tagByName.put(localName, tag);
+		}
+		return tag;
+	}
+
 	private TaskAttribute createAttrribute(String parsedText, BugzillaAttribute tag) {
 		TaskAttribute attribute = repositoryTaskData.getRoot().getMappedAttribute(tag.getKey());
 		if (attribute == null) {
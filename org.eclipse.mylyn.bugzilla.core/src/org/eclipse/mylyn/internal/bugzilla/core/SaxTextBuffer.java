@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.bugzilla.core;
+
+/**
+ * Accumulates the character data of an element for SAX content handlers. A single instance is reused for all elements
+ * of a document to avoid allocating a buffer per element.
+ * <p>
+ * Short values such as user names, statuses and products repeat frequently within a response. {@link #toString()}
+ * returns the same string instance for repeated short values without allocating a new string. The cache is bounded
+ * and not shared between instances. This class is not thread safe.
+ */
+public class SaxTextBuffer {
+
+	/**
+	 * Values that exceed this length are not cached.
+	 */
+	private static final int MAX_CACHED_LENGTH = 64;
+
+	/**
+	 * The number of cached values, must be a power of 2.
+	 */
+	private static final int CACHE_SIZE = 1024;
+
+	private char[] buffer = new char[256];
+
+	private int length;
+
+	private final String[] cache = new String[CACHE_SIZE];
+
+	public void append(char[] ch, int start, int len) {
+		if (length + len > buffer.length) {
+			char[] newBuffer = new char[Math.max(buffer.length * 2, length + len)];
+			System.arraycopy(buffer, 0, newBuffer, 0, length);
+			buffer = newBuffer;
+		}
+		System.arraycopy(ch, start, buffer, length, len);
+		length += len;
+	}
+
+	public void clear() {
+		length = 0;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Removes whitespace from the end of the buffer.
+	 */
+	public void trimTrailingWhitespace() {
+		while (length > 0 && Character.isWhitespace(buffer[length - 1])) {
+			length--;
+		}
+	}
+
+	/**
+	 * Returns the content of the buffer. Short values are returned from a cache if the same value was returned
+	 * previously.
+	 */
+	@Override
+	public String toString() {
+		if (length == 0) {
+			return ""; //$NON-NLS-1$
+		}
+		if (length > MAX_CACHED_LENGTH) {
+			return new String(buffer, 0, length);
+		}
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+		String value = cache[index];
+		if (value == null || value.hashCode() != hash || !contentEquals(value)) {
+			value = new String(buffer, 0, length);
+			cache[index] = value;
+		}
+		return value;
+	}
+
+	private boolean contentEquals(String value) {
+		if (value.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (value.charAt(i) != buffer[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
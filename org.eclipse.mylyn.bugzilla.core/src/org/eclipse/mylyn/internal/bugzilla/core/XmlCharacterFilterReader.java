@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.bugzilla.core;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.eclipse.mylyn.internal.commons.core.XmlStringConverter;
+
+/**
+ * Removes characters that are not permitted in XML documents from a character stream. Characters are filtered in bulk
+ * as they are read into the caller's buffer. Surrogate characters are passed through to preserve supplementary
+ * characters.
+ */
+@SuppressWarnings("restriction")
+public class XmlCharacterFilterReader extends FilterReader {
+
+	public XmlCharacterFilterReader(Reader in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int c;
+		while ((c = in.read()) != -1) {
+			if (isValid((char) c)) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int count;
+		do {
+			count = in.read(cbuf, off, len);
+			if (count == -1) {
+				return -1;
+			}
+			count = filter(cbuf, off, count);
+			// read again if all characters were removed since 0 may only be returned for an empty request
+		} while (count == 0);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if (n < 0) {
+			throw new IllegalArgumentException("skip value is negative"); //$NON-NLS-1$
+		}
+		char[] buffer = new char[(int) Math.min(n, 1024)];
+		long remaining = n;
+		while (remaining > 0) {
+			int count = read(buffer, 0, (int) Math.min(remaining, buffer.length));
+			if (count == -1) {
+				break;
+			}
+			remaining -= count;
+		}
+		return n - remaining;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark(int readAheadLimit) throws IOException {
+		throw new IOException("mark() not supported"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("reset() not supported"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Compacts the valid characters of the range to the start of the range and returns their number.
+	 */
+	private static int filter(char[] cbuf, int off, int len) {
+		int end = off + len;
+		int i = off;
+		// skip ahead without copying until the first invalid character
+		while (i < end && isValid(cbuf[i])) {
+			i++;
+		}
+		int target = i;
+		for (; i < end; i++) {
+			char c = cbuf[i];
+			if (isValid(c)) {
+				cbuf[target++] = c;
+			}
+		}
+		return target - off;
+	}
+
+	private static boolean isValid(char c) {
+		if (c >= 0x20 && c < 0xD800) {
+			return true;
+		}
+		if (c >= 0xD800 && c <= 0xDFFF) {
+			return true;
+		}
+		return XmlStringConverter.isValid(c);
+	}
+
+}
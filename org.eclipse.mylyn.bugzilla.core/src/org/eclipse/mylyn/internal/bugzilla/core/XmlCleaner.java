@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.text.ParseException;
@@ -33,6 +34,19 @@ import org.eclipse.mylyn.commons.net.HtmlTag;
  */
 public class XmlCleaner {
 
+	/**
+	 * Escapes ampersands in the character stream of <code>in</code> that do not start an entity or character reference.
+	 * Unlike {@link #clean(Reader, File)} the content is not buffered to disk and ampersands are escaped in attribute
+	 * values and character data alike since either is rejected by the parser.
+	 */
+	public static Reader clean(Reader in) {
+		return new AmpersandEscapingReader(in);
+	}
+
+	/**
+	 * @deprecated use {@link #clean(Reader)} instead
+	 */
+	@Deprecated
 	public static BufferedReader clean(Reader in, File tempFile) {
 
 		HtmlStreamTokenizer tokenizer = new HtmlStreamTokenizer(in, null);
@@ -68,4 +82,171 @@ public class XmlCleaner {
 		return null;
 	}
 
+	private static class AmpersandEscapingReader extends FilterReader {
+
+		private static final char[] ESCAPE = "amp;".toCharArray(); //$NON-NLS-1$
+
+		/**
+		 * The maximum number of characters following an ampersand that are inspected to detect a reference.
+		 */
+		private static final int MAX_REFERENCE_LENGTH = 64;
+
+		private final char[] buffer = new char[8192];
+
+		private int position;
+
+		private int limit;
+
+		private boolean eof;
+
+		private int escapeIndex = ESCAPE.length;
+
+		public AmpersandEscapingReader(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			char[] c = new char[1];
+			return (read(c, 0, 1) == -1) ? -1 : c[0];
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int count = 0;
+			while (count < len) {
+				if (escapeIndex < ESCAPE.length) {
+					cbuf[off + count++] = ESCAPE[escapeIndex++];
+					continue;
+				}
+				if (position == limit) {
+					if (count > 0 && !in.ready()) {
+						// avoid blocking while characters are available to the caller
+						break;
+					}
+					if (!fill(1)) {
+						break;
+					}
+				}
+				if (buffer[position] == '&') {
+					fill(MAX_REFERENCE_LENGTH + 1);
+					if (!isReference()) {
+						escapeIndex = 0;
+					}
+					cbuf[off + count++] = buffer[position++];
+				} else {
+					// copy everything up to the next ampersand in bulk
+					int start = position;
+					int end = Math.min(limit, position + len - count);
+					while (position < end && buffer[position] != '&') {
+						position++;
+					}
+					System.arraycopy(buffer, start, cbuf, off + count, position - start);
+					count += position - start;
+				}
+			}
+			return (count == 0) ? -1 : count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			if (n < 0) {
+				throw new IllegalArgumentException("skip value is negative"); //$NON-NLS-1$
+			}
+			char[] skipBuffer = new char[(int) Math.min(n, 1024)];
+			long remaining = n;
+			while (remaining > 0) {
+				int count = read(skipBuffer, 0, (int) Math.min(remaining, skipBuffer.length));
+				if (count == -1) {
+					break;
+				}
+				remaining -= count;
+			}
+			return n - remaining;
+		}
+
+		@Override
+		public boolean ready() throws IOException {
+			return escapeIndex < ESCAPE.length || position < limit || in.ready();
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void mark(int readAheadLimit) throws IOException {
+			throw new IOException("mark() not supported"); //$NON-NLS-1$
+		}
+
+		@Override
+		public void reset() throws IOException {
+			throw new IOException("reset() not supported"); //$NON-NLS-1$
+		}
+
+		/**
+		 * Reads until at least <code>count</code> characters are buffered or the end of the stream is reached.
+		 * 
+		 * @return true, if at least one character is buffered
+		 */
+		private boolean fill(int count) throws IOException {
+			if (limit - position < count && !eof) {
+				if (position > 0) {
+					System.arraycopy(buffer, position, buffer, 0, limit - position);
+					limit -= position;
+					position = 0;
+				}
+				while (limit < count) {
+					int read = in.read(buffer, limit, buffer.length - limit);
+					if (read == -1) {
+						eof = true;
+						break;
+					}
+					limit += read;
+				}
+			}
+			return position < limit;
+		}
+
+		/**
+		 * Returns true, if the ampersand at the current position starts an entity or character reference.
+		 */
+		private boolean isReference() {
+			int i = position + 1;
+			if (i < limit && buffer[i] == '#') {
+				i++;
+				boolean hex = i < limit && buffer[i] == 'x';
+				if (hex) {
+					i++;
+				}
+				int start = i;
+				while (i < limit && (Character.isDigit(buffer[i]) || (hex && isHexLetter(buffer[i])))) {
+					i++;
+				}
+				return i > start && i < limit && buffer[i] == ';';
+			}
+			int start = i;
+			while (i < limit && isNameChar(buffer[i], i == start)) {
+				i++;
+			}
+			return i > start && i < limit && buffer[i] == ';';
+		}
+
+		private static boolean isHexLetter(char c) {
+			return (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+		}
+
+		private static boolean isNameChar(char c, boolean first) {
+			if (Character.isLetter(c) || c == '_' || c == ':') {
+				return true;
+			}
+			return !first && (Character.isDigit(c) || c == '-' || c == '.');
+		}
+
+	}
+
 }
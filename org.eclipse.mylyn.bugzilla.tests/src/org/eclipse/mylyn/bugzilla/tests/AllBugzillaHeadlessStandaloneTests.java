@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2009, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.mylyn.bugzilla.tests.core.BugzillaAttributeMapperTest;
+import org.eclipse.mylyn.bugzilla.tests.core.BugzillaChangedTasksTest;
 import org.eclipse.mylyn.bugzilla.tests.core.BugzillaClientTest;
 import org.eclipse.mylyn.bugzilla.tests.core.BugzillaConfigurationTest;
 import org.eclipse.mylyn.bugzilla.tests.core.BugzillaCustomFieldsTest;
@@ -24,6 +25,9 @@ import org.eclipse.mylyn.bugzilla.tests.core.BugzillaRepositoryConnectorConfigur
 import org.eclipse.mylyn.bugzilla.tests.core.BugzillaRepositoryConnectorStandaloneTest;
 import org.eclipse.mylyn.bugzilla.tests.core.BugzillaTaskCompletionTest;
 import org.eclipse.mylyn.bugzilla.tests.core.BugzillaVersionTest;
+import org.eclipse.mylyn.bugzilla.tests.core.ConcurrentTaskDataRetrievalTest;
+import org.eclipse.mylyn.bugzilla.tests.core.SaxTextBufferTest;
+import org.eclipse.mylyn.bugzilla.tests.core.XmlCleanerTest;
 import org.eclipse.mylyn.bugzilla.tests.support.BugzillaFixture;
 import org.eclipse.mylyn.commons.sdk.util.TestConfiguration;
 import org.eclipse.mylyn.internal.bugzilla.core.BugzillaVersion;
@@ -45,6 +49,10 @@ public class AllBugzillaHeadlessStandaloneTests {
 		suite.addTestSuite(BugzillaVersionTest.class);
 		suite.addTestSuite(BugzillaDateTimeTests.class);
 		suite.addTestSuite(BugzillaAttributeMapperTest.class);
+		suite.addTestSuite(XmlCleanerTest.class);
+		suite.addTestSuite(SaxTextBufferTest.class);
+		suite.addTestSuite(ConcurrentTaskDataRetrievalTest.class);
+		suite.addTestSuite(BugzillaChangedTasksTest.class);
 		if (!configuration.isLocalOnly()) {
 			// network tests
 			suite.addTestSuite(BugzillaTaskCompletionTest.class);
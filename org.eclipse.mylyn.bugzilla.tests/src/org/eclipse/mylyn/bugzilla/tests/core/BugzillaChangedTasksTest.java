@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.bugzilla.tests.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.mylyn.commons.net.WebLocation;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaClient;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaClientManager;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaCorePlugin;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaRepositoryConnector;
+import org.eclipse.mylyn.internal.bugzilla.core.IBugzillaConstants;
+import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationSession;
+import org.eclipse.mylyn.tasks.core.IRepositoryQuery;
+import org.eclipse.mylyn.tasks.core.ITask;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+
+/**
+ * Tests the check for changed tasks in {@link BugzillaRepositoryConnector#preSynchronization} against a client that
+ * does not connect to a repository.
+ */
+public class BugzillaChangedTasksTest extends TestCase {
+
+	private static final String REPOSITORY_URL = "http://mylyn.bugzilla";
+
+	private class StubClient extends BugzillaClient {
+
+		final List<List<String>> queries = Collections.synchronizedList(new ArrayList<List<String>>());
+
+		final Set<String> changedTaskIds = Collections.synchronizedSet(new HashSet<String>());
+
+		final List<Integer> urlLengths = Collections.synchronizedList(new ArrayList<Integer>());
+
+		final AtomicInteger logoutCount = new AtomicInteger();
+
+		/**
+		 * Indices of queries that return no hits, simulating an invalid session.
+		 */
+		final Set<Integer> emptyQueries = Collections.synchronizedSet(new HashSet<Integer>());
+
+		private final AtomicInteger queryCount = new AtomicInteger();
+
+		public StubClient(TaskRepository repository, BugzillaRepositoryConnector connector)
+				throws MalformedURLException {
+			super(new WebLocation(repository.getRepositoryUrl()), repository, connector);
+		}
+
+		@Override
+		public boolean getSearchHits(IRepositoryQuery query, TaskDataCollector collector, TaskAttributeMapper mapper,
+				IProgressMonitor monitor) throws IOException, CoreException {
+			List<String> taskIds = parseTaskIds(query.getUrl());
+			queries.add(taskIds);
+			urlLengths.add(query.getUrl().length());
+			if (emptyQueries.contains(queryCount.getAndIncrement())) {
+				return false;
+			}
+			for (String taskId : taskIds) {
+				if (changedTaskIds.contains(taskId)) {
+					collector.accept(new TaskData(mapper, BugzillaCorePlugin.CONNECTOR_KIND, REPOSITORY_URL, taskId));
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void logout(IProgressMonitor monitor) throws IOException, CoreException {
+			logoutCount.incrementAndGet();
+		}
+
+		private List<String> parseTaskIds(String url) throws IOException {
+			String ids = URLDecoder.decode(url.substring(url.indexOf("&bug_id=") + 8), "UTF-8");
+			List<String> taskIds = new ArrayList<String>();
+			for (String taskId : ids.split(",")) {
+				if (taskId.length() > 0) {
+					taskIds.add(taskId);
+				}
+			}
+			return taskIds;
+		}
+
+	}
+
+	private class StubConnector extends BugzillaRepositoryConnector {
+
+		public StubConnector() {
+			super((File) null);
+			clientManager = new BugzillaClientManager(this) {
+				@Override
+				protected BugzillaClient createClient(TaskRepository taskRepository) throws MalformedURLException {
+					client = new StubClient(taskRepository, StubConnector.this);
+					return client;
+				}
+			};
+		}
+
+	}
+
+	private TaskRepository repository;
+
+	private StubClient client;
+
+	private StubConnector connector;
+
+	@Override
+	protected void setUp() throws Exception {
+		repository = new TaskRepository(BugzillaCorePlugin.CONNECTOR_KIND, REPOSITORY_URL);
+		repository.setSynchronizationTimeStamp("2013-01-01 00:00:00");
+		connector = new StubConnector();
+		// create client
+		connector.getClientManager().getClient(repository, null);
+	}
+
+	public void testChunksByTaskCount() throws Exception {
+		repository.setVersion("4.0");
+		SynchronizationSession session = createSession(2500);
+		connector.preSynchronization(session, null);
+		assertEquals(3, client.queries.size());
+		assertEquals(1000, client.queries.get(0).size());
+		assertEquals(1000, client.queries.get(1).size());
+		assertEquals(500, client.queries.get(2).size());
+		assertQueriedOnce(2500);
+	}
+
+	public void testChunksByQueryLengthForOlderVersions() throws Exception {
+		repository.setVersion("3.6");
+		SynchronizationSession session = createSession(2500);
+		connector.preSynchronization(session, null);
+		// the length of the query url is limited for repositories that redirect queries to GET
+		assertTrue(client.queries.size() >= 3);
+		for (int length : client.urlLengths) {
+			// the last task id may exceed the limit
+			assertTrue("Unexpected query length " + length, length < 7000 + 10);
+		}
+		assertQueriedOnce(2500);
+	}
+
+	public void testChangedTasksMarkedStale() throws Exception {
+		repository.setVersion("4.0");
+		SynchronizationSession session = createSession(2500);
+		client.changedTaskIds.add("1");
+		client.changedTaskIds.add("2000");
+		connector.preSynchronization(session, null);
+		assertEquals(createTaskIds("1", "2000"), getTaskIds(session.getStaleTasks()));
+	}
+
+	public void testReloginOnEmptyResult() throws Exception {
+		repository.setVersion("4.0");
+		SynchronizationSession session = createSession(10);
+		client.changedTaskIds.add("5");
+		client.emptyQueries.add(0);
+		connector.preSynchronization(session, null);
+		assertEquals(1, client.logoutCount.get());
+		// the query is retried after the relogin
+		assertEquals(2, client.queries.size());
+		assertEquals(client.queries.get(0), client.queries.get(1));
+		assertEquals(createTaskIds("5"), getTaskIds(session.getStaleTasks()));
+	}
+
+	public void testConcurrentQueriesSkipRelogin() throws Exception {
+		repository.setVersion("4.0");
+		repository.setProperty(IBugzillaConstants.BUGZILLA_MAX_CONCURRENT_REQUESTS, "4");
+		SynchronizationSession session = createSession(4000);
+		client.emptyQueries.addAll(Arrays.asList(1, 2, 3));
+		connector.preSynchronization(session, null);
+		// only the first query, which validates the login, relogs in on empty results
+		assertEquals(0, client.logoutCount.get());
+		assertEquals(4, client.queries.size());
+		assertQueriedOnce(4000);
+	}
+
+	private SynchronizationSession createSession(int count) {
+		Set<ITask> tasks = new LinkedHashSet<ITask>();
+		for (int i = 1; i <= count; i++) {
+			tasks.add(new TaskTask(BugzillaCorePlugin.CONNECTOR_KIND, REPOSITORY_URL, Integer.toString(i)));
+		}
+		SynchronizationSession session = new SynchronizationSession();
+		session.setTasks(tasks);
+		session.setTaskRepository(repository);
+		return session;
+	}
+
+	private Set<String> createTaskIds(String... taskIds) {
+		Set<String> result = new HashSet<String>();
+		Collections.addAll(result, taskIds);
+		return result;
+	}
+
+	private Set<String> getTaskIds(Set<ITask> tasks) {
+		Set<String> taskIds = new HashSet<String>();
+		for (ITask task : tasks) {
+			taskIds.add(task.getTaskId());
+		}
+		return taskIds;
+	}
+
+	private void assertQueriedOnce(int count) {
+		Set<String> queried = new HashSet<String>();
+		int total = 0;
+		for (List<String> taskIds : client.queries) {
+			queried.addAll(taskIds);
+			total += taskIds.size();
+		}
+		assertEquals(count, total);
+		assertEquals(count, queried.size());
+	}
+
+}
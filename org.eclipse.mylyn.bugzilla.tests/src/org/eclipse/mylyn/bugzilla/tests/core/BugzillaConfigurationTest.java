@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,19 +11,28 @@
 
 package org.eclipse.mylyn.bugzilla.tests.core;
 
-import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
 import org.eclipse.mylyn.bugzilla.tests.support.BugzillaFixture;
 import org.eclipse.mylyn.internal.bugzilla.core.BugzillaAttribute;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaCorePlugin;
 import org.eclipse.mylyn.internal.bugzilla.core.BugzillaRepositoryConnector;
 import org.eclipse.mylyn.internal.bugzilla.core.RepositoryConfiguration;
+import org.eclipse.mylyn.internal.bugzilla.core.RepositoryConfigurationStore;
 import org.eclipse.mylyn.internal.bugzilla.core.SaxConfigurationContentHandler;
 import org.eclipse.mylyn.internal.bugzilla.core.XmlCleaner;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -47,7 +56,7 @@ public class BugzillaConfigurationTest extends TestCase {
 		assertEquals(1, configuration1.getOptionValues(BugzillaAttribute.PRODUCT).size());
 
 		RepositoryConfiguration configuration2 = new RepositoryConfiguration();
-		configuration1.setRepositoryUrl("url2");
+		configuration2.setRepositoryUrl("url2");
 		configuration2.addProduct("Test Product 2");
 		assertEquals(1, configuration2.getOptionValues(BugzillaAttribute.PRODUCT).size());
 
@@ -72,6 +81,161 @@ public class BugzillaConfigurationTest extends TestCase {
 				testLoadedConfig.getOptionValues(BugzillaAttribute.PRODUCT).get(0));
 	}
 
+	public void testRepositoryConfigurationCacheIndependentWrites() throws Exception {
+		File file = File.createTempFile("bugzilla", null);
+		file.delete();
+		RepositoryConfigurationStore store = new RepositoryConfigurationStore(new File(file.getParentFile(),
+				file.getName() + ".d"));
+
+		BugzillaRepositoryConnector connector = new BugzillaRepositoryConnector(file);
+		RepositoryConfiguration configuration1 = new RepositoryConfiguration();
+		configuration1.setRepositoryUrl("url1");
+		configuration1.addProduct("Test Product 1");
+		RepositoryConfiguration configuration2 = new RepositoryConfiguration();
+		configuration2.setRepositoryUrl("url2");
+		configuration2.addProduct("Test Product 2");
+		connector.addRepositoryConfiguration(configuration1);
+		connector.addRepositoryConfiguration(configuration2);
+		connector.writeRepositoryConfigFile();
+		assertNotNull(store.read("url1"));
+		assertNotNull(store.read("url2"));
+
+		// unchanged configurations are not written again
+		store.delete("url2");
+		configuration1.addProduct("Test Product 3");
+		connector.addRepositoryConfiguration(configuration1);
+		connector.writeRepositoryConfigFile();
+		assertEquals(2, store.read("url1").getOptionValues(BugzillaAttribute.PRODUCT).size());
+		assertNull(store.read("url2"));
+
+		connector.removeConfiguration(configuration1);
+		connector.writeRepositoryConfigFile();
+		assertNull(store.read("url1"));
+
+		connector = new BugzillaRepositoryConnector(file);
+		assertNull(connector.getRepositoryConfiguration("url1"));
+		assertNull(connector.getRepositoryConfiguration("url2"));
+	}
+
+	public void testRepositoryConfigurationCacheMigration() throws Exception {
+		File file = File.createTempFile("bugzilla", null);
+		file.deleteOnExit();
+
+		RepositoryConfiguration configuration1 = new RepositoryConfiguration();
+		configuration1.setRepositoryUrl("url1");
+		configuration1.addProduct("Test Product 1");
+		RepositoryConfiguration configuration2 = new RepositoryConfiguration();
+		configuration2.setRepositoryUrl("url2");
+		configuration2.addProduct("Test Product 2");
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file));
+		try {
+			out.writeInt(2);
+			out.writeObject(configuration1);
+			out.writeObject(configuration2);
+		} finally {
+			out.close();
+		}
+
+		BugzillaRepositoryConnector connector = new BugzillaRepositoryConnector(file);
+		assertEquals("Test Product 2", connector.getRepositoryConfiguration("url2").getOptionValues(
+				BugzillaAttribute.PRODUCT).get(0));
+		assertFalse(file.exists());
+
+		connector = new BugzillaRepositoryConnector(file);
+		assertEquals("Test Product 1", connector.getRepositoryConfiguration("url1").getOptionValues(
+				BugzillaAttribute.PRODUCT).get(0));
+		assertEquals("Test Product 2", connector.getRepositoryConfiguration("url2").getOptionValues(
+				BugzillaAttribute.PRODUCT).get(0));
+	}
+
+	public void testRepositoryConfigurationStoreIncompatibleFile() throws Exception {
+		File file = File.createTempFile("bugzilla", null);
+		file.delete();
+		RepositoryConfigurationStore store = new RepositoryConfigurationStore(file);
+		RepositoryConfiguration configuration = new RepositoryConfiguration();
+		configuration.setRepositoryUrl("url1");
+		store.write(configuration);
+		assertNotNull(store.read("url1"));
+
+		// corrupt the header
+		File[] files = file.listFiles();
+		assertEquals(1, files.length);
+		FileOutputStream out = new FileOutputStream(files[0]);
+		try {
+			out.write(new byte[] { 1, 2, 3, 4 });
+		} finally {
+			out.close();
+		}
+		assertNull(store.read("url1"));
+		assertFalse(files[0].exists());
+	}
+
+	public void testAttributeOptions() throws Exception {
+		RepositoryConfiguration configuration = new RepositoryConfiguration();
+		configuration.setRepositoryUrl("url1");
+		configuration.addItem2ProductConfiguration(BugzillaAttribute.COMPONENT, "Product 1", "b");
+		configuration.addItem2ProductConfiguration(BugzillaAttribute.COMPONENT, "Product 1", "a");
+		configuration.addItem2ProductConfiguration(BugzillaAttribute.COMPONENT, "Product 2", "c");
+		configuration.addItem(BugzillaAttribute.PRIORITY, "P2");
+		configuration.addItem(BugzillaAttribute.PRIORITY, "P1");
+
+		TaskData taskData = createTaskData("Product 1");
+		TaskAttribute component = taskData.getRoot().createAttribute(BugzillaAttribute.COMPONENT.getKey());
+		TaskAttribute priority = taskData.getRoot().createAttribute(BugzillaAttribute.PRIORITY.getKey());
+		TaskAttribute unknown = taskData.getRoot().createAttribute("unknown");
+		assertEquals(Arrays.asList("a", "b"), configuration.getAttributeOptions("Product 1", component));
+		assertEquals(Arrays.asList("c"), configuration.getAttributeOptions("Product 2", component));
+		assertEquals(Arrays.asList("a", "b", "c"), configuration.getAttributeOptions("", component));
+		assertEquals(Arrays.asList("P2", "P1"), configuration.getAttributeOptions("Product 1", priority));
+		assertEquals(0, configuration.getAttributeOptions("Product 1", unknown).size());
+
+		configuration.updateAttributeOptions(taskData);
+		assertEquals(Arrays.asList("a", "b"), Arrays.asList(component.getOptions().keySet().toArray()));
+		assertEquals(Arrays.asList("P2", "P1"), Arrays.asList(priority.getOptions().keySet().toArray()));
+		assertNull(taskData.getRoot().getAttribute(BugzillaAttribute.TARGET_MILESTONE.getKey()));
+
+		TaskData taskData2 = createTaskData("Product 2");
+		TaskAttribute component2 = taskData2.getRoot().createAttribute(BugzillaAttribute.COMPONENT.getKey());
+		configuration.updateAttributeOptions(taskData2);
+		assertEquals("c", component2.getOption("c"));
+		assertNull(component2.getOption("a"));
+
+		// options are updated when the configuration changes
+		configuration.addItem2ProductConfiguration(BugzillaAttribute.COMPONENT, "Product 2", "d");
+		configuration.updateAttributeOptions(taskData2);
+		assertEquals(Arrays.asList("c", "d"), configuration.getAttributeOptions("Product 2", component2));
+		assertEquals("d", component2.getOption("d"));
+		assertNull(component.getOption("d"));
+	}
+
+	public void testOptionValuesUnmodifiable() throws Exception {
+		RepositoryConfiguration configuration = new RepositoryConfiguration();
+		configuration.addItem(BugzillaAttribute.PRIORITY, "P1");
+		configuration.addItem2ProductConfiguration(BugzillaAttribute.COMPONENT, "Product 1", "a");
+		try {
+			configuration.getOptionValues(BugzillaAttribute.PRIORITY).add("P2");
+			fail("Expected UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			configuration.getProductOptionValues(BugzillaAttribute.COMPONENT, "Product 1").clear();
+			fail("Expected UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals(Arrays.asList("P1"), configuration.getOptionValues(BugzillaAttribute.PRIORITY));
+		assertEquals(Arrays.asList("a"), configuration.getProductOptionValues(BugzillaAttribute.COMPONENT, "Product 1"));
+	}
+
+	private TaskData createTaskData(String product) {
+		TaskRepository repository = new TaskRepository(BugzillaCorePlugin.CONNECTOR_KIND, "url1");
+		TaskData taskData = new TaskData(new TaskAttributeMapper(repository), BugzillaCorePlugin.CONNECTOR_KIND,
+				"url1", "1");
+		taskData.getRoot().createAttribute(BugzillaAttribute.PRODUCT.getKey()).setValue(product);
+		return taskData;
+	}
+
 	public void testNullCacheFile() {
 		BugzillaRepositoryConnector connector = new BugzillaRepositoryConnector();
 		connector.readRepositoryConfigurationFile();
@@ -110,17 +274,7 @@ public class BugzillaConfigurationTest extends TestCase {
 	 */
 	public void testRepositoryConfigurationFromFile() throws Exception {
 		InputStream stream = BugzillaFixture.getResource("testdata/configuration/rdfconfig218.txt");
-		BufferedReader in = new BufferedReader(new InputStreamReader(stream));
-
-		if (true) {
-			File tempFile = File.createTempFile("XmlCleaner-", "tmp");
-			tempFile.deleteOnExit();
-			in = XmlCleaner.clean(in, tempFile);
-			if (tempFile != null) {
-				tempFile.delete();
-			}
-
-		}
+		Reader in = XmlCleaner.clean(new InputStreamReader(stream));
 
 		SaxConfigurationContentHandler contentHandler = new SaxConfigurationContentHandler();
 		final XMLReader reader = XMLReaderFactory.createXMLReader();
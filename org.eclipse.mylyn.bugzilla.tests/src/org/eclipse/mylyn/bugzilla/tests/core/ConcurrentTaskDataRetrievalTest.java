@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.bugzilla.tests.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaCorePlugin;
+import org.eclipse.mylyn.internal.bugzilla.core.ConcurrentTaskDataRetrieval;
+import org.eclipse.mylyn.tasks.core.RepositoryStatus;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+
+public class ConcurrentTaskDataRetrievalTest extends TestCase {
+
+	private static final String REPOSITORY_URL = "http://mylyn";
+
+	private class TestRetrieval extends ConcurrentTaskDataRetrieval {
+
+		final List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+		final AtomicInteger authenticationCount = new AtomicInteger();
+
+		public TestRetrieval(Set<String> taskIds, TaskDataCollector collector) {
+			super(taskIds, collector);
+		}
+
+		@Override
+		protected boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor monitor)
+				throws IOException, CoreException {
+			chunkSizes.add(taskIds.size());
+			for (String taskId : taskIds) {
+				collector.accept(new TaskData(mapper, BugzillaCorePlugin.CONNECTOR_KIND, REPOSITORY_URL, taskId));
+			}
+			return true;
+		}
+
+		@Override
+		protected void authenticate(IProgressMonitor monitor) throws CoreException {
+			authenticationCount.incrementAndGet();
+		}
+
+	}
+
+	private class Collector extends TaskDataCollector {
+
+		final List<String> taskIds = new ArrayList<String>();
+
+		@Override
+		public void accept(TaskData taskData) {
+			// not synchronized, calls are expected to be serialized
+			taskIds.add(taskData.getTaskId());
+		}
+
+	}
+
+	private TaskAttributeMapper mapper;
+
+	private Collector collector;
+
+	@Override
+	protected void setUp() throws Exception {
+		mapper = new TaskAttributeMapper(new TaskRepository(BugzillaCorePlugin.CONNECTOR_KIND, REPOSITORY_URL));
+		collector = new Collector();
+	}
+
+	public void testChunksGrowOnFastResponses() throws Exception {
+		TestRetrieval retrieval = new TestRetrieval(createTaskIds(1000), collector);
+		retrieval.run(1, null);
+		assertEquals(Arrays.asList(50, 100, 200, 200, 200, 200, 150), retrieval.chunkSizes);
+		assertEquals(ConcurrentTaskDataRetrieval.MAX_CHUNK_SIZE, retrieval.getChunkSize());
+		assertRetrievedOnce(1000);
+	}
+
+	public void testChunksShrinkOnSlowResponses() throws Exception {
+		final AtomicLong time = new AtomicLong();
+		TestRetrieval retrieval = new TestRetrieval(createTaskIds(100), collector) {
+			@Override
+			protected boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor monitor)
+					throws IOException, CoreException {
+				time.addAndGet(11 * 1000);
+				return super.retrieve(taskIds, collector, monitor);
+			}
+
+			@Override
+			protected long getCurrentTime() {
+				return time.get();
+			}
+		};
+		retrieval.run(1, null);
+		assertEquals(Arrays.asList(50, 25, 12, 10, 3), retrieval.chunkSizes);
+		assertEquals(ConcurrentTaskDataRetrieval.MIN_CHUNK_SIZE, retrieval.getChunkSize());
+		assertRetrievedOnce(100);
+	}
+
+	public void testConcurrentRetrieval() throws Exception {
+		final Set<IProgressMonitor> monitors = Collections.synchronizedSet(new HashSet<IProgressMonitor>());
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		TestRetrieval retrieval = new TestRetrieval(createTaskIds(2000), collector) {
+			@Override
+			protected boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor workerMonitor)
+					throws IOException, CoreException {
+				monitors.add(workerMonitor);
+				return super.retrieve(taskIds, collector, workerMonitor);
+			}
+		};
+		retrieval.run(4, monitor);
+		assertRetrievedOnce(2000);
+		// workers do not share the monitor of the caller
+		assertFalse(monitors.contains(monitor));
+	}
+
+	public void testChunkFailure() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		TestRetrieval retrieval = new TestRetrieval(createTaskIds(2000), collector) {
+			@Override
+			protected boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor monitor)
+					throws IOException, CoreException {
+				if (count.incrementAndGet() == 3) {
+					throw new IOException("failed");
+				}
+				return super.retrieve(taskIds, collector, monitor);
+			}
+		};
+		try {
+			retrieval.run(2, null);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		assertTrue(collector.taskIds.size() < 2000);
+		assertEquals(collector.taskIds.size(), new HashSet<String>(collector.taskIds).size());
+	}
+
+	public void testUnparseableChunkStopsRetrieval() throws Exception {
+		TestRetrieval retrieval = new TestRetrieval(createTaskIds(1000), collector) {
+			@Override
+			protected boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor monitor)
+					throws IOException, CoreException {
+				chunkSizes.add(taskIds.size());
+				return false;
+			}
+		};
+		retrieval.run(1, null);
+		assertEquals(1, retrieval.chunkSizes.size());
+		assertEquals(0, collector.taskIds.size());
+	}
+
+	public void testCancel() throws Exception {
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		final AtomicInteger count = new AtomicInteger();
+		TestRetrieval retrieval = new TestRetrieval(createTaskIds(2000), collector) {
+			@Override
+			protected boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor workerMonitor)
+					throws IOException, CoreException {
+				if (count.incrementAndGet() == 2) {
+					monitor.setCanceled(true);
+				}
+				return super.retrieve(taskIds, collector, workerMonitor);
+			}
+		};
+		try {
+			retrieval.run(2, monitor);
+			fail("Expected OperationCanceledException");
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+		assertTrue(collector.taskIds.size() < 2000);
+	}
+
+	public void testReauthenticateOnLoginFailure() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		TestRetrieval retrieval = new TestRetrieval(createTaskIds(500), collector) {
+			@Override
+			protected boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor monitor)
+					throws IOException, CoreException {
+				if (count.incrementAndGet() == 2) {
+					throw createLoginException();
+				}
+				return super.retrieve(taskIds, collector, monitor);
+			}
+		};
+		retrieval.run(1, null);
+		assertEquals(1, retrieval.authenticationCount.get());
+		assertRetrievedOnce(500);
+	}
+
+	public void testReauthenticateOnlyOnce() throws Exception {
+		TestRetrieval retrieval = new TestRetrieval(createTaskIds(500), collector) {
+			@Override
+			protected boolean retrieve(Set<String> taskIds, TaskDataCollector collector, IProgressMonitor monitor)
+					throws IOException, CoreException {
+				throw createLoginException();
+			}
+		};
+		try {
+			retrieval.run(2, null);
+			fail("Expected CoreException");
+		} catch (CoreException e) {
+			assertEquals(RepositoryStatus.ERROR_REPOSITORY_LOGIN, e.getStatus().getCode());
+		}
+		assertEquals(1, retrieval.authenticationCount.get());
+	}
+
+	private CoreException createLoginException() {
+		return new CoreException(new RepositoryStatus(IStatus.ERROR, BugzillaCorePlugin.ID_PLUGIN,
+				RepositoryStatus.ERROR_REPOSITORY_LOGIN, "login failed"));
+	}
+
+	private Set<String> createTaskIds(int count) {
+		Set<String> taskIds = new LinkedHashSet<String>();
+		for (int i = 1; i <= count; i++) {
+			taskIds.add(Integer.toString(i));
+		}
+		return taskIds;
+	}
+
+	private void assertRetrievedOnce(int count) {
+		assertEquals(count, collector.taskIds.size());
+		assertEquals(createTaskIds(count), new HashSet<String>(collector.taskIds));
+	}
+
+}
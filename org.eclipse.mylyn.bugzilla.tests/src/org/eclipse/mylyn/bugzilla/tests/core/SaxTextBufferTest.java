@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.bugzilla.tests.core;
+
+import junit.framework.TestCase;
+
+import org.eclipse.mylyn.internal.bugzilla.core.SaxTextBuffer;
+
+public class SaxTextBufferTest extends TestCase {
+
+	private SaxTextBuffer buffer;
+
+	@Override
+	protected void setUp() throws Exception {
+		buffer = new SaxTextBuffer();
+	}
+
+	public void testAppend() {
+		assertEquals("", buffer.toString());
+		append("abc");
+		append("def");
+		assertEquals("abcdef", buffer.toString());
+		buffer.clear();
+		assertEquals(0, buffer.length());
+		append("ghi");
+		assertEquals("ghi", buffer.toString());
+	}
+
+	public void testAppendGrows() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("line ").append(i).append('\n');
+			append("line " + i + "\n");
+		}
+		assertEquals(sb.toString(), buffer.toString());
+	}
+
+	public void testTrimTrailingWhitespace() {
+		append("  value \n\t ");
+		buffer.trimTrailingWhitespace();
+		assertEquals("  value", buffer.toString());
+		buffer.clear();
+		append(" \n ");
+		buffer.trimTrailingWhitespace();
+		assertEquals("", buffer.toString());
+	}
+
+	public void testToStringReusesShortValues() {
+		append("NEW");
+		String value = buffer.toString();
+		buffer.clear();
+		append("ASSIGNED");
+		assertEquals("ASSIGNED", buffer.toString());
+		buffer.clear();
+		append("NEW");
+		assertSame(value, buffer.toString());
+	}
+
+	public void testToStringLongValues() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			sb.append('x');
+		}
+		append(sb.toString());
+		String value = buffer.toString();
+		assertEquals(sb.toString(), value);
+		assertNotSame(value, buffer.toString());
+	}
+
+	private void append(String value) {
+		char[] chars = ("<" + value + ">").toCharArray();
+		buffer.append(chars, 1, value.length());
+	}
+
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.bugzilla.tests.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.eclipse.mylyn.internal.bugzilla.core.XmlCharacterFilterReader;
+import org.eclipse.mylyn.internal.bugzilla.core.XmlCleaner;
+
+public class XmlCleanerTest extends TestCase {
+
+	public void testCleanEscapesAmpersand() throws Exception {
+		assertEquals("<li rdf:about=\"show_bug.cgi?id=1&amp;ctype=xml\">a &amp; b</li>",
+				read(XmlCleaner.clean(new StringReader("<li rdf:about=\"show_bug.cgi?id=1&ctype=xml\">a & b</li>"))));
+	}
+
+	public void testCleanPreservesReferences() throws Exception {
+		String content = "<bz:maintainer>relves&#64;cs.ubc.ca &#x40; &amp; &lt;&gt; &quot;</bz:maintainer>";
+		assertEquals(content, read(XmlCleaner.clean(new StringReader(content))));
+	}
+
+	public void testCleanIncompleteReferences() throws Exception {
+		assertEquals("&amp;#; &amp;#x; &amp;lt &amp;;&amp;", read(XmlCleaner.clean(new StringReader("&#; &#x; &lt &;&"))));
+	}
+
+	public void testCleanAcrossBuffers() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			sb.append("a&b&amp;");
+			expected.append("a&amp;b&amp;");
+		}
+		assertEquals(expected.toString(), read(XmlCleaner.clean(new StringReader(sb.toString()))));
+		assertEquals(expected.toString(), readSingle(XmlCleaner.clean(new StringReader(sb.toString()))));
+	}
+
+	public void testFilterInvalidCharacters() throws Exception {
+		Reader reader = new XmlCharacterFilterReader(new StringReader(
+				"\u0000a\tb\u0001\nc\r\u001f\u00e4\ud834\udd1e\uffff"));
+		assertEquals("a\tb\nc\r\u00e4\ud834\udd1e", read(reader));
+	}
+
+	public void testFilterOnlyInvalidCharacters() throws Exception {
+		Reader reader = new XmlCharacterFilterReader(new StringReader("\u0000\u0001\u0002"));
+		assertEquals(-1, reader.read(new char[10], 0, 10));
+		assertEquals(-1, reader.read());
+	}
+
+	public void testFilterSingleCharacters() throws Exception {
+		assertEquals("abc", readSingle(new XmlCharacterFilterReader(new StringReader("a\u0000b\u0008c\u000b"))));
+	}
+
+	private String read(Reader reader) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[1000];
+		int count;
+		while ((count = reader.read(buffer, 0, buffer.length)) != -1) {
+			sb.append(buffer, 0, count);
+		}
+		return sb.toString();
+	}
+
+	private String readSingle(Reader reader) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = reader.read()) != -1) {
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+}
@@ -451,8 +451,9 @@ public class BugzillaTaskEditorPage extends AbstractTaskEditorPage {
 							.getRoot()
 							.getMappedAttribute(BugzillaAttribute.COMPONENT.getKey());
 					if (attributeComponent != null) {
-						List<String> optionValues = repositoryConfiguration.getProductOptionValues(
-								BugzillaAttribute.COMPONENT, taskAttribute.getValue());
+						List<String> optionValues = new ArrayList<String>(
+								repositoryConfiguration.getProductOptionValues(BugzillaAttribute.COMPONENT,
+										taskAttribute.getValue()));
 						Collections.sort(optionValues);
 						attributeComponent.clearOptions();
 						for (String option : optionValues) {
@@ -468,8 +469,9 @@ public class BugzillaTaskEditorPage extends AbstractTaskEditorPage {
 							.getRoot()
 							.getMappedAttribute(BugzillaAttribute.TARGET_MILESTONE.getKey());
 					if (attributeTargetMilestone != null) {
-						List<String> optionValues = repositoryConfiguration.getProductOptionValues(
-								BugzillaAttribute.TARGET_MILESTONE, taskAttribute.getValue());
+						List<String> optionValues = new ArrayList<String>(
+								repositoryConfiguration.getProductOptionValues(BugzillaAttribute.TARGET_MILESTONE,
+										taskAttribute.getValue()));
 						Collections.sort(optionValues);
 						attributeTargetMilestone.clearOptions();
 						for (String option : optionValues) {
@@ -487,8 +489,9 @@ public class BugzillaTaskEditorPage extends AbstractTaskEditorPage {
 							.getRoot()
 							.getMappedAttribute(BugzillaAttribute.VERSION.getKey());
 					if (attributeVersion != null) {
-						List<String> optionValues = repositoryConfiguration.getProductOptionValues(
-								BugzillaAttribute.VERSION, taskAttribute.getValue());
+						List<String> optionValues = new ArrayList<String>(
+								repositoryConfiguration.getProductOptionValues(BugzillaAttribute.VERSION,
+										taskAttribute.getValue()));
 						Collections.sort(optionValues);
 						attributeVersion.clearOptions();
 						for (String option : optionValues) {
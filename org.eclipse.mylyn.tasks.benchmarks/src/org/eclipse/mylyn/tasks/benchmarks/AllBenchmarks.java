@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs all benchmarks as a test. Results are written to the file specified by the
+ * <code>mylyn.benchmarks.output</code> system property, see {@link BenchmarkRunner} for other supported properties.
+ */
+public class AllBenchmarks extends TestCase {
+
+	@SuppressWarnings("unchecked")
+	public static final List<Class<? extends Benchmark>> BENCHMARKS = Collections.unmodifiableList(Arrays.asList(
+			TaskDataStoreBenchmark.class, TaskDataExternalizerBenchmark.class, TaskListExternalizerBenchmark.class,
+			TaskListBenchmark.class, TaskDataDiffBenchmark.class, TaskListIndexBenchmark.class,
+			BugzillaReportFactoryBenchmark.class));
+
+	public void testBenchmarks() throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		for (Class<? extends Benchmark> benchmarkClass : BENCHMARKS) {
+			runner.run(benchmarkClass);
+		}
+		runner.writeResults();
+		for (BenchmarkResult result : runner.getResults()) {
+			assertTrue("No operations measured for " + result.getName(), result.getOperations() > 0); //$NON-NLS-1$
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+/**
+ * Base class for benchmarks that are executed by {@link BenchmarkRunner}. Each public method that starts with
+ * <code>benchmark</code>, takes no arguments and returns an <code>int</code> is measured. The method is invoked
+ * repeatedly and returns the number of operations it performed per invocation which is used to compute the time per
+ * operation.
+ * <p>
+ * {@link #setUp()} and {@link #tearDown()} are invoked once per benchmark method, before the first warmup iteration and
+ * after the last measurement iteration. Benchmark methods must therefore leave the fixture in a state that allows them
+ * to be invoked again.
+ */
+public abstract class Benchmark {
+
+	private WorkspaceGenerator generator;
+
+	protected void setUp() throws Exception {
+	}
+
+	protected void tearDown() throws Exception {
+	}
+
+	void setGenerator(WorkspaceGenerator generator) {
+		this.generator = generator;
+	}
+
+	/**
+	 * Returns the generator that creates the synthetic workspace for this benchmark.
+	 */
+	protected WorkspaceGenerator getGenerator() {
+		return generator;
+	}
+
+}
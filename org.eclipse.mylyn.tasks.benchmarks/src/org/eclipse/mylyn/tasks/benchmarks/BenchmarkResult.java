@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+/**
+ * The measurements of a single benchmark method. Scores are reported in nanoseconds per operation and, if supported by
+ * the virtual machine, in bytes allocated per operation.
+ */
+public class BenchmarkResult {
+
+	private final String name;
+
+	private final int operations;
+
+	private final long[] samples;
+
+	private final long allocatedBytes;
+
+	public BenchmarkResult(String name, int operations, long[] samples) {
+		this(name, operations, samples, -1);
+	}
+
+	/**
+	 * @param allocatedBytes
+	 *            the number of bytes allocated during all measured invocations or -1, if unknown
+	 */
+	public BenchmarkResult(String name, int operations, long[] samples, long allocatedBytes) {
+		this.name = name;
+		this.operations = operations;
+		this.samples = samples;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of operations performed per invocation of the benchmark method.
+	 */
+	public int getOperations() {
+		return operations;
+	}
+
+	/**
+	 * Returns the time in nanoseconds of each measured invocation of the benchmark method.
+	 */
+	public long[] getSamples() {
+		return samples;
+	}
+
+	public double getMean() {
+		double sum = 0;
+		for (long sample : samples) {
+			sum += perOperation(sample);
+		}
+		return sum / samples.length;
+	}
+
+	public double getMin() {
+		long min = Long.MAX_VALUE;
+		for (long sample : samples) {
+			min = Math.min(min, sample);
+		}
+		return perOperation(min);
+	}
+
+	public double getMax() {
+		long max = Long.MIN_VALUE;
+		for (long sample : samples) {
+			max = Math.max(max, sample);
+		}
+		return perOperation(max);
+	}
+
+	public double getStandardDeviation() {
+		if (samples.length < 2) {
+			return 0;
+		}
+		double mean = getMean();
+		double sum = 0;
+		for (long sample : samples) {
+			double deviation = perOperation(sample) - mean;
+			sum += deviation * deviation;
+		}
+		return Math.sqrt(sum / (samples.length - 1));
+	}
+
+	/**
+	 * Returns the mean number of bytes allocated per operation or -1, if allocations were not measured.
+	 */
+	public double getAllocatedBytesPerOperation() {
+		if (allocatedBytes < 0) {
+			return -1;
+		}
+		return (double) allocatedBytes / samples.length / Math.max(1, operations);
+	}
+
+	private double perOperation(long sample) {
+		return (double) sample / Math.max(1, operations);
+	}
+
+	@Override
+	public String toString() {
+		String result = String.format("%-60s %15.1f ns/op +/- %12.1f  (%d ops, %d samples)", name, getMean(), //$NON-NLS-1$
+				getStandardDeviation(), operations, samples.length);
+		if (allocatedBytes >= 0) {
+			result += String.format(" %12.1f B/op", getAllocatedBytesPerOperation()); //$NON-NLS-1$
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Executes benchmarks and writes the results as JSON. Each benchmark method is invoked for a number of warmup
+ * iterations that are discarded followed by a number of measured iterations. The following system properties are
+ * supported:
+ * <ul>
+ * <li><code>mylyn.benchmarks.warmupIterations</code>: the number of warmup iterations, defaults to 3</li>
+ * <li><code>mylyn.benchmarks.iterations</code>: the number of measured iterations, defaults to 5</li>
+ * <li><code>mylyn.benchmarks.filter</code>: a regular expression, only benchmarks with a matching name are run</li>
+ * <li><code>mylyn.benchmarks.output</code>: the file results are written to, if not set results are written to
+ * standard out</li>
+ * </ul>
+ * The size of the generated workspace is controlled by {@link WorkspaceGenerator}.
+ * <p>
+ * On virtual machines that support measuring allocations per thread the bytes allocated per operation are reported in
+ * addition to the time.
+ */
+public class BenchmarkRunner {
+
+	public static final String PROPERTY_WARMUP_ITERATIONS = "mylyn.benchmarks.warmupIterations"; //$NON-NLS-1$
+
+	public static final String PROPERTY_ITERATIONS = "mylyn.benchmarks.iterations"; //$NON-NLS-1$
+
+	public static final String PROPERTY_FILTER = "mylyn.benchmarks.filter"; //$NON-NLS-1$
+
+	public static final String PROPERTY_OUTPUT = "mylyn.benchmarks.output"; //$NON-NLS-1$
+
+	private static final String METHOD_PREFIX = "benchmark"; //$NON-NLS-1$
+
+	private final int warmupIterations;
+
+	private final int iterations;
+
+	private final Pattern filter;
+
+	private final List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+
+	private final PrintStream log;
+
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * <code>com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long)</code>, or <code>null</code> if not
+	 * available.
+	 */
+	private final Method allocatedBytesMethod = getAllocatedBytesMethod(threadBean);
+
+	/**
+	 * Sum of all values returned by benchmark methods to ensure that their results are not optimized away.
+	 */
+	private long sink;
+
+	public BenchmarkRunner() {
+		this(Integer.getInteger(PROPERTY_WARMUP_ITERATIONS, 3), Integer.getInteger(PROPERTY_ITERATIONS, 5),
+				System.getProperty(PROPERTY_FILTER), System.err);
+	}
+
+	public BenchmarkRunner(int warmupIterations, int iterations, String filter, PrintStream log) {
+		if (iterations < 1) {
+			throw new IllegalArgumentException("At least one iteration is required"); //$NON-NLS-1$
+		}
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.filter = (filter != null) ? Pattern.compile(filter) : null;
+		this.log = log;
+	}
+
+	public List<BenchmarkResult> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * Runs all benchmark methods of <code>benchmarkClass</code> that match the filter.
+	 */
+	public void run(Class<? extends Benchmark> benchmarkClass) throws Exception {
+		for (Method method : getBenchmarkMethods(benchmarkClass)) {
+			String name = benchmarkClass.getSimpleName() + "." //$NON-NLS-1$
+					+ method.getName().substring(METHOD_PREFIX.length());
+			if (filter != null && !filter.matcher(name).find()) {
+				continue;
+			}
+			Benchmark benchmark = benchmarkClass.newInstance();
+			benchmark.setGenerator(new WorkspaceGenerator());
+			benchmark.setUp();
+			try {
+				for (int i = 0; i < warmupIterations; i++) {
+					invoke(benchmark, method);
+				}
+				collectGarbage();
+				int operations = 0;
+				long[] samples = new long[iterations];
+				long allocatedBytes = (allocatedBytesMethod != null) ? 0 : -1;
+				for (int i = 0; i < iterations; i++) {
+					long allocatedStart = getAllocatedBytes();
+					long start = System.nanoTime();
+					operations = invoke(benchmark, method);
+					samples[i] = System.nanoTime() - start;
+					if (allocatedBytes != -1) {
+						allocatedBytes += getAllocatedBytes() - allocatedStart;
+					}
+				}
+				BenchmarkResult result = new BenchmarkResult(name, operations, samples, allocatedBytes);
+				results.add(result);
+				if (log != null) {
+					log.println(result);
+				}
+			} finally {
+				benchmark.tearDown();
+			}
+			collectGarbage();
+		}
+	}
+
+	/**
+	 * Writes the results to the file specified by the <code>mylyn.benchmarks.output</code> system property or to
+	 * standard out if the property is not set.
+	 */
+	public void writeResults() throws IOException {
+		String output = System.getProperty(PROPERTY_OUTPUT);
+		if (output != null && output.length() > 0) {
+			File file = new File(output);
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8"); //$NON-NLS-1$
+			try {
+				writeResults(writer);
+			} finally {
+				writer.close();
+			}
+		} else {
+			Writer writer = new OutputStreamWriter(System.out, "UTF-8"); //$NON-NLS-1$
+			writeResults(writer);
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Writes the results as a JSON object that contains the benchmark parameters and a list of results, one per
+	 * benchmark method, with scores in nanoseconds per operation.
+	 */
+	public void writeResults(Writer writer) throws IOException {
+		writer.write("{\n"); //$NON-NLS-1$
+		writer.write("  \"timestamp\": " + System.currentTimeMillis() + ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.write("  \"jvm\": " + quote(System.getProperty("java.vm.name") + " " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ System.getProperty("java.version")) + ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.write("  \"warmupIterations\": " + warmupIterations + ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.write("  \"iterations\": " + iterations + ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.write("  \"parameters\": {"); //$NON-NLS-1$
+		boolean first = true;
+		for (Map.Entry<String, Object> entry : new WorkspaceGenerator().getParameters().entrySet()) {
+			writer.write((first) ? " " : ", "); //$NON-NLS-1$ //$NON-NLS-2$
+			writer.write(quote(entry.getKey()) + ": " + entry.getValue()); //$NON-NLS-1$
+			first = false;
+		}
+		writer.write(" },\n"); //$NON-NLS-1$
+		writer.write("  \"benchmarks\": ["); //$NON-NLS-1$
+		first = true;
+		for (BenchmarkResult result : results) {
+			writer.write((first) ? "\n" : ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			writer.write("    { \"name\": " + quote(result.getName())); //$NON-NLS-1$
+			writer.write(", \"unit\": \"ns/op\""); //$NON-NLS-1$
+			writer.write(", \"operations\": " + result.getOperations()); //$NON-NLS-1$
+			writer.write(", \"mean\": " + format(result.getMean())); //$NON-NLS-1$
+			writer.write(", \"min\": " + format(result.getMin())); //$NON-NLS-1$
+			writer.write(", \"max\": " + format(result.getMax())); //$NON-NLS-1$
+			writer.write(", \"stddev\": " + format(result.getStandardDeviation())); //$NON-NLS-1$
+			if (result.getAllocatedBytesPerOperation() >= 0) {
+				writer.write(", \"allocatedBytesPerOp\": " + format(result.getAllocatedBytesPerOperation())); //$NON-NLS-1$
+			}
+			writer.write(", \"samples\": " + Arrays.toString(result.getSamples()) + " }"); //$NON-NLS-1$ //$NON-NLS-2$
+			first = false;
+		}
+		writer.write("\n  ]\n}\n"); //$NON-NLS-1$
+	}
+
+	long getSink() {
+		return sink;
+	}
+
+	private int invoke(Benchmark benchmark, Method method) throws Exception {
+		try {
+			int operations = (Integer) method.invoke(benchmark);
+			sink += operations;
+			return operations;
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private List<Method> getBenchmarkMethods(Class<? extends Benchmark> benchmarkClass) {
+		List<Method> methods = new ArrayList<Method>();
+		for (Method method : benchmarkClass.getMethods()) {
+			if (method.getName().startsWith(METHOD_PREFIX) && method.getParameterTypes().length == 0
+					&& method.getReturnType() == int.class && !Modifier.isStatic(method.getModifiers())) {
+				methods.add(method);
+			}
+		}
+		// reflection does not guarantee any order
+		Collections.sort(methods, new Comparator<Method>() {
+			public int compare(Method o1, Method o2) {
+				return o1.getName().compareTo(o2.getName());
+			}
+		});
+		return methods;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread or -1, if not supported.
+	 */
+	private long getAllocatedBytes() {
+		if (allocatedBytesMethod != null) {
+			try {
+				return (Long) allocatedBytesMethod.invoke(threadBean, Thread.currentThread().getId());
+			} catch (Exception e) {
+				// fall through
+			}
+		}
+		return -1;
+	}
+
+	private static Method getAllocatedBytesMethod(ThreadMXBean threadBean) {
+		try {
+			// not part of the API of all supported virtual machines
+			Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean"); //$NON-NLS-1$
+			if (beanClass.isInstance(threadBean)) {
+				return beanClass.getMethod("getThreadAllocatedBytes", long.class); //$NON-NLS-1$
+			}
+		} catch (Exception e) {
+			// not supported
+		}
+		return null;
+	}
+
+	private void collectGarbage() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ENGLISH, "%.3f", value); //$NON-NLS-1$
+	}
+
+	private static String quote(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c)); //$NON-NLS-1$
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+
+	/**
+	 * Runs the benchmarks with the given class names or all benchmarks if no arguments are specified.
+	 */
+	@SuppressWarnings("unchecked")
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		if (args.length == 0) {
+			for (Class<? extends Benchmark> benchmarkClass : AllBenchmarks.BENCHMARKS) {
+				runner.run(benchmarkClass);
+			}
+		} else {
+			for (String arg : args) {
+				runner.run((Class<? extends Benchmark>) Class.forName(arg));
+			}
+		}
+		runner.writeResults();
+	}
+
+}
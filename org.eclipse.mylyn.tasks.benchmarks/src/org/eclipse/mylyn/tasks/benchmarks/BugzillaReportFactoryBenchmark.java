@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.mylyn.internal.bugzilla.core.AbstractReportFactory;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaAttributeMapper;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaCorePlugin;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaCustomField;
+import org.eclipse.mylyn.internal.bugzilla.core.BugzillaRepositoryConnector;
+import org.eclipse.mylyn.internal.bugzilla.core.MultiBugReportFactory;
+import org.eclipse.mylyn.internal.bugzilla.core.RepositoryConfiguration;
+import org.eclipse.mylyn.internal.bugzilla.core.RepositoryConfigurationFactory;
+import org.eclipse.mylyn.internal.bugzilla.core.RepositoryQueryResultsFactory;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures parsing of Bugzilla responses through {@link AbstractReportFactory}. The responses are generated in the
+ * format of <code>show_bug.cgi?ctype=xml</code>, <code>buglist.cgi?ctype=rdf</code> and
+ * <code>config.cgi?ctype=rdf</code> of Bugzilla 4.2 including characters that are not valid in XML and unescaped
+ * ampersands as sent by some repositories. The bytes allocated per bug reported by {@link BenchmarkRunner} indicate
+ * the garbage created by the content handlers.
+ */
+public class BugzillaReportFactoryBenchmark extends Benchmark {
+
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	/**
+	 * The number of bugs requested in a single request during synchronization.
+	 */
+	private static final int BUGS_PER_RESPONSE = 50;
+
+	private static final int COMMENTS_PER_BUG = 20;
+
+	private static final int PRODUCTS = 100;
+
+	private static final int QUERY_RESULTS = 500;
+
+	private static final String REPOSITORY_URL = "http://bugs/"; //$NON-NLS-1$
+
+	private byte[] bugResponse;
+
+	private byte[] configurationResponse;
+
+	private byte[] queryResponse;
+
+	private TaskAttributeMapper mapper;
+
+	private BugzillaRepositoryConnector connector;
+
+	@Override
+	protected void setUp() throws Exception {
+		bugResponse = createBugResponse().getBytes(ENCODING);
+		configurationResponse = createConfigurationResponse().getBytes(ENCODING);
+		queryResponse = createQueryResponse().getBytes(ENCODING);
+		connector = new BugzillaRepositoryConnector((File) null);
+		mapper = new BugzillaAttributeMapper(new TaskRepository(BugzillaCorePlugin.CONNECTOR_KIND, REPOSITORY_URL),
+				connector);
+	}
+
+	public int benchmarkCollectBugs() throws Exception {
+		return collect(bugResponse, false);
+	}
+
+	public int benchmarkCollectBugsClean() throws Exception {
+		return collect(bugResponse, true);
+	}
+
+	public int benchmarkPopulateReport() throws Exception {
+		Map<String, TaskData> bugMap = new HashMap<String, TaskData>();
+		for (int i = 0; i < BUGS_PER_RESPONSE; i++) {
+			String taskId = Integer.toString(1000 + i);
+			bugMap.put(taskId, new TaskData(mapper, BugzillaCorePlugin.CONNECTOR_KIND, REPOSITORY_URL, taskId));
+		}
+		CountingCollector collector = new CountingCollector();
+		new MultiBugReportFactory(new ByteArrayInputStream(bugResponse), ENCODING, connector).populateReport(bugMap,
+				collector, mapper, Collections.<BugzillaCustomField> emptyList());
+		return collector.count;
+	}
+
+	public int benchmarkQueryResults() throws Exception {
+		CountingCollector collector = new CountingCollector();
+		new RepositoryQueryResultsFactory(new ByteArrayInputStream(queryResponse), ENCODING).performQuery(
+				REPOSITORY_URL, collector, mapper, QUERY_RESULTS);
+		return collector.count;
+	}
+
+	public int benchmarkRepositoryConfiguration() throws Exception {
+		RepositoryConfiguration configuration = new RepositoryConfigurationFactory(new ByteArrayInputStream(
+				configurationResponse), ENCODING).getConfiguration();
+		return configuration.getProducts().size();
+	}
+
+	private int collect(byte[] response, boolean clean) throws IOException {
+		BugCountingHandler handler = new BugCountingHandler();
+		new BenchmarkReportFactory(new ByteArrayInputStream(response)).collect(handler, clean);
+		return handler.count;
+	}
+
+	private String createBugResponse() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\" ?>\n"); //$NON-NLS-1$
+		sb.append("<!DOCTYPE bugzilla SYSTEM \"http://bugs/page.cgi?id=bugzilla.dtd\">\n"); //$NON-NLS-1$
+		sb.append("<bugzilla version=\"4.2.1\" urlbase=\"http://bugs/\" maintainer=\"admin@bugs\">\n"); //$NON-NLS-1$
+		for (int i = 0; i < BUGS_PER_RESPONSE; i++) {
+			sb.append("<bug>\n"); //$NON-NLS-1$
+			element(sb, "bug_id", Integer.toString(1000 + i)); //$NON-NLS-1$
+			element(sb, "creation_ts", "2013-01-15 10:2" + (i % 10) + ":00 -0800"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			element(sb, "short_desc", "NPE in \u00e9diteur when saving task " + i); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "delta_ts", "2013-02-01 09:00:00 -0800"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "product", "Product" + (i % PRODUCTS)); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "component", "Component"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "version", "unspecified"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bug_status", "NEW"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "priority", "P3"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bug_severity", "normal"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "reporter", "reporter@bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "assigned_to", "assignee@bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "cc", "cc@bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+			for (int j = 0; j < COMMENTS_PER_BUG; j++) {
+				sb.append("<long_desc isprivate=\"0\">\n"); //$NON-NLS-1$
+				element(sb, "commentid", Integer.toString(i * COMMENTS_PER_BUG + j)); //$NON-NLS-1$
+				element(sb, "who", "commenter@bugs"); //$NON-NLS-1$ //$NON-NLS-2$
+				element(sb, "bug_when", "2013-01-16 11:00:00 -0800"); //$NON-NLS-1$ //$NON-NLS-2$
+				sb.append("<thetext>"); //$NON-NLS-1$
+				for (int k = 0; k < 10; k++) {
+					sb.append("java.lang.NullPointerException at org.eclipse.mylyn.Editor.save(Editor.java:"); //$NON-NLS-1$
+					sb.append(k);
+					sb.append(") &lt;pasted from console&gt;\n"); //$NON-NLS-1$
+				}
+				// control characters that are removed by the filter
+				sb.append("\u0001\u0008\u001b[0m"); //$NON-NLS-1$
+				sb.append("</thetext>\n"); //$NON-NLS-1$
+				sb.append("</long_desc>\n"); //$NON-NLS-1$
+			}
+			sb.append("</bug>\n"); //$NON-NLS-1$
+		}
+		sb.append("</bugzilla>\n"); //$NON-NLS-1$
+		return sb.toString();
+	}
+
+	private String createQueryResponse() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+		sb.append("<RDF xmlns=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n"); //$NON-NLS-1$
+		sb.append("     xmlns:bz=\"http://www.bugzilla.org/rdf#\"\n"); //$NON-NLS-1$
+		sb.append("     xmlns:nc=\"http://home.netscape.com/NC-rdf#\">\n"); //$NON-NLS-1$
+		sb.append("<bz:result about=\"http://bugs/buglist.cgi?ctype=rdf\">\n"); //$NON-NLS-1$
+		element(sb, "bz:installation", "http://bugs/"); //$NON-NLS-1$ //$NON-NLS-2$
+		element(sb, "bz:query_timestamp", "2013-02-01 09:00:00 PST"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("<bz:bugs><Seq>\n"); //$NON-NLS-1$
+		for (int i = 0; i < QUERY_RESULTS; i++) {
+			sb.append("<li><bz:bug about=\"http://bugs/show_bug.cgi?id=").append(i).append("\">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:id", Integer.toString(i)); //$NON-NLS-1$
+			element(sb, "bz:bug_severity", "normal"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:priority", "P" + (i % 5 + 1)); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:op_sys", "All"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:assigned_to", "assignee" + (i % 10) + "@bugs"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			element(sb, "bz:bug_status", "NEW"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:resolution", ""); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:product", "Product" + (i % PRODUCTS)); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:component", "Component"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:short_desc", "NPE in editor when saving task " + i); //$NON-NLS-1$ //$NON-NLS-2$
+			sb.append("</bz:bug></li>\n"); //$NON-NLS-1$
+		}
+		sb.append("</Seq></bz:bugs>\n"); //$NON-NLS-1$
+		sb.append("</bz:result>\n"); //$NON-NLS-1$
+		sb.append("</RDF>\n"); //$NON-NLS-1$
+		return sb.toString();
+	}
+
+	private String createConfigurationResponse() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+		sb.append("<RDF xmlns=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n"); //$NON-NLS-1$
+		sb.append("     xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n"); //$NON-NLS-1$
+		sb.append("     xmlns:bz=\"http://www.bugzilla.org/rdf#\">\n"); //$NON-NLS-1$
+		sb.append("<bz:installation rdf:about=\"http://bugs/\">\n"); //$NON-NLS-1$
+		element(sb, "bz:install_version", "4.2.1"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("<bz:products><Seq>\n"); //$NON-NLS-1$
+		for (int i = 0; i < PRODUCTS; i++) {
+			sb.append("<li><bz:product rdf:about=\"http://bugs/product.cgi?name=Product"); //$NON-NLS-1$
+			sb.append(i);
+			// unescaped ampersand that requires cleaning
+			sb.append("&id=").append(i).append("\">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			element(sb, "bz:name", "Product" + i); //$NON-NLS-1$ //$NON-NLS-2$
+			sb.append("<bz:components><Seq>\n"); //$NON-NLS-1$
+			for (int j = 0; j < 10; j++) {
+				sb.append("<li resource=\"http://bugs/component.cgi?name=Component"); //$NON-NLS-1$
+				sb.append(j).append("&product=Product").append(i).append("\"/>\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			sb.append("</Seq></bz:components>\n"); //$NON-NLS-1$
+			sb.append("</bz:product></li>\n"); //$NON-NLS-1$
+		}
+		sb.append("</Seq></bz:products>\n"); //$NON-NLS-1$
+		sb.append("</bz:installation>\n"); //$NON-NLS-1$
+		sb.append("</RDF>\n"); //$NON-NLS-1$
+		return sb.toString();
+	}
+
+	private void element(StringBuilder sb, String name, String value) {
+		sb.append('<').append(name).append('>').append(value).append("</").append(name).append(">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static class BenchmarkReportFactory extends AbstractReportFactory {
+
+		public BenchmarkReportFactory(InputStream inStream) {
+			super(inStream, ENCODING);
+		}
+
+		public void collect(DefaultHandler contentHandler, boolean clean) throws IOException {
+			collectResults(contentHandler, clean);
+		}
+
+	}
+
+	private static class CountingCollector extends TaskDataCollector {
+
+		private int count;
+
+		@Override
+		public void accept(TaskData taskData) {
+			count++;
+		}
+
+	}
+
+	private static class BugCountingHandler extends DefaultHandler {
+
+		private int count;
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			if ("bug".equals(localName)) { //$NON-NLS-1$
+				count++;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataDiff;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+
+/**
+ * Measures computing differences between revisions of task data through {@link TaskDataDiff}.
+ */
+public class TaskDataDiffBenchmark extends Benchmark {
+
+	private RepositoryModel repositoryModel;
+
+	private final List<TaskData> oldTaskData = new ArrayList<TaskData>();
+
+	private final List<TaskData> newTaskData = new ArrayList<TaskData>();
+
+	@Override
+	protected void setUp() throws Exception {
+		repositoryModel = new RepositoryModel(getGenerator().createTaskList(), getGenerator().getRepositoryManager());
+		for (int i = 0; i < getGenerator().getTaskDataCount(); i++) {
+			String taskId = Integer.toString(i);
+			oldTaskData.add(getGenerator().createTaskData(taskId));
+			newTaskData.add(getGenerator().createTaskData(taskId, 1));
+		}
+	}
+
+	/**
+	 * Compares task data with a previous revision that has different attribute values and one comment less.
+	 */
+	public int benchmarkDiff() throws Exception {
+		int count = 0;
+		for (int i = 0; i < newTaskData.size(); i++) {
+			TaskDataDiff diff = new TaskDataDiff(repositoryModel, newTaskData.get(i), oldTaskData.get(i));
+			if (diff.getNewComments().size() == 1) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Compares identical task data.
+	 */
+	public int benchmarkDiffUnchanged() throws Exception {
+		int count = 0;
+		for (TaskData taskData : oldTaskData) {
+			TaskDataDiff diff = new TaskDataDiff(repositoryModel, taskData, taskData);
+			if (diff.getChangedAttributes().isEmpty()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Computes the difference for tasks that have no previous revision.
+	 */
+	public int benchmarkDiffNewTask() throws Exception {
+		int count = 0;
+		for (TaskData taskData : newTaskData) {
+			TaskDataDiff diff = new TaskDataDiff(repositoryModel, taskData, null);
+			count += (diff.hasChanged()) ? 1 : 0;
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataExternalizer;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataState;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataStateReader;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+
+/**
+ * Measures serialization of task data states through {@link TaskDataExternalizer} and parsing through
+ * {@link TaskDataStateReader} in memory, independent of file system access.
+ */
+public class TaskDataExternalizerBenchmark extends Benchmark {
+
+	private TaskDataExternalizer externalizer;
+
+	private final List<TaskDataState> states = new ArrayList<TaskDataState>();
+
+	private final List<byte[]> serializedStates = new ArrayList<byte[]>();
+
+	@Override
+	protected void setUp() throws Exception {
+		externalizer = new TaskDataExternalizer(getGenerator().getRepositoryManager());
+		for (int i = 0; i < getGenerator().getTaskDataCount(); i++) {
+			String taskId = Integer.toString(i);
+			TaskData data = getGenerator().createTaskData(taskId, 1);
+			TaskDataState state = new TaskDataState(data.getConnectorKind(), data.getRepositoryUrl(), taskId);
+			state.setRepositoryData(data);
+			state.setLastReadData(getGenerator().createTaskData(taskId));
+			states.add(state);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			externalizer.writeState(out, state);
+			serializedStates.add(out.toByteArray());
+		}
+	}
+
+	public int benchmarkWriteState() throws Exception {
+		int size = 0;
+		for (TaskDataState state : states) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			externalizer.writeState(out, state);
+			size += out.size();
+		}
+		return (size > 0) ? states.size() : 0;
+	}
+
+	public int benchmarkReadState() throws Exception {
+		int count = 0;
+		for (byte[] serializedState : serializedStates) {
+			TaskDataState state = externalizer.readState(new ByteArrayInputStream(serializedState));
+			if (state.getRepositoryData() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
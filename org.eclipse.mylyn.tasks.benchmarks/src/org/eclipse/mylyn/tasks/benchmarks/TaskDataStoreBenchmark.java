@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataState;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataStore;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+
+/**
+ * Measures reading and writing of task data files through {@link TaskDataStore} in the default and in the segmented
+ * file format.
+ */
+public class TaskDataStoreBenchmark extends Benchmark {
+
+	private File dataDir;
+
+	private TaskDataStore store;
+
+	private TaskDataStore segmentedStore;
+
+	private final List<TaskData> taskData = new ArrayList<TaskData>();
+
+	@Override
+	protected void setUp() throws Exception {
+		dataDir = WorkspaceGenerator.createTempFolder(getClass().getSimpleName());
+		store = new TaskDataStore(getGenerator().getRepositoryManager());
+		segmentedStore = new TaskDataStore(getGenerator().getRepositoryManager(), true);
+		new File(dataDir, "default").mkdirs(); //$NON-NLS-1$
+		new File(dataDir, "segmented").mkdirs(); //$NON-NLS-1$
+		for (int i = 0; i < getGenerator().getTaskDataCount(); i++) {
+			TaskData data = getGenerator().createTaskData(Integer.toString(i));
+			taskData.add(data);
+			store.putTaskData(getFile(data, false), data, false, false);
+			segmentedStore.putTaskData(getFile(data, true), data, false, false);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		WorkspaceGenerator.delete(dataDir);
+	}
+
+	public int benchmarkPutTaskData() throws Exception {
+		return putTaskData(store, false);
+	}
+
+	public int benchmarkPutTaskDataSegmented() throws Exception {
+		return putTaskData(segmentedStore, true);
+	}
+
+	public int benchmarkGetTaskDataState() throws Exception {
+		return getTaskDataState(store, false);
+	}
+
+	public int benchmarkGetTaskDataStateSegmented() throws Exception {
+		return getTaskDataState(segmentedStore, true);
+	}
+
+	private int putTaskData(TaskDataStore store, boolean segmented) throws Exception {
+		for (TaskData data : taskData) {
+			// moves the previous repository data to the last read data as on synchronization
+			store.putTaskData(getFile(data, segmented), data, true, false);
+		}
+		return taskData.size();
+	}
+
+	private int getTaskDataState(TaskDataStore store, boolean segmented) throws Exception {
+		int count = 0;
+		for (TaskData data : taskData) {
+			TaskDataState state = store.getTaskDataState(getFile(data, segmented));
+			if (state != null && state.getRepositoryData() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private File getFile(TaskData data, boolean segmented) {
+		// the segmented store migrates all task data files of a folder, each store therefore needs its own folder
+		return new File(new File(dataDir, (segmented) ? "segmented" : "default"), data.getTaskId() + ".zip"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+}
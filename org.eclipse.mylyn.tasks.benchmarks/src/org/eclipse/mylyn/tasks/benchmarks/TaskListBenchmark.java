@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.mylyn.internal.tasks.core.AbstractTask;
+import org.eclipse.mylyn.internal.tasks.core.ITaskListChangeListener;
+import org.eclipse.mylyn.internal.tasks.core.ITaskListRunnable;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
+import org.eclipse.mylyn.internal.tasks.core.TaskContainerDelta;
+import org.eclipse.mylyn.internal.tasks.core.TaskList;
+import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.tasks.core.ITask;
+import org.eclipse.mylyn.tasks.tests.connector.MockRepositoryConnector;
+
+/**
+ * Measures adding tasks to the {@link TaskList}, looking up tasks and firing of deltas to change listeners.
+ */
+public class TaskListBenchmark extends Benchmark {
+
+	private TaskList taskList;
+
+	private List<AbstractTask> tasks;
+
+	private int deltaCount;
+
+	@Override
+	protected void setUp() throws Exception {
+		taskList = getGenerator().createTaskList();
+		tasks = new ArrayList<AbstractTask>(taskList.getAllTasks());
+		taskList.addChangeListener(new ITaskListChangeListener() {
+			public void containersChanged(Set<TaskContainerDelta> containers) {
+				deltaCount += containers.size();
+			}
+		});
+	}
+
+	/**
+	 * Adds tasks to a query of an empty task list, each task is added separately and fires a delta.
+	 */
+	public int benchmarkAddTask() throws Exception {
+		TaskList taskList = getGenerator().createEmptyTaskList();
+		RepositoryQuery query = createQuery(taskList);
+		List<TaskTask> tasks = getGenerator().createTasks(0, getGenerator().getTaskCount());
+		for (TaskTask task : tasks) {
+			taskList.addTask(task, query);
+		}
+		return taskList.getAllTasks().size();
+	}
+
+	/**
+	 * Adds tasks to a query of an empty task list in a single task list operation that fires one delta.
+	 */
+	public int benchmarkAddTaskBatched() throws Exception {
+		final TaskList taskList = getGenerator().createEmptyTaskList();
+		final RepositoryQuery query = createQuery(taskList);
+		final List<TaskTask> tasks = getGenerator().createTasks(0, getGenerator().getTaskCount());
+		taskList.run(new ITaskListRunnable() {
+			public void execute(IProgressMonitor monitor) throws CoreException {
+				for (TaskTask task : tasks) {
+					taskList.addTask(task, query);
+				}
+			}
+		});
+		return taskList.getAllTasks().size();
+	}
+
+	public int benchmarkGetTask() throws Exception {
+		int count = 0;
+		for (AbstractTask task : tasks) {
+			if (taskList.getTask(task.getRepositoryUrl(), task.getTaskId()) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int benchmarkGetTaskByHandle() throws Exception {
+		int count = 0;
+		for (AbstractTask task : tasks) {
+			if (taskList.getTask(task.getHandleIdentifier()) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int benchmarkGetTaskByKey() throws Exception {
+		// the lookup by key iterates all tasks, only a sample of keys is looked up
+		int count = 0;
+		for (int i = 0; i < tasks.size(); i += Math.max(1, tasks.size() / 100)) {
+			AbstractTask task = tasks.get(i);
+			if (taskList.getTaskByKey(task.getRepositoryUrl(), task.getTaskKey()) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Notifies listeners of a change of each task separately.
+	 */
+	public int benchmarkNotifyElementChanged() throws Exception {
+		deltaCount = 0;
+		for (ITask task : tasks) {
+			taskList.notifyElementChanged(task);
+		}
+		return deltaCount;
+	}
+
+	/**
+	 * Notifies listeners of a change of all tasks at once.
+	 */
+	public int benchmarkNotifyElementsChanged() throws Exception {
+		deltaCount = 0;
+		taskList.notifyElementsChanged(new HashSet<ITask>(tasks));
+		return deltaCount;
+	}
+
+	private RepositoryQuery createQuery(TaskList taskList) {
+		RepositoryQuery query = new RepositoryQuery(MockRepositoryConnector.CONNECTOR_KIND, "query"); //$NON-NLS-1$
+		query.setRepositoryUrl(MockRepositoryConnector.REPOSITORY_URL);
+		taskList.addQuery(query);
+		return query;
+	}
+
+}
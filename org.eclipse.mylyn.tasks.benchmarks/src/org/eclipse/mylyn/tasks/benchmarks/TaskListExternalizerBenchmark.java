@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.io.File;
+
+import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
+import org.eclipse.mylyn.internal.tasks.core.TaskList;
+import org.eclipse.mylyn.internal.tasks.core.externalization.TaskListExternalizer;
+
+/**
+ * Measures saving and loading of the task list through {@link TaskListExternalizer}.
+ */
+public class TaskListExternalizerBenchmark extends Benchmark {
+
+	private TaskList taskList;
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		taskList = getGenerator().createTaskList();
+		file = File.createTempFile("tasklist", ITasksCoreConstants.FILE_EXTENSION); //$NON-NLS-1$
+		createExternalizer(taskList).writeTaskList(taskList, file);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public int benchmarkWriteTaskList() throws Exception {
+		createExternalizer(taskList).writeTaskList(taskList, file);
+		return taskList.getAllTasks().size();
+	}
+
+	public int benchmarkReadTaskList() throws Exception {
+		TaskList readTaskList = getGenerator().createEmptyTaskList();
+		createExternalizer(readTaskList).readTaskList(readTaskList, file);
+		return readTaskList.getAllTasks().size();
+	}
+
+	private TaskListExternalizer createExternalizer(TaskList taskList) {
+		return new TaskListExternalizer(new RepositoryModel(taskList, getGenerator().getRepositoryManager()),
+				getGenerator().getRepositoryManager());
+	}
+
+}
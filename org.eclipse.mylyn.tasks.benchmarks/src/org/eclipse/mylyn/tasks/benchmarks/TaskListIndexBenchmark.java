@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mylyn.commons.core.DelegatingProgressMonitor;
+import org.eclipse.mylyn.internal.tasks.core.AbstractTask;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
+import org.eclipse.mylyn.internal.tasks.core.TaskActivityManager;
+import org.eclipse.mylyn.internal.tasks.core.TaskList;
+import org.eclipse.mylyn.internal.tasks.core.data.SynchronizationManger;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataStore;
+import org.eclipse.mylyn.internal.tasks.index.core.TaskListIndex;
+import org.eclipse.mylyn.internal.tasks.index.core.TaskListIndex.TaskCollector;
+import org.eclipse.mylyn.tasks.core.ITask;
+
+/**
+ * Measures indexing of the task list and task data by {@link TaskListIndex} and querying of the index. Task data is
+ * stored for the first {@link WorkspaceGenerator#getTaskDataCount()} tasks, the remaining tasks are indexed from the
+ * task list only.
+ */
+public class TaskListIndexBenchmark extends Benchmark {
+
+	private static final String[] PATTERNS = { "Summary", "task 42", "Lorem ipsum", "summary:task", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"comment OR description", "user3@example.com" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final int RESULTS_LIMIT = 50;
+
+	private File dataDir;
+
+	private File indexDir;
+
+	private TaskList taskList;
+
+	private TaskDataManager dataManager;
+
+	private TaskListIndex index;
+
+	private List<AbstractTask> tasks;
+
+	@Override
+	protected void setUp() throws Exception {
+		dataDir = WorkspaceGenerator.createTempFolder(getClass().getSimpleName());
+		indexDir = new File(dataDir, "index"); //$NON-NLS-1$
+
+		taskList = getGenerator().createTaskList();
+		RepositoryModel repositoryModel = new RepositoryModel(taskList, getGenerator().getRepositoryManager());
+		dataManager = new TaskDataManager(new TaskDataStore(getGenerator().getRepositoryManager()),
+				getGenerator().getRepositoryManager(), taskList, new TaskActivityManager(
+						getGenerator().getRepositoryManager(), taskList), new SynchronizationManger(repositoryModel) {
+					@Override
+					public synchronized boolean hasParticipants(String connectorKind) {
+						// avoid loading participants from the extension registry
+						return false;
+					}
+				});
+		dataManager.setDataPath(new File(dataDir, "tasks").getAbsolutePath()); //$NON-NLS-1$
+
+		tasks = new ArrayList<AbstractTask>(taskList.getAllTasks());
+		for (int i = 0; i < Math.min(tasks.size(), getGenerator().getTaskDataCount()); i++) {
+			ITask task = tasks.get(i);
+			dataManager.putSubmittedTaskData(task, getGenerator().createTaskData(task.getTaskId()),
+					new DelegatingProgressMonitor());
+		}
+
+		index = new TaskListIndex(taskList, dataManager, getGenerator().getRepositoryManager(), indexDir, 0L);
+		index.setDefaultField(TaskListIndex.FIELD_CONTENT);
+		index.setReindexDelay(0L);
+		index.waitUntilIdle();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (index != null) {
+			index.waitUntilIdle();
+			index.close();
+		}
+		WorkspaceGenerator.delete(dataDir);
+	}
+
+	/**
+	 * Rebuilds the index from scratch.
+	 */
+	public int benchmarkReindex() throws Exception {
+		index.reindex();
+		index.waitUntilIdle();
+		return tasks.size();
+	}
+
+	public int benchmarkFind() throws Exception {
+		final int[] count = new int[1];
+		for (String pattern : PATTERNS) {
+			index.find(pattern, new TaskCollector() {
+				@Override
+				public void collect(ITask task) {
+					count[0]++;
+				}
+			}, RESULTS_LIMIT);
+		}
+		return (count[0] > 0) ? PATTERNS.length : 0;
+	}
+
+	/**
+	 * Matches a sample of tasks against each pattern as done when filtering the task list.
+	 */
+	public int benchmarkMatches() throws Exception {
+		int count = 0;
+		for (int i = 0; i < tasks.size(); i += Math.max(1, tasks.size() / 100)) {
+			for (String pattern : PATTERNS) {
+				index.matches(tasks.get(i), pattern);
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.mylyn.internal.tasks.core.LocalRepositoryConnector;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
+import org.eclipse.mylyn.internal.tasks.core.TaskCategory;
+import org.eclipse.mylyn.internal.tasks.core.TaskList;
+import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryManager;
+import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.internal.tasks.core.UnmatchedTaskContainer;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttachmentMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskCommentMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.tests.connector.MockRepositoryConnector;
+
+/**
+ * Creates synthetic task lists and task data that resemble a large workspace. The size of the workspace is controlled
+ * through the system properties <code>mylyn.benchmarks.taskCount</code> for the number of tasks in the task list,
+ * <code>mylyn.benchmarks.taskDataCount</code> for the number of tasks that have task data and
+ * <code>mylyn.benchmarks.commentCount</code> and <code>mylyn.benchmarks.attachmentCount</code> for the size of each
+ * task data. Generated content is deterministic so results of different runs are comparable.
+ */
+public class WorkspaceGenerator {
+
+	public static final String PROPERTY_TASK_COUNT = "mylyn.benchmarks.taskCount"; //$NON-NLS-1$
+
+	public static final String PROPERTY_TASK_DATA_COUNT = "mylyn.benchmarks.taskDataCount"; //$NON-NLS-1$
+
+	public static final String PROPERTY_COMMENT_COUNT = "mylyn.benchmarks.commentCount"; //$NON-NLS-1$
+
+	public static final String PROPERTY_ATTACHMENT_COUNT = "mylyn.benchmarks.attachmentCount"; //$NON-NLS-1$
+
+	private static final String[] SINGLE_SELECT_FIELDS = { TaskAttribute.PRODUCT, TaskAttribute.COMPONENT,
+			TaskAttribute.VERSION, TaskAttribute.STATUS, TaskAttribute.RESOLUTION, TaskAttribute.PRIORITY,
+			TaskAttribute.SEVERITY, "milestone", "os", "platform" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	private static final String[] TEXT_FIELDS = { TaskAttribute.TASK_URL, TaskAttribute.KEYWORDS,
+			TaskAttribute.USER_REPORTER, TaskAttribute.USER_ASSIGNED, TaskAttribute.DATE_CREATION,
+			TaskAttribute.DATE_MODIFICATION, "whiteboard", "dependson", "blocked", "alias", "estimated_time" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+	private static final int OPTION_COUNT = 20;
+
+	private static final int TASKS_PER_CATEGORY = 500;
+
+	private static final int TASKS_PER_QUERY = 1000;
+
+	private final int taskCount;
+
+	private final int taskDataCount;
+
+	private final int commentCount;
+
+	private final int attachmentCount;
+
+	private final TaskRepositoryManager repositoryManager;
+
+	private final TaskRepository repository;
+
+	private final TaskAttributeMapper attributeMapper;
+
+	public WorkspaceGenerator() {
+		this(Integer.getInteger(PROPERTY_TASK_COUNT, 5000), Integer.getInteger(PROPERTY_TASK_DATA_COUNT, 500),
+				Integer.getInteger(PROPERTY_COMMENT_COUNT, 20), Integer.getInteger(PROPERTY_ATTACHMENT_COUNT, 5));
+	}
+
+	public WorkspaceGenerator(int taskCount, int taskDataCount, int commentCount, int attachmentCount) {
+		this.taskCount = taskCount;
+		this.taskDataCount = taskDataCount;
+		this.commentCount = commentCount;
+		this.attachmentCount = attachmentCount;
+		this.repositoryManager = new TaskRepositoryManager();
+		this.repositoryManager.addRepositoryConnector(new MockRepositoryConnector());
+		this.repositoryManager.addRepositoryConnector(new LocalRepositoryConnector());
+		this.repository = new TaskRepository(MockRepositoryConnector.CONNECTOR_KIND,
+				MockRepositoryConnector.REPOSITORY_URL);
+		this.repositoryManager.addRepository(repository);
+		this.repositoryManager.addRepository(new TaskRepository(LocalRepositoryConnector.CONNECTOR_KIND,
+				LocalRepositoryConnector.REPOSITORY_URL));
+		this.attributeMapper = new TaskAttributeMapper(repository);
+	}
+
+	public int getTaskCount() {
+		return taskCount;
+	}
+
+	public int getTaskDataCount() {
+		return taskDataCount;
+	}
+
+	public int getCommentCount() {
+		return commentCount;
+	}
+
+	public int getAttachmentCount() {
+		return attachmentCount;
+	}
+
+	/**
+	 * Returns the parameters of the generated workspace for reporting.
+	 */
+	public Map<String, Object> getParameters() {
+		Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+		parameters.put("taskCount", taskCount); //$NON-NLS-1$
+		parameters.put("taskDataCount", taskDataCount); //$NON-NLS-1$
+		parameters.put("commentCount", commentCount); //$NON-NLS-1$
+		parameters.put("attachmentCount", attachmentCount); //$NON-NLS-1$
+		return parameters;
+	}
+
+	public TaskRepositoryManager getRepositoryManager() {
+		return repositoryManager;
+	}
+
+	public TaskRepository getRepository() {
+		return repository;
+	}
+
+	/**
+	 * Returns an empty task list that has an unmatched container for the repository of the generated tasks.
+	 */
+	public TaskList createEmptyTaskList() {
+		TaskList taskList = new TaskList();
+		taskList.addUnmatchedContainer(new UnmatchedTaskContainer(MockRepositoryConnector.CONNECTOR_KIND,
+				MockRepositoryConnector.REPOSITORY_URL));
+		return taskList;
+	}
+
+	/**
+	 * Returns a task list with {@link #getTaskCount()} tasks. Every tenth task is added to a category and has a
+	 * subtask, all other tasks are distributed across queries.
+	 */
+	public TaskList createTaskList() {
+		TaskList taskList = createEmptyTaskList();
+		List<TaskCategory> categories = new ArrayList<TaskCategory>();
+		for (int i = 0; i < Math.max(1, taskCount / TASKS_PER_CATEGORY); i++) {
+			TaskCategory category = new TaskCategory("category" + i, "Category " + i); //$NON-NLS-1$ //$NON-NLS-2$
+			taskList.addCategory(category);
+			categories.add(category);
+		}
+		List<RepositoryQuery> queries = new ArrayList<RepositoryQuery>();
+		for (int i = 0; i < Math.max(1, taskCount / TASKS_PER_QUERY); i++) {
+			RepositoryQuery query = new RepositoryQuery(MockRepositoryConnector.CONNECTOR_KIND, "query" + i); //$NON-NLS-1$
+			query.setRepositoryUrl(MockRepositoryConnector.REPOSITORY_URL);
+			query.setUrl(MockRepositoryConnector.REPOSITORY_URL + "/query?id=" + i); //$NON-NLS-1$
+			query.setSummary("Query " + i); //$NON-NLS-1$
+			taskList.addQuery(query);
+			queries.add(query);
+		}
+
+		TaskTask parent = null;
+		for (TaskTask task : createTasks(0, taskCount)) {
+			int i = Integer.parseInt(task.getTaskId());
+			if (i % 10 == 0) {
+				taskList.addTask(task, categories.get((i / 10) % categories.size()));
+				parent = task;
+			} else if (i % 10 == 1) {
+				taskList.addTask(task, parent);
+			} else {
+				taskList.addTask(task, queries.get(i % queries.size()));
+			}
+		}
+		return taskList;
+	}
+
+	/**
+	 * Returns <code>count</code> tasks with consecutive ids starting at <code>offset</code> that are not added to a
+	 * task list.
+	 */
+	public List<TaskTask> createTasks(int offset, int count) {
+		List<TaskTask> tasks = new ArrayList<TaskTask>(count);
+		for (int i = offset; i < offset + count; i++) {
+			TaskTask task = new TaskTask(MockRepositoryConnector.CONNECTOR_KIND,
+					MockRepositoryConnector.REPOSITORY_URL, Integer.toString(i));
+			task.setSummary("Summary of task " + i); //$NON-NLS-1$
+			task.setTaskKey(Integer.toString(i));
+			task.setOwner("user" + (i % 50) + "@example.com"); //$NON-NLS-1$ //$NON-NLS-2$
+			task.setPriority("P" + (1 + i % 5)); //$NON-NLS-1$
+			task.setCreationDate(new Date(1000L * i));
+			task.setModificationDate(new Date(2000L * i));
+			task.setNotes("Notes of task " + i); //$NON-NLS-1$
+			task.setAttribute("key", "value " + i); //$NON-NLS-1$ //$NON-NLS-2$
+			tasks.add(task);
+		}
+		return tasks;
+	}
+
+	/**
+	 * Returns task data for the task with the given id.
+	 *
+	 * @see #createTaskData(String, int)
+	 */
+	public TaskData createTaskData(String taskId) {
+		return createTaskData(taskId, 0);
+	}
+
+	/**
+	 * Returns task data for the task with the given id. Revisions greater than 0 represent later versions of the same
+	 * task that have modified attribute values and an additional comment per revision.
+	 */
+	public TaskData createTaskData(String taskId, int revision) {
+		TaskData taskData = new TaskData(attributeMapper, MockRepositoryConnector.CONNECTOR_KIND,
+				MockRepositoryConnector.REPOSITORY_URL, taskId);
+		TaskAttribute root = taskData.getRoot();
+		TaskAttribute summary = root.createAttribute(TaskAttribute.SUMMARY);
+		summary.getMetaData().defaults().setType(TaskAttribute.TYPE_SHORT_RICH_TEXT).setLabel("Summary:"); //$NON-NLS-1$
+		summary.setValue("Summary of task " + taskId + ((revision > 0) ? " revision " + revision : "")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		TaskAttribute description = root.createAttribute(TaskAttribute.DESCRIPTION);
+		description.getMetaData().defaults().setType(TaskAttribute.TYPE_LONG_RICH_TEXT).setLabel("Description:"); //$NON-NLS-1$
+		description.setValue(createText("Description of task " + taskId, 20)); //$NON-NLS-1$
+		for (String field : SINGLE_SELECT_FIELDS) {
+			TaskAttribute attribute = root.createAttribute(field);
+			attribute.getMetaData()
+					.defaults()
+					.setType(TaskAttribute.TYPE_SINGLE_SELECT)
+					.setLabel(field + ":") //$NON-NLS-1$
+					.setKind(TaskAttribute.KIND_DEFAULT);
+			// option sets are the same for all tasks of a repository
+			for (int i = 0; i < OPTION_COUNT; i++) {
+				attribute.putOption(field + i, field + " " + i); //$NON-NLS-1$
+			}
+			attribute.setValue(field + ((revision + taskId.hashCode()) & 0xFFFF) % OPTION_COUNT);
+		}
+		for (String field : TEXT_FIELDS) {
+			TaskAttribute attribute = root.createAttribute(field);
+			attribute.getMetaData()
+					.defaults()
+					.setType(TaskAttribute.TYPE_SHORT_TEXT)
+					.setLabel(field + ":") //$NON-NLS-1$
+					.setKind(TaskAttribute.KIND_DEFAULT);
+			attribute.setValue(field + " value " + taskId); //$NON-NLS-1$
+		}
+		TaskAttribute cc = root.createAttribute(TaskAttribute.USER_CC);
+		cc.getMetaData().defaults().setType(TaskAttribute.TYPE_MULTI_SELECT).setLabel("CC:"); //$NON-NLS-1$
+		for (int i = 0; i < 10; i++) {
+			cc.addValue("user" + i + "@example.com"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for (int i = 0; i < commentCount + revision; i++) {
+			TaskAttribute attribute = root.createAttribute(TaskAttribute.PREFIX_COMMENT + i);
+			TaskCommentMapper comment = new TaskCommentMapper();
+			comment.setCommentId(Integer.toString(i));
+			comment.setNumber(i);
+			comment.setAuthor(repository.createPerson("user" + (i % 10) + "@example.com")); //$NON-NLS-1$ //$NON-NLS-2$
+			comment.setCreationDate(new Date(1000L * i));
+			comment.setText(createText("Comment " + i + " on task " + taskId, 5)); //$NON-NLS-1$ //$NON-NLS-2$
+			comment.applyTo(attribute);
+		}
+		for (int i = 0; i < attachmentCount; i++) {
+			TaskAttribute attribute = root.createAttribute(TaskAttribute.PREFIX_ATTACHMENT + i);
+			TaskAttachmentMapper attachment = new TaskAttachmentMapper();
+			attachment.setAttachmentId(Integer.toString(i));
+			attachment.setAuthor(repository.createPerson("user" + (i % 10) + "@example.com")); //$NON-NLS-1$ //$NON-NLS-2$
+			attachment.setCreationDate(new Date(1000L * i));
+			attachment.setDescription("Attachment " + i); //$NON-NLS-1$
+			attachment.setFileName("file" + i + ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+			attachment.setContentType("text/plain"); //$NON-NLS-1$
+			attachment.setLength(1024L * i);
+			attachment.setPatch(false);
+			attachment.setDeprecated(false);
+			attachment.applyTo(attribute);
+		}
+		return taskData;
+	}
+
+	/**
+	 * Creates a temporary folder that is deleted by {@link #delete(File)}.
+	 */
+	public static File createTempFolder(String prefix) throws IOException {
+		File folder = File.createTempFile(prefix, null);
+		folder.delete();
+		if (!folder.mkdirs()) {
+			throw new IOException("Failed to create " + folder); //$NON-NLS-1$
+		}
+		return folder;
+	}
+
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private String createText(String prefix, int lines) {
+		StringBuilder sb = new StringBuilder(prefix);
+		for (int i = 0; i < lines; i++) {
+			sb.append("\nLorem ipsum dolor sit amet, consectetur adipiscing elit, line "); //$NON-NLS-1$
+			sb.append(i);
+		}
+		return sb.toString();
+	}
+
+}
@@ -89,6 +89,11 @@ public abstract class AbstractTask extends AbstractTaskContainer implements ITas
 	// TODO 4.0 make private
 	protected String taskKey;
 
+	/**
+	 * The task list that contains this task, notified of task key changes to update its key index.
+	 */
+	private volatile TaskList taskList;
+
 	private AttributeMap attributeMap;
 
 	private boolean changed;
@@ -475,10 +480,22 @@ public abstract class AbstractTask extends AbstractTaskContainer implements ITas
 		if (!areEqual(this.taskKey, taskKey)) {
 			String oldValue = this.taskKey;
 			this.taskKey = taskKey;
+			TaskList taskList = this.taskList;
+			if (taskList != null) {
+				taskList.taskKeyChanged(this, oldValue);
+			}
 			firePropertyChange("taskKey", oldValue, taskKey); //$NON-NLS-1$
 		}
 	}
 
+	void setTaskList(TaskList taskList) {
+		this.taskList = taskList;
+	}
+
+	TaskList getTaskList() {
+		return taskList;
+	}
+
 	public synchronized String getAttribute(String key) {
 		return (attributeMap != null) ? attributeMap.getAttribute(key) : null;
 	}
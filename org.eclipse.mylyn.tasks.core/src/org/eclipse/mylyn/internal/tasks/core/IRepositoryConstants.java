@@ -35,6 +35,11 @@ public interface IRepositoryConstants {
 
 	public static final String PROPERTY_LABEL = "label"; //$NON-NLS-1$
 
+	/**
+	 * The maximum number of queries of a repository that are performed in parallel during synchronization.
+	 */
+	public static final String PROPERTY_QUERY_CONCURRENCY = "queryConcurrency"; //$NON-NLS-1$
+
 	public static final String PROPERTY_DELIM = ":"; //$NON-NLS-1$
 
 	public static final String KIND_UNKNOWN = "<unknown>"; //$NON-NLS-1$
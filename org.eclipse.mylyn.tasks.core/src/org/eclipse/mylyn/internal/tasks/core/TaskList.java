@@ -11,12 +11,17 @@
 
 package org.eclipse.mylyn.internal.tasks.core;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.eclipse.core.runtime.Assert;
@@ -48,6 +53,19 @@ public class TaskList implements ITaskList, ITransferList {
 
 	private static ILock lock = Job.getJobManager().newLock();
 
+	/**
+	 * Number of locks that repository URLs are striped across.
+	 */
+	private static final int REPOSITORY_LOCK_COUNT = 16;
+
+	private static ILock[] repositoryLocks = new ILock[REPOSITORY_LOCK_COUNT];
+
+	static {
+		for (int i = 0; i < repositoryLocks.length; i++) {
+			repositoryLocks[i] = Job.getJobManager().newLock();
+		}
+	}
+
 	private Map<String, AbstractTaskCategory> categories;
 
 	private final Set<ITaskListChangeListener> changeListeners = new CopyOnWriteArraySet<ITaskListChangeListener>();
@@ -64,6 +82,17 @@ public class TaskList implements ITaskList, ITransferList {
 
 	private Map<String, AbstractTask> tasks;
 
+	/**
+	 * Index of tasks by repository URL and handle identifier.
+	 */
+	private Map<String, Map<String, AbstractTask>> tasksByRepositoryUrl;
+
+	/**
+	 * Index of tasks by repository URL and task key. Tasks notify the task list when their key changes, entries are
+	 * additionally validated on lookup since keys may change concurrently.
+	 */
+	private ConcurrentMap<String, ConcurrentMap<String, AbstractTask>> tasksByKey;
+
 	private Set<TaskContainerDelta> delta;
 
 	private int nextHandle = 1;
@@ -257,7 +286,12 @@ public class TaskList implements ITaskList, ITransferList {
 				addToUnmatched((AbstractTask) child, delta);
 			}
 
-			tasks.remove(task.getHandleIdentifier());
+			if (tasks.remove(task.getHandleIdentifier()) != null) {
+				removeFromIndex(task);
+				if (task.getTaskList() == this) {
+					task.setTaskList(null);
+				}
+			}
 			delta.add(new TaskContainerDelta(task, TaskContainerDelta.Kind.REMOVED));
 			delta.add(new TaskContainerDelta(task, TaskContainerDelta.Kind.DELETED));
 		} finally {
@@ -325,6 +359,8 @@ public class TaskList implements ITaskList, ITransferList {
 		if (task == null) {
 			tasks.put(taskListElement.getHandleIdentifier(), taskListElement);
 			task = taskListElement;
+			task.setTaskList(this);
+			addToIndex(task);
 			if (task instanceof LocalTask) {
 				try {
 					int taskId = Integer.parseInt(task.getTaskId());
@@ -397,16 +433,115 @@ public class TaskList implements ITaskList, ITransferList {
 	}
 
 	public AbstractTask getTaskByKey(String repositoryUrl, String taskKey) {
-		for (AbstractTask task : tasks.values()) {
-			String currentTaskKey = task.getTaskKey();
-			if (currentTaskKey != null && currentTaskKey.equals(taskKey)
-					&& task.getRepositoryUrl().equals(repositoryUrl)) {
-				return task;
+		if (repositoryUrl == null || taskKey == null) {
+			return null;
+		}
+		return getIndexedTaskByKey(repositoryUrl, taskKey);
+	}
+
+	/**
+	 * Invoked by <code>task</code> when its key has changed to move the task to the new key in the key index.
+	 */
+	void taskKeyChanged(AbstractTask task, String oldTaskKey) {
+		if (tasks.get(task.getHandleIdentifier()) != task) {
+			return;
+		}
+		String repositoryUrl = task.getRepositoryUrl();
+		if (repositoryUrl != null && oldTaskKey != null) {
+			removeFromKeyIndex(task, repositoryUrl, oldTaskKey);
+		}
+		addToKeyIndex(task);
+	}
+
+	private AbstractTask getIndexedTaskByKey(String repositoryUrl, String taskKey) {
+		ConcurrentMap<String, AbstractTask> tasksForRepository = tasksByKey.get(repositoryUrl);
+		if (tasksForRepository != null) {
+			AbstractTask task = tasksForRepository.get(taskKey);
+			if (task != null) {
+				if (isIndexedByKey(task, repositoryUrl, taskKey)) {
+					return task;
+				}
+				return removeFromKeyIndex(task, repositoryUrl, taskKey);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the entry of <code>task</code> for <code>taskKey</code> from the key index. Since the index holds a
+	 * single task per key, another task of the repository that has the same key takes its place.
+	 * 
+	 * @return the task that replaced <code>task</code> in the index or <code>null</code>
+	 */
+	private AbstractTask removeFromKeyIndex(AbstractTask task, String repositoryUrl, String taskKey) {
+		ConcurrentMap<String, AbstractTask> keysForRepository = tasksByKey.get(repositoryUrl);
+		if (keysForRepository == null || !keysForRepository.remove(taskKey, task)) {
+			return null;
+		}
+		Map<String, AbstractTask> tasksForRepository = tasksByRepositoryUrl.get(repositoryUrl);
+		if (tasksForRepository != null) {
+			for (AbstractTask otherTask : tasksForRepository.values()) {
+				if (otherTask != task && isIndexedByKey(otherTask, repositoryUrl, taskKey)) {
+					keysForRepository.putIfAbsent(taskKey, otherTask);
+					return otherTask;
+				}
 			}
 		}
 		return null;
 	}
 
+	private boolean isIndexedByKey(AbstractTask task, String repositoryUrl, String taskKey) {
+		return taskKey.equals(task.getTaskKey()) && repositoryUrl.equals(task.getRepositoryUrl())
+				&& tasks.get(task.getHandleIdentifier()) == task;
+	}
+
+	private void addToIndex(AbstractTask task) {
+		String repositoryUrl = task.getRepositoryUrl();
+		if (repositoryUrl != null) {
+			Map<String, AbstractTask> tasksForRepository = tasksByRepositoryUrl.get(repositoryUrl);
+			if (tasksForRepository == null) {
+				tasksForRepository = new ConcurrentHashMap<String, AbstractTask>();
+				tasksByRepositoryUrl.put(repositoryUrl, tasksForRepository);
+			}
+			tasksForRepository.put(task.getHandleIdentifier(), task);
+			addToKeyIndex(task);
+		}
+	}
+
+	private void addToKeyIndex(AbstractTask task) {
+		String repositoryUrl = task.getRepositoryUrl();
+		String taskKey = task.getTaskKey();
+		if (repositoryUrl != null && taskKey != null) {
+			ConcurrentMap<String, AbstractTask> tasksForRepository = tasksByKey.get(repositoryUrl);
+			if (tasksForRepository == null) {
+				tasksForRepository = new ConcurrentHashMap<String, AbstractTask>();
+				ConcurrentMap<String, AbstractTask> existing = tasksByKey.putIfAbsent(repositoryUrl,
+						tasksForRepository);
+				if (existing != null) {
+					tasksForRepository = existing;
+				}
+			}
+			tasksForRepository.put(taskKey, task);
+		}
+	}
+
+	private void removeFromIndex(AbstractTask task) {
+		String repositoryUrl = task.getRepositoryUrl();
+		if (repositoryUrl != null) {
+			Map<String, AbstractTask> tasksForRepository = tasksByRepositoryUrl.get(repositoryUrl);
+			if (tasksForRepository != null) {
+				tasksForRepository.remove(task.getHandleIdentifier());
+				if (tasksForRepository.isEmpty()) {
+					tasksByRepositoryUrl.remove(repositoryUrl);
+				}
+			}
+			String taskKey = task.getTaskKey();
+			if (taskKey != null) {
+				removeFromKeyIndex(task, repositoryUrl, taskKey);
+			}
+		}
+	}
+
 	public Set<AbstractTaskCategory> getTaskCategories() {
 		Set<AbstractTaskCategory> containers = new HashSet<AbstractTaskCategory>();
 		for (AbstractTaskCategory container : categories.values()) {
@@ -423,10 +558,9 @@ public class TaskList implements ITaskList, ITransferList {
 	public Set<ITask> getTasks(String repositoryUrl) {
 		Set<ITask> repositoryTasks = new HashSet<ITask>();
 		if (repositoryUrl != null) {
-			for (ITask task : tasks.values()) {
-				if (task.getRepositoryUrl().equals(repositoryUrl)) {
-					repositoryTasks.add(task);
-				}
+			Map<String, AbstractTask> tasksForRepository = tasksByRepositoryUrl.get(repositoryUrl);
+			if (tasksForRepository != null) {
+				repositoryTasks.addAll(tasksForRepository.values());
 			}
 		}
 		return repositoryTasks;
@@ -523,8 +657,10 @@ public class TaskList implements ITaskList, ITransferList {
 			for (AbstractTask task : tasks.values()) {
 				if (oldRepositoryUrl.equals(RepositoryTaskHandleUtil.getRepositoryUrl(task.getHandleIdentifier()))) {
 					tasks.remove(task.getHandleIdentifier());
+					removeFromIndex(task);
 					task.setRepositoryUrl(newRepositoryUrl);
 					tasks.put(task.getHandleIdentifier(), task);
+					addToIndex(task);
 					String taskUrl = task.getUrl();
 					if (taskUrl != null && taskUrl.startsWith(oldRepositoryUrl)) {
 						task.setUrl(newRepositoryUrl + taskUrl.substring(oldRepositoryUrl.length()));
@@ -641,6 +777,8 @@ public class TaskList implements ITaskList, ITransferList {
 		try {
 			lock();
 			tasks = new ConcurrentHashMap<String, AbstractTask>();
+			tasksByRepositoryUrl = new ConcurrentHashMap<String, Map<String, AbstractTask>>();
+			tasksByKey = new ConcurrentHashMap<String, ConcurrentMap<String, AbstractTask>>();
 
 			unmatchedMap = new ConcurrentHashMap<String, UnmatchedTaskContainer>();
 			unsubmittedTasksMap = new ConcurrentHashMap<String, UnsubmittedTaskContainer>();
@@ -677,6 +815,68 @@ public class TaskList implements ITaskList, ITransferList {
 		}
 	}
 
+	/**
+	 * Runs <code>runnable</code> while holding the lock for <code>repositoryUrl</code>. The repository lock serializes
+	 * access to the task data of a repository without blocking the task list or operations on other repositories.
+	 * Repository URLs are striped across a fixed number of locks, unrelated repositories may therefore occasionally
+	 * share a lock.
+	 * <p>
+	 * The runnable may acquire the task list lock through {@link #run(ITaskListRunnable)} to modify tasks. To avoid
+	 * deadlocks the repository lock must not be acquired while holding the task list lock.
+	 */
+	public void runForRepository(String repositoryUrl, ITaskListRunnable runnable) throws CoreException {
+		runForRepository(repositoryUrl, runnable, null, false);
+	}
+
+	public void runForRepository(String repositoryUrl, ITaskListRunnable runnable, IProgressMonitor monitor,
+			boolean ignoreInterrupts) throws CoreException {
+		monitor = Policy.monitorFor(monitor);
+		ILock repositoryLock = getRepositoryLock(repositoryUrl);
+		acquire(repositoryLock, monitor, ignoreInterrupts);
+		try {
+			runnable.execute(monitor);
+		} finally {
+			repositoryLock.release();
+		}
+	}
+
+	/**
+	 * Runs <code>runnable</code> while holding the locks for all of <code>repositoryUrls</code>. The locks are acquired
+	 * in a fixed order so operations that span several repositories do not deadlock each other.
+	 * 
+	 * @see #runForRepository(String, ITaskListRunnable)
+	 */
+	public void runForRepositories(String[] repositoryUrls, ITaskListRunnable runnable) throws CoreException {
+		IProgressMonitor monitor = Policy.monitorFor(null);
+		SortedSet<Integer> indices = new TreeSet<Integer>();
+		for (String repositoryUrl : repositoryUrls) {
+			indices.add(getRepositoryLockIndex(repositoryUrl));
+		}
+		List<ILock> acquiredLocks = new ArrayList<ILock>(indices.size());
+		try {
+			for (int index : indices) {
+				acquire(repositoryLocks[index], monitor, false);
+				acquiredLocks.add(repositoryLocks[index]);
+			}
+			runnable.execute(monitor);
+		} finally {
+			for (int i = acquiredLocks.size() - 1; i >= 0; i--) {
+				acquiredLocks.get(i).release();
+			}
+		}
+	}
+
+	private static ILock getRepositoryLock(String repositoryUrl) {
+		return repositoryLocks[getRepositoryLockIndex(repositoryUrl)];
+	}
+
+	private static int getRepositoryLockIndex(String repositoryUrl) {
+		int hash = (repositoryUrl != null) ? repositoryUrl.hashCode() : 0;
+		// spread the hash code to use the higher bits as well
+		hash ^= (hash >>> 16);
+		return (hash & 0x7FFFFFFF) % REPOSITORY_LOCK_COUNT;
+	}
+
 	private void lock() {
 		lock.acquire();
 		if (lock.getDepth() == 1) {
@@ -685,12 +885,16 @@ public class TaskList implements ITaskList, ITransferList {
 	}
 
 	private void lock(IProgressMonitor monitor, boolean ignoreInterrupts) throws CoreException {
+		acquire(lock, monitor, ignoreInterrupts);
+		if (lock.getDepth() == 1) {
+			delta = new HashSet<TaskContainerDelta>();
+		}
+	}
+
+	private static void acquire(ILock targetLock, IProgressMonitor monitor, boolean ignoreInterrupts) {
 		while (!monitor.isCanceled()) {
 			try {
-				if (lock.acquire(3000)) {
-					if (lock.getDepth() == 1) {
-						delta = new HashSet<TaskContainerDelta>();
-					}
+				if (targetLock.acquire(3000)) {
 					// success
 					return;
 				}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -97,6 +97,8 @@ public interface ITaskDataConstants {
 
 	static final String ATTRIBUTE_TASK_ID = "taskId"; //$NON-NLS-1$
 
+	static final String ATTRIBUTE_FINGERPRINT = "fingerprint"; //$NON-NLS-1$
+
 	static final String ELEMENT_ATTRIBUTES = "Attributes"; //$NON-NLS-1$
 
 }
@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.tasks.core.data;
+
+import java.util.List;
+
+/**
+ * A listener that receives the events of a batch update through a single notification.
+ * {@link #taskDataUpdated(TaskDataManagerEvent)} is only invoked for individual updates.
+ * 
+ * @see TaskDataManager#putUpdatedTaskData(java.util.Map, boolean, Object, org.eclipse.core.runtime.IProgressMonitor)
+ */
+public interface ITaskDataManagerBatchListener extends ITaskDataManagerListener {
+
+	public abstract void taskDataUpdated(List<TaskDataManagerEvent> events);
+
+}
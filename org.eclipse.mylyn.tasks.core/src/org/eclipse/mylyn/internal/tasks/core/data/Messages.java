@@ -79,6 +79,9 @@ public class Messages extends NLS {
 	public static String DefaultTaskSchema_Summary_Label;
 
 	public static String DefaultTaskSchema_URL_Label;
+
+	public static String TaskDataStore_Compaction_Job;
+
 	static {
 		// initialize resource bundle
 		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.tasks.core.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.commons.core.StatusHandler;
+import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
+import org.eclipse.mylyn.tasks.core.ITaskAttachment;
+
+/**
+ * A size bounded cache of attachment contents on disk. Each attachment is stored in a directory that is named after a
+ * hash of the repository url, the attachment id, the size and the creation date of the attachment. Attachments that are
+ * changed on the repository therefore map to a different entry. The file in the directory retains the name of the
+ * attachment so editors can be selected based on the file extension.
+ * <p>
+ * When the total size of the cached files exceeds the maximum size, the least recently used entries are removed. The
+ * most recently added entry is retained even if it exceeds the maximum size by itself. The access order is persisted
+ * through the modification time of files.
+ */
+public class TaskAttachmentCache {
+
+	private static class Entry {
+
+		private final File file;
+
+		private final long length;
+
+		public Entry(File file) {
+			this.file = file;
+			this.length = file.length();
+		}
+
+	}
+
+	private static final String TEMP_FILE_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	private static final String DEFAULT_FILE_NAME = "attachment"; //$NON-NLS-1$
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	/**
+	 * The number of bytes transferred between checks for cancellation.
+	 */
+	private static final long TRANSFER_SIZE = 1024 * 1024;
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	private final File directory;
+
+	private final long maxSize;
+
+	/**
+	 * Cached files by key, in access order. Initialized on first access.
+	 */
+	private LinkedHashMap<String, Entry> entries;
+
+	private long size;
+
+	public TaskAttachmentCache(File directory, long maxSize) {
+		Assert.isNotNull(directory);
+		Assert.isTrue(maxSize >= 0);
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the total size of cached files.
+	 */
+	public synchronized long getSize() {
+		initialize();
+		return size;
+	}
+
+	/**
+	 * Returns the cached contents of <code>attachment</code> or <code>null</code>, if the attachment is not cached.
+	 */
+	public synchronized File getFile(ITaskAttachment attachment) {
+		initialize();
+		String key = getKey(attachment);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (!entry.file.exists()) {
+			remove(key);
+			return null;
+		}
+		entry.file.setLastModified(System.currentTimeMillis());
+		return entry.file;
+	}
+
+	/**
+	 * Stores the contents of <code>attachment</code> read from <code>in</code> in a file named <code>fileName</code>
+	 * and returns the cached file. If the attachment has been cached by a concurrent call in the meantime, the
+	 * previously cached file is retained and returned instead. The stream is not closed.
+	 *
+	 * @param fileName
+	 *            a valid file name or <code>null</code> to use a default name
+	 * @throws OperationCanceledException
+	 *             if <code>monitor</code> is canceled
+	 */
+	public File put(ITaskAttachment attachment, String fileName, InputStream in, IProgressMonitor monitor)
+			throws IOException {
+		Assert.isNotNull(in);
+		if (monitor == null) {
+			monitor = new NullProgressMonitor();
+		}
+		if (fileName == null || fileName.length() == 0) {
+			fileName = DEFAULT_FILE_NAME;
+		}
+		String key = getKey(attachment);
+		synchronized (this) {
+			initialize();
+		}
+		// write to a temporary file first since reading from the repository may be slow
+		File tempFile = File.createTempFile(key, TEMP_FILE_EXTENSION, directory);
+		boolean written = false;
+		try {
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try {
+				transfer(in, out.getChannel(), monitor);
+			} finally {
+				out.close();
+			}
+			written = true;
+		} finally {
+			if (!written) {
+				tempFile.delete();
+			}
+		}
+
+		synchronized (this) {
+			Entry existing = entries.get(key);
+			if (existing != null && existing.file.exists()) {
+				// a concurrent download of the same attachment completed first, its file may already be in use
+				tempFile.delete();
+				existing.file.setLastModified(System.currentTimeMillis());
+				return existing.file;
+			}
+			remove(key);
+			File entryDirectory = new File(directory, key);
+			entryDirectory.mkdirs();
+			File file = new File(entryDirectory, fileName);
+			if (!tempFile.renameTo(file)) {
+				tempFile.delete();
+				throw new IOException("Failed to rename " + tempFile + " to " + file); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			Entry entry = new Entry(file);
+			entries.put(key, entry);
+			size += entry.length;
+			evict(key);
+			return file;
+		}
+	}
+
+	/**
+	 * Removes the cached contents of <code>attachment</code>.
+	 */
+	public synchronized void remove(ITaskAttachment attachment) {
+		initialize();
+		remove(getKey(attachment));
+	}
+
+	/**
+	 * Removes all cached files.
+	 */
+	public synchronized void clear() {
+		initialize();
+		for (String key : entries.keySet()) {
+			delete(new File(directory, key));
+		}
+		entries.clear();
+		size = 0;
+	}
+
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			size -= entry.length;
+		}
+		delete(new File(directory, key));
+	}
+
+	private void initialize() {
+		if (entries != null) {
+			return;
+		}
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		size = 0;
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		final Map<File, Long> lastModifiedByFile = new HashMap<File, Long>();
+		for (File file : files) {
+			File[] children = file.listFiles();
+			if (children != null && children.length == 1 && children[0].isFile()) {
+				lastModifiedByFile.put(children[0], children[0].lastModified());
+			} else {
+				// left over from an interrupted download
+				delete(file);
+			}
+		}
+		// least recently used files first
+		File[] cachedFiles = lastModifiedByFile.keySet().toArray(new File[lastModifiedByFile.size()]);
+		Arrays.sort(cachedFiles, new Comparator<File>() {
+			public int compare(File o1, File o2) {
+				long t1 = lastModifiedByFile.get(o1);
+				long t2 = lastModifiedByFile.get(o2);
+				return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+			}
+		});
+		for (File file : cachedFiles) {
+			Entry entry = new Entry(file);
+			entries.put(file.getParentFile().getName(), entry);
+			size += entry.length;
+		}
+		evict(null);
+	}
+
+	/**
+	 * Removes least recently used entries until the size of the cache does not exceed the maximum size.
+	 *
+	 * @param retainedKey
+	 *            the key of an entry that is not removed or <code>null</code>
+	 */
+	private void evict(String retainedKey) {
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (size > maxSize && it.hasNext()) {
+			Map.Entry<String, Entry> entry = it.next();
+			if (entry.getKey().equals(retainedKey)) {
+				continue;
+			}
+			it.remove();
+			size -= entry.getValue().length;
+			delete(new File(directory, entry.getKey()));
+		}
+	}
+
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				child.delete();
+			}
+		}
+		if (file.exists() && !file.delete()) {
+			StatusHandler.log(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN,
+					"Failed to remove cached attachment " + file)); //$NON-NLS-1$
+		}
+	}
+
+	String getKey(ITaskAttachment attachment) {
+		Assert.isNotNull(attachment);
+		String attachmentId = attachment.getTaskAttribute().getValue();
+		if (attachmentId.length() == 0 && attachment.getUrl() != null) {
+			attachmentId = attachment.getUrl();
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(attachment.getRepositoryUrl()).append('\n');
+		sb.append(attachmentId).append('\n');
+		sb.append(attachment.getLength()).append('\n');
+		sb.append((attachment.getCreationDate() != null) ? attachment.getCreationDate().getTime() : 0);
+		return hash(sb.toString());
+	}
+
+	private static String hash(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+			char[] chars = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				chars[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+				chars[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+			}
+			return new String(chars);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void transfer(InputStream in, FileChannel target, IProgressMonitor monitor) throws IOException {
+		if (in instanceof FileInputStream) {
+			FileChannel source = ((FileInputStream) in).getChannel();
+			long position = source.position();
+			long count = source.size() - position;
+			long transferred = 0;
+			while (transferred < count) {
+				checkCanceled(monitor);
+				transferred += source.transferTo(position + transferred, Math.min(TRANSFER_SIZE, count - transferred),
+						target);
+			}
+			source.position(position + transferred);
+		} else {
+			// reads from a blocking stream only return no bytes at the end of the stream
+			ReadableByteChannel source = Channels.newChannel(in);
+			long position = 0;
+			long count;
+			do {
+				checkCanceled(monitor);
+				count = target.transferFrom(source, position, TRANSFER_SIZE);
+				position += count;
+			} while (count > 0);
+		}
+	}
+
+	/**
+	 * Copies the contents of <code>file</code> to <code>out</code>. If <code>out</code> writes to a file, the contents
+	 * are transferred by the file system without copying them through the Java heap.
+	 *
+	 * @throws OperationCanceledException
+	 *             if <code>monitor</code> is canceled
+	 */
+	public static void copy(File file, OutputStream out, IProgressMonitor monitor) throws IOException {
+		if (monitor == null) {
+			monitor = new NullProgressMonitor();
+		}
+		FileInputStream in = new FileInputStream(file);
+		try {
+			if (out instanceof FileOutputStream) {
+				FileChannel source = in.getChannel();
+				FileChannel target = ((FileOutputStream) out).getChannel();
+				long count = source.size();
+				long transferred = 0;
+				while (transferred < count) {
+					checkCanceled(monitor);
+					transferred += source.transferTo(transferred, Math.min(TRANSFER_SIZE, count - transferred), target);
+				}
+			} else {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int count;
+				while ((count = in.read(buffer)) != -1) {
+					checkCanceled(monitor);
+					out.write(buffer, 0, count);
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void checkCanceled(IProgressMonitor monitor) {
+		if (monitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -46,6 +46,10 @@ public class TaskDataDiff implements ITaskDataDiff {
 
 	private final TaskRepository repository;
 
+	private TaskDataFingerprint newFingerprint;
+
+	private TaskDataFingerprint oldFingerprint;
+
 	public TaskDataDiff(RepositoryModel repositoryModel, TaskData newTaskData, TaskData oldTaskData) {
 		Assert.isNotNull(repositoryModel);
 		Assert.isNotNull(newTaskData);
@@ -86,6 +90,15 @@ public class TaskDataDiff implements ITaskDataDiff {
 	}
 
 	private void parse() {
+		if (oldTaskData != null) {
+			newFingerprint = TaskDataFingerprint.compute(newTaskData);
+			oldFingerprint = TaskDataFingerprint.compute(oldTaskData);
+			if (newFingerprint.equals(oldFingerprint)) {
+				// identical task data
+				return;
+			}
+		}
+
 		for (String attributeId : ATTRIBUTES_IDS) {
 			TaskAttribute newAttribute = newTaskData.getRoot().getMappedAttribute(attributeId);
 			TaskAttribute oldAttribute = null;
@@ -118,6 +131,9 @@ public class TaskDataDiff implements ITaskDataDiff {
 	}
 
 	private void addChangedAttribute(TaskAttribute oldAttribute, TaskAttribute newAttribute, boolean ignoreKind) {
+		if (isUnchanged(oldAttribute, newAttribute)) {
+			return;
+		}
 		TaskAttribute attribute;
 		if (newAttribute != null) {
 			attribute = newAttribute;
@@ -137,6 +153,23 @@ public class TaskDataDiff implements ITaskDataDiff {
 		}
 	}
 
+	/**
+	 * Returns true, if <code>oldAttribute</code> and <code>newAttribute</code> are children of the root attribute that
+	 * have identical fingerprints and therefore no changes.
+	 */
+	private boolean isUnchanged(TaskAttribute oldAttribute, TaskAttribute newAttribute) {
+		if (oldAttribute == null || newAttribute == null || newFingerprint == null) {
+			return false;
+		}
+		if (oldAttribute.getParentAttribute() != oldTaskData.getRoot()
+				|| newAttribute.getParentAttribute() != newTaskData.getRoot()
+				|| !oldAttribute.getId().equals(newAttribute.getId())) {
+			return false;
+		}
+		Long value = newFingerprint.getAttributeValue(newAttribute.getId());
+		return value != null && value.equals(oldFingerprint.getAttributeValue(oldAttribute.getId()));
+	}
+
 	private void addChangedComment(TaskAttribute oldAttribute, TaskAttribute newAttribute) {
 		if (oldAttribute == null) {
 			ITaskComment comment = repositoryModel.createTaskComment(newAttribute);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -33,9 +33,11 @@ import org.eclipse.mylyn.tasks.core.TaskRepository;
 import org.eclipse.mylyn.tasks.core.data.AbstractTaskDataHandler;
 import org.eclipse.mylyn.tasks.core.data.ITaskDataWorkingCopy;
 import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
 
 /**
@@ -127,6 +129,35 @@ public class TaskDataExternalizer {
 
 	}
 
+	private static class FingerprintFoundException extends SAXException {
+
+		private static final long serialVersionUID = 1L;
+
+		public FingerprintFoundException() {
+			super("Fingerprint found"); //$NON-NLS-1$
+		}
+
+	}
+
+	/**
+	 * Reads the fingerprint attribute of the first task data element and aborts parsing.
+	 */
+	private static class FingerprintHandler extends DefaultHandler {
+
+		private String fingerprint;
+
+		@Override
+		public void startElement(String uri, String localName, String name, Attributes attributes)
+				throws SAXException {
+			if (ITaskDataConstants.ELEMENT_NEW_DATA.equals(name) || ITaskDataConstants.ELEMENT_OLD_DATA.equals(name)
+					|| ITaskDataConstants.ELEMENT_EDITS_DATA.equals(name)) {
+				fingerprint = attributes.getValue(ITaskDataConstants.ATTRIBUTE_FINGERPRINT);
+				throw new FingerprintFoundException();
+			}
+		}
+
+	}
+
 	private final IRepositoryManager taskRepositoryManager;
 
 	public TaskDataExternalizer(IRepositoryManager taskRepositoryManager) {
@@ -153,27 +184,43 @@ public class TaskDataExternalizer {
 
 		final AbstractTaskDataHandler taskDataHandler = connector.getTaskDataHandler();
 		if (taskDataHandler != null) {
-			migrate(taskDataState.getLastReadData(), taskRepository, taskDataHandler);
-			migrate(taskDataState.getRepositoryData(), taskRepository, taskDataHandler);
+			if (migrate(taskDataState.getLastReadData(), taskRepository, taskDataHandler)) {
+				taskDataState.setLastReadDataFingerprint(null);
+			}
+			if (migrate(taskDataState.getRepositoryData(), taskRepository, taskDataHandler)) {
+				taskDataState.setRepositoryDataFingerprint(null);
+			}
 			migrate(taskDataState.getEditsData(), taskRepository, taskDataHandler);
 		}
 	}
 
-	private void migrate(final TaskData taskData, final TaskRepository taskRepository,
+	/**
+	 * Returns true, if the version of <code>taskData</code> was changed by the migration which invalidates the stored
+	 * fingerprint.
+	 */
+	private boolean migrate(final TaskData taskData, final TaskRepository taskRepository,
+			final AbstractTaskDataHandler taskDataHandler) {
+		if (taskData == null) {
+			return false;
+		}
+		String version = taskData.getVersion();
+		migrateTaskData(taskData, taskRepository, taskDataHandler);
+		return (version != null) ? !version.equals(taskData.getVersion()) : taskData.getVersion() != null;
+	}
+
+	private void migrateTaskData(final TaskData taskData, final TaskRepository taskRepository,
 			final AbstractTaskDataHandler taskDataHandler) {
-		if (taskData != null) {
-			SafeRunner.run(new ISafeRunnable() {
+		SafeRunner.run(new ISafeRunnable() {
 
-				public void handleException(Throwable exception) {
-					// ignore
-				}
+			public void handleException(Throwable exception) {
+				// ignore
+			}
 
-				public void run() throws Exception {
-					taskDataHandler.migrateTaskData(taskRepository, taskData);
-				}
+			public void run() throws Exception {
+				taskDataHandler.migrateTaskData(taskRepository, taskData);
+			}
 
-			});
-		}
+		});
 	}
 
 	public TaskDataState readState(InputStream in) throws IOException, SAXException {
@@ -188,6 +235,24 @@ public class TaskDataExternalizer {
 		return taskDataState;
 	}
 
+	/**
+	 * Returns the fingerprint of the first task data stored in <code>in</code> without parsing the task data.
+	 * 
+	 * @return the fingerprint or <code>null</code>, if the task data does not have a fingerprint
+	 * @see TaskDataFingerprint
+	 */
+	public String readFingerprint(InputStream in) throws IOException, SAXException {
+		XMLReader parser = XMLReaderFactory.createXMLReader();
+		FingerprintHandler handler = new FingerprintHandler();
+		parser.setContentHandler(handler);
+		try {
+			parser.parse(new InputSource(in));
+		} catch (FingerprintFoundException e) {
+			// parsing is aborted at the first task data element
+		}
+		return handler.fingerprint;
+	}
+
 	public void writeState(OutputStream out, ITaskDataWorkingCopy state) throws IOException {
 		try {
 			SAXTransformerFactory transformerFactory = (SAXTransformerFactory) TransformerFactory.newInstance();
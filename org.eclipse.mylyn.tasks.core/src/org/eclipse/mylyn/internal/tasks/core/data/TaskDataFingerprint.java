@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.tasks.core.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+
+/**
+ * A structural hash of the content of {@link TaskData}. The fingerprint covers the version and the ids, values,
+ * options and meta data of all attributes. Equal fingerprints indicate that task data is identical, different
+ * fingerprints do not necessarily indicate a change since the order of attributes is taken into account.
+ * <p>
+ * In addition to the fingerprint of the complete task data the fingerprints of the attributes directly below the
+ * root attribute are retained to determine which attributes have changed.
+ */
+public class TaskDataFingerprint {
+
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long PRIME = 0x100000001b3L;
+
+	/**
+	 * Computes the fingerprint of <code>taskData</code>.
+	 */
+	public static TaskDataFingerprint compute(TaskData taskData) {
+		Assert.isNotNull(taskData);
+		Map<String, Long> attributeValues = new HashMap<String, Long>();
+		long hash = hash(OFFSET_BASIS, taskData.getVersion());
+		hash = hash(hash, taskData.getRoot(), attributeValues);
+		return new TaskDataFingerprint(hash, attributeValues);
+	}
+
+	/**
+	 * Computes the fingerprint of <code>attribute</code> and its descendants.
+	 */
+	public static long compute(TaskAttribute attribute) {
+		Assert.isNotNull(attribute);
+		return hash(OFFSET_BASIS, attribute, null);
+	}
+
+	private static long hash(long hash, TaskAttribute attribute, Map<String, Long> childValues) {
+		hash = hash(hash, attribute.getId());
+		List<String> values = attribute.getValues();
+		hash = hash(hash, values.size());
+		for (String value : values) {
+			hash = hash(hash, value);
+		}
+		hash = hash(hash, attribute.getOptions());
+		hash = hash(hash, attribute.getMetaData().getValues());
+		Map<String, TaskAttribute> children = attribute.getAttributes();
+		hash = hash(hash, children.size());
+		for (TaskAttribute child : children.values()) {
+			long childHash = hash(OFFSET_BASIS, child, null);
+			if (childValues != null) {
+				childValues.put(child.getId(), childHash);
+			}
+			hash = hash(hash, childHash);
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, Map<String, String> map) {
+		hash = hash(hash, map.size());
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			hash = hash(hash, entry.getKey());
+			hash = hash(hash, entry.getValue());
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, String value) {
+		if (value == null) {
+			return hash(hash, -1L);
+		}
+		// include the length to distinguish adjacent values, e.g. "ab", "c" from "a", "bc"
+		hash = hash(hash, value.length());
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * PRIME;
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, long value) {
+		for (int i = 0; i < 8; i++) {
+			hash = (hash ^ (value & 0xff)) * PRIME;
+			value >>>= 8;
+		}
+		return hash;
+	}
+
+	private final long value;
+
+	private final Map<String, Long> attributeValues;
+
+	private TaskDataFingerprint(long value, Map<String, Long> attributeValues) {
+		this.value = value;
+		this.attributeValues = attributeValues;
+	}
+
+	public long getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the fingerprint of the attribute with <code>attributeId</code> directly below the root attribute.
+	 * 
+	 * @return the fingerprint or <code>null</code>, if the attribute does not exist
+	 */
+	public Long getAttributeValue(String attributeId) {
+		return attributeValues.get(attributeId);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		return value == ((TaskDataFingerprint) obj).value;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (value ^ (value >>> 32));
+	}
+
+	/**
+	 * Returns the fingerprint as a hexadecimal string as persisted by {@link TaskDataStateWriter}.
+	 */
+	@Override
+	public String toString() {
+		return Long.toHexString(value);
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,8 +14,14 @@ package org.eclipse.mylyn.internal.tasks.core.data;
 import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.core.runtime.Assert;
@@ -23,6 +29,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.mylyn.commons.core.CoreUtil;
@@ -35,6 +42,8 @@ import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
 import org.eclipse.mylyn.internal.tasks.core.TaskActivityManager;
 import org.eclipse.mylyn.internal.tasks.core.TaskList;
 import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationMetrics;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationMetrics.RepositoryMetrics;
 import org.eclipse.mylyn.tasks.core.AbstractRepositoryConnector;
 import org.eclipse.mylyn.tasks.core.IRepositoryManager;
 import org.eclipse.mylyn.tasks.core.ITask;
@@ -77,6 +86,8 @@ public class TaskDataManager implements ITaskDataManager {
 
 	private final SynchronizationManger synchronizationManger;
 
+	private final SynchronizationMetrics metrics = new SynchronizationMetrics();
+
 	public TaskDataManager(TaskDataStore taskDataStore, IRepositoryManager repositoryManager, TaskList taskList,
 			TaskActivityManager taskActivityManager, SynchronizationManger synchronizationManger) {
 		this.taskDataStore = taskDataStore;
@@ -94,6 +105,13 @@ public class TaskDataManager implements ITaskDataManager {
 		listeners.remove(listener);
 	}
 
+	/**
+	 * Returns the metrics of updates to task data and of synchronizations that update task data through this manager.
+	 */
+	public SynchronizationMetrics getMetrics() {
+		return metrics;
+	}
+
 	public ITaskDataWorkingCopy createWorkingCopy(final ITask task, final TaskData taskData) {
 		Assert.isNotNull(task);
 		final TaskDataState state = new TaskDataState(taskData.getConnectorKind(), taskData.getRepositoryUrl(),
@@ -116,7 +134,7 @@ public class TaskDataManager implements ITaskDataManager {
 		final String kind = task.getConnectorKind();
 		final TaskDataState[] result = new TaskDataState[1];
 		final boolean[] changed = new boolean[1];
-		taskList.run(new ITaskListRunnable() {
+		taskList.runForRepository(task.getRepositoryUrl(), new ITaskListRunnable() {
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				final File file = getMigratedFile(task, kind);
 				final TaskDataState state = taskDataStore.getTaskDataState(file);
@@ -130,18 +148,22 @@ public class TaskDataManager implements ITaskDataManager {
 				state.init(TaskDataManager.this, task);
 				state.revert();
 				if (markRead) {
-					switch (task.getSynchronizationState()) {
-					case INCOMING:
-					case INCOMING_NEW:
-						task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
-						changed[0] = true;
-						break;
-					case CONFLICT:
-						task.setSynchronizationState(SynchronizationState.OUTGOING);
-						changed[0] = true;
-						break;
-					}
-					task.setMarkReadPending(true);
+					taskList.run(new ITaskListRunnable() {
+						public void execute(IProgressMonitor monitor) throws CoreException {
+							switch (task.getSynchronizationState()) {
+							case INCOMING:
+							case INCOMING_NEW:
+								task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
+								changed[0] = true;
+								break;
+							case CONFLICT:
+								task.setSynchronizationState(SynchronizationState.OUTGOING);
+								changed[0] = true;
+								break;
+							}
+							task.setMarkReadPending(true);
+						}
+					}, monitor, true);
 				}
 				result[0] = state;
 			}
@@ -157,17 +179,21 @@ public class TaskDataManager implements ITaskDataManager {
 		Assert.isNotNull(task);
 		final String kind = task.getConnectorKind();
 		final boolean[] changed = new boolean[1];
-		taskList.run(new ITaskListRunnable() {
+		taskList.runForRepository(task.getRepositoryUrl(), new ITaskListRunnable() {
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				final File file = getFile(task, kind);
 				taskDataStore.putTaskData(ensurePathExists(file), state);
-				switch (task.getSynchronizationState()) {
-				case SYNCHRONIZED:
-					task.setSynchronizationState(SynchronizationState.OUTGOING);
-					changed[0] = true;
-					break;
-				}
-				taskList.addTask(task);
+				taskList.run(new ITaskListRunnable() {
+					public void execute(IProgressMonitor monitor) throws CoreException {
+						switch (task.getSynchronizationState()) {
+						case SYNCHRONIZED:
+							task.setSynchronizationState(SynchronizationState.OUTGOING);
+							changed[0] = true;
+							break;
+						}
+						taskList.addTask(task);
+					}
+				});
 			}
 		});
 		if (changed[0]) {
@@ -186,87 +212,204 @@ public class TaskDataManager implements ITaskDataManager {
 
 	public void putUpdatedTaskData(final ITask itask, final TaskData taskData, final boolean user, Object token,
 			IProgressMonitor monitor) throws CoreException {
-		final AbstractTask task = (AbstractTask) itask;
-		Assert.isNotNull(task);
+		Assert.isNotNull(itask);
 		Assert.isNotNull(taskData);
-		final AbstractRepositoryConnector connector = repositoryManager.getRepositoryConnector(task.getConnectorKind());
-		final TaskRepository repository = repositoryManager.getRepository(task.getConnectorKind(),
-				task.getRepositoryUrl());
-		final boolean taskDataChanged = connector.hasTaskChanged(repository, task, taskData);
-		final TaskDataManagerEvent event = new TaskDataManagerEvent(this, itask, taskData, token);
-		event.setTaskDataChanged(taskDataChanged);
+		putUpdatedTaskData(Collections.singletonMap(itask, taskData), user, token, monitor);
+	}
+
+	/**
+	 * Updates the task data of several tasks at once. The task data of each repository is written while holding the
+	 * repository lock once and all tasks are updated in a single task list operation. Listeners are notified once for
+	 * the whole batch.
+	 * <p>
+	 * Task data that fails to save does not prevent other tasks from being updated. The failures are reported through
+	 * a single exception after all other tasks have been processed.
+	 * 
+	 * @see #putUpdatedTaskData(ITask, TaskData, boolean, Object, IProgressMonitor)
+	 */
+	public void putUpdatedTaskData(Map<? extends ITask, TaskData> taskDataByTask, boolean user, Object token,
+			IProgressMonitor monitor) throws CoreException {
+		Object data = null;
 		IDelegatingProgressMonitor delegatingMonitor = DelegatingProgressMonitor.getMonitorFrom(monitor);
 		if (delegatingMonitor != null) {
-			event.setData(delegatingMonitor.getData());
+			data = delegatingMonitor.getData();
 		}
-		final boolean[] synchronizationStateChanged = new boolean[1];
-		if (taskDataChanged || user) {
-			taskList.run(new ITaskListRunnable() {
-				public void execute(IProgressMonitor monitor) throws CoreException {
-					TaskDataState state = null;
-					if (!taskData.isPartial()) {
-						File file = getMigratedFile(task, task.getConnectorKind());
-						state = taskDataStore.putTaskData(ensurePathExists(file), taskData, task.isMarkReadPending(),
-								user);
-						task.setMarkReadPending(false);
-						event.setTaskDataUpdated(true);
+		Map<String, List<TaskDataUpdate>> updatesByRepositoryUrl = new LinkedHashMap<String, List<TaskDataUpdate>>();
+		for (Map.Entry<? extends ITask, TaskData> entry : taskDataByTask.entrySet()) {
+			AbstractTask task = (AbstractTask) entry.getKey();
+			Assert.isNotNull(task);
+			Assert.isNotNull(entry.getValue());
+			TaskDataUpdate update = new TaskDataUpdate(task, entry.getValue(), token);
+			update.event.setData(data);
+			List<TaskDataUpdate> updates = updatesByRepositoryUrl.get(task.getRepositoryUrl());
+			if (updates == null) {
+				updates = new ArrayList<TaskDataUpdate>();
+				updatesByRepositoryUrl.put(task.getRepositoryUrl(), updates);
+			}
+			updates.add(update);
+		}
+
+		MultiStatus status = new MultiStatus(ITasksCoreConstants.ID_PLUGIN, 0, "Failed to save task data", null); //$NON-NLS-1$
+		for (Map.Entry<String, List<TaskDataUpdate>> entry : updatesByRepositoryUrl.entrySet()) {
+			putUpdatedTaskData(entry.getKey(), entry.getValue(), user, status, monitor);
+		}
+
+		Set<ITask> changedTasks = new LinkedHashSet<ITask>();
+		Set<ITask> synchronizationStateChangedTasks = new LinkedHashSet<ITask>();
+		List<TaskDataManagerEvent> events = new ArrayList<TaskDataManagerEvent>(taskDataByTask.size());
+		for (List<TaskDataUpdate> updates : updatesByRepositoryUrl.values()) {
+			for (TaskDataUpdate update : updates) {
+				if (update.failed) {
+					continue;
+				}
+				TaskDataManagerEvent event = update.event;
+				if (event.getTaskChanged() || event.getTaskDataChanged()) {
+					changedTasks.add(update.task);
+					events.add(event);
+				} else {
+					if (update.synchronizationStateChanged) {
+						synchronizationStateChangedTasks.add(update.task);
+					}
+					if (event.getTaskDataUpdated()) {
+						events.add(event);
 					}
+				}
+			}
+		}
+		long startTime = System.nanoTime();
+		if (!changedTasks.isEmpty()) {
+			taskList.notifyElementsChanged(changedTasks);
+		}
+		if (!synchronizationStateChangedTasks.isEmpty()) {
+			taskList.notifySynchronizationStateChanged(synchronizationStateChangedTasks);
+		}
+		if (!events.isEmpty()) {
+			fireTaskDataUpdated(events);
+		}
+		if (updatesByRepositoryUrl.size() == 1) {
+			// batches from synchronizations contain tasks of a single repository
+			metrics.getRepositoryMetrics(updatesByRepositoryUrl.keySet().iterator().next()).addTimeSince(
+					SynchronizationMetrics.PHASE_NOTIFY, startTime);
+		}
 
-					boolean taskChanged = updateTaskFromTaskData(taskData, task, connector, repository);
-					event.setTaskChanged(taskChanged);
+		if (!status.isOK()) {
+			throw new CoreException((status.getChildren().length == 1) ? status.getChildren()[0] : status);
+		}
+	}
 
-					if (taskDataChanged) {
-						String suppressIncoming = null;
-						if (synchronizationManger.hasParticipants(task.getConnectorKind())) {
-							// determine whether to show an incoming
-							if (state == null) {
-								File file = getMigratedFile(task, task.getConnectorKind());
-								state = taskDataStore.getTaskDataState(ensurePathExists(file));
+	private void putUpdatedTaskData(String repositoryUrl, final List<TaskDataUpdate> updates, final boolean user,
+			final MultiStatus status, IProgressMonitor monitor) throws CoreException {
+		final RepositoryMetrics repositoryMetrics = metrics.getRepositoryMetrics(repositoryUrl);
+		boolean write = false;
+		for (TaskDataUpdate update : updates) {
+			write |= update.event.getTaskDataChanged() || user;
+		}
+		if (write) {
+			// task data is written while only holding the repository lock to let other repositories proceed, the
+			// task list lock is held once for updating all tasks
+			final long startTime = System.nanoTime();
+			taskList.runForRepository(repositoryUrl, new ITaskListRunnable() {
+				public void execute(IProgressMonitor monitor) throws CoreException {
+					repositoryMetrics.addLockWaitSince(SynchronizationMetrics.LOCK_REPOSITORY, startTime);
+					for (TaskDataUpdate update : updates) {
+						if (update.event.getTaskDataChanged() || user) {
+							try {
+								writeTaskData(update, user, repositoryMetrics, monitor);
+							} catch (CoreException e) {
+								update.failed = true;
+								status.add(e.getStatus());
 							}
-							TaskData lastReadData = (state != null) ? state.getLastReadData() : null;
-							TaskDataDiff diff = synchronizationManger.createDiff(taskData, lastReadData, monitor);
-							suppressIncoming = Boolean.toString(!diff.hasChanged());
 						}
+					}
+					updateTasks(updates, user, repositoryMetrics, monitor);
+				}
+			}, monitor, false);
+		} else {
+			updateTasks(updates, user, repositoryMetrics, null);
+		}
+	}
 
-						switch (task.getSynchronizationState()) {
-						case OUTGOING:
-							task.setSynchronizationState(SynchronizationState.CONFLICT);
-							break;
-						case SYNCHRONIZED:
-							task.setSynchronizationState(SynchronizationState.INCOMING);
-							break;
-						}
+	private void writeTaskData(TaskDataUpdate update, boolean user, RepositoryMetrics repositoryMetrics,
+			IProgressMonitor monitor) throws CoreException {
+		AbstractTask task = update.task;
+		TaskData taskData = update.taskData;
+		TaskDataState state = null;
+		if (!taskData.isPartial()) {
+			File file = getMigratedFile(task, task.getConnectorKind());
+			long startTime = System.nanoTime();
+			state = taskDataStore.putTaskData(ensurePathExists(file), taskData, task.isMarkReadPending(), user);
+			repositoryMetrics.addTimeSince(SynchronizationMetrics.PHASE_WRITE_TASK_DATA, startTime);
+			if (state == null) {
+				// identical to the stored task data, the task is updated but listeners are not notified
+				update.event.setTaskDataChanged(false);
+				update.unchanged = true;
+				repositoryMetrics.increment(SynchronizationMetrics.COUNTER_TASKS_UNCHANGED, 1);
+				return;
+			}
+			update.event.setTaskDataUpdated(true);
+		}
+
+		if (update.event.getTaskDataChanged() && synchronizationManger.hasParticipants(task.getConnectorKind())) {
+			// determine whether to show an incoming
+			if (state != null && state.getLastReadDataFingerprint() != null
+					&& state.getLastReadDataFingerprint().equals(state.getRepositoryDataFingerprint())) {
+				// the last read data is identical, no need to read it
+				update.suppressIncoming = Boolean.toString(true);
+			} else {
+				long startTime = System.nanoTime();
+				File file = getMigratedFile(task, task.getConnectorKind());
+				TaskData lastReadData = taskDataStore.getLastReadData(ensurePathExists(file));
+				TaskDataDiff diff = synchronizationManger.createDiff(taskData, lastReadData, monitor);
+				update.suppressIncoming = Boolean.toString(!diff.hasChanged());
+				repositoryMetrics.addTimeSince(SynchronizationMetrics.PHASE_DIFF, startTime);
+			}
+		}
+	}
 
-						// if an incoming was previously suppressed it may need to show now
-						task.setAttribute(ITasksCoreConstants.ATTRIBUTE_TASK_SUPPRESS_INCOMING, suppressIncoming);
+	private void updateTasks(final List<TaskDataUpdate> updates, final boolean user,
+			final RepositoryMetrics repositoryMetrics, IProgressMonitor monitor) throws CoreException {
+		final long startTime = System.nanoTime();
+		taskList.run(new ITaskListRunnable() {
+			public void execute(IProgressMonitor monitor) throws CoreException {
+				repositoryMetrics.addLockWaitSince(SynchronizationMetrics.LOCK_TASK_LIST, startTime);
+				for (TaskDataUpdate update : updates) {
+					if (update.failed) {
+						continue;
 					}
-					if (task.isSynchronizing()) {
-						task.setSynchronizing(false);
-						synchronizationStateChanged[0] = true;
+					AbstractTask task = update.task;
+					boolean taskDataChanged = update.event.getTaskDataChanged();
+					if (taskDataChanged || user || update.unchanged) {
+						if (!update.taskData.isPartial()) {
+							task.setMarkReadPending(false);
+						}
+
+						boolean taskChanged = updateTaskFromTaskData(update.taskData, task, update.connector,
+								update.repository);
+						update.event.setTaskChanged(taskChanged);
+
+						if (taskDataChanged) {
+							repositoryMetrics.increment(SynchronizationMetrics.COUNTER_TASKS_CHANGED, 1);
+							switch (task.getSynchronizationState()) {
+							case OUTGOING:
+								task.setSynchronizationState(SynchronizationState.CONFLICT);
+								break;
+							case SYNCHRONIZED:
+								task.setSynchronizationState(SynchronizationState.INCOMING);
+								break;
+							}
+
+							// if an incoming was previously suppressed it may need to show now
+							task.setAttribute(ITasksCoreConstants.ATTRIBUTE_TASK_SUPPRESS_INCOMING,
+									update.suppressIncoming);
+						}
 					}
-				}
-			});
-		} else {
-			taskList.run(new ITaskListRunnable() {
-				public void execute(IProgressMonitor monitor) throws CoreException {
 					if (task.isSynchronizing()) {
 						task.setSynchronizing(false);
-						synchronizationStateChanged[0] = true;
+						update.synchronizationStateChanged = true;
 					}
 				}
-			});
-		}
-		if (event.getTaskChanged() || event.getTaskDataChanged()) {
-			taskList.notifyElementChanged(task);
-			fireTaskDataUpdated(event);
-		} else {
-			if (synchronizationStateChanged[0]) {
-				taskList.notifySynchronizationStateChanged(task);
-			}
-			if (event.getTaskDataUpdated()) {
-				fireTaskDataUpdated(event);
 			}
-		}
+		}, monitor);
 	}
 
 	private boolean updateTaskFromTaskData(final TaskData taskData, final AbstractTask task,
@@ -294,9 +437,9 @@ public class TaskDataManager implements ITaskDataManager {
 		Assert.isNotNull(task);
 		Assert.isNotNull(kind);
 		File file = getFile(task, kind);
-		if (!file.exists()) {
+		if (!taskDataStore.hasTaskData(file)) {
 			File oldFile = getFile10(task, kind);
-			if (oldFile.exists()) {
+			if (taskDataStore.hasTaskData(oldFile)) {
 				TaskDataState state = taskDataStore.getTaskDataState(oldFile);
 				// save migrated task data right away
 				taskDataStore.putTaskData(ensurePathExists(file), state);
@@ -310,22 +453,26 @@ public class TaskDataManager implements ITaskDataManager {
 		Assert.isNotNull(task);
 		final String kind = task.getConnectorKind();
 		final TaskDataManagerEvent event = new TaskDataManagerEvent(this, itask);
-		taskList.run(new ITaskListRunnable() {
+		taskList.runForRepository(task.getRepositoryUrl(), new ITaskListRunnable() {
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				File dataFile = getFile(task, kind);
-				if (dataFile.exists()) {
+				if (taskDataStore.hasTaskData(dataFile)) {
 					taskDataStore.discardEdits(dataFile);
 				}
-				switch (task.getSynchronizationState()) {
-				case OUTGOING:
-					task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
-					event.setTaskChanged(true);
-					break;
-				case CONFLICT:
-					task.setSynchronizationState(SynchronizationState.INCOMING);
-					event.setTaskChanged(true);
-					break;
-				}
+				taskList.run(new ITaskListRunnable() {
+					public void execute(IProgressMonitor monitor) throws CoreException {
+						switch (task.getSynchronizationState()) {
+						case OUTGOING:
+							task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
+							event.setTaskChanged(true);
+							break;
+						case CONFLICT:
+							task.setSynchronizationState(SynchronizationState.INCOMING);
+							event.setTaskChanged(true);
+							break;
+						}
+					}
+				});
 			}
 		});
 		if (event.getTaskChanged()) {
@@ -336,7 +483,7 @@ public class TaskDataManager implements ITaskDataManager {
 
 	private File findFile(ITask task, String kind) {
 		File file = getFile(task, kind);
-		if (file.exists()) {
+		if (taskDataStore.hasTaskData(file)) {
 			return file;
 		}
 		return getFile10(task, kind);
@@ -404,7 +551,7 @@ public class TaskDataManager implements ITaskDataManager {
 	public boolean hasTaskData(ITask task) {
 		Assert.isNotNull(task);
 		final String kind = task.getConnectorKind();
-		return findFile(task, kind).exists();
+		return taskDataStore.hasTaskData(findFile(task, kind));
 	}
 
 	public void putSubmittedTaskData(final ITask itask, final TaskData taskData, IDelegatingProgressMonitor monitor)
@@ -418,35 +565,52 @@ public class TaskDataManager implements ITaskDataManager {
 		final TaskDataManagerEvent event = new TaskDataManagerEvent(this, itask, taskData, null);
 		event.setTaskDataChanged(true);
 		event.setData(((DelegatingProgressMonitor) monitor).getData());
-		taskList.run(new ITaskListRunnable() {
+		taskList.runForRepository(task.getRepositoryUrl(), new ITaskListRunnable() {
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				if (!taskData.isPartial()) {
 					File file = getMigratedFile(task, task.getConnectorKind());
 					taskDataStore.setTaskData(ensurePathExists(file), taskData);
-					task.setMarkReadPending(false);
 					event.setTaskDataUpdated(true);
 				}
 
-				boolean taskChanged = updateTaskFromTaskData(taskData, task, connector, repository);
-				event.setTaskChanged(taskChanged);
+				taskList.run(new ITaskListRunnable() {
+					public void execute(IProgressMonitor monitor) throws CoreException {
+						if (!taskData.isPartial()) {
+							task.setMarkReadPending(false);
+						}
+
+						boolean taskChanged = updateTaskFromTaskData(taskData, task, connector, repository);
+						event.setTaskChanged(taskChanged);
 
-				task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
-				task.setSynchronizing(false);
+						task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
+						task.setSynchronizing(false);
+					}
+				});
 			}
 		});
 		taskList.notifyElementChanged(task);
 		fireTaskDataUpdated(event);
 	}
 
+	/**
+	 * Deletes the task data of <code>itask</code>. Acquires the repository lock of the task and must therefore not be
+	 * invoked while holding the task list lock.
+	 * 
+	 * @see TaskList#runForRepository(String, ITaskListRunnable)
+	 */
 	public void deleteTaskData(final ITask itask) throws CoreException {
 		Assert.isTrue(itask instanceof AbstractTask);
 		final AbstractTask task = (AbstractTask) itask;
-		taskList.run(new ITaskListRunnable() {
+		taskList.runForRepository(task.getRepositoryUrl(), new ITaskListRunnable() {
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				File file = getFile(task, task.getConnectorKind());
-				if (file.exists()) {
+				if (taskDataStore.hasTaskData(file)) {
 					taskDataStore.deleteTaskData(file);
-					task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
+					taskList.run(new ITaskListRunnable() {
+						public void execute(IProgressMonitor monitor) throws CoreException {
+							task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
+						}
+					});
 				}
 			}
 		});
@@ -468,31 +632,36 @@ public class TaskDataManager implements ITaskDataManager {
 		Assert.isNotNull(task);
 		final boolean changed[] = new boolean[1];
 		try {
-			taskList.run(new ITaskListRunnable() {
+			// the pending mark is consumed by putUpdatedTaskData() while holding the repository lock
+			taskList.runForRepository(task.getRepositoryUrl(), new ITaskListRunnable() {
 				public void execute(IProgressMonitor monitor) throws CoreException {
-					if (read) {
-						switch (task.getSynchronizationState()) {
-						case INCOMING:
-						case INCOMING_NEW:
-							task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
-							task.setMarkReadPending(true);
-							changed[0] = true;
-							break;
-						case CONFLICT:
-							task.setSynchronizationState(SynchronizationState.OUTGOING);
-							task.setMarkReadPending(true);
-							changed[0] = true;
-							break;
-						}
-					} else {
-						switch (task.getSynchronizationState()) {
-						case SYNCHRONIZED:
-							task.setSynchronizationState(SynchronizationState.INCOMING);
-							task.setMarkReadPending(false);
-							changed[0] = true;
-							break;
+					taskList.run(new ITaskListRunnable() {
+						public void execute(IProgressMonitor monitor) throws CoreException {
+							if (read) {
+								switch (task.getSynchronizationState()) {
+								case INCOMING:
+								case INCOMING_NEW:
+									task.setSynchronizationState(SynchronizationState.SYNCHRONIZED);
+									task.setMarkReadPending(true);
+									changed[0] = true;
+									break;
+								case CONFLICT:
+									task.setSynchronizationState(SynchronizationState.OUTGOING);
+									task.setMarkReadPending(true);
+									changed[0] = true;
+									break;
+								}
+							} else {
+								switch (task.getSynchronizationState()) {
+								case SYNCHRONIZED:
+									task.setSynchronizationState(SynchronizationState.INCOMING);
+									task.setMarkReadPending(false);
+									changed[0] = true;
+									break;
+								}
+							}
 						}
-					}
+					});
 				}
 			});
 		} catch (CoreException e) {
@@ -510,21 +679,25 @@ public class TaskDataManager implements ITaskDataManager {
 		final String kind = task.getConnectorKind();
 		Assert.isNotNull(editsData);
 		final boolean[] changed = new boolean[1];
-		taskList.run(new ITaskListRunnable() {
+		taskList.runForRepository(task.getRepositoryUrl(), new ITaskListRunnable() {
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				taskDataStore.putEdits(getFile(task, kind), editsData);
-				switch (task.getSynchronizationState()) {
-				case INCOMING:
-				case INCOMING_NEW:
-					// TODO throw exception instead?
-					task.setSynchronizationState(SynchronizationState.CONFLICT);
-					changed[0] = true;
-					break;
-				case SYNCHRONIZED:
-					task.setSynchronizationState(SynchronizationState.OUTGOING);
-					changed[0] = true;
-					break;
-				}
+				taskList.run(new ITaskListRunnable() {
+					public void execute(IProgressMonitor monitor) throws CoreException {
+						switch (task.getSynchronizationState()) {
+						case INCOMING:
+						case INCOMING_NEW:
+							// TODO throw exception instead?
+							task.setSynchronizationState(SynchronizationState.CONFLICT);
+							changed[0] = true;
+							break;
+						case SYNCHRONIZED:
+							task.setSynchronizationState(SynchronizationState.OUTGOING);
+							changed[0] = true;
+							break;
+						}
+					}
+				});
 			}
 		});
 		if (changed[0]) {
@@ -551,6 +724,36 @@ public class TaskDataManager implements ITaskDataManager {
 		}
 	}
 
+	private void fireTaskDataUpdated(final List<TaskDataManagerEvent> events) {
+		if (events.size() == 1) {
+			fireTaskDataUpdated(events.get(0));
+			return;
+		}
+		ITaskDataManagerListener[] array = listeners.toArray(new ITaskDataManagerListener[0]);
+		if (array.length > 0) {
+			final List<TaskDataManagerEvent> unmodifiableEvents = Collections.unmodifiableList(events);
+			for (final ITaskDataManagerListener listener : array) {
+				SafeRunner.run(new ISafeRunnable() {
+
+					public void handleException(Throwable exception) {
+						// ignore
+					}
+
+					public void run() throws Exception {
+						if (listener instanceof ITaskDataManagerBatchListener) {
+							((ITaskDataManagerBatchListener) listener).taskDataUpdated(unmodifiableEvents);
+						} else {
+							for (TaskDataManagerEvent event : unmodifiableEvents) {
+								listener.taskDataUpdated(event);
+							}
+						}
+					}
+
+				});
+			}
+		}
+	}
+
 	private void fireEditsDiscarded(final TaskDataManagerEvent event) {
 		ITaskDataManagerListener[] array = listeners.toArray(new ITaskDataManagerListener[0]);
 		if (array.length > 0) {
@@ -575,10 +778,12 @@ public class TaskDataManager implements ITaskDataManager {
 		Assert.isTrue(itask instanceof AbstractTask);
 		final AbstractTask task = (AbstractTask) itask;
 		final String kind = task.getConnectorKind();
-		taskList.run(new ITaskListRunnable() {
+		// the task data is read from the folder of the current repository url and written to the folder of the new url
+		String[] repositoryUrls = new String[] { task.getRepositoryUrl(), newStorageRepositoryUrl };
+		taskList.runForRepositories(repositoryUrls, new ITaskListRunnable() {
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				File file = getMigratedFile(task, kind);
-				if (file.exists()) {
+				if (taskDataStore.hasTaskData(file)) {
 					TaskDataState oldState = taskDataStore.getTaskDataState(file);
 					if (oldState != null) {
 						File newFile = getFile(newStorageRepositoryUrl, task, kind);
@@ -591,4 +796,39 @@ public class TaskDataManager implements ITaskDataManager {
 			}
 		});
 	}
+
+	private class TaskDataUpdate {
+
+		private final AbstractTask task;
+
+		private final TaskData taskData;
+
+		private final AbstractRepositoryConnector connector;
+
+		private final TaskRepository repository;
+
+		private final TaskDataManagerEvent event;
+
+		private String suppressIncoming;
+
+		private boolean synchronizationStateChanged;
+
+		/**
+		 * Set if the task data was identical to the stored task data and was not written.
+		 */
+		private boolean unchanged;
+
+		private boolean failed;
+
+		public TaskDataUpdate(AbstractTask task, TaskData taskData, Object token) {
+			this.task = task;
+			this.taskData = taskData;
+			this.connector = repositoryManager.getRepositoryConnector(task.getConnectorKind());
+			this.repository = repositoryManager.getRepository(task.getConnectorKind(), task.getRepositoryUrl());
+			this.event = new TaskDataManagerEvent(TaskDataManager.this, task, taskData, token);
+			this.event.setTaskDataChanged(connector.hasTaskChanged(repository, task, taskData));
+		}
+
+	}
+
 }
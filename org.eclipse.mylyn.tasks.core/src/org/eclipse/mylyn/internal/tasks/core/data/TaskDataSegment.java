@@ -0,0 +1,490 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.tasks.core.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the serialized task data of all tasks in a folder in a single append-only file. Each record holds the
+ * encoded task data of one task and is located through an in-memory offset index that is rebuilt from the record
+ * headers when the segment is opened. Replaced and deleted records remain in the file until the segment is compacted.
+ * <p>
+ * Task data files of the per-task layout that are found in the folder are migrated into the segment when it is opened.
+ * {@link #restore()} moves the records back into task data files when the segmented layout is no longer used.
+ * <p>
+ * Compaction writes a new segment file and keeps the previous file as a backup until the new file has replaced it. A
+ * backup that is left behind by an interrupted compaction is restored when the segment is opened.
+ * <p>
+ * Instances are not thread-safe, access is synchronized by {@link TaskDataStore}.
+ */
+class TaskDataSegment {
+
+	private static class Entry {
+
+		/**
+		 * Offset of the record in the segment file.
+		 */
+		final long offset;
+
+		/**
+		 * Total length of the record including the header.
+		 */
+		final int recordLength;
+
+		/**
+		 * Length of the data section of the record.
+		 */
+		final int dataLength;
+
+		final int checksum;
+
+		Entry(long offset, int recordLength, int dataLength, int checksum) {
+			this.offset = offset;
+			this.recordLength = recordLength;
+			this.dataLength = dataLength;
+			this.checksum = checksum;
+		}
+
+		long getDataOffset() {
+			return offset + recordLength - dataLength;
+		}
+
+	}
+
+	public static final String FILE_NAME = "data.segment"; //$NON-NLS-1$
+
+	private static final String FILE_NAME_TEMP = "data.segment.tmp"; //$NON-NLS-1$
+
+	private static final String FILE_NAME_BACKUP = "data.segment.bak"; //$NON-NLS-1$
+
+	private static final String EXTENSION_LEGACY = ".zip"; //$NON-NLS-1$
+
+	private static final String ENCODING_UTF_8 = "UTF-8"; //$NON-NLS-1$
+
+	private static final int MAGIC = 0x4D594C54; // MYLT
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_LENGTH = 8;
+
+	private static final byte KIND_DATA = 1;
+
+	private static final byte KIND_DELETED = 2;
+
+	/**
+	 * Segments are not compacted unless they contain at least this many bytes of replaced or deleted records.
+	 */
+	private static final long MIN_GARBAGE = 1024 * 1024;
+
+	private final File folder;
+
+	private final File file;
+
+	private final File tempFile;
+
+	private final File backupFile;
+
+	private final Map<String, Entry> index = new HashMap<String, Entry>();
+
+	private long length;
+
+	private long garbage;
+
+	private boolean open;
+
+	public TaskDataSegment(File folder) {
+		this.folder = folder;
+		this.file = new File(folder, FILE_NAME);
+		this.tempFile = new File(folder, FILE_NAME_TEMP);
+		this.backupFile = new File(folder, FILE_NAME_BACKUP);
+	}
+
+	/**
+	 * Returns true, if <code>folder</code> contains a segment.
+	 */
+	public static boolean exists(File folder) {
+		return new File(folder, FILE_NAME).exists() || new File(folder, FILE_NAME_BACKUP).exists();
+	}
+
+	public boolean contains(String key) throws IOException {
+		open();
+		return index.containsKey(key);
+	}
+
+	public Set<String> getKeys() throws IOException {
+		open();
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long getGarbage() {
+		return garbage;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public boolean needsCompaction() {
+		return open && garbage > MIN_GARBAGE && garbage * 2 > length;
+	}
+
+	/**
+	 * Returns the encoded task data stored for <code>key</code> or <code>null</code> if the segment does not contain
+	 * a record for <code>key</code>.
+	 */
+	public byte[] read(String key) throws IOException {
+		open();
+		Entry entry = index.get(key);
+		if (entry == null) {
+			return null;
+		}
+		RandomAccessFile in = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			return readData(in, entry);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Appends <code>data</code> as the new record for <code>key</code>. The previous record for <code>key</code>
+	 * becomes garbage.
+	 */
+	public void write(String key, byte[] data) throws IOException {
+		open();
+		append(key, KIND_DATA, data);
+	}
+
+	public boolean delete(String key) throws IOException {
+		open();
+		if (index.containsKey(key)) {
+			append(key, KIND_DELETED, new byte[0]);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Rewrites the segment file retaining only the current record of each key.
+	 */
+	public void compact() throws IOException {
+		open();
+		if (index.isEmpty()) {
+			if (file.exists() && !file.delete()) {
+				throw new IOException("Failed to delete segment \"" + file + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			length = 0;
+			garbage = 0;
+			return;
+		}
+
+		Map<String, Entry> newIndex = new HashMap<String, Entry>();
+		RandomAccessFile in = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			RandomAccessFile out = new RandomAccessFile(tempFile, "rw"); //$NON-NLS-1$
+			try {
+				out.setLength(0);
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				long position = HEADER_LENGTH;
+				for (Map.Entry<String, Entry> mapEntry : index.entrySet()) {
+					byte[] record = createRecord(mapEntry.getKey(), KIND_DATA, readData(in, mapEntry.getValue()));
+					out.write(record);
+					Entry entry = mapEntry.getValue();
+					newIndex.put(mapEntry.getKey(), new Entry(position, record.length, entry.dataLength, entry.checksum));
+					position += record.length;
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+
+		// keep the previous segment until the new one is in place, open() restores the backup otherwise
+		backupFile.delete();
+		if (!file.renameTo(backupFile)) {
+			tempFile.delete();
+			throw new IOException("Failed to replace segment \"" + file + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (!tempFile.renameTo(file)) {
+			// the index no longer matches the file at this point
+			open = false;
+			index.clear();
+			throw new IOException("Failed to replace segment \"" + file + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		backupFile.delete();
+		index.clear();
+		index.putAll(newIndex);
+		length = file.length();
+		garbage = 0;
+	}
+
+	/**
+	 * Moves all records into task data files of the per-task layout and deletes the segment. Records are skipped if
+	 * a task data file already exists for the key.
+	 */
+	public void restore() throws IOException {
+		load();
+		for (Map.Entry<String, Entry> mapEntry : index.entrySet()) {
+			File legacyFile = new File(folder, mapEntry.getKey());
+			if (!legacyFile.exists()) {
+				RandomAccessFile in = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+				byte[] data;
+				try {
+					data = readData(in, mapEntry.getValue());
+				} finally {
+					in.close();
+				}
+				TaskDataStore.writeZipParts(legacyFile, TaskDataStore.decodeParts(data));
+			}
+		}
+		index.clear();
+		length = 0;
+		garbage = 0;
+		open = false;
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Failed to delete segment \"" + file + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private void open() throws IOException {
+		if (open) {
+			return;
+		}
+		load();
+		open = true;
+		migrate();
+	}
+
+	private void load() throws IOException {
+		index.clear();
+		length = 0;
+		garbage = 0;
+		recover();
+		if (file.exists()) {
+			readIndex();
+		}
+	}
+
+	/**
+	 * Cleans up after a compaction that was interrupted.
+	 */
+	private void recover() throws IOException {
+		if (!file.exists() && backupFile.exists()) {
+			// the previous segment was moved aside but not replaced, the temporary file may be incomplete
+			if (!backupFile.renameTo(file)) {
+				throw new IOException("Failed to restore segment \"" + file + "\" from backup"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		tempFile.delete();
+		backupFile.delete();
+	}
+
+	private void readIndex() throws IOException {
+		long fileLength = file.length();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		long position = 0;
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Invalid segment \"" + file + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported segment version " + version + " in \"" + file + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			position = HEADER_LENGTH;
+			while (true) {
+				byte kind;
+				try {
+					kind = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				byte[] keyBytes = new byte[in.readUnsignedShort()];
+				in.readFully(keyBytes);
+				int dataLength = in.readInt();
+				int checksum = in.readInt();
+				skipFully(in, dataLength);
+
+				int recordLength = 1 + 2 + keyBytes.length + 4 + 4 + dataLength;
+				if (dataLength < 0 || position + recordLength > fileLength) {
+					// the last record was not written completely, discard it
+					break;
+				}
+				String key = new String(keyBytes, ENCODING_UTF_8);
+				Entry oldEntry;
+				if (kind == KIND_DATA) {
+					oldEntry = index.put(key, new Entry(position, recordLength, dataLength, checksum));
+				} else {
+					oldEntry = index.remove(key);
+					garbage += recordLength;
+				}
+				if (oldEntry != null) {
+					garbage += oldEntry.recordLength;
+				}
+				position += recordLength;
+			}
+		} catch (EOFException e) {
+			// the last record was not written completely, discard it
+		} finally {
+			in.close();
+		}
+
+		if (position < HEADER_LENGTH) {
+			// the header was not written completely, the segment is empty
+			length = 0;
+			return;
+		}
+		length = fileLength;
+		if (position < length) {
+			RandomAccessFile out = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+			try {
+				out.setLength(position);
+			} finally {
+				out.close();
+			}
+			length = position;
+		}
+	}
+
+	/**
+	 * Moves task data files of the per-task layout into the segment.
+	 */
+	private void migrate() throws IOException {
+		File[] legacyFiles = folder.listFiles(new FileFilter() {
+			public boolean accept(File pathname) {
+				return pathname.isFile() && pathname.getName().endsWith(EXTENSION_LEGACY);
+			}
+		});
+		if (legacyFiles == null) {
+			return;
+		}
+		for (File legacyFile : legacyFiles) {
+			byte[] data;
+			try {
+				data = readLegacyFile(legacyFile);
+			} catch (IOException e) {
+				// leave unreadable files in place
+				continue;
+			}
+			if (data != null) {
+				append(legacyFile.getName(), KIND_DATA, data);
+				legacyFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the encoded entries of <code>legacyFile</code> or <code>null</code> if the file does not contain task
+	 * data.
+	 */
+	private byte[] readLegacyFile(File legacyFile) throws IOException {
+		Map<String, byte[]> parts = TaskDataStore.readZipParts(legacyFile);
+		if (!TaskDataStore.isTaskData(parts)) {
+			return null;
+		}
+		return TaskDataStore.encodeParts(parts);
+	}
+
+	private void append(String key, byte kind, byte[] data) throws IOException {
+		byte[] record = createRecord(key, kind, data);
+		RandomAccessFile out = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			if (length == 0) {
+				out.setLength(0);
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				length = HEADER_LENGTH;
+			}
+			out.seek(length);
+			out.write(record);
+		} finally {
+			out.close();
+		}
+
+		Entry oldEntry;
+		if (kind == KIND_DATA) {
+			oldEntry = index.put(key, new Entry(length, record.length, data.length, checksum(data)));
+		} else {
+			oldEntry = index.remove(key);
+			garbage += record.length;
+		}
+		if (oldEntry != null) {
+			garbage += oldEntry.recordLength;
+		}
+		length += record.length;
+	}
+
+	private byte[] createRecord(String key, byte kind, byte[] data) throws IOException {
+		byte[] keyBytes = key.getBytes(ENCODING_UTF_8);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 + 2 + keyBytes.length + 4 + 4 + data.length);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(kind);
+		out.writeShort(keyBytes.length);
+		out.write(keyBytes);
+		out.writeInt(data.length);
+		out.writeInt(checksum(data));
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private byte[] readData(RandomAccessFile in, Entry entry) throws IOException {
+		byte[] data = new byte[entry.dataLength];
+		in.seek(entry.getDataOffset());
+		in.readFully(data);
+		if (checksum(data) != entry.checksum) {
+			throw new IOException("Corrupt record at offset " + entry.offset + " in \"" + file + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		return data;
+	}
+
+	private static int checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (int) crc.getValue();
+	}
+
+	private static void skipFully(InputStream in, long count) throws IOException {
+		while (count > 0) {
+			long skipped = in.skip(count);
+			if (skipped <= 0) {
+				if (in.read() == -1) {
+					throw new EOFException();
+				}
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+
+}
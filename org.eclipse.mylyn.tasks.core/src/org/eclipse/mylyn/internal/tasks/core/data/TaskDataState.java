@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -33,12 +33,16 @@ public class TaskDataState implements ITaskDataWorkingCopy {
 
 	private TaskData lastReadTaskData;
 
+	private String lastReadDataFingerprint;
+
 	private TaskData localTaskData;
 
 	private boolean saved;
 
 	private TaskData repositoryTaskData;
 
+	private String repositoryDataFingerprint;
+
 	private final String repositoryUrl;
 
 	private ITask task;
@@ -85,6 +89,15 @@ public class TaskDataState implements ITaskDataWorkingCopy {
 		return lastReadTaskData;
 	}
 
+	/**
+	 * Returns the fingerprint of the last read data as computed by {@link TaskDataFingerprint}.
+	 * 
+	 * @return the fingerprint or <code>null</code>, if not known
+	 */
+	public String getLastReadDataFingerprint() {
+		return lastReadDataFingerprint;
+	}
+
 	public TaskData getLocalData() {
 		return localTaskData;
 	}
@@ -93,6 +106,15 @@ public class TaskDataState implements ITaskDataWorkingCopy {
 		return repositoryTaskData;
 	}
 
+	/**
+	 * Returns the fingerprint of the repository data as computed by {@link TaskDataFingerprint}.
+	 * 
+	 * @return the fingerprint or <code>null</code>, if not known
+	 */
+	public String getRepositoryDataFingerprint() {
+		return repositoryDataFingerprint;
+	}
+
 	public String getRepositoryUrl() {
 		return repositoryUrl;
 	}
@@ -169,6 +191,15 @@ public class TaskDataState implements ITaskDataWorkingCopy {
 
 	public void setLastReadData(TaskData oldTaskData) {
 		this.lastReadTaskData = oldTaskData;
+		this.lastReadDataFingerprint = null;
+	}
+
+	/**
+	 * Sets the fingerprint of the last read data. Needs to be invoked after {@link #setLastReadData(TaskData)} which
+	 * resets the fingerprint.
+	 */
+	public void setLastReadDataFingerprint(String lastReadDataFingerprint) {
+		this.lastReadDataFingerprint = lastReadDataFingerprint;
 	}
 
 	public void setLocalTaskData(TaskData localTaskData) {
@@ -181,6 +212,15 @@ public class TaskDataState implements ITaskDataWorkingCopy {
 
 	public void setRepositoryData(TaskData newTaskData) {
 		this.repositoryTaskData = newTaskData;
+		this.repositoryDataFingerprint = null;
+	}
+
+	/**
+	 * Sets the fingerprint of the repository data. Needs to be invoked after {@link #setRepositoryData(TaskData)}
+	 * which resets the fingerprint.
+	 */
+	public void setRepositoryDataFingerprint(String repositoryDataFingerprint) {
+		this.repositoryDataFingerprint = repositoryDataFingerprint;
 	}
 
 	public void merge(TaskDataState oldState) {
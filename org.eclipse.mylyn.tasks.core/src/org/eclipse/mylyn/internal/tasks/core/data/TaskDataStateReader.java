@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -352,6 +352,8 @@ public class TaskDataStateReader extends DefaultHandler {
 
 		private TaskData taskData;
 
+		private String fingerprint;
+
 		public TaskDataHandler20(TaskStateHandler parent, String elementName) {
 			super(parent, elementName);
 		}
@@ -360,9 +362,17 @@ public class TaskDataStateReader extends DefaultHandler {
 			return taskData;
 		}
 
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
 		@Override
 		public void start(String uri, String localName, String name, Attributes attributes) throws SAXException {
 			taskData = ((TaskStateHandler) getParent()).createTaskData(attributes);
+			fingerprint = getOptionalValue(attributes, ITaskDataConstants.ATTRIBUTE_FINGERPRINT);
+			if (fingerprint.length() == 0) {
+				fingerprint = null;
+			}
 
 			// skip the root node
 			ElementHandler handler = new ElementHandler(this, ITaskDataConstants.ELEMENT_ATTRIBUTE);
@@ -417,6 +427,7 @@ public class TaskDataStateReader extends DefaultHandler {
 		@Override
 		public void done(ElementHandler elementHandler) {
 			TaskData taskData;
+			String fingerprint = null;
 			if (elementHandler instanceof TaskDataHandler10) {
 				TaskDataHandler10 taskDataHandler = (TaskDataHandler10) elementHandler;
 				TaskData data = taskDataHandler.getTaskData();
@@ -427,12 +438,15 @@ public class TaskDataStateReader extends DefaultHandler {
 			} else {
 				TaskDataHandler20 taskDataHandler = (TaskDataHandler20) elementHandler;
 				taskData = taskDataHandler.getTaskData();
+				fingerprint = taskDataHandler.getFingerprint();
 			}
 
 			if (ITaskDataConstants.ELEMENT_NEW_DATA.equals(elementHandler.getElementName())) {
 				state.setRepositoryData(taskData);
+				state.setRepositoryDataFingerprint(fingerprint);
 			} else if (ITaskDataConstants.ELEMENT_OLD_DATA.equals(elementHandler.getElementName())) {
 				state.setLastReadData(taskData);
+				state.setLastReadDataFingerprint(fingerprint);
 			} else if (ITaskDataConstants.ELEMENT_EDITS_DATA.equals(elementHandler.getElementName())) {
 				state.setEditsData(taskData);
 			}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -46,19 +46,33 @@ public class TaskDataStateWriter {
 		atts.addAttribute("", "", ITaskDataConstants.ATTRIBUTE_VERSION, CDATA, TASK_DATA_STATE_VERSION); //$NON-NLS-1$ //$NON-NLS-2$
 		handler.startElement("", "", ITaskDataConstants.ELEMENT_TASK_STATE, atts); //$NON-NLS-1$ //$NON-NLS-2$
 		if (state.getRepositoryData() != null) {
-			writeTaskData(state.getRepositoryData(), ITaskDataConstants.ELEMENT_NEW_DATA);
+			String fingerprint = (state instanceof TaskDataState) ? ((TaskDataState) state)
+					.getRepositoryDataFingerprint() : null;
+			writeTaskData(state.getRepositoryData(), ITaskDataConstants.ELEMENT_NEW_DATA,
+					getFingerprint(state.getRepositoryData(), fingerprint));
 		}
 		if (state.getLastReadData() != null) {
-			writeTaskData(state.getLastReadData(), ITaskDataConstants.ELEMENT_OLD_DATA);
+			String fingerprint = (state instanceof TaskDataState) ? ((TaskDataState) state)
+					.getLastReadDataFingerprint() : null;
+			writeTaskData(state.getLastReadData(), ITaskDataConstants.ELEMENT_OLD_DATA,
+					getFingerprint(state.getLastReadData(), fingerprint));
 		}
 		if (state.getEditsData() != null) {
-			writeTaskData(state.getEditsData(), ITaskDataConstants.ELEMENT_EDITS_DATA);
+			writeTaskData(state.getEditsData(), ITaskDataConstants.ELEMENT_EDITS_DATA, null);
 		}
 		handler.endElement("", "", ITaskDataConstants.ELEMENT_TASK_STATE); //$NON-NLS-1$ //$NON-NLS-2$
 		handler.endDocument();
 	}
 
-	private void writeTaskData(TaskData taskData, String elementName) throws SAXException {
+	/**
+	 * Returns <code>fingerprint</code> if it has already been computed for <code>taskData</code>, or computes it
+	 * otherwise.
+	 */
+	private String getFingerprint(TaskData taskData, String fingerprint) {
+		return (fingerprint != null) ? fingerprint : TaskDataFingerprint.compute(taskData).toString();
+	}
+
+	private void writeTaskData(TaskData taskData, String elementName, String fingerprint) throws SAXException {
 		AttributesImpl atts = new AttributesImpl();
 		atts.addAttribute("", "", ITaskDataConstants.ATTRIBUTE_CONNECTOR_KIND, CDATA, taskData.getConnectorKind()); //$NON-NLS-1$ //$NON-NLS-2$
 		atts.addAttribute("", "", ITaskDataConstants.ATTRIBUTE_REPOSITORY_URL, CDATA, taskData.getRepositoryUrl()); //$NON-NLS-1$ //$NON-NLS-2$
@@ -66,6 +80,9 @@ public class TaskDataStateWriter {
 		if (taskData.getVersion() != null) {
 			atts.addAttribute("", "", ITaskDataConstants.ATTRIBUTE_VERSION, CDATA, taskData.getVersion()); //$NON-NLS-1$ //$NON-NLS-2$
 		}
+		if (fingerprint != null) {
+			atts.addAttribute("", "", ITaskDataConstants.ATTRIBUTE_FINGERPRINT, CDATA, fingerprint); //$NON-NLS-1$ //$NON-NLS-2$
+		}
 		handler.startElement("", "", elementName, atts); //$NON-NLS-1$ //$NON-NLS-2$
 		atts.clear();
 		handler.startElement("", "", ITaskDataConstants.ELEMENT_ATTRIBUTES, atts); //$NON-NLS-1$ //$NON-NLS-2$
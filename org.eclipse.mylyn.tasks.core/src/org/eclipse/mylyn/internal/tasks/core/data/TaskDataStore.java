@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,90 +13,238 @@ package org.eclipse.mylyn.internal.tasks.core.data;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.mylyn.commons.core.StatusHandler;
 import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataExternalizer.Xml11InputStream;
 import org.eclipse.mylyn.tasks.core.IRepositoryManager;
+import org.eclipse.mylyn.tasks.core.data.ITaskDataWorkingCopy;
 import org.eclipse.mylyn.tasks.core.data.TaskData;
 import org.xml.sax.SAXException;
 
 /**
+ * Persists {@link TaskDataState} objects. By default the state of each task is stored in a separate zip file. In
+ * segmented mode the states of all tasks that share a folder are stored in a single {@link TaskDataSegment} and the
+ * file passed to the store only identifies the record.
+ * <p>
+ * The repository data, last read data and edits of a state are serialized as separate parts. Updating one of them
+ * copies the other parts without parsing them. States that were written as a single part are converted on update.
+ * <p>
+ * Access is synchronized per folder, task data of different repositories is read and written concurrently.
+ * 
  * @author Steffen Pingel
  */
 public class TaskDataStore {
 
-	private static final String FILE_NAME_INTERNAL = "data.xml"; //$NON-NLS-1$
+	/**
+	 * Name of the single entry that holds the complete state in the legacy format.
+	 */
+	static final String FILE_NAME_INTERNAL = "data.xml"; //$NON-NLS-1$
+
+	private static final String PART_REPOSITORY = "repository.xml"; //$NON-NLS-1$
+
+	private static final String PART_LAST_READ = "lastread.xml"; //$NON-NLS-1$
+
+	private static final String PART_EDITS = "edits.xml"; //$NON-NLS-1$
+
+	private static final String[] PARTS = { PART_REPOSITORY, PART_LAST_READ, PART_EDITS };
+
+	private static final String[] LEGACY_PARTS = { FILE_NAME_INTERNAL };
+
+	private static final long COMPACTION_DELAY = 60 * 1000;
 
 	private final TaskDataExternalizer externalizer;
 
+	private final boolean segmented;
+
+	private final Map<File, TaskDataSegment> segmentByFolder = new HashMap<File, TaskDataSegment>();
+
+	private final Map<File, Object> lockByFolder = new HashMap<File, Object>();
+
+	/**
+	 * Folders that have been checked for a segment in non-segmented mode.
+	 */
+	private final Set<File> restoredFolders = new HashSet<File>();
+
+	private final Job compactionJob;
+
 	public TaskDataStore(IRepositoryManager taskRepositoryManager) {
+		this(taskRepositoryManager, false);
+	}
+
+	/**
+	 * @param segmented
+	 *            if true, task data is stored in one segment file per folder; existing task data files are migrated
+	 *            when a folder is first accessed. If false, segments left from a previous session are migrated back
+	 *            to task data files.
+	 */
+	public TaskDataStore(IRepositoryManager taskRepositoryManager, boolean segmented) {
 		this.externalizer = new TaskDataExternalizer(taskRepositoryManager);
+		this.segmented = segmented;
+		this.compactionJob = new Job(Messages.TaskDataStore_Compaction_Job) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				compact(false);
+				return Status.OK_STATUS;
+			}
+		};
+		this.compactionJob.setSystem(true);
 	}
 
-	public synchronized TaskDataState discardEdits(File file) throws CoreException {
-		TaskDataState state = readState(file);
-		if (state != null) {
-			state.setEditsData(null);
+	public boolean isSegmented() {
+		return segmented;
+	}
+
+	public TaskDataState discardEdits(File file) throws CoreException {
+		synchronized (getLock(file)) {
+			TaskDataState state = readState(file);
+			if (state != null) {
+				state.setEditsData(null);
+			}
+			writeState(file, state);
+			return state;
 		}
-		writeState(file, state);
-		return state;
 	}
 
-	public synchronized TaskDataState getTaskDataState(File file) throws CoreException {
-		return readState(file);
+	public TaskDataState getTaskDataState(File file) throws CoreException {
+		Map<String, byte[]> parts;
+		synchronized (getLock(file)) {
+			parts = readParts(file);
+		}
+		// parse outside of the lock
+		return parseState(parts);
 	}
 
-	public synchronized void putEdits(File file, TaskData data) throws CoreException {
+	/**
+	 * Returns the last read task data stored for <code>file</code>. Only the last read part is parsed.
+	 */
+	public TaskData getLastReadData(File file) throws CoreException {
+		Map<String, byte[]> parts;
+		synchronized (getLock(file)) {
+			parts = readParts(file);
+		}
+		if (parts == null) {
+			return null;
+		}
+		if (parts.containsKey(FILE_NAME_INTERNAL)) {
+			return parseState(parts.get(FILE_NAME_INTERNAL)).getLastReadData();
+		}
+		byte[] part = parts.get(PART_LAST_READ);
+		return (part != null) ? getTaskData(parseState(part)) : null;
+	}
+
+	/**
+	 * Replaces the edits stored for <code>file</code>. The repository and last read data are carried over without
+	 * being parsed.
+	 */
+	public void putEdits(File file, TaskData data) throws CoreException {
 		Assert.isNotNull(file);
 		Assert.isNotNull(data);
-		TaskDataState state = readState(file);
-		if (state == null) {
-			state = new TaskDataState(data.getConnectorKind(), data.getRepositoryUrl(), data.getTaskId());
+		byte[] editsPart = writePart(data, PART_EDITS);
+		synchronized (getLock(file)) {
+			Map<String, byte[]> parts = readSplitParts(file);
+			if (parts == null) {
+				parts = new HashMap<String, byte[]>();
+			}
+			parts.put(PART_EDITS, editsPart);
+			writeParts(file, parts);
 		}
-		state.setEditsData(data);
-		writeState(file, state);
 	}
 
-	public synchronized TaskDataState putTaskData(File file, TaskData data, boolean setLastRead, boolean user)
+	/**
+	 * Replaces the repository data stored for <code>file</code>. The last read data and edits are carried over without
+	 * being parsed.
+	 * 
+	 * <p>
+	 * Nothing is written if the fingerprint of <code>data</code> matches the fingerprint of the stored repository data
+	 * and, if <code>setLastRead</code> is true, the fingerprint of the stored last read data.
+	 * 
+	 * @param setLastRead
+	 *            if true, the previous repository data becomes the last read data
+	 * @return the updated state or <code>null</code>, if the stored data was identical and nothing was written; only
+	 *         the repository data and the fingerprints are set, use {@link #getTaskDataState(File)} to retrieve the
+	 *         complete state
+	 * @see TaskDataFingerprint
+	 */
+	public TaskDataState putTaskData(File file, TaskData data, boolean setLastRead, boolean user)
 			throws CoreException {
 		Assert.isNotNull(file);
 		Assert.isNotNull(data);
-		TaskDataState state = null;
-		try {
-			state = readState(file);
-		} catch (CoreException e) {
-			if (!user) {
-				throw new CoreException(
-						new Status(
-								IStatus.ERROR,
-								ITasksCoreConstants.ID_PLUGIN,
-								"Reading of existing task data failed. Forcing synchronization will override outgoing changes.", //$NON-NLS-1$
-								e));
+		// serialize outside of the lock
+		String fingerprint = TaskDataFingerprint.compute(data).toString();
+		byte[] repositoryPart = writePart(data.getConnectorKind(), data.getRepositoryUrl(), data.getTaskId(), data,
+				fingerprint, PART_REPOSITORY);
+		String lastReadFingerprint;
+		synchronized (getLock(file)) {
+			Map<String, byte[]> parts = null;
+			try {
+				parts = readSplitParts(file);
+			} catch (CoreException e) {
+				if (!user) {
+					throw new CoreException(
+							new Status(
+									IStatus.ERROR,
+									ITasksCoreConstants.ID_PLUGIN,
+									"Reading of existing task data failed. Forcing synchronization will override outgoing changes.", //$NON-NLS-1$
+									e));
+				}
 			}
+			if (parts == null) {
+				parts = new HashMap<String, byte[]>();
+			}
+			String previousFingerprint = readFingerprint(parts.get(PART_REPOSITORY));
+			lastReadFingerprint = readFingerprint(parts.get(PART_LAST_READ));
+			if (fingerprint.equals(previousFingerprint) && (!setLastRead || fingerprint.equals(lastReadFingerprint))) {
+				// identical task data was already stored
+				return null;
+			}
+			if (setLastRead) {
+				byte[] lastRead = parts.remove(PART_REPOSITORY);
+				if (lastRead != null) {
+					parts.put(PART_LAST_READ, lastRead);
+				} else {
+					parts.remove(PART_LAST_READ);
+				}
+				lastReadFingerprint = previousFingerprint;
+			}
+			parts.put(PART_REPOSITORY, repositoryPart);
+			writeParts(file, parts);
 		}
-		if (state == null) {
-			state = new TaskDataState(data.getConnectorKind(), data.getRepositoryUrl(), data.getTaskId());
-		}
-		if (setLastRead) {
-			state.setLastReadData(state.getRepositoryData());
-		}
+
+		TaskDataState state = new TaskDataState(data.getConnectorKind(), data.getRepositoryUrl(), data.getTaskId());
 		state.setRepositoryData(data);
-		writeState(file, state);
+		state.setRepositoryDataFingerprint(fingerprint);
+		state.setLastReadDataFingerprint(lastReadFingerprint);
 		return state;
 	}
 
-	public synchronized TaskDataState setTaskData(File file, TaskData data) throws CoreException {
+	public TaskDataState setTaskData(File file, TaskData data) throws CoreException {
 		Assert.isNotNull(file);
 		Assert.isNotNull(data);
 
@@ -106,14 +254,16 @@ public class TaskDataStore {
 		state.setRepositoryData(data);
 		state.setEditsData(null);
 		state.setLastReadData(data);
-		writeState(file, state);
+		Map<String, byte[]> parts = toParts(state);
+		synchronized (getLock(file)) {
+			writeParts(file, parts);
+		}
 		return state;
 	}
 
-	private TaskDataState readStateInternal(File file, boolean xml11) throws IOException, SAXException {
-		ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)));
+	private TaskDataState readStateInternal(byte[] part, boolean xml11) throws IOException, SAXException {
+		InputStream in = new ByteArrayInputStream(part);
 		try {
-			in.getNextEntry();
 			// bug 268456: When TaskData that contains C0 control characters is written to disk using XML 1.0 reading it back 
 			// in fails with a SAXException. The XML 1.1 standard allows C0 entities but fails if C1 entities. If C0 control 
 			// characters are detected while parsing file as XML 1.0 a second attempt is made using XML 1.1. If the file contains 
@@ -128,27 +278,128 @@ public class TaskDataStore {
 		}
 	}
 
-	private TaskDataState readState(File file) throws CoreException {
+	private TaskDataState parseState(byte[] part) throws CoreException {
 		try {
-			if (file.exists()) {
+			try {
 				try {
-					try {
-						return readStateInternal(file, false);
-					} catch (SAXException e) {
-						// bug 268456: if reading fails, try again using a different XML version
-						if (e.getMessage() != null
-								&& (e.getMessage().contains("invalid XML character") || e.getMessage().contains("Character reference \"&#"))) { //$NON-NLS-1$ //$NON-NLS-2$
-							return readStateInternal(file, true);
-						} else {
-							throw e;
-						}
+					return readStateInternal(part, false);
+				} catch (SAXException e) {
+					// bug 268456: if reading fails, try again using a different XML version
+					if (e.getMessage() != null
+							&& (e.getMessage().contains("invalid XML character") || e.getMessage().contains("Character reference \"&#"))) { //$NON-NLS-1$ //$NON-NLS-2$
+						return readStateInternal(part, true);
+					} else {
+						throw e;
 					}
+				}
+			} catch (SAXException e) {
+				throw new IOException("Error parsing task data: " + e.getMessage()); //$NON-NLS-1$
+			}
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Error reading task data", //$NON-NLS-1$
+					e));
+		}
+	}
 
-				} catch (SAXException e) {
-					throw new IOException("Error parsing task data: " + e.getMessage()); //$NON-NLS-1$
+	private TaskDataState readState(File file) throws CoreException {
+		return parseState(readParts(file));
+	}
+
+	private TaskDataState parseState(Map<String, byte[]> parts) throws CoreException {
+		if (parts == null) {
+			return null;
+		}
+		if (parts.containsKey(FILE_NAME_INTERNAL)) {
+			return parseState(parts.get(FILE_NAME_INTERNAL));
+		}
+		TaskDataState state = null;
+		for (String name : PARTS) {
+			byte[] part = parts.get(name);
+			if (part != null) {
+				TaskDataState partState = parseState(part);
+				if (partState == null) {
+					continue;
+				}
+				if (state == null) {
+					state = new TaskDataState(partState.getConnectorKind(), partState.getRepositoryUrl(),
+							partState.getTaskId());
+				}
+				TaskData taskData = getTaskData(partState);
+				if (PART_REPOSITORY.equals(name)) {
+					state.setRepositoryData(taskData);
+					state.setRepositoryDataFingerprint(getFingerprint(partState));
+				} else if (PART_LAST_READ.equals(name)) {
+					state.setLastReadData(taskData);
+					state.setLastReadDataFingerprint(getFingerprint(partState));
+				} else {
+					state.setEditsData(taskData);
 				}
 			}
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the task data of a state that was read from a single part.
+	 */
+	private TaskData getTaskData(TaskDataState partState) {
+		if (partState.getRepositoryData() != null) {
+			return partState.getRepositoryData();
+		} else if (partState.getLastReadData() != null) {
+			return partState.getLastReadData();
+		}
+		return partState.getEditsData();
+	}
+
+	/**
+	 * Returns the fingerprint of the task data of a state that was read from a single part.
+	 */
+	private String getFingerprint(TaskDataState partState) {
+		if (partState.getRepositoryData() != null) {
+			return partState.getRepositoryDataFingerprint();
+		}
+		return partState.getLastReadDataFingerprint();
+	}
+
+	/**
+	 * Returns the fingerprint stored in <code>part</code> without parsing the task data.
+	 * 
+	 * @return the fingerprint or <code>null</code>, if <code>part</code> is <code>null</code> or does not have a
+	 *         fingerprint
+	 */
+	private String readFingerprint(byte[] part) {
+		if (part == null) {
+			return null;
+		}
+		try {
+			return externalizer.readFingerprint(new ByteArrayInputStream(part));
+		} catch (IOException e) {
 			return null;
+		} catch (SAXException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the uncompressed parts stored for <code>file</code>, converting the single part of the legacy format if
+	 * necessary.
+	 */
+	private Map<String, byte[]> readSplitParts(File file) throws CoreException {
+		Map<String, byte[]> parts = readParts(file);
+		if (parts != null && parts.containsKey(FILE_NAME_INTERNAL)) {
+			return toParts(parseState(parts.get(FILE_NAME_INTERNAL)));
+		}
+		return parts;
+	}
+
+	private Map<String, byte[]> readParts(File file) throws CoreException {
+		try {
+			if (segmented) {
+				byte[] record = getSegment(file).read(file.getName());
+				return (record != null) ? decodeParts(record) : null;
+			}
+			restoreSegment(file);
+			return (file.exists()) ? readZipParts(file) : null;
 		} catch (IOException e) {
 			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Error reading task data", //$NON-NLS-1$
 					e));
@@ -156,18 +407,81 @@ public class TaskDataStore {
 	}
 
 	private void writeState(File file, TaskDataState state) throws CoreException {
-		try {
-			ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
-			try {
-				out.setMethod(ZipOutputStream.DEFLATED);
+		writeParts(file, toParts(state));
+	}
+
+	private Map<String, byte[]> toParts(TaskDataState state) throws CoreException {
+		Map<String, byte[]> parts = new HashMap<String, byte[]>();
+		if (state != null) {
+			if (state.getRepositoryData() != null) {
+				parts.put(PART_REPOSITORY, writePart(state, state.getRepositoryData(),
+						state.getRepositoryDataFingerprint(), PART_REPOSITORY));
+			}
+			if (state.getLastReadData() != null) {
+				parts.put(PART_LAST_READ, writePart(state, state.getLastReadData(), state.getLastReadDataFingerprint(),
+						PART_LAST_READ));
+			}
+			if (state.getEditsData() != null) {
+				parts.put(PART_EDITS, writePart(state, state.getEditsData(), null, PART_EDITS));
+			}
+		}
+		return parts;
+	}
 
-				ZipEntry entry = new ZipEntry(FILE_NAME_INTERNAL);
-				out.putNextEntry(entry);
+	/**
+	 * Serializes <code>taskData</code> as a task data state that only contains the data for <code>name</code>.
+	 */
+	private byte[] writePart(ITaskDataWorkingCopy header, TaskData taskData, String fingerprint, String name)
+			throws CoreException {
+		return writePart(header.getConnectorKind(), header.getRepositoryUrl(), header.getTaskId(), taskData,
+				fingerprint, name);
+	}
 
-				externalizer.writeState(out, state);
-			} finally {
-				out.close();
+	private byte[] writePart(TaskData taskData, String name) throws CoreException {
+		return writePart(taskData.getConnectorKind(), taskData.getRepositoryUrl(), taskData.getTaskId(), taskData,
+				null, name);
+	}
+
+	/**
+	 * @param fingerprint
+	 *            the fingerprint of <code>taskData</code> or <code>null</code>, if it has not been computed
+	 */
+	private byte[] writePart(String connectorKind, String repositoryUrl, String taskId, TaskData taskData,
+			String fingerprint, String name) throws CoreException {
+		TaskDataState partState = new TaskDataState(connectorKind, repositoryUrl, taskId);
+		if (PART_REPOSITORY.equals(name)) {
+			partState.setRepositoryData(taskData);
+			partState.setRepositoryDataFingerprint(fingerprint);
+		} else if (PART_LAST_READ.equals(name)) {
+			partState.setLastReadData(taskData);
+			partState.setLastReadDataFingerprint(fingerprint);
+		} else {
+			partState.setEditsData(taskData);
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			externalizer.writeState(out, partState);
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Error writing task data", //$NON-NLS-1$
+					e));
+		}
+	}
+
+	private void writeParts(File file, Map<String, byte[]> parts) throws CoreException {
+		if (parts.isEmpty()) {
+			deleteTaskDataInternal(file);
+			return;
+		}
+		try {
+			if (segmented) {
+				TaskDataSegment segment = getSegment(file);
+				segment.write(file.getName(), encodeParts(parts));
+				scheduleCompaction(segment);
+				return;
 			}
+			restoreSegment(file);
+			writeZipParts(file, parts);
 		} catch (IOException e) {
 			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Error writing task data", //$NON-NLS-1$
 					e));
@@ -186,12 +500,247 @@ public class TaskDataStore {
 //		writeState(file, state);
 //	}
 
-	public synchronized void putTaskData(File file, TaskDataState state) throws CoreException {
-		writeState(file, state);
+	public void putTaskData(File file, TaskDataState state) throws CoreException {
+		Map<String, byte[]> parts = toParts(state);
+		synchronized (getLock(file)) {
+			writeParts(file, parts);
+		}
+	}
+
+	public boolean deleteTaskData(File file) {
+		synchronized (getLock(file)) {
+			return deleteTaskDataInternal(file);
+		}
 	}
 
-	public synchronized boolean deleteTaskData(File file) {
+	private boolean deleteTaskDataInternal(File file) {
+		if (segmented) {
+			try {
+				TaskDataSegment segment = getSegment(file);
+				boolean deleted = segment.delete(file.getName());
+				scheduleCompaction(segment);
+				return deleted;
+			} catch (IOException e) {
+				StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+						"Error deleting task data", e)); //$NON-NLS-1$
+				return false;
+			}
+		}
+		try {
+			restoreSegment(file);
+		} catch (IOException e) {
+			StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+					"Error deleting task data", e)); //$NON-NLS-1$
+			return false;
+		}
 		return file.delete();
 	}
 
+	/**
+	 * Returns true, if task data has been stored for <code>file</code>.
+	 */
+	public boolean hasTaskData(File file) {
+		if (segmented) {
+			synchronized (getLock(file)) {
+				try {
+					return getSegment(file).contains(file.getName());
+				} catch (IOException e) {
+					StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+							"Error reading task data", e)); //$NON-NLS-1$
+					return false;
+				}
+			}
+		}
+		synchronized (getLock(file)) {
+			try {
+				restoreSegment(file);
+			} catch (IOException e) {
+				StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+						"Error reading task data", e)); //$NON-NLS-1$
+			}
+			return file.exists();
+		}
+	}
+
+	/**
+	 * Reclaims the space of replaced and deleted records in all segments that have been accessed. Has no effect
+	 * unless the store is segmented.
+	 */
+	public void compact() {
+		compact(true);
+	}
+
+	private void compact(boolean force) {
+		List<TaskDataSegment> segments;
+		synchronized (segmentByFolder) {
+			segments = new ArrayList<TaskDataSegment>(segmentByFolder.values());
+		}
+		for (TaskDataSegment segment : segments) {
+			// only lock the folder of the segment to let reads and writes in other folders proceed
+			synchronized (getLock(segment.getFile())) {
+				if (force || segment.needsCompaction()) {
+					try {
+						segment.compact();
+					} catch (IOException e) {
+						StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+								"Error compacting task data in \"" + segment.getFile() + "\"", e)); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+				}
+			}
+		}
+	}
+
+	private TaskDataSegment getSegment(File file) {
+		File folder = file.getAbsoluteFile().getParentFile();
+		synchronized (segmentByFolder) {
+			TaskDataSegment segment = segmentByFolder.get(folder);
+			if (segment == null) {
+				segment = new TaskDataSegment(folder);
+				segmentByFolder.put(folder, segment);
+			}
+			return segment;
+		}
+	}
+
+	/**
+	 * Moves task data that was stored while the store was segmented back into per-task files when the folder of
+	 * <code>file</code> is first accessed. Must be invoked while holding the lock of the folder.
+	 */
+	private void restoreSegment(File file) throws IOException {
+		File folder = file.getAbsoluteFile().getParentFile();
+		synchronized (restoredFolders) {
+			if (!restoredFolders.add(folder)) {
+				return;
+			}
+		}
+		if (TaskDataSegment.exists(folder)) {
+			try {
+				new TaskDataSegment(folder).restore();
+			} catch (IOException e) {
+				// retry on next access
+				synchronized (restoredFolders) {
+					restoredFolders.remove(folder);
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Returns the monitor that guards access to the folder of <code>file</code>.
+	 */
+	private Object getLock(File file) {
+		File folder = file.getAbsoluteFile().getParentFile();
+		synchronized (lockByFolder) {
+			Object lock = lockByFolder.get(folder);
+			if (lock == null) {
+				lock = new Object();
+				lockByFolder.put(folder, lock);
+			}
+			return lock;
+		}
+	}
+
+	private void scheduleCompaction(TaskDataSegment segment) {
+		// rescheduling would reset the delay, continuous writes could postpone compaction indefinitely
+		if (segment.needsCompaction() && compactionJob.getState() == Job.NONE) {
+			compactionJob.schedule(COMPACTION_DELAY);
+		}
+	}
+
+	/**
+	 * Reads the entries of a task data zip file.
+	 */
+	static Map<String, byte[]> readZipParts(File file) throws IOException {
+		Map<String, byte[]> parts = new HashMap<String, byte[]>();
+		ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				parts.put(entry.getName(), readFully(in));
+			}
+		} finally {
+			in.close();
+		}
+		return parts;
+	}
+
+	/**
+	 * Writes the parts of a task data zip file. A single part of the legacy format is written as is.
+	 */
+	static void writeZipParts(File file, Map<String, byte[]> parts) throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.setMethod(ZipOutputStream.DEFLATED);
+			for (String name : (parts.containsKey(FILE_NAME_INTERNAL)) ? LEGACY_PARTS : PARTS) {
+				byte[] part = parts.get(name);
+				if (part != null) {
+					out.putNextEntry(new ZipEntry(name));
+					out.write(part);
+					out.closeEntry();
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns true, if <code>parts</code> were read from a task data file.
+	 */
+	static boolean isTaskData(Map<String, byte[]> parts) {
+		if (parts.containsKey(FILE_NAME_INTERNAL)) {
+			return true;
+		}
+		for (String name : PARTS) {
+			if (parts.containsKey(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static byte[] encodeParts(Map<String, byte[]> parts) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+		try {
+			out.writeInt(parts.size());
+			for (Map.Entry<String, byte[]> entry : parts.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue().length);
+				out.write(entry.getValue());
+			}
+		} finally {
+			out.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	static Map<String, byte[]> decodeParts(byte[] record) throws IOException {
+		Map<String, byte[]> parts = new HashMap<String, byte[]>();
+		DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(record)));
+		try {
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String name = in.readUTF();
+				byte[] part = new byte[in.readInt()];
+				in.readFully(part);
+				parts.put(name, part);
+			}
+		} finally {
+			in.close();
+		}
+		return parts;
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		while ((count = in.read(buffer)) != -1) {
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
 }
@@ -19,6 +19,7 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -60,6 +61,9 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 /**
  * Subclass externalizers must override the get*TagName() methods for the types of externalized items they support to
@@ -205,8 +209,7 @@ public final class DelegatingTaskExternalizer {
 
 	public Element createCategoryElement(AbstractTaskCategory category, Document doc, Element parent) {
 		Element node = doc.createElement(getCategoryTagName());
-		node.setAttribute(DelegatingTaskExternalizer.KEY_HANDLE, category.getHandleIdentifier());
-		node.setAttribute(DelegatingTaskExternalizer.KEY_NAME, category.getSummary());
+		setAttributes(node, getCategoryAttributes(category));
 		parent.appendChild(node);
 		for (ITask task : category.getChildren()) {
 			createTaskReference(KEY_TASK_REFERENCE, task, doc, node);
@@ -214,85 +217,133 @@ public final class DelegatingTaskExternalizer {
 		return node;
 	}
 
-	@SuppressWarnings("deprecation")
+	/**
+	 * Writes the element for <code>category</code> to <code>handler</code>. Produces the same element as
+	 * {@link #createCategoryElement(AbstractTaskCategory, Document, Element)}.
+	 */
+	public void writeCategoryElement(AbstractTaskCategory category, ContentHandler handler) throws SAXException {
+		String nodeName = getCategoryTagName();
+		startElement(handler, nodeName, getCategoryAttributes(category));
+		for (ITask task : category.getChildren()) {
+			writeTaskReference(KEY_TASK_REFERENCE, task, handler);
+		}
+		endElement(handler, nodeName);
+	}
+
+	private Map<String, String> getCategoryAttributes(AbstractTaskCategory category) {
+		Map<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put(KEY_HANDLE, category.getHandleIdentifier());
+		attributes.put(KEY_NAME, category.getSummary());
+		return attributes;
+	}
+
 	public Element createTaskElement(final AbstractTask task, Document doc, Element parent) {
-		final Element node;
-		if (task.getClass() == TaskTask.class || task instanceof LocalTask) {
-			node = doc.createElement(NODE_TASK);
-		} else {
-			errors.add(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN, "No externalizer for task: " + task)); //$NON-NLS-1$
+		if (!canCreateTaskElement(task)) {
 			return null;
 		}
 
-		node.setAttribute(KEY_CONNECTOR_KIND, task.getConnectorKind());
-		node.setAttribute(KEY_REPOSITORY_URL, task.getRepositoryUrl());
-		node.setAttribute(KEY_TASK_ID, task.getTaskId());
+		Element node = doc.createElement(NODE_TASK);
+		setAttributes(node, getTaskAttributes(task));
+		createAttributes(task, doc, node);
+		for (ITask t : task.getChildren()) {
+			createTaskReference(KEY_SUBTASK, t, doc, node);
+		}
+
+		parent.appendChild(node);
+		return node;
+	}
+
+	/**
+	 * Writes the element for <code>task</code> to <code>handler</code>. Produces the same element as
+	 * {@link #createTaskElement(AbstractTask, Document, Element)}.
+	 */
+	public void writeTaskElement(AbstractTask task, ContentHandler handler) throws SAXException {
+		if (!canCreateTaskElement(task)) {
+			return;
+		}
+
+		startElement(handler, NODE_TASK, getTaskAttributes(task));
+		writeAttributes(task, handler);
+		for (ITask t : task.getChildren()) {
+			writeTaskReference(KEY_SUBTASK, t, handler);
+		}
+		endElement(handler, NODE_TASK);
+	}
+
+	private boolean canCreateTaskElement(AbstractTask task) {
+		if (task.getClass() == TaskTask.class || task instanceof LocalTask) {
+			return true;
+		}
+		errors.add(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN, "No externalizer for task: " + task)); //$NON-NLS-1$
+		return false;
+	}
+
+	@SuppressWarnings("deprecation")
+	private Map<String, String> getTaskAttributes(AbstractTask task) {
+		Map<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put(KEY_CONNECTOR_KIND, task.getConnectorKind());
+		attributes.put(KEY_REPOSITORY_URL, task.getRepositoryUrl());
+		attributes.put(KEY_TASK_ID, task.getTaskId());
 		if (task.getTaskKey() != null) {
-			node.setAttribute(KEY_KEY, task.getTaskKey());
+			attributes.put(KEY_KEY, task.getTaskKey());
 		}
-		node.setAttribute(KEY_HANDLE, task.getHandleIdentifier());
-		node.setAttribute(KEY_LABEL, stripControlCharacters(task.getSummary()));
+		attributes.put(KEY_HANDLE, task.getHandleIdentifier());
+		attributes.put(KEY_LABEL, stripControlCharacters(task.getSummary()));
 
-		node.setAttribute(KEY_PRIORITY, task.getPriority());
-		node.setAttribute(KEY_KIND, task.getTaskKind());
+		attributes.put(KEY_PRIORITY, task.getPriority());
+		attributes.put(KEY_KIND, task.getTaskKind());
 
 		if (task.isActive()) {
-			node.setAttribute(KEY_ACTIVE, VAL_TRUE);
+			attributes.put(KEY_ACTIVE, VAL_TRUE);
 		} else {
-			node.setAttribute(KEY_ACTIVE, VAL_FALSE);
+			attributes.put(KEY_ACTIVE, VAL_FALSE);
 		}
 
 		if (task.getUrl() != null) {
-			node.setAttribute(KEY_ISSUEURL, task.getUrl());
-		}
-		node.setAttribute(KEY_NOTES, stripControlCharacters(task.getNotes()));
-		node.setAttribute(KEY_TIME_ESTIMATED, "" + task.getEstimatedTimeHours()); //$NON-NLS-1$
-		node.setAttribute(KEY_DATE_END, formatExternDate(task.getCompletionDate()));
-		node.setAttribute(KEY_DATE_CREATION, formatExternDate(task.getCreationDate()));
-		node.setAttribute(KEY_DATE_MODIFICATION, formatExternDate(task.getModificationDate()));
-		node.setAttribute(KEY_DATE_DUE, formatExternDate(task.getDueDate()));
+			attributes.put(KEY_ISSUEURL, task.getUrl());
+		}
+		attributes.put(KEY_NOTES, stripControlCharacters(task.getNotes()));
+		attributes.put(KEY_TIME_ESTIMATED, "" + task.getEstimatedTimeHours()); //$NON-NLS-1$
+		attributes.put(KEY_DATE_END, formatExternDate(task.getCompletionDate()));
+		attributes.put(KEY_DATE_CREATION, formatExternDate(task.getCreationDate()));
+		attributes.put(KEY_DATE_MODIFICATION, formatExternDate(task.getModificationDate()));
+		attributes.put(KEY_DATE_DUE, formatExternDate(task.getDueDate()));
 		if (task.getScheduledForDate() != null) {
-			node.setAttribute(KEY_DATE_SCHEDULED_START, formatExternCalendar(task.getScheduledForDate().getStartDate()));
-			node.setAttribute(KEY_DATE_SCHEDULED_END, formatExternCalendar(task.getScheduledForDate().getEndDate()));
+			attributes.put(KEY_DATE_SCHEDULED_START, formatExternCalendar(task.getScheduledForDate().getStartDate()));
+			attributes.put(KEY_DATE_SCHEDULED_END, formatExternCalendar(task.getScheduledForDate().getEndDate()));
 		}
 		if (task.isReminded()) {
-			node.setAttribute(KEY_REMINDED, VAL_TRUE);
+			attributes.put(KEY_REMINDED, VAL_TRUE);
 		} else {
-			node.setAttribute(KEY_REMINDED, VAL_FALSE);
+			attributes.put(KEY_REMINDED, VAL_FALSE);
 		}
 		if (task.isStale()) {
-			node.setAttribute(KEY_STALE, VAL_TRUE);
+			attributes.put(KEY_STALE, VAL_TRUE);
 		} else {
-			node.setAttribute(KEY_STALE, VAL_FALSE);
+			attributes.put(KEY_STALE, VAL_FALSE);
 		}
 		if (task.isMarkReadPending()) {
-			node.setAttribute(KEY_MARK_READ_PENDING, VAL_TRUE);
+			attributes.put(KEY_MARK_READ_PENDING, VAL_TRUE);
 		} else {
-			node.setAttribute(KEY_MARK_READ_PENDING, VAL_FALSE);
+			attributes.put(KEY_MARK_READ_PENDING, VAL_FALSE);
 		}
 		if (task.getLastReadTimeStamp() != null) {
-			node.setAttribute(KEY_LAST_MOD_DATE, task.getLastReadTimeStamp());
+			attributes.put(KEY_LAST_MOD_DATE, task.getLastReadTimeStamp());
 		}
 		if (task.isNotified()) {
-			node.setAttribute(KEY_NOTIFIED_INCOMING, VAL_TRUE);
+			attributes.put(KEY_NOTIFIED_INCOMING, VAL_TRUE);
 		} else {
-			node.setAttribute(KEY_NOTIFIED_INCOMING, VAL_FALSE);
+			attributes.put(KEY_NOTIFIED_INCOMING, VAL_FALSE);
 		}
 		if (task.getSynchronizationState() != null) {
-			node.setAttribute(KEY_SYNC_STATE, task.getSynchronizationState().name());
+			attributes.put(KEY_SYNC_STATE, task.getSynchronizationState().name());
 		} else {
-			node.setAttribute(KEY_SYNC_STATE, SynchronizationState.SYNCHRONIZED.name());
+			attributes.put(KEY_SYNC_STATE, SynchronizationState.SYNCHRONIZED.name());
 		}
 		if (task.getOwner() != null) {
-			node.setAttribute(KEY_OWNER, task.getOwner());
-		}
-		createAttributes(task, doc, node);
-		for (ITask t : task.getChildren()) {
-			createTaskReference(KEY_SUBTASK, t, doc, node);
+			attributes.put(KEY_OWNER, task.getOwner());
 		}
-
-		parent.appendChild(node);
-		return node;
+		return attributes;
 	}
 
 	private void createAttributes(IAttributeContainer container, Document doc, Element parent) {
@@ -306,6 +357,18 @@ public final class DelegatingTaskExternalizer {
 
 	}
 
+	private void writeAttributes(IAttributeContainer container, ContentHandler handler) throws SAXException {
+		Map<String, String> attributes = container.getAttributes();
+		for (Map.Entry<String, String> entry : attributes.entrySet()) {
+			startElement(handler, NODE_ATTRIBUTE, Collections.singletonMap(KEY_KEY, entry.getKey()));
+			String value = entry.getValue();
+			if (value != null) {
+				handler.characters(value.toCharArray(), 0, value.length());
+			}
+			endElement(handler, NODE_ATTRIBUTE);
+		}
+	}
+
 	/**
 	 * creates nested task reference nodes named nodeName which include a handle to the task
 	 * 
@@ -318,6 +381,30 @@ public final class DelegatingTaskExternalizer {
 		return node;
 	}
 
+	private void writeTaskReference(String nodeName, ITask task, ContentHandler handler) throws SAXException {
+		startElement(handler, nodeName, Collections.singletonMap(KEY_HANDLE, task.getHandleIdentifier()));
+		endElement(handler, nodeName);
+	}
+
+	private void setAttributes(Element node, Map<String, String> attributes) {
+		for (Map.Entry<String, String> entry : attributes.entrySet()) {
+			node.setAttribute(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void startElement(ContentHandler handler, String nodeName, Map<String, String> attributes)
+			throws SAXException {
+		AttributesImpl saxAttributes = new AttributesImpl();
+		for (Map.Entry<String, String> entry : attributes.entrySet()) {
+			saxAttributes.addAttribute("", entry.getKey(), entry.getKey(), "", entry.getValue()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		handler.startElement("", nodeName, nodeName, saxAttributes); //$NON-NLS-1$
+	}
+
+	private void endElement(ContentHandler handler, String nodeName) throws SAXException {
+		handler.endElement("", nodeName, nodeName); //$NON-NLS-1$
+	}
+
 	/**
 	 * create tasks from the nodes provided and places them within the given container
 	 */
@@ -654,23 +741,12 @@ public final class DelegatingTaskExternalizer {
 	}
 
 	public Element createQueryElement(final RepositoryQuery query, Document doc, Element parent) {
-		final Element node;
-		if (query.getClass() == RepositoryQuery.class) {
-			node = doc.createElement(NODE_QUERY);
-		} else {
-			errors.add(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN,
-					"Missing factory to externalize query \"" + query + "\"")); //$NON-NLS-1$ //$NON-NLS-2$
+		if (!canCreateQueryElement(query)) {
 			return null;
 		}
 
-		node.setAttribute(KEY_HANDLE, query.getHandleIdentifier());
-		node.setAttribute(KEY_CONNECTOR_KIND, query.getConnectorKind());
-		node.setAttribute(KEY_NAME, query.getSummary());
-		node.setAttribute(KEY_QUERY_STRING, query.getUrl());
-		node.setAttribute(KEY_REPOSITORY_URL, query.getRepositoryUrl());
-		if (query.getLastSynchronizedTimeStamp() != null) {
-			node.setAttribute(KEY_LAST_REFRESH, query.getLastSynchronizedTimeStamp());
-		}
+		Element node = doc.createElement(NODE_QUERY);
+		setAttributes(node, getQueryAttributes(query));
 		createAttributes(query, doc, node);
 		for (ITask hit : query.getChildren()) {
 			createTaskReference(KEY_QUERY_HIT, hit, doc, node);
@@ -680,6 +756,45 @@ public final class DelegatingTaskExternalizer {
 		return node;
 	}
 
+	/**
+	 * Writes the element for <code>query</code> to <code>handler</code>. Produces the same element as
+	 * {@link #createQueryElement(RepositoryQuery, Document, Element)}.
+	 */
+	public void writeQueryElement(RepositoryQuery query, ContentHandler handler) throws SAXException {
+		if (!canCreateQueryElement(query)) {
+			return;
+		}
+
+		startElement(handler, NODE_QUERY, getQueryAttributes(query));
+		writeAttributes(query, handler);
+		for (ITask hit : query.getChildren()) {
+			writeTaskReference(KEY_QUERY_HIT, hit, handler);
+		}
+		endElement(handler, NODE_QUERY);
+	}
+
+	private boolean canCreateQueryElement(RepositoryQuery query) {
+		if (query.getClass() == RepositoryQuery.class) {
+			return true;
+		}
+		errors.add(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN,
+				"Missing factory to externalize query \"" + query + "\"")); //$NON-NLS-1$ //$NON-NLS-2$
+		return false;
+	}
+
+	private Map<String, String> getQueryAttributes(RepositoryQuery query) {
+		Map<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put(KEY_HANDLE, query.getHandleIdentifier());
+		attributes.put(KEY_CONNECTOR_KIND, query.getConnectorKind());
+		attributes.put(KEY_NAME, query.getSummary());
+		attributes.put(KEY_QUERY_STRING, query.getUrl());
+		attributes.put(KEY_REPOSITORY_URL, query.getRepositoryUrl());
+		if (query.getLastSynchronizedTimeStamp() != null) {
+			attributes.put(KEY_LAST_REFRESH, query.getLastSynchronizedTimeStamp());
+		}
+		return attributes;
+	}
+
 	public Map<AbstractTask, String> getLegacyParentCategoryMap() {
 		return parentCategoryMap;
 	}
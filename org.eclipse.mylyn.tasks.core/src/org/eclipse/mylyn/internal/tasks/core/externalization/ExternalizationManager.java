@@ -99,7 +99,7 @@ public class ExternalizationManager {
 
 	public IStatus load(final IExternalizationParticipant participant, final IProgressMonitor monitor) {
 		final IStatus[] result = new IStatus[1];
-		final ExternalizationContext context = new ExternalizationContext(Kind.LOAD, rootFolderPath);
+		final ExternalizationContext context = new ExternalizationContext(Kind.LOAD, rootFolderPath, false);
 		ISchedulingRule rule = participant.getSchedulingRule();
 		try {
 			Job.getJobManager().beginRule(rule, monitor);
@@ -126,7 +126,7 @@ public class ExternalizationManager {
 	public void setRootFolderPath(String rootFolderPath) {
 		Assert.isNotNull(rootFolderPath);
 		this.rootFolderPath = rootFolderPath;
-		saveJob.setContext(new ExternalizationContext(Kind.SAVE, rootFolderPath));
+		saveJob.setContext(new ExternalizationContext(Kind.SAVE, rootFolderPath, false));
 	}
 
 	public void requestSave() {
@@ -148,7 +148,8 @@ public class ExternalizationManager {
 	}
 
 	/**
-	 * Performs a full save, trying until one has succeeded
+	 * Performs a full save, trying until one has succeeded. Participants write their complete state rather than only
+	 * recent changes.
 	 */
 	public void saveNow() throws InterruptedException {
 		saveJob.setFullSavePending();
@@ -211,6 +212,9 @@ public class ExternalizationManager {
 
 					boolean fullSave = isFullSavePending;
 					isFullSavePending = false;
+					if (fullSave || forceSave) {
+						context = new ExternalizationContext(Kind.SAVE, context.getRootPath(), true);
+					}
 
 					for (IExternalizationParticipant participant : externalizationParticipants) {
 						ISchedulingRule rule = participant.getSchedulingRule();
@@ -247,9 +251,12 @@ public class ExternalizationManager {
 
 		private final String rootPath;
 
-		public ExternalizationContext(IExternalizationContext.Kind kind, String rootPath) {
+		private final boolean fullSave;
+
+		public ExternalizationContext(IExternalizationContext.Kind kind, String rootPath, boolean fullSave) {
 			this.kind = kind;
 			this.rootPath = rootPath;
+			this.fullSave = fullSave;
 		}
 
 		public Kind getKind() {
@@ -259,6 +266,10 @@ public class ExternalizationManager {
 		public String getRootPath() {
 			return rootPath;
 		}
+
+		public boolean isFullSave() {
+			return fullSave;
+		}
 	}
 
 }
@@ -23,4 +23,10 @@ public interface IExternalizationContext {
 	public abstract Kind getKind();
 
 	public abstract String getRootPath();
+
+	/**
+	 * Returns true, if participants should write their complete state on save rather than only recent changes, e.g.
+	 * on shutdown.
+	 */
+	public abstract boolean isFullSave();
 }
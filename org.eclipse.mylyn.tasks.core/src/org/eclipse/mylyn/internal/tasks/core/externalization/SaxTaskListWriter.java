@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.tasks.core.externalization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.internal.tasks.core.AbstractTask;
+import org.eclipse.mylyn.internal.tasks.core.AbstractTaskCategory;
+import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
+import org.eclipse.mylyn.internal.tasks.core.ITransferList;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
+import org.eclipse.mylyn.tasks.core.IRepositoryElement;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Writes the task list as a stream of SAX events without building a DOM of the whole task list first. The output is
+ * identical to the document previously created by {@link TaskListExternalizer}.
+ */
+class SaxTaskListWriter {
+
+	private static final String TRANSFORM_PROPERTY_VERSION = "version"; //$NON-NLS-1$
+
+	// May 2007: There was a bug when reading in 1.1
+	// Result was an infinite loop within the parser
+	private static final String XML_VERSION = "1.0"; //$NON-NLS-1$
+
+	private static final String ENCODING_UTF_8 = "UTF-8"; //$NON-NLS-1$
+
+	private final DelegatingTaskExternalizer delegatingExternalizer;
+
+	public SaxTaskListWriter(DelegatingTaskExternalizer delegatingExternalizer) {
+		this.delegatingExternalizer = delegatingExternalizer;
+	}
+
+	/**
+	 * Writes the tasks, categories and queries of <code>taskList</code> followed by <code>orphanedNodes</code> to
+	 * <code>outputStream</code>.
+	 */
+	public void writeTaskList(ITransferList taskList, List<Node> orphanedNodes, OutputStream outputStream)
+			throws CoreException {
+		try {
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(TRANSFORM_PROPERTY_VERSION, XML_VERSION);
+			transformer.transform(new SAXSource(new TaskListWriter(), new TaskListInputSource(taskList, orphanedNodes)),
+					new StreamResult(outputStream));
+		} catch (TransformerException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Failed write task list", //$NON-NLS-1$
+					e));
+		}
+	}
+
+	/**
+	 * Writes a {@link TaskListExternalizer#ELEMENT_DELTA} element that contains the current state of
+	 * <code>elements</code> to <code>outputStream</code> without an XML declaration, elements that have been removed
+	 * from the task list are represented by a {@link TaskListExternalizer#ELEMENT_REMOVED} element.
+	 */
+	public void writeDelta(ITransferList taskList, Collection<IRepositoryElement> elements, OutputStream outputStream)
+			throws CoreException {
+		try {
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(TRANSFORM_PROPERTY_VERSION, XML_VERSION);
+			transformer.setOutputProperty(OutputKeys.ENCODING, ENCODING_UTF_8);
+			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes"); //$NON-NLS-1$
+			transformer.transform(new SAXSource(new TaskListWriter(), new DeltaInputSource(taskList, elements)),
+					new StreamResult(outputStream));
+		} catch (TransformerException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+					"Failed write task list journal", e)); //$NON-NLS-1$
+		}
+	}
+
+	private static class DeltaInputSource extends InputSource {
+
+		private final ITransferList taskList;
+
+		private final Collection<IRepositoryElement> elements;
+
+		public DeltaInputSource(ITransferList taskList, Collection<IRepositoryElement> elements) {
+			this.taskList = taskList;
+			this.elements = elements;
+		}
+
+		public ITransferList getTaskList() {
+			return taskList;
+		}
+
+		public Collection<IRepositoryElement> getElements() {
+			return elements;
+		}
+
+	}
+
+	private static class TaskListInputSource extends InputSource {
+
+		private final ITransferList taskList;
+
+		private final List<Node> orphanedNodes;
+
+		public TaskListInputSource(ITransferList taskList, List<Node> orphanedNodes) {
+			this.taskList = taskList;
+			this.orphanedNodes = orphanedNodes;
+		}
+
+		public ITransferList getTaskList() {
+			return taskList;
+		}
+
+		public List<Node> getOrphanedNodes() {
+			return orphanedNodes;
+		}
+
+	}
+
+	private class TaskListWriter implements XMLReader {
+
+		private ContentHandler handler;
+
+		private ErrorHandler errorHandler;
+
+		public boolean getFeature(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+			return false;
+		}
+
+		public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+		}
+
+		public Object getProperty(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+			return null;
+		}
+
+		public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+		}
+
+		public void setEntityResolver(EntityResolver resolver) {
+		}
+
+		public EntityResolver getEntityResolver() {
+			return null;
+		}
+
+		public void setDTDHandler(DTDHandler handler) {
+		}
+
+		public DTDHandler getDTDHandler() {
+			return null;
+		}
+
+		public void setContentHandler(ContentHandler handler) {
+			this.handler = handler;
+		}
+
+		public ContentHandler getContentHandler() {
+			return handler;
+		}
+
+		public void setErrorHandler(ErrorHandler handler) {
+			this.errorHandler = handler;
+		}
+
+		public ErrorHandler getErrorHandler() {
+			return errorHandler;
+		}
+
+		public void parse(InputSource input) throws IOException, SAXException {
+			if (input instanceof DeltaInputSource) {
+				writeDelta(((DeltaInputSource) input).getTaskList(), ((DeltaInputSource) input).getElements());
+				return;
+			}
+			if (!(input instanceof TaskListInputSource)) {
+				throw new SAXException("Can only parse writable input sources"); //$NON-NLS-1$
+			}
+
+			ITransferList taskList = ((TaskListInputSource) input).getTaskList();
+			List<Node> orphanedNodes = ((TaskListInputSource) input).getOrphanedNodes();
+
+			handler.startDocument();
+			AttributesImpl rootAttributes = new AttributesImpl();
+			rootAttributes.addAttribute("", TaskListExternalizer.ATTRIBUTE_VERSION, //$NON-NLS-1$
+					TaskListExternalizer.ATTRIBUTE_VERSION, "", TaskListExternalizer.VALUE_VERSION); //$NON-NLS-1$
+			handler.startElement("", TaskListExternalizer.ELEMENT_TASK_LIST, TaskListExternalizer.ELEMENT_TASK_LIST, //$NON-NLS-1$
+					rootAttributes);
+
+			for (AbstractTask task : taskList.getAllTasks()) {
+				delegatingExternalizer.writeTaskElement(task, handler);
+			}
+
+			for (AbstractTaskCategory category : taskList.getCategories()) {
+				delegatingExternalizer.writeCategoryElement(category, handler);
+			}
+
+			for (RepositoryQuery query : taskList.getQueries()) {
+				delegatingExternalizer.writeQueryElement(query, handler);
+			}
+
+			for (Node node : orphanedNodes) {
+				writeNode(node);
+			}
+
+			handler.endElement("", TaskListExternalizer.ELEMENT_TASK_LIST, TaskListExternalizer.ELEMENT_TASK_LIST); //$NON-NLS-1$
+			handler.endDocument();
+		}
+
+		public void parse(String systemId) throws IOException, SAXException {
+			throw new SAXException("Can only parse writable input sources"); //$NON-NLS-1$
+		}
+
+		private void writeDelta(ITransferList taskList, Collection<IRepositoryElement> elements) throws SAXException {
+			handler.startDocument();
+			handler.startElement("", TaskListExternalizer.ELEMENT_DELTA, TaskListExternalizer.ELEMENT_DELTA, //$NON-NLS-1$
+					new AttributesImpl());
+			for (IRepositoryElement element : elements) {
+				String handle = element.getHandleIdentifier();
+				if (element instanceof AbstractTask && taskList.getTask(handle) == element) {
+					delegatingExternalizer.writeTaskElement((AbstractTask) element, handler);
+				} else if (element instanceof AbstractTaskCategory && taskList.getContainerForHandle(handle) == element) {
+					delegatingExternalizer.writeCategoryElement((AbstractTaskCategory) element, handler);
+				} else if (element instanceof RepositoryQuery && taskList.getQueries().contains(element)) {
+					delegatingExternalizer.writeQueryElement((RepositoryQuery) element, handler);
+				} else {
+					AttributesImpl attributes = new AttributesImpl();
+					attributes.addAttribute("", DelegatingTaskExternalizer.KEY_HANDLE, //$NON-NLS-1$
+							DelegatingTaskExternalizer.KEY_HANDLE, "", handle); //$NON-NLS-1$
+					handler.startElement("", TaskListExternalizer.ELEMENT_REMOVED, //$NON-NLS-1$
+							TaskListExternalizer.ELEMENT_REMOVED, attributes);
+					handler.endElement("", TaskListExternalizer.ELEMENT_REMOVED, TaskListExternalizer.ELEMENT_REMOVED); //$NON-NLS-1$
+				}
+			}
+			handler.endElement("", TaskListExternalizer.ELEMENT_DELTA, TaskListExternalizer.ELEMENT_DELTA); //$NON-NLS-1$
+			handler.endDocument();
+		}
+
+		private void writeNode(Node node) throws SAXException {
+			if (node instanceof Element) {
+				Element element = (Element) node;
+				AttributesImpl attributes = new AttributesImpl();
+				NamedNodeMap nodeAttributes = element.getAttributes();
+				for (int i = 0; i < nodeAttributes.getLength(); i++) {
+					Attr attribute = (Attr) nodeAttributes.item(i);
+					attributes.addAttribute("", attribute.getName(), attribute.getName(), "", attribute.getValue()); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				handler.startElement("", element.getTagName(), element.getTagName(), attributes); //$NON-NLS-1$
+				for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+					writeNode(child);
+				}
+				handler.endElement("", element.getTagName(), element.getTagName()); //$NON-NLS-1$
+			} else if (node instanceof Text) {
+				String text = ((Text) node).getData();
+				handler.characters(text.toCharArray(), 0, text.length());
+			}
+		}
+
+	}
+
+}
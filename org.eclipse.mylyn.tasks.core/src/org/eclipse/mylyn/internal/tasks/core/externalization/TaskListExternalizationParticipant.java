@@ -12,25 +12,40 @@
 package org.eclipse.mylyn.internal.tasks.core.externalization;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.mylyn.internal.tasks.core.AbstractTask;
+import org.eclipse.mylyn.internal.tasks.core.AbstractTaskCategory;
+import org.eclipse.mylyn.internal.tasks.core.AutomaticRepositoryTaskContainer;
 import org.eclipse.mylyn.internal.tasks.core.ITaskListChangeListener;
 import org.eclipse.mylyn.internal.tasks.core.ITaskListRunnable;
 import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
 import org.eclipse.mylyn.internal.tasks.core.LocalRepositoryConnector;
 import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
 import org.eclipse.mylyn.internal.tasks.core.TaskContainerDelta;
 import org.eclipse.mylyn.internal.tasks.core.TaskList;
 import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryManager;
 import org.eclipse.mylyn.internal.tasks.core.UnmatchedTaskContainer;
+import org.eclipse.mylyn.tasks.core.IRepositoryElement;
 import org.eclipse.mylyn.tasks.core.ITask;
 import org.eclipse.mylyn.tasks.core.ITaskActivationListener;
 import org.eclipse.mylyn.tasks.core.TaskRepository;
 
 /**
+ * Saves changes to the task list incrementally: changed elements are appended to a journal next to the task list file
+ * and the complete task list is only written on a full save, e.g. on shutdown, or once the journal has grown beyond
+ * {@link #MAX_JOURNAL_SIZE}. The journal is replayed on top of the task list file on load.
+ * 
  * @author Rob Elves
  */
 public class TaskListExternalizationParticipant extends AbstractExternalizationParticipant implements
@@ -38,6 +53,13 @@ public class TaskListExternalizationParticipant extends AbstractExternalizationP
 
 	private static final String DESCRIPTION = Messages.TaskListExternalizationParticipant_Task_List;
 
+	public static final String JOURNAL_SUFFIX = ".journal"; //$NON-NLS-1$
+
+	/**
+	 * The complete task list is written once the journal exceeds this size.
+	 */
+	private static final long MAX_JOURNAL_SIZE = 1024 * 1024;
+
 	private final ExternalizationManager manager;
 
 	private final TaskListExternalizer taskListWriter;
@@ -50,6 +72,21 @@ public class TaskListExternalizationParticipant extends AbstractExternalizationP
 
 	private final RepositoryModel repositoryModel;
 
+	/**
+	 * Elements changed since the last save by handle.
+	 */
+	private final Map<String, IRepositoryElement> changedElements = new LinkedHashMap<String, IRepositoryElement>();
+
+	/**
+	 * Set when a change can not be expressed by the journal.
+	 */
+	private boolean fullSaveRequired = true;
+
+	/**
+	 * The task list file that the journal applies to.
+	 */
+	private File snapshotFile;
+
 	public TaskListExternalizationParticipant(RepositoryModel repositoryModel, TaskList taskList,
 			TaskListExternalizer taskListExternalizer, ExternalizationManager manager,
 			TaskRepositoryManager repositoryManager) {
@@ -70,16 +107,84 @@ public class TaskListExternalizationParticipant extends AbstractExternalizationP
 		return dirty;
 	}
 
+	/**
+	 * Returns true for full saves if the journal has not been merged into the task list file yet.
+	 */
+	@Override
+	public boolean isDirty(boolean full) {
+		synchronized (TaskListExternalizationParticipant.this) {
+			if (dirty) {
+				return true;
+			}
+			return full && snapshotFile != null && getJournalFile(snapshotFile).exists();
+		}
+	}
+
+	@Override
+	public void execute(IExternalizationContext context, IProgressMonitor monitor) throws CoreException {
+		if (context.getKind() == IExternalizationContext.Kind.SAVE && !context.isFullSave()) {
+			File dataFile = getFile(context.getRootPath());
+			if (canAppendJournal(dataFile)) {
+				appendJournal(getJournalFile(dataFile), monitor);
+				return;
+			}
+		}
+		super.execute(context, monitor);
+	}
+
+	private boolean canAppendJournal(File dataFile) {
+		synchronized (TaskListExternalizationParticipant.this) {
+			if (fullSaveRequired || dataFile == null || !dataFile.equals(snapshotFile)) {
+				return false;
+			}
+		}
+		return dataFile.exists() && getJournalFile(dataFile).length() < MAX_JOURNAL_SIZE;
+	}
+
+	private void appendJournal(final File journalFile, IProgressMonitor monitor) throws CoreException {
+		ITaskListRunnable saveRunnable = new ITaskListRunnable() {
+			public void execute(IProgressMonitor monitor) throws CoreException {
+				List<IRepositoryElement> elements;
+				synchronized (TaskListExternalizationParticipant.this) {
+					dirty = false;
+					elements = new ArrayList<IRepositoryElement>(changedElements.values());
+					changedElements.clear();
+				}
+				if (elements.isEmpty()) {
+					return;
+				}
+				try {
+					taskListWriter.appendJournal(taskList, elements, journalFile);
+				} catch (CoreException e) {
+					synchronized (TaskListExternalizationParticipant.this) {
+						dirty = true;
+						fullSaveRequired = true;
+					}
+					throw e;
+				}
+			}
+		};
+
+		taskList.run(saveRunnable, monitor);
+	}
+
 	@Override
 	public void load(final File sourceFile, IProgressMonitor monitor) throws CoreException {
 		ITaskListRunnable loadRunnable = new ITaskListRunnable() {
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				resetTaskList();
-				taskListWriter.readTaskList(taskList, sourceFile);
+				taskListWriter.readTaskList(taskList, sourceFile, getJournalFile(sourceFile));
 			}
 		};
 
 		taskList.run(loadRunnable, monitor);
+
+		synchronized (TaskListExternalizationParticipant.this) {
+			// changes made while loading are contained in the loaded files
+			changedElements.clear();
+			snapshotFile = sourceFile;
+			fullSaveRequired = taskListWriter.isJournalIncomplete();
+		}
 	}
 
 	@Override
@@ -125,14 +230,51 @@ public class TaskListExternalizationParticipant extends AbstractExternalizationP
 			public void execute(IProgressMonitor monitor) throws CoreException {
 				synchronized (TaskListExternalizationParticipant.this) {
 					dirty = false;
+					changedElements.clear();
+					fullSaveRequired = true;
+					snapshotFile = null;
+				}
+				// the journal of a previous snapshot must never be replayed on top of the new one
+				File journalFile = getJournalFile(targetFile);
+				if (journalFile.exists() && !journalFile.delete()) {
+					throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+							"Failed to delete task list journal \"" + journalFile.getAbsolutePath() + "\"")); //$NON-NLS-1$ //$NON-NLS-2$
 				}
 				taskListWriter.writeTaskList(taskList, targetFile);
+				synchronized (TaskListExternalizationParticipant.this) {
+					fullSaveRequired = false;
+					snapshotFile = targetFile;
+				}
 			}
 		};
 
 		taskList.run(saveRunnable, monitor);
 	}
 
+	/**
+	 * Moves the journal along with the task list file so that the snapshot can be restored completely.
+	 */
+	@Override
+	protected boolean takeSnapshot(File file) {
+		File journalFile = getJournalFile(file);
+		File backupJournalFile = getJournalFile(new File(file.getParentFile(), SNAPSHOT_PREFIX + file.getName()));
+		if (super.takeSnapshot(file)) {
+			backupJournalFile.delete();
+			if (journalFile.exists()) {
+				journalFile.renameTo(backupJournalFile);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the journal for <code>taskListFile</code>.
+	 */
+	public static File getJournalFile(File taskListFile) {
+		return new File(taskListFile.getParentFile(), taskListFile.getName() + JOURNAL_SUFFIX);
+	}
+
 	@Override
 	public String getDescription() {
 		return DESCRIPTION;
@@ -144,15 +286,45 @@ public class TaskListExternalizationParticipant extends AbstractExternalizationP
 	}
 
 	public void containersChanged(Set<TaskContainerDelta> containers) {
-		for (TaskContainerDelta taskContainerDelta : containers) {
-			if (!taskContainerDelta.isTransient()) {
-				synchronized (TaskListExternalizationParticipant.this) {
-					dirty = true;
+		boolean changed = false;
+		synchronized (TaskListExternalizationParticipant.this) {
+			for (TaskContainerDelta taskContainerDelta : containers) {
+				if (!taskContainerDelta.isTransient()) {
+					addChange(taskContainerDelta);
+					changed = true;
 				}
-				manager.requestSave();
-				return;
+			}
+			if (changed) {
+				dirty = true;
 			}
 		}
+		if (changed) {
+			manager.requestSave();
+		}
+	}
+
+	private void addChange(TaskContainerDelta delta) {
+		IRepositoryElement element = delta.getElement();
+		if (delta.getKind() == TaskContainerDelta.Kind.ROOT || !isPersisted(element)) {
+			// the change is not limited to elements that are stored in the task list file
+			fullSaveRequired = true;
+			return;
+		}
+		addChange(element);
+		if (isPersisted(delta.getParent())) {
+			addChange((IRepositoryElement) delta.getParent());
+		}
+	}
+
+	private void addChange(IRepositoryElement element) {
+		changedElements.put(element.getHandleIdentifier(), element);
+	}
+
+	private static boolean isPersisted(Object element) {
+		// the content of automatic containers is derived from the tasks and not stored
+		return element instanceof AbstractTask
+				|| (element instanceof AbstractTaskCategory && !(element instanceof AutomaticRepositoryTaskContainer))
+				|| element instanceof RepositoryQuery;
 	}
 
 	public void preTaskActivated(ITask task) {
@@ -167,6 +339,7 @@ public class TaskListExternalizationParticipant extends AbstractExternalizationP
 
 	public void taskActivated(ITask task) {
 		synchronized (TaskListExternalizationParticipant.this) {
+			addChange(task);
 			dirty = true;
 		}
 		manager.requestSave();
@@ -175,6 +348,7 @@ public class TaskListExternalizationParticipant extends AbstractExternalizationP
 
 	public void taskDeactivated(ITask task) {
 		synchronized (TaskListExternalizationParticipant.this) {
+			addChange(task);
 			dirty = true;
 		}
 		manager.requestSave();
@@ -13,14 +13,19 @@
 
 package org.eclipse.mylyn.internal.tasks.core.externalization;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.ZipEntry;
@@ -30,13 +35,7 @@ import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
@@ -49,11 +48,17 @@ import org.eclipse.mylyn.internal.tasks.core.ITransferList;
 import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
 import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
 import org.eclipse.mylyn.tasks.core.AbstractTaskListMigrator;
+import org.eclipse.mylyn.tasks.core.IRepositoryElement;
 import org.eclipse.mylyn.tasks.core.IRepositoryManager;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * @author Mik Kersten
@@ -63,24 +68,35 @@ public class TaskListExternalizer {
 
 	private static final String ERROR_TASKLIST_READ = "Failed to load Task List"; //$NON-NLS-1$
 
-	private static final String TRANSFORM_PROPERTY_VERSION = "version"; //$NON-NLS-1$
-
-	// May 2007: There was a bug when reading in 1.1
-	// Result was an infinite loop within the parser
-	private static final String XML_VERSION = "1.0"; //$NON-NLS-1$
-
 	public static final String ATTRIBUTE_VERSION = "Version"; //$NON-NLS-1$
 
 	public static final String ELEMENT_TASK_LIST = "TaskList"; //$NON-NLS-1$
 
 	// Mylyn 3.0
-	private static final String VALUE_VERSION = "2.0"; //$NON-NLS-1$
+	static final String VALUE_VERSION = "2.0"; //$NON-NLS-1$
 
 	// Mylyn 2.3.2
 	//private static final String VALUE_VERSION_1_0_1 = "1.0.1";
 
 	private static final String VALUE_VERSION_1_0_0 = "1.0.0"; //$NON-NLS-1$
 
+	/**
+	 * Root element that wraps the deltas of a journal when it is read.
+	 */
+	private static final String ELEMENT_JOURNAL = "Journal"; //$NON-NLS-1$
+
+	/**
+	 * Contains the elements changed by a single journal append.
+	 */
+	static final String ELEMENT_DELTA = "Delta"; //$NON-NLS-1$
+
+	/**
+	 * Marks the element with the handle of the <code>Handle</code> attribute as removed in a journal.
+	 */
+	static final String ELEMENT_REMOVED = "Removed"; //$NON-NLS-1$
+
+	private static final String ENCODING_UTF_8 = "UTF-8"; //$NON-NLS-1$
+
 	private final DelegatingTaskExternalizer delegatingExternalizer;
 
 	private final List<Node> orphanedNodes = new ArrayList<Node>();
@@ -89,6 +105,8 @@ public class TaskListExternalizer {
 
 	private String readVersion = ""; //$NON-NLS-1$
 
+	private boolean journalIncomplete;
+
 	public TaskListExternalizer(RepositoryModel repositoryModel, IRepositoryManager repositoryManager) {
 		this.delegatingExternalizer = new DelegatingTaskExternalizer(repositoryModel, repositoryManager);
 		try {
@@ -108,7 +126,7 @@ public class TaskListExternalizer {
 		try {
 			FileOutputStream outStream = new FileOutputStream(outFile);
 			try {
-				Document doc = createTaskListDocument(taskList);
+				delegatingExternalizer.clearErrorStatus();
 
 				ZipOutputStream zipOutStream = new ZipOutputStream(outStream);
 
@@ -116,7 +134,8 @@ public class TaskListExternalizer {
 				zipOutStream.putNextEntry(zipEntry);
 				zipOutStream.setMethod(ZipOutputStream.DEFLATED);
 
-				writeDocument(doc, zipOutStream);
+				// stream elements to the file instead of building a document for the entire task list first
+				new SaxTaskListWriter(delegatingExternalizer).writeTaskList(taskList, orphanedNodes, zipOutStream);
 
 				zipOutStream.flush();
 				zipOutStream.closeEntry();
@@ -128,58 +147,10 @@ public class TaskListExternalizer {
 			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Saving Task List failed", //$NON-NLS-1$
 					e));
 		}
-	}
-
-	private Document createTaskListDocument(ITransferList taskList) throws CoreException {
-		Document doc = createDocument();
-
-		delegatingExternalizer.clearErrorStatus();
-
-		Element root = doc.createElement(ELEMENT_TASK_LIST);
-		root.setAttribute(ATTRIBUTE_VERSION, VALUE_VERSION);
-		doc.appendChild(root);
-
-		// create task nodes...
-		for (AbstractTask task : taskList.getAllTasks()) {
-			delegatingExternalizer.createTaskElement(task, doc, root);
-		}
-
-		// create the category nodes...
-		for (AbstractTaskCategory category : taskList.getCategories()) {
-			delegatingExternalizer.createCategoryElement(category, doc, root);
-		}
-
-		// create query nodes...
-		for (RepositoryQuery query : taskList.getQueries()) {
-			delegatingExternalizer.createQueryElement(query, doc, root);
-		}
-
-		// Persist orphaned tasks...
-		for (Node node : orphanedNodes) {
-			Node tempNode = doc.importNode(node, true);
-			if (tempNode != null) {
-				root.appendChild(tempNode);
-			}
-		}
 
 		if (delegatingExternalizer.getErrorStatus() != null) {
 			StatusHandler.log(delegatingExternalizer.getErrorStatus());
 		}
-
-		return doc;
-	}
-
-	private void writeDocument(Document doc, OutputStream outputStream) throws CoreException {
-		Source source = new DOMSource(doc);
-		Result result = new StreamResult(outputStream);
-		try {
-			Transformer xformer = TransformerFactory.newInstance().newTransformer();
-			xformer.setOutputProperty(TRANSFORM_PROPERTY_VERSION, XML_VERSION);
-			xformer.transform(source, result);
-		} catch (TransformerException e) {
-			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Failed write task list", //$NON-NLS-1$
-					e));
-		}
 	}
 
 	private Document createDocument() throws CoreException {
@@ -194,7 +165,45 @@ public class TaskListExternalizer {
 		}
 	}
 
+	/**
+	 * Appends the current state of <code>elements</code> to the journal of a task list file. Elements that are no
+	 * longer contained in <code>taskList</code> are recorded as removed. The journal is replayed on top of the task
+	 * list file by {@link #readTaskList(ITransferList, File, File)}.
+	 */
+	public void appendJournal(ITransferList taskList, Collection<IRepositoryElement> elements, File journalFile)
+			throws CoreException {
+		delegatingExternalizer.clearErrorStatus();
+
+		// write the delta in a single append to keep the window for partial writes small
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		new SaxTaskListWriter(delegatingExternalizer).writeDelta(taskList, elements, delta);
+		try {
+			FileOutputStream outStream = new FileOutputStream(journalFile, true);
+			try {
+				outStream.write(delta.toByteArray());
+				outStream.getFD().sync();
+			} finally {
+				outStream.close();
+			}
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+					"Saving Task List journal failed", e)); //$NON-NLS-1$
+		}
+
+		if (delegatingExternalizer.getErrorStatus() != null) {
+			StatusHandler.log(delegatingExternalizer.getErrorStatus());
+		}
+	}
+
 	public void readTaskList(ITransferList taskList, File inFile) throws CoreException {
+		readTaskList(taskList, inFile, null);
+	}
+
+	/**
+	 * Reads the task list from <code>inFile</code> and replays the deltas of <code>journalFile</code>, if it exists,
+	 * on top of it.
+	 */
+	public void readTaskList(ITransferList taskList, File inFile, File journalFile) throws CoreException {
 		if (!inFile.exists()) {
 			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
 					"Task list file not found \"" + inFile.getAbsolutePath() + "\"")); //$NON-NLS-1$ //$NON-NLS-2$
@@ -214,61 +223,47 @@ public class TaskListExternalizer {
 					"Failed to create document for orphaned nodes", e)); //$NON-NLS-1$
 		}
 
-		Document doc = openTaskList(inFile);
-		Element root = doc.getDocumentElement();
-		readVersion = root.getAttribute(ATTRIBUTE_VERSION);
-		if (readVersion.equals(VALUE_VERSION_1_0_0)) {
-			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Task list version \"" //$NON-NLS-1$
-					+ readVersion + "\" not supported")); //$NON-NLS-1$
+		Map<String, Element> journalElements = new LinkedHashMap<String, Element>();
+		journalIncomplete = false;
+		if (journalFile != null && journalFile.exists()) {
+			readJournal(journalFile, journalElements);
 		}
 
-		NodeList list = root.getChildNodes();
+		// tasks are read while the file is parsed, queries and categories once all tasks are known
+		TaskListContentHandler contentHandler = new TaskListContentHandler(taskList, journalElements);
+		openTaskList(inFile, contentHandler);
 
-		// read tasks
-		Map<AbstractTask, NodeList> tasksWithSubtasks = new HashMap<AbstractTask, NodeList>();
-		for (int i = 0; i < list.getLength(); i++) {
-			Node child = list.item(i);
-			if (!child.getNodeName().endsWith(DelegatingTaskExternalizer.KEY_CATEGORY)
-					&& !child.getNodeName().endsWith(DelegatingTaskExternalizer.KEY_QUERY)) {
-				AbstractTask task = delegatingExternalizer.readTask(child, null, null);
-				if (task != null) {
-					taskList.addTask(task);
-					if (child.getChildNodes() != null && child.getChildNodes().getLength() > 0) {
-						tasksWithSubtasks.put(task, child.getChildNodes());
-					}
-				} else {
-					addOrphan(child);
-				}
+		// read elements that were added after the task list file was written
+		List<Element> addedElements = new ArrayList<Element>(journalElements.values());
+		journalElements.clear();
+		for (Element child : addedElements) {
+			if (!ELEMENT_REMOVED.equals(child.getNodeName())) {
+				contentHandler.readElement(child);
 			}
 		}
+
 		// create subtask hierarchy
-		for (AbstractTask task : tasksWithSubtasks.keySet()) {
-			NodeList nodes = tasksWithSubtasks.get(task);
+		for (AbstractTask task : contentHandler.tasksWithSubtasks.keySet()) {
+			NodeList nodes = contentHandler.tasksWithSubtasks.get(task);
 			delegatingExternalizer.readTaskReferences(task, nodes, taskList);
 		}
 
 		// read queries
-		for (int i = 0; i < list.getLength(); i++) {
-			Node child = list.item(i);
-			if (child.getNodeName().endsWith(DelegatingTaskExternalizer.KEY_QUERY)) {
-				RepositoryQuery query = delegatingExternalizer.readQuery(child);
-				if (query != null) {
-					taskList.addQuery(query);
-					if (child.getChildNodes() != null && child.getChildNodes().getLength() > 0) {
-						delegatingExternalizer.readTaskReferences(query, child.getChildNodes(), taskList);
-					}
-				} else {
-					addOrphan(child);
+		for (Element child : contentHandler.queryElements) {
+			RepositoryQuery query = delegatingExternalizer.readQuery(child);
+			if (query != null) {
+				taskList.addQuery(query);
+				if (child.getChildNodes() != null && child.getChildNodes().getLength() > 0) {
+					delegatingExternalizer.readTaskReferences(query, child.getChildNodes(), taskList);
 				}
+			} else {
+				addOrphan(child);
 			}
 		}
 
 		// Read Categories
-		for (int i = 0; i < list.getLength(); i++) {
-			Node child = list.item(i);
-			if (child.getNodeName().endsWith(DelegatingTaskExternalizer.KEY_CATEGORY)) {
-				delegatingExternalizer.readCategory(child, taskList);
-			}
+		for (Element child : contentHandler.categoryElements) {
+			delegatingExternalizer.readCategory(child, taskList);
 		}
 
 		// Legacy migration for task nodes that have the old Category handle on the element
@@ -287,23 +282,71 @@ public class TaskListExternalizer {
 //		}
 	}
 
+	/**
+	 * Returns true, if the journal read by the last invocation of {@link #readTaskList(ITransferList, File, File)} ended
+	 * with an incomplete delta. Deltas appended to such a journal can not be read.
+	 */
+	public boolean isJournalIncomplete() {
+		return journalIncomplete;
+	}
+
+	private void readJournal(File journalFile, Map<String, Element> journalElements) {
+		InputStream in = null;
+		try {
+			// the journal is a sequence of delta elements, wrap it in a root element to make it a document
+			in = new SequenceInputStream(new ByteArrayInputStream(getBytes("<?xml version=\"1.0\" encoding=\"" //$NON-NLS-1$
+					+ ENCODING_UTF_8 + "\"?><" + ELEMENT_JOURNAL + ">")), new SequenceInputStream( //$NON-NLS-1$ //$NON-NLS-2$
+					new FileInputStream(journalFile), new ByteArrayInputStream(getBytes("</" + ELEMENT_JOURNAL + ">")))); //$NON-NLS-1$ //$NON-NLS-2$
+
+			XMLReader reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+			reader.setContentHandler(new JournalContentHandler(journalElements));
+			reader.parse(new InputSource(in));
+		} catch (Exception e) {
+			// most likely the last append did not complete, deltas read up to this point are valid
+			journalIncomplete = true;
+			StatusHandler.log(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN,
+					"Failed to read task list journal \"" + journalFile.getAbsolutePath() + "\"", e)); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+							"Failed to close task list journal", e)); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
+	private static byte[] getBytes(String text) throws UnsupportedEncodingException {
+		return text.getBytes(ENCODING_UTF_8);
+	}
+
 	private void addOrphan(Node child) {
 		// copy node to separate document to avoid retaining entire dom
-		if (orphanedDocument != null) {
+		if (orphanedDocument != null && child.getOwnerDocument() != orphanedDocument) {
 			orphanedNodes.add(orphanedDocument.importNode(child, true));
 		} else {
 			orphanedNodes.add(child);
 		}
 	}
 
+	private static boolean hasTaskReferences(Element element) {
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child instanceof Element && ((Element) child).hasAttribute(DelegatingTaskExternalizer.KEY_HANDLE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
-	 * Opens the specified XML file and parses it into a DOM Document. Filename - the name of the file to open Return -
-	 * the Document built from the XML file Throws - XMLException if the file cannot be parsed as XML - IOException if
-	 * the file cannot be opened
+	 * Opens the specified XML file and parses it with <code>contentHandler</code>.
 	 * 
 	 * @throws CoreException
+	 *             if the file cannot be opened or parsed as XML
 	 */
-	private Document openTaskList(File inputFile) throws CoreException {
+	private void openTaskList(File inputFile, TaskListContentHandler contentHandler) throws CoreException {
 		InputStream in = null;
 		try {
 			if (inputFile.getName().endsWith(ITasksCoreConstants.FILE_EXTENSION)) {
@@ -323,9 +366,14 @@ public class TaskListExternalizer {
 				in = new FileInputStream(inputFile);
 			}
 
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			return builder.parse(in);
+			XMLReader reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+			reader.setContentHandler(contentHandler);
+			reader.parse(new InputSource(in));
+		} catch (SAXException e) {
+			if (e.getException() instanceof CoreException) {
+				throw (CoreException) e.getException();
+			}
+			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, ERROR_TASKLIST_READ, e));
 		} catch (Exception e) {
 			throw new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, ERROR_TASKLIST_READ, e));
 		} finally {
@@ -340,4 +388,172 @@ public class TaskListExternalizer {
 		}
 	}
 
+	/**
+	 * Builds a detached element for each child of the root element and passes it to {@link #readElement(Element)} once
+	 * it has been parsed completely. Only a single child of the root element is held in memory at a time.
+	 */
+	private abstract class ElementContentHandler extends DefaultHandler {
+
+		private final Document document;
+
+		private final StringBuilder text = new StringBuilder();
+
+		private Element currentElement;
+
+		private int depth;
+
+		public ElementContentHandler() throws CoreException {
+			this.document = (orphanedDocument != null) ? orphanedDocument : createDocument();
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes)
+				throws SAXException {
+			depth++;
+			if (depth == 1) {
+				readRoot(attributes);
+				return;
+			}
+
+			flushText();
+			Element element = document.createElement(qName);
+			for (int i = 0; i < attributes.getLength(); i++) {
+				element.setAttribute(attributes.getQName(i), attributes.getValue(i));
+			}
+			if (currentElement != null) {
+				currentElement.appendChild(element);
+			}
+			currentElement = element;
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			if (depth > 1) {
+				flushText();
+				Element element = currentElement;
+				Node parent = element.getParentNode();
+				currentElement = (parent instanceof Element) ? (Element) parent : null;
+				if (depth == 2) {
+					try {
+						readElement(element);
+					} catch (CoreException e) {
+						throw new SAXException(e);
+					}
+				}
+			}
+			depth--;
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			if (currentElement != null) {
+				text.append(ch, start, length);
+			}
+		}
+
+		private void flushText() {
+			if (text.length() > 0) {
+				currentElement.appendChild(document.createTextNode(text.toString()));
+				text.setLength(0);
+			}
+		}
+
+		protected void readRoot(Attributes attributes) throws SAXException {
+		}
+
+		protected abstract void readElement(Element child) throws CoreException;
+
+	}
+
+	/**
+	 * Reads task elements as soon as they have been parsed and only retains them if they reference subtasks, query and
+	 * category elements are retained until all tasks have been read. Elements that have a newer state in the journal
+	 * are replaced by the journal element.
+	 */
+	private class TaskListContentHandler extends ElementContentHandler {
+
+		private final ITransferList taskList;
+
+		private final Map<String, Element> journalElements;
+
+		private final Map<AbstractTask, NodeList> tasksWithSubtasks = new HashMap<AbstractTask, NodeList>();
+
+		private final List<Element> queryElements = new ArrayList<Element>();
+
+		private final List<Element> categoryElements = new ArrayList<Element>();
+
+		public TaskListContentHandler(ITransferList taskList, Map<String, Element> journalElements)
+				throws CoreException {
+			this.taskList = taskList;
+			this.journalElements = journalElements;
+		}
+
+		@Override
+		protected void readRoot(Attributes attributes) throws SAXException {
+			readVersion = attributes.getValue(ATTRIBUTE_VERSION);
+			if (readVersion == null) {
+				readVersion = ""; //$NON-NLS-1$
+			}
+			if (readVersion.equals(VALUE_VERSION_1_0_0)) {
+				throw new SAXException(new CoreException(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+						"Task list version \"" + readVersion + "\" not supported"))); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+
+		@Override
+		protected void readElement(Element child) throws CoreException {
+			String handle = child.getAttribute(DelegatingTaskExternalizer.KEY_HANDLE);
+			if (handle.length() > 0 && journalElements.containsKey(handle)) {
+				child = journalElements.remove(handle);
+				if (ELEMENT_REMOVED.equals(child.getNodeName())) {
+					return;
+				}
+			}
+
+			String nodeName = child.getNodeName();
+			if (nodeName.endsWith(DelegatingTaskExternalizer.KEY_CATEGORY)) {
+				categoryElements.add(child);
+			} else if (nodeName.endsWith(DelegatingTaskExternalizer.KEY_QUERY)) {
+				queryElements.add(child);
+			} else {
+				AbstractTask task = delegatingExternalizer.readTask(child, null, null);
+				if (task != null) {
+					taskList.addTask(task);
+					if (hasTaskReferences(child)) {
+						tasksWithSubtasks.put(task, child.getChildNodes());
+					}
+				} else {
+					addOrphan(child);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Collects the latest journal element for each handle.
+	 */
+	private class JournalContentHandler extends ElementContentHandler {
+
+		private final Map<String, Element> journalElements;
+
+		public JournalContentHandler(Map<String, Element> journalElements) throws CoreException {
+			this.journalElements = journalElements;
+		}
+
+		@Override
+		protected void readElement(Element delta) throws CoreException {
+			for (Node child = delta.getFirstChild(); child != null; child = child.getNextSibling()) {
+				if (child instanceof Element) {
+					String handle = ((Element) child).getAttribute(DelegatingTaskExternalizer.KEY_HANDLE);
+					if (handle.length() > 0) {
+						journalElements.remove(handle);
+						journalElements.put(handle, (Element) child);
+					}
+				}
+			}
+		}
+
+	}
+
 }
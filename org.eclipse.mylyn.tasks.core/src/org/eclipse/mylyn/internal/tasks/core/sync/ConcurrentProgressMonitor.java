@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.tasks.core.sync;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+
+/**
+ * Forwards progress of an operation that runs in a separate thread to a monitor that is shared with other threads.
+ * Canceling this monitor only affects the operation it is passed to while canceling the shared monitor cancels all
+ * operations.
+ */
+public class ConcurrentProgressMonitor extends ProgressMonitorWrapper {
+
+	private volatile boolean canceled;
+
+	public ConcurrentProgressMonitor(IProgressMonitor monitor) {
+		super(monitor);
+	}
+
+	@Override
+	public void beginTask(String name, int totalWork) {
+		// the shared monitor has been initialized already
+	}
+
+	@Override
+	public void done() {
+		// the shared monitor is completed by its owner
+	}
+
+	@Override
+	public void internalWorked(double work) {
+		synchronized (getWrappedProgressMonitor()) {
+			super.internalWorked(work);
+		}
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return canceled || super.isCanceled();
+	}
+
+	@Override
+	public void setCanceled(boolean canceled) {
+		this.canceled = canceled;
+	}
+
+	@Override
+	public void setTaskName(String name) {
+		synchronized (getWrappedProgressMonitor()) {
+			super.setTaskName(name);
+		}
+	}
+
+	@Override
+	public void subTask(String name) {
+		synchronized (getWrappedProgressMonitor()) {
+			super.subTask(name);
+		}
+	}
+
+	@Override
+	public void worked(int work) {
+		synchronized (getWrappedProgressMonitor()) {
+			super.worked(work);
+		}
+	}
+
+}
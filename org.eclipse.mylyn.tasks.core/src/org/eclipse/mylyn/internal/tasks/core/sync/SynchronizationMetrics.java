@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.tasks.core.sync;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.commons.core.StatusHandler;
+import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
+
+/**
+ * Collects timings, counters and lock wait histograms of synchronizations for each repository. Metrics are
+ * accumulated until {@link #reset()} is invoked and can be written as JSON through {@link #writeJson(Writer)}.
+ * <p>
+ * Phases may be nested, e.g. the time spent in {@link #PHASE_GET_TASK_DATA} includes the time to write the retrieved
+ * task data which is also recorded as {@link #PHASE_WRITE_TASK_DATA}.
+ * 
+ * @see org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager#getMetrics()
+ */
+public class SynchronizationMetrics {
+
+	/**
+	 * Records the time of a phase and its number of invocations.
+	 */
+	public static class Timer {
+
+		private long count;
+
+		private long totalTime;
+
+		private long maxTime;
+
+		synchronized void add(long nanos) {
+			count++;
+			totalTime += nanos;
+			maxTime = Math.max(maxTime, nanos);
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the accumulated time in nanoseconds.
+		 */
+		public synchronized long getTotalTime() {
+			return totalTime;
+		}
+
+		/**
+		 * Returns the longest time of a single invocation in nanoseconds.
+		 */
+		public synchronized long getMaxTime() {
+			return maxTime;
+		}
+
+	}
+
+	/**
+	 * Counts durations in buckets of exponentially growing size, see {@link #BUCKETS}.
+	 */
+	public static class Histogram {
+
+		/**
+		 * The upper bounds of the buckets in milliseconds. Durations that exceed the last bound are counted in an
+		 * additional bucket.
+		 */
+		public static final long[] BUCKETS = { 1, 10, 100, 1000, 10000 };
+
+		private final long[] counts = new long[BUCKETS.length + 1];
+
+		synchronized void add(long nanos) {
+			long millis = nanos / 1000000;
+			int i = 0;
+			while (i < BUCKETS.length && millis >= BUCKETS[i]) {
+				i++;
+			}
+			counts[i]++;
+		}
+
+		/**
+		 * Returns the number of durations for each bucket. The returned array has one element more than
+		 * {@link #BUCKETS}.
+		 */
+		public synchronized long[] getCounts() {
+			long[] result = new long[counts.length];
+			System.arraycopy(counts, 0, result, 0, counts.length);
+			return result;
+		}
+
+	}
+
+	/**
+	 * The metrics of a single repository.
+	 */
+	public static class RepositoryMetrics {
+
+		private final String repositoryUrl;
+
+		private final Map<String, Timer> timers = new LinkedHashMap<String, Timer>();
+
+		private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+
+		private final Map<String, Histogram> histograms = new LinkedHashMap<String, Histogram>();
+
+		RepositoryMetrics(String repositoryUrl) {
+			this.repositoryUrl = repositoryUrl;
+		}
+
+		public String getRepositoryUrl() {
+			return repositoryUrl;
+		}
+
+		/**
+		 * Records that <code>phase</code> took <code>nanos</code> nanoseconds.
+		 */
+		public void addTime(String phase, long nanos) {
+			getTimer(phase).add(nanos);
+		}
+
+		/**
+		 * Records the time that has passed since <code>startTime</code> as obtained from {@link System#nanoTime()}.
+		 */
+		public void addTimeSince(String phase, long startTime) {
+			addTime(phase, System.nanoTime() - startTime);
+		}
+
+		public synchronized Timer getTimer(String phase) {
+			Timer timer = timers.get(phase);
+			if (timer == null) {
+				timer = new Timer();
+				timers.put(phase, timer);
+			}
+			return timer;
+		}
+
+		public synchronized void increment(String counter, long delta) {
+			Long value = counters.get(counter);
+			counters.put(counter, (value != null) ? value + delta : delta);
+		}
+
+		public synchronized long getCounter(String counter) {
+			Long value = counters.get(counter);
+			return (value != null) ? value : 0;
+		}
+
+		/**
+		 * Records that waiting for <code>lock</code> took <code>nanos</code> nanoseconds.
+		 */
+		public void addLockWait(String lock, long nanos) {
+			getLockWaits(lock).add(nanos);
+		}
+
+		/**
+		 * Records the time that has passed since <code>startTime</code> as obtained from {@link System#nanoTime()}.
+		 */
+		public void addLockWaitSince(String lock, long startTime) {
+			addLockWait(lock, System.nanoTime() - startTime);
+		}
+
+		public synchronized Histogram getLockWaits(String lock) {
+			Histogram histogram = histograms.get(lock);
+			if (histogram == null) {
+				histogram = new Histogram();
+				histograms.put(lock, histogram);
+			}
+			return histogram;
+		}
+
+		synchronized void writeJson(Writer writer) throws IOException {
+			writer.write("    { \"repositoryUrl\": " + quote(repositoryUrl) + ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			writer.write("      \"phases\": {"); //$NON-NLS-1$
+			boolean first = true;
+			for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+				Timer timer = entry.getValue();
+				writer.write((first) ? "\n" : ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				writer.write("        " + quote(entry.getKey()) + ": { \"count\": " + timer.getCount() //$NON-NLS-1$ //$NON-NLS-2$
+						+ ", \"totalMillis\": " + toMillis(timer.getTotalTime()) //$NON-NLS-1$
+						+ ", \"maxMillis\": " + toMillis(timer.getMaxTime()) + " }"); //$NON-NLS-1$ //$NON-NLS-2$
+				first = false;
+			}
+			writer.write(" },\n"); //$NON-NLS-1$
+			writer.write("      \"counters\": {"); //$NON-NLS-1$
+			first = true;
+			for (Map.Entry<String, Long> entry : counters.entrySet()) {
+				writer.write((first) ? " " : ", "); //$NON-NLS-1$ //$NON-NLS-2$
+				writer.write(quote(entry.getKey()) + ": " + entry.getValue()); //$NON-NLS-1$
+				first = false;
+			}
+			writer.write(" },\n"); //$NON-NLS-1$
+			writer.write("      \"lockWaits\": {"); //$NON-NLS-1$
+			first = true;
+			for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+				long[] counts = entry.getValue().getCounts();
+				writer.write((first) ? "\n" : ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				writer.write("        " + quote(entry.getKey()) + ": {"); //$NON-NLS-1$ //$NON-NLS-2$
+				for (int i = 0; i < counts.length; i++) {
+					String bucket = (i < Histogram.BUCKETS.length) ? "<" + Histogram.BUCKETS[i] + "ms" : ">=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+							+ Histogram.BUCKETS[Histogram.BUCKETS.length - 1] + "ms"; //$NON-NLS-1$
+					writer.write(((i == 0) ? " " : ", ") + quote(bucket) + ": " + counts[i]); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+				writer.write(" }"); //$NON-NLS-1$
+				first = false;
+			}
+			writer.write(" } }"); //$NON-NLS-1$
+		}
+
+	}
+
+	/**
+	 * The overall time of synchronizing queries of a repository.
+	 */
+	public static final String PHASE_SYNCHRONIZATION = "synchronization"; //$NON-NLS-1$
+
+	public static final String PHASE_PRE_SYNCHRONIZATION = "preSynchronization"; //$NON-NLS-1$
+
+	/**
+	 * The time of performing a query which includes retrieving and parsing the results. The time of adding results to
+	 * the task list and saving their task data is excluded.
+	 */
+	public static final String PHASE_QUERY = "query"; //$NON-NLS-1$
+
+	/**
+	 * The time of retrieving full task data from the repository which includes saving the task data.
+	 */
+	public static final String PHASE_GET_TASK_DATA = "getTaskData"; //$NON-NLS-1$
+
+	public static final String PHASE_RELATIONS = "relations"; //$NON-NLS-1$
+
+	public static final String PHASE_POST_SYNCHRONIZATION = "postSynchronization"; //$NON-NLS-1$
+
+	/**
+	 * The time of writing task data to disk.
+	 */
+	public static final String PHASE_WRITE_TASK_DATA = "writeTaskData"; //$NON-NLS-1$
+
+	/**
+	 * The time of computing the differences to the last read task data to determine incoming changes.
+	 */
+	public static final String PHASE_DIFF = "diff"; //$NON-NLS-1$
+
+	/**
+	 * The time of notifying task list and task data listeners.
+	 */
+	public static final String PHASE_NOTIFY = "notify"; //$NON-NLS-1$
+
+	public static final String COUNTER_QUERIES = "queries"; //$NON-NLS-1$
+
+	public static final String COUNTER_QUERY_RESULTS = "queryResults"; //$NON-NLS-1$
+
+	public static final String COUNTER_TASKS_RECEIVED = "tasksReceived"; //$NON-NLS-1$
+
+	public static final String COUNTER_TASKS_CHANGED = "tasksChanged"; //$NON-NLS-1$
+
+	/**
+	 * The number of tasks that were identical to the stored task data and were not written.
+	 */
+	public static final String COUNTER_TASKS_UNCHANGED = "tasksUnchanged"; //$NON-NLS-1$
+
+	/**
+	 * Waits for the task list lock.
+	 */
+	public static final String LOCK_TASK_LIST = "taskList"; //$NON-NLS-1$
+
+	/**
+	 * Waits for the task list lock of a repository.
+	 */
+	public static final String LOCK_REPOSITORY = "repository"; //$NON-NLS-1$
+
+	/**
+	 * If set, metrics are written to the specified file after each synchronization.
+	 */
+	private static final String METRICS_FILE = Platform.getDebugOption("org.eclipse.mylyn.tasks.core/debug/synchronization/metrics"); //$NON-NLS-1$
+
+	private final Map<String, RepositoryMetrics> metricsByRepositoryUrl = new TreeMap<String, RepositoryMetrics>();
+
+	/**
+	 * Returns the metrics for <code>repositoryUrl</code>. The metrics are created if they do not exist.
+	 */
+	public synchronized RepositoryMetrics getRepositoryMetrics(String repositoryUrl) {
+		Assert.isNotNull(repositoryUrl);
+		RepositoryMetrics metrics = metricsByRepositoryUrl.get(repositoryUrl);
+		if (metrics == null) {
+			metrics = new RepositoryMetrics(repositoryUrl);
+			metricsByRepositoryUrl.put(repositoryUrl, metrics);
+		}
+		return metrics;
+	}
+
+	public synchronized List<RepositoryMetrics> getAllRepositoryMetrics() {
+		return new ArrayList<RepositoryMetrics>(metricsByRepositoryUrl.values());
+	}
+
+	public synchronized void reset() {
+		metricsByRepositoryUrl.clear();
+	}
+
+	public void writeJson(Writer writer) throws IOException {
+		writer.write("{\n"); //$NON-NLS-1$
+		writer.write("  \"timestamp\": " + System.currentTimeMillis() + ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.write("  \"repositories\": ["); //$NON-NLS-1$
+		boolean first = true;
+		for (RepositoryMetrics metrics : getAllRepositoryMetrics()) {
+			writer.write((first) ? "\n" : ",\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			metrics.writeJson(writer);
+			first = false;
+		}
+		writer.write("\n  ]\n}\n"); //$NON-NLS-1$
+	}
+
+	public void writeJson(File file) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8"); //$NON-NLS-1$
+		try {
+			writeJson(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	public String toJson() {
+		StringWriter writer = new StringWriter();
+		try {
+			writeJson(writer);
+		} catch (IOException e) {
+			// not thrown by StringWriter
+			throw new RuntimeException(e);
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Writes the metrics to the file specified by the <code>debug/synchronization/metrics</code> debug option, if
+	 * set.
+	 */
+	void dump() {
+		if (METRICS_FILE != null && METRICS_FILE.length() > 0) {
+			try {
+				writeJson(new File(METRICS_FILE));
+			} catch (IOException e) {
+				StatusHandler.log(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN,
+						"Failed to write synchronization metrics", e)); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static String toMillis(long nanos) {
+		return Long.toString(nanos / 1000000);
+	}
+
+	private static String quote(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c)); //$NON-NLS-1$
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+		return sb.toString();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,11 +13,13 @@ package org.eclipse.mylyn.internal.tasks.core.sync;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationMetrics.RepositoryMetrics;
 import org.eclipse.mylyn.tasks.core.ITask;
 import org.eclipse.mylyn.tasks.core.TaskRepository;
 import org.eclipse.mylyn.tasks.core.data.TaskData;
@@ -33,6 +35,8 @@ public class SynchronizationSession implements ISynchronizationSession {
 
 	private Object data;
 
+	private RepositoryMetrics metrics;
+
 	private boolean fullSynchronization;
 
 	private boolean performQueries;
@@ -64,7 +68,17 @@ public class SynchronizationSession implements ISynchronizationSession {
 		return data;
 	}
 
-	public Set<ITask> getStaleTasks() {
+	/**
+	 * Returns the metrics of the synchronized repository. Connectors may use the metrics to report additional
+	 * measurements.
+	 * 
+	 * @return the metrics or <code>null</code>, if metrics are not collected
+	 */
+	public RepositoryMetrics getMetrics() {
+		return metrics;
+	}
+
+	public synchronized Set<ITask> getStaleTasks() {
 		if (staleTasks == null) {
 			return Collections.emptySet();
 		} else {
@@ -96,7 +110,7 @@ public class SynchronizationSession implements ISynchronizationSession {
 		return user;
 	}
 
-	public void markStale(ITask task) {
+	public synchronized void markStale(ITask task) {
 		if (staleTasks == null) {
 			staleTasks = new HashSet<ITask>();
 		}
@@ -113,6 +127,17 @@ public class SynchronizationSession implements ISynchronizationSession {
 		}
 	}
 
+	/**
+	 * Saves the task data of several tasks in a single batch.
+	 * 
+	 * @see TaskDataManager#putUpdatedTaskData(Map, boolean, Object, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public void putTaskData(Map<ITask, TaskData> taskDataByTask) throws CoreException {
+		if (taskDataManager != null) {
+			taskDataManager.putUpdatedTaskData(taskDataByTask, false, null, null);
+		}
+	}
+
 	public void setChangedTasks(Set<ITask> changedTasks) {
 		this.changedTasks = changedTasks;
 	}
@@ -125,6 +150,10 @@ public class SynchronizationSession implements ISynchronizationSession {
 		this.fullSynchronization = fullSynchronization;
 	}
 
+	public void setMetrics(RepositoryMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	public void setNeedsPerformQueries(boolean performQueries) {
 		this.performQueries = performQueries;
 	}
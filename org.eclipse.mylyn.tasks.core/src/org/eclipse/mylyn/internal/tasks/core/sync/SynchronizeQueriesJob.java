@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,9 +19,17 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -34,11 +42,14 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.mylyn.commons.core.StatusHandler;
 import org.eclipse.mylyn.commons.net.Policy;
 import org.eclipse.mylyn.internal.tasks.core.AbstractTask;
+import org.eclipse.mylyn.internal.tasks.core.IRepositoryConstants;
+import org.eclipse.mylyn.internal.tasks.core.ITaskListRunnable;
 import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
 import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants.ObjectSchedulingRule;
 import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
 import org.eclipse.mylyn.internal.tasks.core.TaskList;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationMetrics.RepositoryMetrics;
 import org.eclipse.mylyn.tasks.core.AbstractRepositoryConnector;
 import org.eclipse.mylyn.tasks.core.IRepositoryModel;
 import org.eclipse.mylyn.tasks.core.ITask;
@@ -68,31 +79,73 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 
 		private final SynchronizationSession session;
 
+		private final List<TaskData> pendingTaskData;
+
+		private long flushTime;
+
 		public TaskCollector(RepositoryQuery repositoryQuery, SynchronizationSession session) {
 			this.repositoryQuery = repositoryQuery;
 			this.session = session;
 			this.removedQueryResults = new HashSet<ITask>(repositoryQuery.getChildren());
+			this.pendingTaskData = new ArrayList<TaskData>(BATCH_SIZE);
 		}
 
 		@Override
 		public void accept(TaskData taskData) {
-			ITask task = taskList.getTask(taskData.getRepositoryUrl(), taskData.getTaskId());
-			if (task == null) {
-				task = tasksModel.createTask(repository, taskData.getTaskId());
-				((AbstractTask) task).setSynchronizationState(SynchronizationState.INCOMING_NEW);
-				if (taskData.isPartial() && connector.canSynchronizeTask(repository, task)) {
-					session.markStale(task);
-				}
-			} else {
-				removedQueryResults.remove(task);
+			pendingTaskData.add(taskData);
+			if (pendingTaskData.size() >= BATCH_SIZE) {
+				flush();
+			}
+			resultCount++;
+		}
+
+		/**
+		 * Adds the pending results to the query and saves their task data in a single batch.
+		 */
+		public void flush() {
+			if (pendingTaskData.isEmpty()) {
+				return;
 			}
-			taskList.addTask(task, repositoryQuery);
+			long flushStartTime = System.nanoTime();
+			final Map<ITask, TaskData> taskDataByTask = new LinkedHashMap<ITask, TaskData>();
 			try {
-				session.putTaskData(task, taskData);
+				// queries that run in parallel may return the same new task
+				synchronized (taskCreationLock) {
+					final long startTime = System.nanoTime();
+					taskList.run(new ITaskListRunnable() {
+						public void execute(IProgressMonitor monitor) throws CoreException {
+							metrics.addLockWaitSince(SynchronizationMetrics.LOCK_TASK_LIST, startTime);
+							for (TaskData taskData : pendingTaskData) {
+								ITask task = taskList.getTask(taskData.getRepositoryUrl(), taskData.getTaskId());
+								if (task == null) {
+									task = tasksModel.createTask(repository, taskData.getTaskId());
+									((AbstractTask) task).setSynchronizationState(SynchronizationState.INCOMING_NEW);
+									if (taskData.isPartial() && connector.canSynchronizeTask(repository, task)) {
+										session.markStale(task);
+									}
+								} else {
+									removedQueryResults.remove(task);
+								}
+								taskList.addTask(task, repositoryQuery);
+								taskDataByTask.put(task, taskData);
+							}
+						}
+					});
+				}
+				session.putTaskData(taskDataByTask);
 			} catch (CoreException e) {
 				StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, "Failed to save task", e)); //$NON-NLS-1$
+			} finally {
+				pendingTaskData.clear();
+				flushTime += System.nanoTime() - flushStartTime;
 			}
-			resultCount++;
+		}
+
+		/**
+		 * Returns the time in nanoseconds spent adding results to the task list and saving their task data.
+		 */
+		public long getFlushTime() {
+			return flushTime;
 		}
 
 		public Set<ITask> getRemovedChildren() {
@@ -105,6 +158,8 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 
 		@Override
 		public void failed(String taskId, IStatus status) {
+			// the task may be pending
+			flush();
 			ITask task = taskList.getTask(repositoryQuery.getRepositoryUrl(), taskId);
 			if (task != null && status != null) {
 				statuses.add(status);
@@ -120,6 +175,18 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 
 	public static final String MAX_HITS_REACHED = Messages.SynchronizeQueriesJob_Max_allowed_number_of_hits_returned_exceeded;
 
+	/**
+	 * Upper bound for {@link IRepositoryConstants#PROPERTY_QUERY_CONCURRENCY}.
+	 */
+	private static final int MAX_QUERY_CONCURRENCY = 8;
+
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * The number of query results that are added to the task list at once.
+	 */
+	private static final int BATCH_SIZE = 100;
+
 	private final AbstractRepositoryConnector connector;
 
 	private final Set<RepositoryQuery> queries;
@@ -134,6 +201,10 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 
 	private final List<IStatus> statuses;
 
+	private final Object taskCreationLock = new Object();
+
+	private final RepositoryMetrics metrics;
+
 	public SynchronizeQueriesJob(TaskList taskList, TaskDataManager taskDataManager, IRepositoryModel tasksModel,
 			AbstractRepositoryConnector connector, TaskRepository repository, Set<RepositoryQuery> queries) {
 		super(Messages.SynchronizeQueriesJob_Synchronizing_Queries + " (" + repository.getRepositoryLabel() + ")"); //$NON-NLS-1$//$NON-NLS-2$
@@ -143,11 +214,13 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 		this.connector = connector;
 		this.repository = repository;
 		this.queries = queries;
-		this.statuses = new ArrayList<IStatus>();
+		this.statuses = Collections.synchronizedList(new ArrayList<IStatus>());
+		this.metrics = taskDataManager.getMetrics().getRepositoryMetrics(repository.getRepositoryUrl());
 	}
 
 	@Override
 	public IStatus run(IProgressMonitor jobMonitor) {
+		long startTime = System.nanoTime();
 		try {
 			monitor.setCanceled(false);
 			monitor.attach(jobMonitor);
@@ -168,12 +241,34 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 				try {
 					Job.getJobManager().beginRule(rule, monitor);
 
-					final Map<String, TaskRelation[]> relationsByTaskId = new HashMap<String, TaskRelation[]>();
+					// collected by queries that may run in parallel
+					final Map<String, TaskRelation[]> relationsByTaskId = Collections.synchronizedMap(
+							new HashMap<String, TaskRelation[]>());
 					SynchronizationSession session = new SynchronizationSession(taskDataManager) {
 						@Override
 						public void putTaskData(ITask task, TaskData taskData) throws CoreException {
 							boolean changed = connector.hasTaskChanged(repository, task, taskData);
 							taskDataManager.putUpdatedTaskData(task, taskData, isUser(), this, monitor);
+							taskDataUpdated(task, taskData, changed);
+						}
+
+						@Override
+						public void putTaskData(Map<ITask, TaskData> taskDataByTask) throws CoreException {
+							// changes need to be detected before the stored task data is replaced
+							Set<ITask> changedTasks = new HashSet<ITask>();
+							for (Map.Entry<ITask, TaskData> entry : taskDataByTask.entrySet()) {
+								if (connector.hasTaskChanged(repository, entry.getKey(), entry.getValue())) {
+									changedTasks.add(entry.getKey());
+								}
+							}
+							taskDataManager.putUpdatedTaskData(taskDataByTask, isUser(), this, monitor);
+							for (Map.Entry<ITask, TaskData> entry : taskDataByTask.entrySet()) {
+								ITask task = entry.getKey();
+								taskDataUpdated(task, entry.getValue(), changedTasks.contains(task));
+							}
+						}
+
+						private void taskDataUpdated(ITask task, TaskData taskData, boolean changed) {
 							if (taskData.isPartial()) {
 								if (changed && connector.canSynchronizeTask(repository, task)) {
 									markStale(task);
@@ -187,6 +282,7 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 						}
 					};
 					session.setTaskRepository(repository);
+					session.setMetrics(metrics);
 					session.setFullSynchronization(isFullSynchronization());
 					session.setTasks(Collections.unmodifiableSet(allTasks));
 					session.setNeedsPerformQueries(true);
@@ -256,11 +352,19 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 			}
 		} finally {
 			monitor.detach(jobMonitor);
+			metrics.addTimeSince(SynchronizationMetrics.PHASE_SYNCHRONIZATION, startTime);
+			taskDataManager.getMetrics().dump();
 		}
 		return Status.OK_STATUS;
 	}
 
 	private void synchronizeQueries(IProgressMonitor monitor, SynchronizationSession session) {
+		int concurrency = Math.min(getQueryConcurrency(), queries.size());
+		if (concurrency > 1) {
+			synchronizeQueries(monitor, session, concurrency);
+			return;
+		}
+
 		for (RepositoryQuery repositoryQuery : queries) {
 			Policy.checkCanceled(monitor);
 			monitor.subTask(MessageFormat.format(Messages.SynchronizeQueriesJob_Synchronizing_query_X,
@@ -269,7 +373,86 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 		}
 	}
 
+	/**
+	 * Performs up to <code>concurrency</code> queries in parallel. Fails with the first exception thrown by a query
+	 * after the remaining queries have been canceled.
+	 */
+	private void synchronizeQueries(IProgressMonitor monitor, final SynchronizationSession session, int concurrency) {
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Synchronize Queries (" + repository.getRepositoryLabel() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final ConcurrentProgressMonitor queryMonitor = new ConcurrentProgressMonitor(monitor);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(queries.size());
+			for (final RepositoryQuery repositoryQuery : queries) {
+				futures.add(executor.submit(new Runnable() {
+					public void run() {
+						Policy.checkCanceled(queryMonitor);
+						queryMonitor.subTask(MessageFormat.format(
+								Messages.SynchronizeQueriesJob_Synchronizing_query_X, repositoryQuery.getSummary()));
+						synchronizeQuery(repositoryQuery, session, new SubProgressMonitor(queryMonitor, 20));
+					}
+				}));
+			}
+
+			RuntimeException failure = null;
+			boolean canceled = false;
+			for (Future<?> future : futures) {
+				while (true) {
+					if (monitor.isCanceled()) {
+						queryMonitor.setCanceled(true);
+					}
+					try {
+						future.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+						break;
+					} catch (TimeoutException e) {
+						// check for cancellation
+					} catch (InterruptedException e) {
+						monitor.setCanceled(true);
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof OperationCanceledException) {
+							canceled = true;
+						} else if (failure == null) {
+							failure = (e.getCause() instanceof RuntimeException)
+									? (RuntimeException) e.getCause()
+									: new RuntimeException(e.getCause());
+						}
+						// abort remaining queries as if they had been run in sequence
+						queryMonitor.setCanceled(true);
+						break;
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			if (canceled) {
+				throw new OperationCanceledException();
+			}
+			Policy.checkCanceled(monitor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private int getQueryConcurrency() {
+		String value = repository.getProperty(IRepositoryConstants.PROPERTY_QUERY_CONCURRENCY);
+		if (value != null) {
+			try {
+				return Math.max(1, Math.min(Integer.parseInt(value), MAX_QUERY_CONCURRENCY));
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		return 1;
+	}
+
 	private boolean postSynchronization(SynchronizationSession event, IProgressMonitor monitor) {
+		long startTime = System.nanoTime();
 		try {
 			Policy.checkCanceled(monitor);
 			monitor.subTask(Messages.SynchronizeQueriesJob_Updating_repository_state);
@@ -281,10 +464,13 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 		} catch (CoreException e) {
 			updateQueryStatus(e.getStatus());
 			return false;
+		} finally {
+			metrics.addTimeSince(SynchronizationMetrics.PHASE_POST_SYNCHRONIZATION, startTime);
 		}
 	}
 
 	private boolean preSynchronization(ISynchronizationSession event, IProgressMonitor monitor) {
+		long startTime = System.nanoTime();
 		try {
 			Policy.checkCanceled(monitor);
 			monitor.subTask(Messages.SynchronizeQueriesJob_Querying_repository);
@@ -298,6 +484,8 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 			updateQueryStatus(e.getStatus());
 			statuses.add(e.getStatus());
 			return false;
+		} finally {
+			metrics.addTimeSince(SynchronizationMetrics.PHASE_PRE_SYNCHRONIZATION, startTime);
 		}
 	}
 
@@ -308,7 +496,18 @@ public class SynchronizeQueriesJob extends SynchronizationJob {
 		if (!isUser()) {
 			monitor = Policy.backgroundMonitorFor(monitor);
 		}
-		IStatus result = connector.performQuery(repository, repositoryQuery, collector, event, monitor);
+		long startTime = System.nanoTime();
+		IStatus result;
+		try {
+			result = connector.performQuery(repository, repositoryQuery, collector, event, monitor);
+			collector.flush();
+		} finally {
+			// saving results is not part of the query, the task data is recorded as PHASE_WRITE_TASK_DATA
+			metrics.addTime(SynchronizationMetrics.PHASE_QUERY,
+					System.nanoTime() - startTime - collector.getFlushTime());
+			metrics.increment(SynchronizationMetrics.COUNTER_QUERIES, 1);
+			metrics.increment(SynchronizationMetrics.COUNTER_QUERY_RESULTS, collector.getResultCount());
+		}
 		if (result == null || result.isOK()) {
 			if (collector.getResultCount() >= TaskDataCollector.MAX_HITS) {
 				StatusHandler.log(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN, MAX_HITS_REACHED + "\n" //$NON-NLS-1$
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,14 +12,23 @@
 package org.eclipse.mylyn.internal.tasks.core.sync;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -43,12 +52,72 @@ import org.eclipse.mylyn.tasks.core.sync.SynchronizationJob;
 import org.eclipse.osgi.util.NLS;
 
 /**
- * Updates the task list.
+ * Updates the task list. Background synchronizations process up to {@link #MAX_CONCURRENT_REPOSITORIES} repositories
+ * concurrently, synchronizations of the same repository are serialized by the scheduling rule of
+ * {@link SynchronizeQueriesJob}.
  * 
  * @author Steffen Pingel
  */
 public class SynchronizeRepositoriesJob extends SynchronizationJob {
 
+	/**
+	 * Synchronizes a single repository. Progress is reported to the monitor of the job and the synchronization is
+	 * canceled when the job is canceled or when it exceeds the repository timeout.
+	 */
+	private class RepositorySynchronization implements Runnable {
+
+		private final TaskRepository repository;
+
+		private final ConcurrentProgressMonitor repositoryMonitor;
+
+		private Future<?> future;
+
+		private volatile long startTime;
+
+		public RepositorySynchronization(TaskRepository repository) {
+			this.repository = repository;
+			this.repositoryMonitor = new ConcurrentProgressMonitor(monitor);
+		}
+
+		public void run() {
+			startTime = System.currentTimeMillis();
+			try {
+				synchronizeRepository(repository, repositoryMonitor);
+			} catch (OperationCanceledException e) {
+				// canceled or timed out
+			} catch (RuntimeException e) {
+				StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN, NLS.bind(
+						"Synchronization of ''{0}'' failed", repository.getRepositoryLabel()), e)); //$NON-NLS-1$
+			}
+		}
+
+		public void cancel() {
+			repositoryMonitor.setCanceled(true);
+		}
+
+		public boolean isDone() {
+			return future.isDone();
+		}
+
+		public boolean isTimedOut(long now) {
+			long time = startTime;
+			return time != 0 && now - time > repositoryTimeout;
+		}
+
+	}
+
+	/**
+	 * The maximum number of repositories that are synchronized in parallel in the background.
+	 */
+	private static final int MAX_CONCURRENT_REPOSITORIES = 4;
+
+	/**
+	 * The default time after which the background synchronization of a single repository is canceled.
+	 */
+	private static final long DEFAULT_REPOSITORY_TIMEOUT = 30 * 60 * 1000;
+
+	private static final long POLL_INTERVAL = 100;
+
 	private static final boolean TRACE_ENABLED = Boolean.valueOf(Platform.getDebugOption("org.eclipse.mylyn.tasks.core/debug/synchronization")); //$NON-NLS-1$
 
 	private final TaskList taskList;
@@ -63,6 +132,8 @@ public class SynchronizeRepositoriesJob extends SynchronizationJob {
 
 	private final Map<QualifiedName, Object> properties = new ConcurrentHashMap<QualifiedName, Object>();
 
+	private long repositoryTimeout = DEFAULT_REPOSITORY_TIMEOUT;
+
 	public SynchronizeRepositoriesJob(TaskList taskList, TaskDataManager taskDataManager, IRepositoryModel tasksModel,
 			IRepositoryManager repositoryManager) {
 		super(Messages.SynchronizeRepositoriesJob_Synchronizing_Task_List);
@@ -84,6 +155,17 @@ public class SynchronizeRepositoriesJob extends SynchronizationJob {
 		}
 	}
 
+	public long getRepositoryTimeout() {
+		return repositoryTimeout;
+	}
+
+	/**
+	 * Sets the time in milliseconds after which the background synchronization of a single repository is canceled.
+	 */
+	public void setRepositoryTimeout(long repositoryTimeout) {
+		this.repositoryTimeout = repositoryTimeout;
+	}
+
 	@Override
 	public IStatus run(IProgressMonitor jobMonitor) {
 		try {
@@ -101,6 +183,7 @@ public class SynchronizeRepositoriesJob extends SynchronizationJob {
 				if (TRACE_ENABLED) {
 					trace("Starting repository synchronization"); //$NON-NLS-1$
 				}
+				List<TaskRepository> backgroundRepositories = new ArrayList<TaskRepository>();
 				for (TaskRepository repository : repositories) {
 					if (monitor.isCanceled()) {
 						return Status.CANCEL_STATUS;
@@ -114,32 +197,15 @@ public class SynchronizeRepositoriesJob extends SynchronizationJob {
 						continue;
 					}
 
-					monitor.setTaskName(MessageFormat.format(Messages.SynchronizeRepositoriesJob_Processing_,
-							repository.getRepositoryLabel()));
-
-					final AbstractRepositoryConnector connector = repositoryManager.getRepositoryConnector(repository.getConnectorKind());
-					Set<RepositoryQuery> queries = new HashSet<RepositoryQuery>(
-							taskList.getRepositoryQueries(repository.getRepositoryUrl()));
-					// remove queries that are not configured for auto update
-					if (!isUser()) {
-						for (Iterator<RepositoryQuery> it = queries.iterator(); it.hasNext();) {
-							if (!it.next().getAutoUpdate()) {
-								it.remove();
-							}
-						}
-					}
-
-					if (isUser() || queries.isEmpty()) {
-						monitor.worked(20);
+					if (isUser()) {
+						// query synchronizations are scheduled as separate jobs
+						synchronizeRepository(repository, monitor);
 					} else {
-						// occasionally request update of repository configuration attributes as part of background synchronizations
-						updateRepositoryConfiguration(repository, connector, new SubProgressMonitor(monitor, 20));
-					}
-
-					if (TRACE_ENABLED) {
-						trace("Synchronizing queries for " + repository.getRepositoryLabel()); //$NON-NLS-1$
+						backgroundRepositories.add(repository);
 					}
-					updateQueries(repository, connector, queries, monitor);
+				}
+				if (!backgroundRepositories.isEmpty()) {
+					synchronizeRepositories(backgroundRepositories);
 				}
 				if (TRACE_ENABLED) {
 					trace("Completed repository synchronization"); //$NON-NLS-1$
@@ -159,6 +225,89 @@ public class SynchronizeRepositoriesJob extends SynchronizationJob {
 		return Status.OK_STATUS;
 	}
 
+	private void synchronizeRepository(TaskRepository repository, IProgressMonitor monitor) {
+		monitor.setTaskName(MessageFormat.format(Messages.SynchronizeRepositoriesJob_Processing_,
+				repository.getRepositoryLabel()));
+
+		final AbstractRepositoryConnector connector = repositoryManager.getRepositoryConnector(repository.getConnectorKind());
+		Set<RepositoryQuery> queries = new HashSet<RepositoryQuery>(
+				taskList.getRepositoryQueries(repository.getRepositoryUrl()));
+		// remove queries that are not configured for auto update
+		if (!isUser()) {
+			for (Iterator<RepositoryQuery> it = queries.iterator(); it.hasNext();) {
+				if (!it.next().getAutoUpdate()) {
+					it.remove();
+				}
+			}
+		}
+
+		if (isUser() || queries.isEmpty()) {
+			monitor.worked(20);
+		} else {
+			// occasionally request update of repository configuration attributes as part of background synchronizations
+			updateRepositoryConfiguration(repository, connector, new SubProgressMonitor(monitor, 20));
+		}
+
+		if (TRACE_ENABLED) {
+			trace("Synchronizing queries for " + repository.getRepositoryLabel()); //$NON-NLS-1$
+		}
+		updateQueries(repository, connector, queries, monitor);
+	}
+
+	private void synchronizeRepositories(List<TaskRepository> repositories) {
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(repositories.size(), MAX_CONCURRENT_REPOSITORIES), new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "Synchronize Repositories"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			List<RepositorySynchronization> pending = new ArrayList<RepositorySynchronization>();
+			for (TaskRepository repository : repositories) {
+				RepositorySynchronization synchronization = new RepositorySynchronization(repository);
+				synchronization.future = executor.submit(synchronization);
+				pending.add(synchronization);
+			}
+			while (!pending.isEmpty()) {
+				if (monitor.isCanceled()) {
+					for (RepositorySynchronization synchronization : pending) {
+						synchronization.cancel();
+					}
+					throw new OperationCanceledException();
+				}
+				long now = System.currentTimeMillis();
+				for (Iterator<RepositorySynchronization> it = pending.iterator(); it.hasNext();) {
+					RepositorySynchronization synchronization = it.next();
+					if (synchronization.isDone()) {
+						it.remove();
+					} else if (synchronization.isTimedOut(now)) {
+						// stop waiting, the synchronization completes in the background once it notices the cancellation
+						synchronization.cancel();
+						it.remove();
+						StatusHandler.log(new Status(IStatus.WARNING, ITasksCoreConstants.ID_PLUGIN, NLS.bind(
+								"Synchronization of ''{0}'' was canceled after {1} seconds", //$NON-NLS-1$
+								synchronization.repository.getRepositoryLabel(), repositoryTimeout / 1000)));
+					}
+				}
+				if (!pending.isEmpty()) {
+					try {
+						pending.get(0).future.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException e) {
+						// check for cancellation and timeouts
+					} catch (ExecutionException e) {
+						// failures are handled by the synchronization
+					} catch (InterruptedException e) {
+						monitor.setCanceled(true);
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	private void updateQueries(TaskRepository repository, final AbstractRepositoryConnector connector,
 			Set<RepositoryQuery> queries, IProgressMonitor monitor) {
 		if (isUser()) {
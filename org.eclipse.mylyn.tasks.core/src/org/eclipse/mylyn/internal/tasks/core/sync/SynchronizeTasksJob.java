@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,7 @@ import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
 import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants.MutexSchedulingRule;
 import org.eclipse.mylyn.internal.tasks.core.TaskList;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationMetrics.RepositoryMetrics;
 import org.eclipse.mylyn.tasks.core.AbstractRepositoryConnector;
 import org.eclipse.mylyn.tasks.core.IRepositoryManager;
 import org.eclipse.mylyn.tasks.core.IRepositoryModel;
@@ -143,6 +144,10 @@ public class SynchronizeTasksJob extends SynchronizationJob {
 			}
 		} finally {
 			monitor.detach(jobMonitor);
+			if (session == null) {
+				// otherwise metrics are written by the job that owns the session
+				taskDataManager.getMetrics().dump();
+			}
 		}
 		return Status.OK_STATUS;
 	}
@@ -155,6 +160,16 @@ public class SynchronizeTasksJob extends SynchronizationJob {
 	}
 
 	public void synchronizedTaskRelations(IProgressMonitor monitor, Map<String, TaskRelation[]> relationsByTaskId) {
+		long startTime = System.nanoTime();
+		try {
+			synchronizedTaskRelationsInternal(monitor, relationsByTaskId);
+		} finally {
+			getMetrics().addTimeSince(SynchronizationMetrics.PHASE_RELATIONS, startTime);
+		}
+	}
+
+	private void synchronizedTaskRelationsInternal(IProgressMonitor monitor,
+			Map<String, TaskRelation[]> relationsByTaskId) {
 		updateRelations = false;
 		for (String taskId : relationsByTaskId.keySet()) {
 			ITask parentTask = taskList.getTask(taskRepository.getRepositoryUrl(), taskId);
@@ -242,7 +257,13 @@ public class SynchronizeTasksJob extends SynchronizationJob {
 			monitor = Policy.backgroundMonitorFor(monitor);
 		}
 		String taskId = task.getTaskId();
-		TaskData taskData = connector.getTaskData(taskRepository, taskId, monitor);
+		long startTime = System.nanoTime();
+		TaskData taskData;
+		try {
+			taskData = connector.getTaskData(taskRepository, taskId, monitor);
+		} finally {
+			getMetrics().addTimeSince(SynchronizationMetrics.PHASE_GET_TASK_DATA, startTime);
+		}
 		if (taskData != null) {
 			updateFromTaskData(taskRepository, task, taskData, monitor);
 			return;
@@ -257,7 +278,13 @@ public class SynchronizeTasksJob extends SynchronizationJob {
 			monitor = Policy.backgroundMonitorFor(monitor);
 		}
 
-		TaskData taskData = connector.getTaskData(taskRepository, taskId, monitor);
+		long startTime = System.nanoTime();
+		TaskData taskData;
+		try {
+			taskData = connector.getTaskData(taskRepository, taskId, monitor);
+		} finally {
+			getMetrics().addTimeSince(SynchronizationMetrics.PHASE_GET_TASK_DATA, startTime);
+		}
 		if (taskData != null) {
 			return createFromTaskData(taskRepository, taskId, taskData, monitor);
 		}
@@ -302,13 +329,18 @@ public class SynchronizeTasksJob extends SynchronizationJob {
 		};
 
 		Set<String> taskIds = Collections.unmodifiableSet(new HashSet<String>(idToTask.keySet()));
-		connector.getTaskDataHandler().getMultiTaskData(repository, taskIds, collector, monitor);
+		long startTime = System.nanoTime();
+		try {
+			connector.getTaskDataHandler().getMultiTaskData(repository, taskIds, collector, monitor);
+		} finally {
+			getMetrics().addTimeSince(SynchronizationMetrics.PHASE_GET_TASK_DATA, startTime);
+		}
 	}
 
 	private void updateFromTaskData(TaskRepository taskRepository, ITask task, TaskData taskData,
 			IProgressMonitor monitor) {
 		try {
-
+			getMetrics().increment(SynchronizationMetrics.COUNTER_TASKS_RECEIVED, 1);
 			taskDataManager.putUpdatedTaskData(task, taskData, isUser(), getSession(), monitor);
 			if (updateRelations) {
 				Collection<TaskRelation> relations = connector.getTaskRelations(taskData);
@@ -325,6 +357,7 @@ public class SynchronizeTasksJob extends SynchronizationJob {
 			IProgressMonitor monitor) throws CoreException {
 		ITask task = tasksModel.createTask(taskRepository, taskData.getTaskId());
 		((AbstractTask) task).setSynchronizationState(SynchronizationState.INCOMING_NEW);
+		getMetrics().increment(SynchronizationMetrics.COUNTER_TASKS_RECEIVED, 1);
 		taskDataManager.putUpdatedTaskData(task, taskData, isUser(), getSession(), monitor);
 		return task;
 	}
@@ -338,6 +371,10 @@ public class SynchronizeTasksJob extends SynchronizationJob {
 		taskList.notifyElementChanged(task);
 	}
 
+	private RepositoryMetrics getMetrics() {
+		return taskDataManager.getMetrics().getRepositoryMetrics(taskRepository.getRepositoryUrl());
+	}
+
 	public SynchronizationSession getSession() {
 		return session;
 	}
@@ -0,0 +1,361 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.core.data;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An insertion ordered map that stores keys and values alternating in a single array. Copies created through
+ * {@link #copy()} share an array with each other until they are modified. Shared arrays with equal content are only
+ * kept once, e.g. the options of an attribute that are the same for all tasks of a repository.
+ * <p>
+ * Lookups scan the array unless the map is indexed, which is intended for maps that grow large such as the children of
+ * the root attribute. Maps that are not indexed are indexed once they exceed {@link #LARGE_MAP_THRESHOLD} entries, e.g.
+ * the options of an attribute that lists all components of a repository. Not thread-safe for modifications, reading
+ * and copying a map does not modify its fields and may happen concurrently.
+ */
+final class ArrayMap<K, V> extends AbstractMap<K, V> {
+
+	private static final Object[] EMPTY_TABLE = new Object[0];
+
+	private static final int INDEX_THRESHOLD = 8;
+
+	private static final int LARGE_MAP_THRESHOLD = 64;
+
+	private static final SharedTables sharedTables = new SharedTables();
+
+	private final boolean indexed;
+
+	private Object[] table;
+
+	private int size;
+
+	/**
+	 * Set if <code>table</code> may be referenced by other maps and needs to be copied before it is modified.
+	 */
+	private boolean shared;
+
+	/**
+	 * Positions of keys in <code>table</code>, created on lookup once the map exceeds its threshold. Volatile since
+	 * lookups may happen concurrently.
+	 */
+	private volatile HashMap<Object, Integer> index;
+
+	public ArrayMap(boolean indexed) {
+		this.indexed = indexed;
+		this.table = EMPTY_TABLE;
+	}
+
+	private ArrayMap(ArrayMap<K, V> source) {
+		this.indexed = source.indexed;
+		this.size = source.size;
+		if (source.shared) {
+			this.table = source.table;
+			this.index = source.index;
+		} else {
+			// the table of the source remains writable and is not shared
+			this.table = sharedTables.intern(source.table, source.size);
+		}
+		this.shared = true;
+	}
+
+	/**
+	 * Returns a map with the same entries that shares storage with other copies until it is modified. This map is not
+	 * modified.
+	 */
+	public ArrayMap<K, V> copy() {
+		return new ArrayMap<K, V>(this);
+	}
+
+	@Override
+	public void clear() {
+		table = EMPTY_TABLE;
+		size = 0;
+		index = null;
+		shared = false;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) != -1;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new EntryIterator(table, size);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int i = indexOf(key);
+		return (i != -1) ? (V) table[i * 2 + 1] : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		int i = indexOf(key);
+		if (i != -1) {
+			V oldValue = (V) table[i * 2 + 1];
+			ensureWritable(size);
+			table[i * 2 + 1] = value;
+			return oldValue;
+		}
+		ensureWritable(size + 1);
+		table[size * 2] = key;
+		table[size * 2 + 1] = value;
+		HashMap<Object, Integer> index = this.index;
+		if (index != null) {
+			index.put(key, size);
+		}
+		size++;
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		int i = indexOf(key);
+		if (i == -1) {
+			return null;
+		}
+		V oldValue = (V) table[i * 2 + 1];
+		ensureWritable(size);
+		System.arraycopy(table, (i + 1) * 2, table, i * 2, (size - i - 1) * 2);
+		size--;
+		table[size * 2] = null;
+		table[size * 2 + 1] = null;
+		// positions of all following keys have changed
+		index = null;
+		return oldValue;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private void ensureWritable(int minSize) {
+		if (shared || table.length < minSize * 2) {
+			int length = (table.length < minSize * 2) ? Math.max(minSize, size + (size >> 1) + 1) * 2 : table.length;
+			Object[] newTable = new Object[length];
+			System.arraycopy(table, 0, newTable, 0, size * 2);
+			table = newTable;
+			if (shared) {
+				// the index may be referenced by other maps as well
+				index = null;
+				shared = false;
+			}
+		}
+	}
+
+	private int indexOf(Object key) {
+		if (size > (indexed ? INDEX_THRESHOLD : LARGE_MAP_THRESHOLD)) {
+			HashMap<Object, Integer> index = this.index;
+			if (index == null) {
+				index = new HashMap<Object, Integer>(size * 2);
+				for (int i = 0; i < size; i++) {
+					index.put(table[i * 2], i);
+				}
+				this.index = index;
+			}
+			Integer i = index.get(key);
+			return (i != null) ? i : -1;
+		}
+		for (int i = 0; i < size; i++) {
+			Object k = table[i * 2];
+			if (k == key || k.equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+		private final Object[] entries;
+
+		private final int count;
+
+		private int next;
+
+		public EntryIterator(Object[] entries, int count) {
+			this.entries = entries;
+			this.count = count;
+		}
+
+		public boolean hasNext() {
+			return next < count;
+		}
+
+		@SuppressWarnings("unchecked")
+		public Map.Entry<K, V> next() {
+			if (next >= count) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<K, V> entry = new Entry<K, V>((K) entries[next * 2], (V) entries[next * 2 + 1]);
+			next++;
+			return entry;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	private static class Entry<K, V> implements Map.Entry<K, V> {
+
+		private final K key;
+
+		private final V value;
+
+		public Entry(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public V setValue(V value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+			return (key == null ? other.getKey() == null : key.equals(other.getKey()))
+					&& (value == null ? other.getValue() == null : value.equals(other.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + value; //$NON-NLS-1$
+		}
+
+	}
+
+	/**
+	 * Keeps one instance of each shared table. Tables are weakly referenced and dropped once no map uses them anymore.
+	 * Tables passed in are never shared themselves, a copy is pooled instead.
+	 */
+	private static class SharedTables {
+
+		private final ReferenceQueue<Object[]> queue = new ReferenceQueue<Object[]>();
+
+		private final Map<Integer, List<TableReference>> tablesByHash = new HashMap<Integer, List<TableReference>>();
+
+		public synchronized Object[] intern(Object[] table, int size) {
+			expungeStaleTables();
+			int hash = hashCode(table, size);
+			List<TableReference> references = tablesByHash.get(hash);
+			if (references == null) {
+				references = new ArrayList<TableReference>(1);
+				tablesByHash.put(hash, references);
+			} else {
+				for (TableReference reference : references) {
+					Object[] sharedTable = reference.get();
+					if (sharedTable != null && equals(sharedTable, table, size)) {
+						return sharedTable;
+					}
+				}
+			}
+			Object[] sharedTable = new Object[size * 2];
+			System.arraycopy(table, 0, sharedTable, 0, size * 2);
+			references.add(new TableReference(sharedTable, hash, queue));
+			return sharedTable;
+		}
+
+		private void expungeStaleTables() {
+			TableReference reference;
+			while ((reference = (TableReference) queue.poll()) != null) {
+				List<TableReference> references = tablesByHash.get(reference.hash);
+				if (references != null) {
+					references.remove(reference);
+					if (references.isEmpty()) {
+						tablesByHash.remove(reference.hash);
+					}
+				}
+			}
+		}
+
+		private static boolean equals(Object[] sharedTable, Object[] table, int size) {
+			if (sharedTable.length != size * 2) {
+				return false;
+			}
+			for (int i = 0; i < size * 2; i++) {
+				Object o1 = sharedTable[i];
+				Object o2 = table[i];
+				if (!(o1 == null ? o2 == null : o1.equals(o2))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static int hashCode(Object[] table, int size) {
+			int hash = 1;
+			for (int i = 0; i < size * 2; i++) {
+				hash = 31 * hash + (table[i] == null ? 0 : table[i].hashCode());
+			}
+			return hash;
+		}
+
+	}
+
+	private static class TableReference extends WeakReference<Object[]> {
+
+		private final int hash;
+
+		public TableReference(Object[] table, int hash, ReferenceQueue<Object[]> queue) {
+			super(table, queue);
+			this.hash = hash;
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2012 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,9 +11,10 @@
 
 package org.eclipse.mylyn.tasks.core.data;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -311,22 +312,25 @@ public final class TaskAttribute {
 	 */
 	public static final String VERSION = "task.common.version"; //$NON-NLS-1$
 
-	private Map<String, TaskAttribute> attributeById;
+	private static final String[] NO_VALUES = new String[0];
+
+	private ArrayMap<String, TaskAttribute> attributeById;
 
 	private final String attributeId;
 
-	private Map<String, String> metaData;
+	private ArrayMap<String, String> metaData;
 
-	private Map<String, String> optionByKey;
+	private ArrayMap<String, String> optionByKey;
 
 	private final TaskAttribute parentAttribute;
 
 	private final TaskData taskData;
 
 	/**
-	 * Attribute's values (selected or added)
+	 * Attribute's values (selected or added), the array is replaced on modification and may be shared with copies of
+	 * this attribute.
 	 */
-	private final List<String> values;
+	private String[] values;
 
 	public TaskAttribute(TaskAttribute parentAttribute, String attributeId) {
 		Assert.isNotNull(parentAttribute);
@@ -334,7 +338,7 @@ public final class TaskAttribute {
 		this.parentAttribute = parentAttribute;
 		this.attributeId = attributeId.intern();
 		this.taskData = parentAttribute.getTaskData();
-		this.values = new ArrayList<String>(1);
+		this.values = NO_VALUES;
 		parentAttribute.add(this);
 	}
 
@@ -346,19 +350,22 @@ public final class TaskAttribute {
 		this.parentAttribute = null;
 		this.taskData = taskData;
 		this.attributeId = "root"; //$NON-NLS-1$
-		this.values = new ArrayList<String>(1);
+		this.values = NO_VALUES;
 	}
 
 	private void add(TaskAttribute attribute) {
 		if (attributeById == null) {
-			attributeById = new LinkedHashMap<String, TaskAttribute>();
+			attributeById = new ArrayMap<String, TaskAttribute>(true);
 		}
 		attributeById.put(attribute.getId(), attribute);
 	}
 
 	public void addValue(String value) {
 		Assert.isNotNull(value);
-		values.add(value);
+		String[] newValues = new String[values.length + 1];
+		System.arraycopy(values, 0, newValues, 0, values.length);
+		newValues[values.length] = value;
+		values = newValues;
 	}
 
 	public void clearAttributes() {
@@ -374,7 +381,19 @@ public final class TaskAttribute {
 	}
 
 	public void clearValues() {
-		values.clear();
+		values = NO_VALUES;
+	}
+
+	/**
+	 * Replaces the options of this attribute with the options of <code>source</code>. The options are shared with
+	 * <code>source</code> until either attribute is modified which avoids adding options one by one when the same
+	 * options are set for many attributes.
+	 * 
+	 * @since 3.9
+	 */
+	public void copyOptions(TaskAttribute source) {
+		Assert.isNotNull(source);
+		optionByKey = (source.optionByKey != null) ? source.optionByKey.copy() : null;
 	}
 
 	public TaskAttribute createAttribute(String attributeId) {
@@ -383,12 +402,13 @@ public final class TaskAttribute {
 
 	public void deepAddCopy(TaskAttribute source) {
 		TaskAttribute target = createAttribute(source.getId());
-		target.values.addAll(source.values);
+		// values, meta data and options are shared until either attribute is modified
+		target.values = source.values;
 		if (source.metaData != null) {
-			target.metaData = new LinkedHashMap<String, String>(source.metaData);
+			target.metaData = source.metaData.copy();
 		}
 		if (source.optionByKey != null) {
-			target.optionByKey = new LinkedHashMap<String, String>(source.optionByKey);
+			target.optionByKey = source.optionByKey.copy();
 		}
 		if (source.attributeById != null) {
 			for (TaskAttribute child : source.attributeById.values()) {
@@ -506,15 +526,26 @@ public final class TaskAttribute {
 	 * To determine whether a value has been explicitly set, use {@link #hasValue()}.
 	 */
 	public String getValue() {
-		if (values.size() > 0) {
-			return values.get(0);
+		if (values.length > 0) {
+			return values[0];
 		} else {
 			return ""; //$NON-NLS-1$
 		}
 	}
 
 	public List<String> getValues() {
-		return Collections.unmodifiableList(values);
+		// the returned list reflects later modifications of the values
+		return new AbstractList<String>() {
+			@Override
+			public String get(int index) {
+				return values[index];
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
 	}
 
 	/**
@@ -527,7 +558,7 @@ public final class TaskAttribute {
 	 * @since 3.9
 	 */
 	public boolean hasValue() {
-		return values.size() > 0;
+		return values.length > 0;
 	}
 
 	@Override
@@ -542,7 +573,7 @@ public final class TaskAttribute {
 		Assert.isNotNull(key);
 		Assert.isNotNull(value);
 		if (metaData == null) {
-			metaData = new LinkedHashMap<String, String>();
+			metaData = new ArrayMap<String, String>(false);
 		}
 		metaData.put(key.intern(), value);
 	}
@@ -559,7 +590,7 @@ public final class TaskAttribute {
 		Assert.isNotNull(key);
 		Assert.isNotNull(value);
 		if (optionByKey == null) {
-			optionByKey = new LinkedHashMap<String, String>();
+			optionByKey = new ArrayMap<String, String>(false);
 		}
 		optionByKey.put(key.intern(), value);
 	}
@@ -577,22 +608,26 @@ public final class TaskAttribute {
 	}
 
 	public void removeValue(String value) {
-		values.remove(value);
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].equals(value)) {
+				String[] newValues = new String[values.length - 1];
+				System.arraycopy(values, 0, newValues, 0, i);
+				System.arraycopy(values, i + 1, newValues, i, newValues.length - i);
+				values = newValues;
+				return;
+			}
+		}
 	}
 
 	public void setValue(String value) {
 		Assert.isNotNull(value);
-		if (values.size() > 0) {
-			values.clear();
-		}
-		values.add(value);
+		values = new String[] { value };
 	}
 
 	public void setValues(List<String> values) {
 		Assert.isNotNull(values);
 		Assert.isTrue(!values.contains(null));
-		this.values.clear();
-		this.values.addAll(values);
+		this.values = (values.isEmpty()) ? NO_VALUES : values.toArray(new String[values.size()]);
 	}
 
 	@Override
@@ -607,7 +642,7 @@ public final class TaskAttribute {
 		sb.append("TaskAttribute[id="); //$NON-NLS-1$
 		sb.append(attributeId);
 		sb.append(",values="); //$NON-NLS-1$
-		sb.append(values);
+		sb.append(Arrays.asList(values));
 		sb.append(",options="); //$NON-NLS-1$
 		sb.append(optionByKey);
 		sb.append(",metaData="); //$NON-NLS-1$
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2012 Tasktop Technologies.
+ * Copyright (c) 2011, 2013 Tasktop Technologies.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,11 +23,22 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -63,6 +74,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
@@ -76,7 +88,7 @@ import org.eclipse.mylyn.internal.tasks.core.TaskAttachment;
 import org.eclipse.mylyn.internal.tasks.core.TaskComment;
 import org.eclipse.mylyn.internal.tasks.core.TaskContainerDelta;
 import org.eclipse.mylyn.internal.tasks.core.TaskList;
-import org.eclipse.mylyn.internal.tasks.core.data.ITaskDataManagerListener;
+import org.eclipse.mylyn.internal.tasks.core.data.ITaskDataManagerBatchListener;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManagerEvent;
 import org.eclipse.mylyn.tasks.core.IRepositoryElement;
@@ -114,7 +126,7 @@ import org.eclipse.mylyn.tasks.core.data.TaskData;
  * @author David Green
  * @author Steffen Pingel
  */
-public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeListener, IRepositoryListener {
+public class TaskListIndex implements ITaskDataManagerBatchListener, ITaskListChangeListener, IRepositoryListener {
 
 	private static final Object COMMAND_RESET_INDEX = "index:reset"; //$NON-NLS-1$
 
@@ -130,6 +142,26 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 
 	private static final String TASK_ATTRIBUTE_ATTACHMENT_NAME = INDEX_TASK_ATTRIBUTE_PREFIX + "attachment"; //$NON-NLS-1$
 
+	/**
+	 * the maximum number of pattern strings for which the results of {@link #matches(ITask, String)} are retained
+	 */
+	private static final int MAX_CACHED_PATTERNS = 16;
+
+	/**
+	 * the maximum number of threads that load task data when rebuilding the index
+	 */
+	private static final int MAX_LOADERS = 4;
+
+	/**
+	 * the maximum number of documents that are loaded ahead of the index writer when rebuilding the index
+	 */
+	private static final int MAX_QUEUED_DOCUMENTS = 64;
+
+	/**
+	 * placeholder for tasks that are skipped when rebuilding the index
+	 */
+	private static final Document NO_DOCUMENT = new Document();
+
 	public static final org.eclipse.mylyn.tasks.core.data.AbstractTaskSchema.Field FIELD_IDENTIFIER = new AbstractTaskSchema.Field(
 			TASK_ATTRIBUTE_IDENTIFIER, Messages.TaskListIndex_field_identifier, TaskAttribute.TYPE_SHORT_TEXT,
 			"identifier"); //$NON-NLS-1$
@@ -235,6 +267,12 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 	 */
 	private final Map<ITask, TaskData> reindexQueue = new HashMap<ITask, TaskData>();
 
+	/**
+	 * set while {@link #reindex(ITask, TaskData)} is invoked for a batch of updates on the current thread, index
+	 * maintenance is then scheduled once for the whole batch
+	 */
+	private final ThreadLocal<Boolean> batchUpdate = new ThreadLocal<Boolean>();
+
 	/**
 	 * do not access directly, instead use {@link #getIndexReader()}. 'this' must be synchronized before accessing or
 	 * modifying
@@ -242,19 +280,36 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 	private IndexReader indexReader;
 
 	/**
-	 * indicate the need to rebuild the whole index
+	 * a searcher on {@link #indexReader}, do not access directly, instead use {@link #getIndexSearcher(IndexReader)}.
+	 * 'this' must be synchronized before accessing or modifying
 	 */
-	private volatile boolean rebuildIndex = false;
+	private IndexSearcher indexSearcher;
 
 	/**
-	 * 'this' must be synchronized before accessing or modifying
+	 * kept open across index maintenance passes so that {@link #indexReader} can be refreshed near real-time, do not
+	 * access directly, instead use {@link #getIndexWriter()}. 'this' must be synchronized before accessing or modifying
 	 */
-	private String lastPatternString;
+	private IndexWriter indexWriter;
 
 	/**
-	 * 'this' must be synchronized before accessing or modifying
+	 * indicate the need to rebuild the whole index
+	 */
+	private volatile boolean rebuildIndex = false;
+
+	/**
+	 * the results of recent calls to {@link #matches(ITask, String)} by pattern string in access order. 'this' must be
+	 * synchronized before accessing or modifying
 	 */
-	private Set<String> lastResults;
+	private final Map<String, Set<String>> hitsByPattern = new LinkedHashMap<String, Set<String>>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+			return size() > MAX_CACHED_PATTERNS;
+		}
+
+	};
 
 	private AbstractTaskSchema.Field defaultField = FIELD_SUMMARY;
 
@@ -424,7 +479,10 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 						// ignore
 					}
 					indexReader = null;
+					indexSearcher = null;
+					hitsByPattern.clear();
 				}
+				closeIndexWriter();
 
 				if (indexLocation.exists() && indexLocation.isDirectory()) {
 					if (directory != null) {
@@ -468,7 +526,7 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 		Assert.isTrue(indexedFields.contains(defaultField));
 		this.defaultField = defaultField;
 		synchronized (this) {
-			lastResults = null;
+			hitsByPattern.clear();
 		}
 	}
 
@@ -491,6 +549,9 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 	 */
 	public void setMaxMatchSearchHits(int maxMatchSearchHits) {
 		this.maxMatchSearchHits = maxMatchSearchHits;
+		synchronized (this) {
+			hitsByPattern.clear();
+		}
 	}
 
 	private void initialize() {
@@ -549,8 +610,8 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 	 * Indicates if the given task matches the given pattern string. Uses the backing index to detect a match by looking
 	 * for tasks that match the given pattern string. The results of the search are cached such that future calls to
 	 * this method using the same pattern string do not require use of the backing index, making this method very
-	 * efficient for multiple calls with the same pattern string. Cached results for a given pattern string are
-	 * discarded if this method is called with a different pattern string.
+	 * efficient for multiple calls with the same pattern string. Cached results are retained for the most recently used
+	 * pattern strings and discarded when the index changes.
 	 * 
 	 * @param task
 	 *            the task to match
@@ -568,18 +629,13 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 			IndexReader indexReader = getIndexReader();
 			if (indexReader != null) {
 				Set<String> hits;
-
-				final boolean needIndexHit;
 				synchronized (this) {
-					needIndexHit = lastResults == null
-							|| (lastPatternString == null || !lastPatternString.equals(patternString));
+					hits = hitsByPattern.get(patternString);
 				}
-				if (needIndexHit) {
-					this.lastPatternString = patternString;
-
+				if (hits == null) {
 					hits = new HashSet<String>();
 
-					IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+					IndexSearcher indexSearcher = getIndexSearcher(indexReader);
 					try {
 						Query query = computeQuery(patternString);
 						TopDocs results = indexSearcher.search(query, maxMatchSearchHits);
@@ -590,25 +646,16 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 					} catch (IOException e) {
 						StatusHandler.log(new Status(IStatus.ERROR, TasksIndexCore.ID_PLUGIN,
 								"Unexpected failure within task list index", e)); //$NON-NLS-1$
-					} finally {
-						try {
-							indexSearcher.close();
-						} catch (IOException e) {
-							// ignore
-						}
 					}
 
-				} else {
-					hits = lastResults;
-				}
-				synchronized (this) {
-					if (this.indexReader == indexReader) {
-						this.lastPatternString = patternString;
-						this.lastResults = hits;
+					synchronized (this) {
+						if (this.indexReader == indexReader) {
+							hitsByPattern.put(patternString, hits);
+						}
 					}
 				}
 				String taskIdentifier = task.getHandleIdentifier();
-				return hits != null && hits.contains(taskIdentifier);
+				return hits.contains(taskIdentifier);
 			}
 
 		} finally {
@@ -658,7 +705,7 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 		try {
 			IndexReader indexReader = getIndexReader();
 			if (indexReader != null) {
-				IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+				IndexSearcher indexSearcher = getIndexSearcher(indexReader);
 				try {
 					Query query = computeQuery(patternString);
 					TopDocs results = indexSearcher.search(query, resultsLimit);
@@ -673,12 +720,6 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 				} catch (IOException e) {
 					StatusHandler.log(new Status(IStatus.ERROR, TasksIndexCore.ID_PLUGIN,
 							"Unexpected failure within task list index", e)); //$NON-NLS-1$
-				} finally {
-					try {
-						indexSearcher.close();
-					} catch (IOException e) {
-						// ignore
-					}
 				}
 			}
 		} finally {
@@ -751,7 +792,10 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 						// ignore
 					}
 					indexReader = null;
+					indexSearcher = null;
+					hitsByPattern.clear();
 				}
+				closeIndexWriter();
 			}
 			try {
 				directory.close();
@@ -768,8 +812,14 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 		try {
 			synchronized (this) {
 				if (indexReader == null) {
-					indexReader = IndexReader.open(directory, true);
-					lastResults = null;
+					if (indexWriter != null) {
+						// near real-time reader that includes uncommitted changes
+						indexReader = indexWriter.getReader();
+					} else {
+						indexReader = IndexReader.open(directory, true);
+					}
+					indexSearcher = null;
+					hitsByPattern.clear();
 				}
 				return indexReader;
 			}
@@ -787,10 +837,96 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 		return null;
 	}
 
+	/**
+	 * Returns a searcher on <code>indexReader</code>. The searcher is shared across searches until the reader is
+	 * replaced.
+	 */
+	private IndexSearcher getIndexSearcher(IndexReader indexReader) {
+		synchronized (this) {
+			if (indexSearcher == null || indexSearcher.getIndexReader() != indexReader) {
+				indexSearcher = new IndexSearcher(indexReader);
+			}
+			return indexSearcher;
+		}
+	}
+
+	/**
+	 * Returns the writer for the index, creating it if necessary. The index is created if it does not exist or needs
+	 * to be rebuilt.
+	 */
+	private IndexWriter getIndexWriter() throws CorruptIndexException, LockObtainFailedException, IOException {
+		synchronized (this) {
+			if (indexWriter != null) {
+				return indexWriter;
+			}
+		}
+		// readers opened from the directory do not see uncommitted changes of the writer
+		closeIndexReader();
+		synchronized (this) {
+			if (indexWriter == null) {
+				boolean create = rebuildIndex || !IndexReader.indexExists(directory);
+				indexWriter = new IndexWriter(directory, TaskAnalyzer.instance(), create,
+						IndexWriter.MaxFieldLength.UNLIMITED);
+			}
+			return indexWriter;
+		}
+	}
+
+	/**
+	 * Discards all changes since the last commit and closes the writer.
+	 */
+	private void rollbackIndexWriter() throws IOException {
+		// the near real-time reader reflects the discarded changes
+		closeIndexReader();
+		synchronized (this) {
+			if (indexWriter != null) {
+				try {
+					indexWriter.rollback();
+				} finally {
+					indexWriter = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 'this' must be synchronized before invoking
+	 */
+	private void closeIndexWriter() {
+		if (indexWriter != null) {
+			try {
+				indexWriter.close();
+			} catch (IOException e) {
+				StatusHandler.log(new Status(IStatus.ERROR, TasksIndexCore.ID_PLUGIN,
+						"Cannot close index writer: " + e.getMessage(), e)); //$NON-NLS-1$
+			}
+			indexWriter = null;
+		}
+	}
+
 	public void taskDataUpdated(TaskDataManagerEvent event) {
 		reindex(event.getTask(), event.getTaskData());
 	}
 
+	public void taskDataUpdated(List<TaskDataManagerEvent> events) {
+		batchUpdate.set(Boolean.TRUE);
+		try {
+			for (TaskDataManagerEvent event : events) {
+				reindex(event.getTask(), event.getTaskData());
+			}
+		} finally {
+			batchUpdate.remove();
+		}
+		boolean scheduled;
+		synchronized (reindexQueue) {
+			scheduled = !reindexQueue.isEmpty();
+		}
+		if (scheduled) {
+			// index maintenance is scheduled once for the whole batch
+			scheduleIndexMaintenance(MaintainIndexType.REINDEX);
+		}
+	}
+
 	public void editsDiscarded(TaskDataManagerEvent event) {
 		reindex(event.getTask(), event.getTaskData());
 	}
@@ -832,7 +968,9 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 		synchronized (reindexQueue) {
 			reindexQueue.put(task, taskData);
 		}
-		scheduleIndexMaintenance(MaintainIndexType.REINDEX);
+		if (batchUpdate.get() == null) {
+			scheduleIndexMaintenance(MaintainIndexType.REINDEX);
+		}
 	}
 
 	private void addIndexedAttributes(Document document, ITask task, TaskAttribute root) {
@@ -1036,6 +1174,9 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 	 * the task data. In this way implementations can avoid loading task data if the decision to filter tasks can be
 	 * based on the ITask alone. Implementations that must read the task data in order to determine eligibility for
 	 * indexing should return true for tasks where the provided task data is null.
+	 * <p>
+	 * This method may be invoked concurrently when the index is rebuilt.
+	 * </p>
 	 * 
 	 * @param task
 	 *            the task
@@ -1066,7 +1207,11 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 		SubMonitor monitor = SubMonitor.convert(m, 2 * WORK_PER_SEGMENT);
 		try {
 			try {
-				if (!rebuildIndex) {
+				boolean writerOpen;
+				synchronized (this) {
+					writerOpen = indexWriter != null;
+				}
+				if (!rebuildIndex && !writerOpen) {
 					try {
 						IndexReader reader = IndexReader.open(directory, false);
 						reader.close();
@@ -1091,8 +1236,8 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 				// index any tasks that have been changed
 				indexQueuedTasks(monitor.newChild(WORK_PER_SEGMENT));
 
-				// prevent new searches from reading the now-stale index
-				closeIndexReader();
+				// make the changes visible to new searches
+				refreshIndexReader();
 			} catch (IOException e) {
 				throw new CoreException(new Status(IStatus.ERROR, TasksIndexCore.ID_PLUGIN,
 						"Unexpected exception: " + e.getMessage(), e)); //$NON-NLS-1$
@@ -1110,6 +1255,32 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 				if (indexReader != null) {
 					indexReader.close();
 					indexReader = null;
+					indexSearcher = null;
+					hitsByPattern.clear();
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Replaces the index reader by a near real-time reader that reflects all changes made by the index writer. The new
+	 * reader shares unchanged segments with the previous reader.
+	 */
+	private void refreshIndexReader() throws IOException {
+		Lock writeLock = indexReaderLock.writeLock();
+		writeLock.lock();
+		try {
+			synchronized (this) {
+				if (indexReader != null) {
+					IndexReader newIndexReader = indexReader.reopen();
+					if (newIndexReader != indexReader) {
+						indexReader.close();
+						indexReader = newIndexReader;
+						indexSearcher = null;
+						hitsByPattern.clear();
+					}
 				}
 			}
 		} finally {
@@ -1129,7 +1300,7 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 		}
 
 		try {
-			IndexWriter writer = null;
+			IndexWriter writer = getIndexWriter();
 			try {
 				Map<ITask, TaskData> workingQueue = new HashMap<ITask, TaskData>();
 
@@ -1147,11 +1318,6 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 						reindexQueue.keySet().removeAll(workingQueue.keySet());
 					}
 
-					if (writer == null) {
-						writer = new IndexWriter(directory, TaskAnalyzer.instance(), false,
-								IndexWriter.MaxFieldLength.UNLIMITED);
-					}
-
 					monitor.setWorkRemaining(workingQueue.size());
 
 					for (Entry<ITask, TaskData> entry : workingQueue.entrySet()) {
@@ -1166,9 +1332,7 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 					}
 				}
 			} finally {
-				if (writer != null) {
-					writer.close();
-				}
+				writer.commit();
 			}
 		} finally {
 			monitor.done();
@@ -1194,35 +1358,72 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 	private IStatus rebuildIndexCompletely(SubMonitor monitor) throws CorruptIndexException, LockObtainFailedException,
 			IOException, CoreException {
 
-		MultiStatus multiStatus = new MultiStatus(TasksIndexCore.ID_PLUGIN, 0, null, null);
+		final MultiStatus multiStatus = new MultiStatus(TasksIndexCore.ID_PLUGIN, 0, null, null);
 
 		// get indexable tasks from the task list
 		final TaskListState taskListState = new TaskListState();
 		taskList.run(taskListState, monitor.newChild(0));
 
-		monitor.beginTask(Messages.TaskListIndex_task_rebuilding_index, taskListState.indexableTasks.size());
+		final List<ITask> tasks = taskListState.indexableTasks;
+		monitor.beginTask(Messages.TaskListIndex_task_rebuilding_index, tasks.size());
 		try {
-			final IndexWriter writer = new IndexWriter(directory, TaskAnalyzer.instance(), true,
-					IndexWriter.MaxFieldLength.UNLIMITED);
+			final IndexWriter writer = getIndexWriter();
+			writer.deleteAll();
+
+			// loaders read task data and create documents in parallel, the bounded queue blocks loaders that get
+			// ahead of the writer
+			final AtomicInteger nextTask = new AtomicInteger();
+			final BlockingQueue<Document> documents = new ArrayBlockingQueue<Document>(MAX_QUEUED_DOCUMENTS);
+			int loaderCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_LOADERS));
+			ExecutorService executor = Executors.newFixedThreadPool(loaderCount, new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Task List Index Loader"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			boolean completed = false;
 			try {
+				List<Future<Object>> loaders = new ArrayList<Future<Object>>(loaderCount);
+				for (int i = 0; i < loaderCount; i++) {
+					loaders.add(executor.submit(new Callable<Object>() {
+						public Object call() throws Exception {
+							int i;
+							while ((i = nextTask.getAndIncrement()) < tasks.size()) {
+								documents.put(createDocument(tasks.get(i), multiStatus));
+							}
+							return null;
+						}
+					}));
+				}
 
-				for (ITask task : taskListState.indexableTasks) {
-					if (taskIsIndexable(task, null)) {
-						try {
-							TaskData taskData = dataManager.getTaskData(task);
-							add(writer, task, taskData);
-						} catch (CoreException e) {
-							// an individual task data error should not prevent the index from updating
-							multiStatus.add(e.getStatus());
+				for (int i = 0; i < tasks.size(); i++) {
+					Document document;
+					while ((document = documents.poll(100, TimeUnit.MILLISECONDS)) == null) {
+						if (monitor.isCanceled()) {
+							throw new OperationCanceledException();
 						}
+						checkLoaders(loaders);
+					}
+					if (document != NO_DOCUMENT) {
+						writer.addDocument(document);
 					}
 					monitor.worked(1);
 				}
 				synchronized (this) {
 					rebuildIndex = false;
 				}
+				completed = true;
+			} catch (InterruptedException e) {
+				throw new OperationCanceledException();
 			} finally {
-				writer.close();
+				executor.shutdownNow();
+				if (completed) {
+					writer.commit();
+				} else {
+					// retain the previous index rather than committing a partial one
+					rollbackIndexWriter();
+				}
 			}
 		} finally {
 			monitor.done();
@@ -1230,6 +1431,51 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 		return multiStatus;
 	}
 
+	/**
+	 * Propagates the failure of a loader that terminated unexpectedly.
+	 */
+	private void checkLoaders(List<Future<Object>> loaders) throws IOException, CoreException, InterruptedException {
+		for (Future<Object> loader : loaders) {
+			if (loader.isDone()) {
+				try {
+					loader.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new CoreException(new Status(IStatus.ERROR, TasksIndexCore.ID_PLUGIN,
+							"Unexpected exception: " + cause.getMessage(), cause)); //$NON-NLS-1$
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the document for <code>task</code> when rebuilding the index. May be invoked concurrently.
+	 * 
+	 * @return the document or {@link #NO_DOCUMENT}, if the task is not indexed
+	 */
+	private Document createDocument(ITask task, MultiStatus multiStatus) {
+		if (taskIsIndexable(task, null)) {
+			try {
+				TaskData taskData = dataManager.getTaskData(task);
+				Document document = createDocument(task, taskData);
+				if (document != null) {
+					return document;
+				}
+			} catch (CoreException e) {
+				// an individual task data error should not prevent the index from updating
+				synchronized (multiStatus) {
+					multiStatus.add(e.getStatus());
+				}
+			}
+		}
+		return NO_DOCUMENT;
+	}
+
 	/**
 	 * @param writer
 	 * @param task
@@ -1240,8 +1486,22 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 	 * @throws IOException
 	 */
 	private void add(IndexWriter writer, ITask task, TaskData taskData) throws CorruptIndexException, IOException {
+		Document document = createDocument(task, taskData);
+		if (document != null) {
+			writer.addDocument(document);
+		}
+	}
+
+	/**
+	 * @param task
+	 *            the task
+	 * @param taskData
+	 *            may be null for local tasks
+	 * @return the document or null, if the task is not indexed
+	 */
+	private Document createDocument(ITask task, TaskData taskData) {
 		if (!taskIsIndexable(task, taskData)) {
-			return;
+			return null;
 		}
 
 		Document document = new Document();
@@ -1252,12 +1512,12 @@ public class TaskListIndex implements ITaskDataManagerListener, ITaskListChangeL
 			if ("local".equals(((AbstractTask) task).getConnectorKind())) { //$NON-NLS-1$
 				addIndexedAttributes(document, task);
 			} else {
-				return;
+				return null;
 			}
 		} else {
 			addIndexedAttributes(document, task, taskData.getRoot());
 		}
-		writer.addDocument(document);
+		return document;
 	}
 
 	public void repositoryAdded(TaskRepository repository) {
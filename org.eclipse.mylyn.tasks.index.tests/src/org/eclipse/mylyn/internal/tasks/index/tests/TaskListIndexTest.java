@@ -110,6 +110,28 @@ public class TaskListIndexTest extends AbstractTaskListIndexTest {
 		assertFalse(index.matches(task, ((LocalTask) task).getNotes()));
 	}
 
+	@Test
+	public void testMatchesLocalTaskAfterChange() throws InterruptedException {
+		setupIndex();
+
+		ITask task = context.createLocalTask();
+
+		index.waitUntilIdle();
+
+		index.setDefaultField(FIELD_SUMMARY);
+
+		assertTrue(index.matches(task, "summary"));
+		assertFalse(index.matches(task, "changed"));
+
+		task.setSummary("changed");
+		context.getTaskList().notifyElementChanged(task);
+
+		index.waitUntilIdle();
+
+		assertFalse(index.matches(task, "summary"));
+		assertTrue(index.matches(task, "changed"));
+	}
+
 	@Test
 	public void testMatchesRepositoryTaskOnSummary() throws InterruptedException, CoreException {
 		setupIndex();
@@ -165,6 +187,27 @@ public class TaskListIndexTest extends AbstractTaskListIndexTest {
 		assertCanFindTask(task);
 	}
 
+	@Test
+	public void testReindexManyTasks() throws InterruptedException, CoreException {
+		setupIndex();
+
+		List<ITask> tasks = new ArrayList<ITask>();
+		for (int i = 0; i < 500; i++) {
+			tasks.add(context.createRepositoryTask());
+		}
+
+		index.waitUntilIdle();
+
+		index.reindex();
+		index.waitUntilIdle();
+
+		index.setDefaultField(FIELD_SUMMARY);
+
+		TestTaskCollector collector = new TestTaskCollector();
+		index.find(tasks.get(0).getSummary(), collector, Integer.MAX_VALUE);
+		assertEquals(new HashSet<ITask>(tasks), new HashSet<ITask>(collector.getTasks()));
+	}
+
 	@Test
 	public void testMatchesRepositoryTaskOnCreationDate() throws InterruptedException, CoreException {
 		setupIndex();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2012 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,12 +19,17 @@ import org.eclipse.mylyn.tasks.tests.core.FileTaskAttachmentSourceTest;
 import org.eclipse.mylyn.tasks.tests.core.ITasksCoreConstantsTest;
 import org.eclipse.mylyn.tasks.tests.core.PriorityLevelTest;
 import org.eclipse.mylyn.tasks.tests.core.RepositoryClientManagerTest;
+import org.eclipse.mylyn.tasks.tests.core.SynchronizeQueriesJobTest;
+import org.eclipse.mylyn.tasks.tests.core.SynchronizeRepositoriesJobTest;
 import org.eclipse.mylyn.tasks.tests.core.SynchronizeTasksJobTest;
+import org.eclipse.mylyn.tasks.tests.core.TaskListExternalizationParticipantTest;
 import org.eclipse.mylyn.tasks.tests.core.TaskListUnmatchedContainerTest;
 import org.eclipse.mylyn.tasks.tests.core.TaskRepositoryLocationTest;
 import org.eclipse.mylyn.tasks.tests.core.TaskRepositoryTest;
+import org.eclipse.mylyn.tasks.tests.data.TaskAttachmentCacheTest;
 import org.eclipse.mylyn.tasks.tests.data.TaskAttributeMapperTest;
 import org.eclipse.mylyn.tasks.tests.data.TaskAttributeTest;
+import org.eclipse.mylyn.tasks.tests.data.TaskDataFingerprintTest;
 import org.eclipse.mylyn.tasks.tests.data.TaskDataExternalizerTest;
 import org.eclipse.mylyn.tasks.tests.data.Xml11InputStreamTest;
 import org.eclipse.mylyn.tasks.tests.ui.AbstractRepositoryConnectorUiTest;
@@ -91,6 +96,7 @@ public class AllTasksTests {
 		suite.addTestSuite(AttachmentSizeFormatterTest.class);
 		suite.addTestSuite(TaskMapperTest.class);
 		suite.addTestSuite(TaskListUnmatchedContainerTest.class);
+		suite.addTestSuite(TaskListExternalizationParticipantTest.class);
 		suite.addTestSuite(TaskWorkingSetTest.class);
 		suite.addTestSuite(TaskActivationHistoryTest.class);
 		suite.addTestSuite(TaskActivityManagerTest.class);
@@ -124,6 +130,8 @@ public class AllTasksTests {
 		suite.addTestSuite(AttachmentTableLabelProviderTest.class);
 		suite.addTestSuite(TaskDataExternalizerTest.class);
 		suite.addTestSuite(Xml11InputStreamTest.class);
+		suite.addTestSuite(TaskDataFingerprintTest.class);
+		suite.addTestSuite(TaskAttachmentCacheTest.class);
 		// XXX long running tests, put back?
 		//suite.addTestSuite(QueryExportImportTest.class);
 		//suite.addTestSuite(BackgroundSaveTest.class);
@@ -136,6 +144,8 @@ public class AllTasksTests {
 		suite.addTestSuite(RepositoryClientManagerTest.class);
 		suite.addTestSuite(AbstractRepositoryConnectorUiTest.class);
 		suite.addTestSuite(SynchronizeTasksJobTest.class);
+		suite.addTestSuite(SynchronizeRepositoriesJobTest.class);
+		suite.addTestSuite(SynchronizeQueriesJobTest.class);
 		suite.addTestSuite(TaskAttributeTest.class);
 		return suite;
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,12 +12,18 @@
 package org.eclipse.mylyn.tasks.tests;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Date;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import junit.framework.TestCase;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryManager;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataExternalizer;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataFingerprint;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataState;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataStore;
 import org.eclipse.mylyn.tasks.core.TaskRepository;
@@ -38,6 +44,8 @@ public class TaskDataStoreTest extends TestCase {
 
 	private static final String MOCK_ID = "1";
 
+	private TaskRepositoryManager taskRepositoryManager;
+
 	private TaskDataStore storage;
 
 	private TaskRepository taskRepository;
@@ -50,7 +58,7 @@ public class TaskDataStoreTest extends TestCase {
 
 	@Override
 	protected void setUp() throws Exception {
-		TaskRepositoryManager taskRepositoryManager = new TaskRepositoryManager();
+		taskRepositoryManager = new TaskRepositoryManager();
 		storage = new TaskDataStore(taskRepositoryManager);
 		taskRepository = new TaskRepository(MockRepositoryConnector.CONNECTOR_KIND,
 				MockRepositoryConnector.REPOSITORY_URL);
@@ -288,4 +296,264 @@ public class TaskDataStoreTest extends TestCase {
 		TaskDataState state2 = storage.getTaskDataState(file);
 		assertFalse(state2.getRepositoryData().getRoot().getAttribute("attribute").hasValue());
 	}
+
+	public void testPutTaskDataPreservesEdits() throws Exception {
+		setupData();
+		data.getRoot().createAttribute("attribute").setValue("repository");
+		TaskData editsData = createData("edits");
+		state.setEditsData(editsData);
+		storage.putTaskData(file, state);
+
+		storage.putTaskData(file, createData("update"), false, false);
+
+		TaskDataState state2 = storage.getTaskDataState(file);
+		assertEquals("update", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+		assertEquals("edits", state2.getEditsData().getRoot().getAttribute("attribute").getValue());
+		assertNull(state2.getLastReadData());
+	}
+
+	public void testPutTaskDataSetLastRead() throws Exception {
+		storage.putTaskData(file, createData("first"), false, false);
+		storage.putTaskData(file, createData("second"), true, false);
+		assertEquals("first", storage.getLastReadData(file).getRoot().getAttribute("attribute").getValue());
+
+		storage.putTaskData(file, createData("third"), false, false);
+		TaskDataState state2 = storage.getTaskDataState(file);
+		assertEquals("third", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+		assertEquals("first", state2.getLastReadData().getRoot().getAttribute("attribute").getValue());
+	}
+
+	public void testPutTaskDataUnchanged() throws Exception {
+		assertNotNull(storage.putTaskData(file, createData("first"), false, false));
+		long lastModified = file.lastModified();
+		assertNull(storage.putTaskData(file, createData("first"), false, false));
+		assertEquals(lastModified, file.lastModified());
+
+		TaskDataState state2 = storage.putTaskData(file, createData("second"), false, false);
+		assertNotNull(state2);
+		assertEquals(TaskDataFingerprint.compute(createData("second")).toString(),
+				state2.getRepositoryDataFingerprint());
+		assertEquals("second", storage.getTaskDataState(file)
+				.getRepositoryData()
+				.getRoot()
+				.getAttribute("attribute")
+				.getValue());
+	}
+
+	public void testPutTaskDataUnchangedSetLastRead() throws Exception {
+		storage.putTaskData(file, createData("first"), false, false);
+		// the last read data differs and needs to be updated
+		TaskDataState state2 = storage.putTaskData(file, createData("first"), true, false);
+		assertNotNull(state2);
+		assertEquals(state2.getRepositoryDataFingerprint(), state2.getLastReadDataFingerprint());
+		assertEquals("first", storage.getLastReadData(file).getRoot().getAttribute("attribute").getValue());
+
+		assertNull(storage.putTaskData(file, createData("first"), true, false));
+
+		state2 = storage.putTaskData(file, createData("second"), true, false);
+		assertEquals(TaskDataFingerprint.compute(createData("first")).toString(), state2.getLastReadDataFingerprint());
+	}
+
+	public void testGetTaskDataStateFingerprints() throws Exception {
+		storage.putTaskData(file, createData("first"), false, false);
+		storage.putTaskData(file, createData("second"), true, false);
+
+		TaskDataState state2 = storage.getTaskDataState(file);
+		assertEquals(TaskDataFingerprint.compute(createData("second")).toString(),
+				state2.getRepositoryDataFingerprint());
+		assertEquals(TaskDataFingerprint.compute(createData("first")).toString(), state2.getLastReadDataFingerprint());
+	}
+
+	public void testPutEdits() throws Exception {
+		storage.putTaskData(file, createData("repository"), false, false);
+		storage.putEdits(file, createData("edits"));
+
+		TaskDataState state2 = storage.getTaskDataState(file);
+		assertEquals("repository", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+		assertEquals("edits", state2.getEditsData().getRoot().getAttribute("attribute").getValue());
+	}
+
+	public void testReadLegacyFormat() throws Exception {
+		setupData();
+		data.getRoot().createAttribute("attribute").setValue("repository");
+		state.setEditsData(createData("edits"));
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			out.putNextEntry(new ZipEntry("data.xml"));
+			new TaskDataExternalizer(taskRepositoryManager).writeState(out, state);
+		} finally {
+			out.close();
+		}
+
+		TaskDataState state2 = storage.getTaskDataState(file);
+		assertEquals("repository", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+		assertEquals("edits", state2.getEditsData().getRoot().getAttribute("attribute").getValue());
+
+		storage.putTaskData(file, createData("update"), true, false);
+		state2 = storage.getTaskDataState(file);
+		assertEquals("update", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+		assertEquals("repository", state2.getLastReadData().getRoot().getAttribute("attribute").getValue());
+		assertEquals("edits", state2.getEditsData().getRoot().getAttribute("attribute").getValue());
+	}
+
+	private TaskData createData(String value) {
+		TaskData data = new TaskData(new TaskAttributeMapper(taskRepository), MockRepositoryConnector.CONNECTOR_KIND,
+				MockRepositoryConnector.REPOSITORY_URL, MOCK_ID);
+		data.getRoot().createAttribute("attribute").setValue(value);
+		return data;
+	}
+
+	public void testSegmentedPutAndGet() throws Exception {
+		File folder = createTempFolder();
+		TaskDataStore segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		setupData();
+		data.getRoot().createAttribute("attribute").setValue("value");
+
+		File file = new File(folder, MOCK_ID + ".zip");
+		assertFalse(segmentedStorage.hasTaskData(file));
+		segmentedStorage.putTaskData(file, state);
+		assertTrue(segmentedStorage.hasTaskData(file));
+		assertFalse(file.exists());
+		assertTrue(new File(folder, "data.segment").exists());
+
+		TaskDataState state2 = segmentedStorage.getTaskDataState(file);
+		assertEquals(state.getRepositoryData().getRoot().toString(), state2.getRepositoryData().getRoot().toString());
+		assertNull(segmentedStorage.getTaskDataState(new File(folder, "2.zip")));
+
+		// re-open segment
+		segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		state2 = segmentedStorage.getTaskDataState(file);
+		assertEquals(state.getRepositoryData().getRoot().toString(), state2.getRepositoryData().getRoot().toString());
+	}
+
+	public void testSegmentedDelete() throws Exception {
+		File folder = createTempFolder();
+		TaskDataStore segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		setupData();
+
+		File file = new File(folder, MOCK_ID + ".zip");
+		segmentedStorage.putTaskData(file, state);
+		assertTrue(segmentedStorage.deleteTaskData(file));
+		assertFalse(segmentedStorage.hasTaskData(file));
+		assertNull(segmentedStorage.getTaskDataState(file));
+
+		segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		assertFalse(segmentedStorage.hasTaskData(file));
+	}
+
+	public void testSegmentedMigration() throws Exception {
+		File folder = createTempFolder();
+		setupData();
+		data.getRoot().createAttribute("attribute").setValue("value");
+
+		File file = new File(folder, MOCK_ID + ".zip");
+		new TaskDataStore(taskRepositoryManager).putTaskData(file, state);
+		assertTrue(file.exists());
+
+		TaskDataStore segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		TaskDataState state2 = segmentedStorage.getTaskDataState(file);
+		assertNotNull(state2);
+		assertEquals(state.getRepositoryData().getRoot().toString(), state2.getRepositoryData().getRoot().toString());
+		assertFalse(file.exists());
+	}
+
+	public void testSegmentedCompact() throws Exception {
+		File folder = createTempFolder();
+		TaskDataStore segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		setupData();
+
+		File file = new File(folder, MOCK_ID + ".zip");
+		for (int i = 0; i < 10; i++) {
+			data.getRoot().createAttribute("attribute").setValue("value" + i);
+			segmentedStorage.putTaskData(file, state);
+		}
+		File segmentFile = new File(folder, "data.segment");
+		long length = segmentFile.length();
+		segmentedStorage.compact();
+		assertTrue(segmentFile.length() < length);
+
+		TaskDataState state2 = segmentedStorage.getTaskDataState(file);
+		assertEquals("value9", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+
+		segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		state2 = segmentedStorage.getTaskDataState(file);
+		assertEquals("value9", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+	}
+
+	public void testSegmentedRecoverInterruptedCompaction() throws Exception {
+		File folder = createTempFolder();
+		TaskDataStore segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		setupData();
+		data.getRoot().createAttribute("attribute").setValue("value");
+
+		File file = new File(folder, MOCK_ID + ".zip");
+		segmentedStorage.putTaskData(file, state);
+
+		// simulate a compaction that moved the segment aside and failed to replace it
+		File segmentFile = new File(folder, "data.segment");
+		assertTrue(segmentFile.renameTo(new File(folder, "data.segment.bak")));
+		new FileOutputStream(new File(folder, "data.segment.tmp")).close();
+
+		segmentedStorage = new TaskDataStore(taskRepositoryManager, true);
+		TaskDataState state2 = segmentedStorage.getTaskDataState(file);
+		assertNotNull(state2);
+		assertEquals("value", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+		assertTrue(segmentFile.exists());
+		assertFalse(new File(folder, "data.segment.bak").exists());
+		assertFalse(new File(folder, "data.segment.tmp").exists());
+	}
+
+	public void testSegmentedRestore() throws Exception {
+		File folder = createTempFolder();
+		setupData();
+		data.getRoot().createAttribute("attribute").setValue("value");
+
+		File file = new File(folder, MOCK_ID + ".zip");
+		new TaskDataStore(taskRepositoryManager, true).putTaskData(file, state);
+		assertFalse(file.exists());
+
+		TaskDataStore storage = new TaskDataStore(taskRepositoryManager, false);
+		assertTrue(storage.hasTaskData(file));
+		TaskDataState state2 = storage.getTaskDataState(file);
+		assertNotNull(state2);
+		assertEquals("value", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+		assertTrue(file.exists());
+		assertFalse(new File(folder, "data.segment").exists());
+	}
+
+	public void testSegmentedRestoreMigratedLegacyFormat() throws Exception {
+		File folder = createTempFolder();
+		setupData();
+		data.getRoot().createAttribute("attribute").setValue("repository");
+		state.setEditsData(createData("edits"));
+
+		File file = new File(folder, MOCK_ID + ".zip");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			out.putNextEntry(new ZipEntry("data.xml"));
+			new TaskDataExternalizer(taskRepositoryManager).writeState(out, state);
+		} finally {
+			out.close();
+		}
+
+		// migrate the file without rewriting it
+		assertTrue(new TaskDataStore(taskRepositoryManager, true).hasTaskData(file));
+		assertFalse(file.exists());
+
+		TaskDataStore storage = new TaskDataStore(taskRepositoryManager, false);
+		TaskDataState state2 = storage.getTaskDataState(file);
+		assertNotNull(state2);
+		assertEquals("repository", state2.getRepositoryData().getRoot().getAttribute("attribute").getValue());
+		assertEquals("edits", state2.getEditsData().getRoot().getAttribute("attribute").getValue());
+		assertTrue(file.exists());
+	}
+
+	private File createTempFolder() throws IOException {
+		File folder = File.createTempFile("mylyn", null);
+		folder.delete();
+		folder.mkdirs();
+		folder.deleteOnExit();
+		return folder;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,7 @@ import org.eclipse.mylyn.internal.tasks.core.LocalTask;
 import org.eclipse.mylyn.internal.tasks.core.TaskList;
 import org.eclipse.mylyn.internal.tasks.ui.ITasksUiPreferenceConstants;
 import org.eclipse.mylyn.internal.tasks.ui.TasksUiPlugin;
+import org.eclipse.mylyn.internal.tasks.ui.views.AbstractTaskListPresentation;
 import org.eclipse.mylyn.internal.tasks.ui.views.TaskListContentProvider;
 import org.eclipse.mylyn.internal.tasks.ui.views.TaskListView;
 import org.eclipse.mylyn.tasks.ui.TasksUiUtil;
@@ -67,4 +68,53 @@ public class TaskListContentProviderTest extends TestCase {
 		taskList.addTask(incompleteChild, parent);
 		assertTrue(provider.hasChildren(parent));
 	}
+
+	public void testGetChildrenAfterTaskChanged() {
+		AbstractTask parent = new LocalTask("parent", "parent label");
+		AbstractTask child = new LocalTask("child", "child label");
+		taskList.addTask(parent);
+		taskList.addTask(child, parent);
+		assertEquals(1, provider.getChildren(parent).length);
+
+		child.setCompletionDate(new Date());
+		taskList.notifyElementChanged(child);
+		assertEquals(0, provider.getChildren(parent).length);
+		assertFalse(provider.hasChildren(parent));
+	}
+
+	public void testGetChildrenAfterFiltersChanged() {
+		AbstractTask parent = new LocalTask("parent", "parent label");
+		AbstractTask completedChild = new LocalTask("completed child", "completed child label");
+		completedChild.setCompletionDate(new Date());
+		taskList.addTask(parent);
+		taskList.addTask(completedChild, parent);
+		assertEquals(0, provider.getChildren(parent).length);
+
+		view.clearFilters();
+		assertEquals(1, provider.getChildren(parent).length);
+		assertTrue(provider.hasChildren(parent));
+	}
+
+	public void testGetChildrenAfterPresentationChanged() {
+		AbstractTaskListPresentation presentation = view.getCurrentPresentation();
+		AbstractTask parent = new LocalTask("parent", "parent label");
+		AbstractTask child = new LocalTask("child", "child label");
+		taskList.addTask(parent);
+		taskList.addTask(child, parent);
+		assertEquals(1, provider.getChildren(parent).length);
+
+		// the content provider is reused when switching back
+		for (AbstractTaskListPresentation otherPresentation : TaskListView.getPresentations()) {
+			if (otherPresentation != presentation) {
+				view.applyPresentation(otherPresentation);
+				break;
+			}
+		}
+		view.applyPresentation(presentation);
+		assertSame(provider, view.getViewer().getContentProvider());
+
+		child.setCompletionDate(new Date());
+		taskList.notifyElementChanged(child);
+		assertEquals(0, provider.getChildren(parent).length);
+	}
 }
@@ -11,13 +11,19 @@
 
 package org.eclipse.mylyn.tasks.tests;
 
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.mylyn.internal.tasks.core.AbstractTask;
 import org.eclipse.mylyn.internal.tasks.core.AbstractTaskCategory;
 import org.eclipse.mylyn.internal.tasks.core.AbstractTaskContainer;
+import org.eclipse.mylyn.internal.tasks.core.ITaskListRunnable;
 import org.eclipse.mylyn.internal.tasks.core.LocalRepositoryConnector;
 import org.eclipse.mylyn.internal.tasks.core.LocalTask;
 import org.eclipse.mylyn.internal.tasks.core.TaskCategory;
@@ -552,4 +558,212 @@ public class TaskListTest extends TestCase {
 		assertTrue(tasksReturned.contains(task1));
 	}
 
+	public void testRunForRepositoryDoesNotBlockTaskList() throws Exception {
+		final CountDownLatch acquired = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					taskList.runForRepository("http://mylyn", new ITaskListRunnable() {
+						public void execute(IProgressMonitor monitor) throws CoreException {
+							acquired.countDown();
+							try {
+								release.await();
+							} catch (InterruptedException e) {
+								// ignore
+							}
+						}
+					});
+				} catch (CoreException e) {
+					// ignore
+				}
+			}
+		};
+		thread.start();
+		try {
+			assertTrue(acquired.await(10, TimeUnit.SECONDS));
+			final boolean[] executed = new boolean[1];
+			taskList.run(new ITaskListRunnable() {
+				public void execute(IProgressMonitor monitor) throws CoreException {
+					executed[0] = true;
+				}
+			});
+			assertTrue(executed[0]);
+		} finally {
+			release.countDown();
+			thread.join();
+		}
+	}
+
+	public void testRunForRepositorySerializesRepository() throws Exception {
+		final CountDownLatch acquired = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final long[] blockedUntil = new long[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					taskList.runForRepository("http://mylyn", new ITaskListRunnable() {
+						public void execute(IProgressMonitor monitor) throws CoreException {
+							acquired.countDown();
+							try {
+								release.await();
+							} catch (InterruptedException e) {
+								// ignore
+							}
+							blockedUntil[0] = System.nanoTime();
+						}
+					});
+				} catch (CoreException e) {
+					// ignore
+				}
+			}
+		};
+		thread.start();
+		try {
+			assertTrue(acquired.await(10, TimeUnit.SECONDS));
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						// ignore
+					}
+					release.countDown();
+				}
+			}.start();
+			final long[] executedAt = new long[1];
+			taskList.runForRepository("http://mylyn", new ITaskListRunnable() {
+				public void execute(IProgressMonitor monitor) throws CoreException {
+					executedAt[0] = System.nanoTime();
+				}
+			});
+			assertTrue(blockedUntil[0] != 0);
+			assertTrue(executedAt[0] >= blockedUntil[0]);
+		} finally {
+			release.countDown();
+			thread.join();
+		}
+	}
+
+	public void testGetTaskByKey() {
+		MockTask task = new MockTask("http://repository1", "1");
+		task.setTaskKey("KEY-1");
+		taskList.addTask(task, taskList.getDefaultCategory());
+
+		assertEquals(task, taskList.getTaskByKey("http://repository1", "KEY-1"));
+		assertNull(taskList.getTaskByKey("http://repository2", "KEY-1"));
+		assertNull(taskList.getTaskByKey("http://repository1", "1"));
+
+		task.setTaskKey("KEY-2");
+		assertNull(taskList.getTaskByKey("http://repository1", "KEY-1"));
+		assertEquals(task, taskList.getTaskByKey("http://repository1", "KEY-2"));
+
+		taskList.deleteTask(task);
+		assertNull(taskList.getTaskByKey("http://repository1", "KEY-2"));
+		assertEquals(0, taskList.getTasks("http://repository1").size());
+	}
+
+	public void testGetTaskByKeyDuplicateKey() {
+		MockTask task1 = new MockTask("http://repository1", "1");
+		task1.setTaskKey("KEY-1");
+		taskList.addTask(task1, taskList.getDefaultCategory());
+		MockTask task2 = new MockTask("http://repository1", "2");
+		task2.setTaskKey("KEY-1");
+		taskList.addTask(task2, taskList.getDefaultCategory());
+
+		ITask indexedTask = taskList.getTaskByKey("http://repository1", "KEY-1");
+		assertNotNull(indexedTask);
+		MockTask otherTask = (indexedTask == task1) ? task2 : task1;
+
+		taskList.deleteTask(indexedTask);
+		assertEquals(otherTask, taskList.getTaskByKey("http://repository1", "KEY-1"));
+
+		otherTask.setTaskKey("KEY-2");
+		taskList.addTask(indexedTask, taskList.getDefaultCategory());
+		((MockTask) indexedTask).setTaskKey("KEY-2");
+		ITask task = taskList.getTaskByKey("http://repository1", "KEY-2");
+		assertNotNull(task);
+		((MockTask) task).setTaskKey("KEY-3");
+		assertNotNull(taskList.getTaskByKey("http://repository1", "KEY-2"));
+		assertNotSame(task, taskList.getTaskByKey("http://repository1", "KEY-2"));
+	}
+
+	public void testRefactorRepositoryUrlUpdatesIndex() {
+		MockTask task = new MockTask("http://repository1", "1");
+		task.setTaskKey("KEY-1");
+		taskList.addTask(task, taskList.getDefaultCategory());
+
+		taskList.refactorRepositoryUrl("http://repository1", "http://repository2");
+		assertEquals(0, taskList.getTasks("http://repository1").size());
+		assertEquals(Collections.singleton(task), taskList.getTasks("http://repository2"));
+		assertNull(taskList.getTaskByKey("http://repository1", "KEY-1"));
+		assertEquals(task, taskList.getTaskByKey("http://repository2", "KEY-1"));
+	}
+
+	public void testGetTaskByKeyLargeTaskList() {
+		int count = 10000;
+		TaskCategory category = null;
+		for (int i = 0; i < count; i++) {
+			if (i % 100 == 0) {
+				category = new TaskCategory("category" + i);
+				taskList.addCategory(category);
+			}
+			MockTask task = new MockTask(getRepositoryUrl(i), Integer.toString(i));
+			task.setTaskKey("KEY-" + i);
+			taskList.addTask(task, category);
+		}
+
+		for (int i = 0; i < count; i++) {
+			ITask task = taskList.getTaskByKey(getRepositoryUrl(i), "KEY-" + i);
+			assertNotNull(task);
+			assertEquals(Integer.toString(i), task.getTaskId());
+			assertNull(taskList.getTaskByKey(getRepositoryUrl(i + 1), "KEY-" + i));
+		}
+		assertEquals(count / 2, taskList.getTasks(getRepositoryUrl(0)).size());
+		assertEquals(count / 2, taskList.getTasks(getRepositoryUrl(1)).size());
+	}
+
+	public void testGetTaskByKeyInterleavedKeyChanges() {
+		int count = 1000;
+		for (int i = 0; i < count; i++) {
+			MockTask task = new MockTask(getRepositoryUrl(i), Integer.toString(i));
+			task.setTaskKey("KEY-" + i);
+			taskList.addTask(task, taskList.getDefaultCategory());
+		}
+
+		// the key index is updated as keys change, lookups of unchanged keys are not affected
+		for (int i = 0; i < count; i++) {
+			AbstractTask task = taskList.getTaskByKey(getRepositoryUrl(i), "KEY-" + i);
+			task.setTaskKey("NEW-" + i);
+			assertNull(taskList.getTaskByKey(getRepositoryUrl(i), "KEY-" + i));
+			assertEquals(task, taskList.getTaskByKey(getRepositoryUrl(i), "NEW-" + i));
+			if (i + 1 < count) {
+				assertNotNull(taskList.getTaskByKey(getRepositoryUrl(i + 1), "KEY-" + (i + 1)));
+			}
+		}
+	}
+
+	public void testGetTaskByKeyOtherTaskList() {
+		MockTask task = new MockTask("http://repository1", "1");
+		task.setTaskKey("KEY-1");
+		taskList.addTask(task, taskList.getDefaultCategory());
+
+		TaskList otherTaskList = new TaskList();
+		MockTask otherTask = new MockTask("http://repository1", "1");
+		otherTask.setTaskKey("KEY-1");
+		otherTaskList.addTask(otherTask, otherTaskList.getDefaultCategory());
+
+		otherTask.setTaskKey("KEY-2");
+		assertEquals(task, taskList.getTaskByKey("http://repository1", "KEY-1"));
+		assertNull(taskList.getTaskByKey("http://repository1", "KEY-2"));
+		assertEquals(otherTask, otherTaskList.getTaskByKey("http://repository1", "KEY-2"));
+	}
+
+	private String getRepositoryUrl(int i) {
+		return (i % 2 == 0) ? "http://repository1" : "http://repository2";
+	}
+
 }
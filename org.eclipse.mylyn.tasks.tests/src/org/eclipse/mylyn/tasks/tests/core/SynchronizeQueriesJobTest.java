@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.tests.core;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.internal.tasks.core.IRepositoryConstants;
+import org.eclipse.mylyn.internal.tasks.core.ITaskListChangeListener;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
+import org.eclipse.mylyn.internal.tasks.core.TaskActivityManager;
+import org.eclipse.mylyn.internal.tasks.core.TaskContainerDelta;
+import org.eclipse.mylyn.internal.tasks.core.TaskList;
+import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryManager;
+import org.eclipse.mylyn.internal.tasks.core.data.ITaskDataManagerBatchListener;
+import org.eclipse.mylyn.internal.tasks.core.data.SynchronizationManger;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManagerEvent;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataStore;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationMetrics;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationMetrics.RepositoryMetrics;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizeQueriesJob;
+import org.eclipse.mylyn.tasks.core.IRepositoryQuery;
+import org.eclipse.mylyn.tasks.core.ITask;
+import org.eclipse.mylyn.tasks.core.ITaskContainer;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+import org.eclipse.mylyn.tasks.core.data.TaskRelation;
+import org.eclipse.mylyn.tasks.core.sync.ISynchronizationSession;
+import org.eclipse.mylyn.tasks.tests.connector.MockRepositoryConnector;
+
+public class SynchronizeQueriesJobTest extends TestCase {
+
+	private TaskList taskList;
+
+	private TaskRepositoryManager repositoryManager;
+
+	private RepositoryModel repositoryModel;
+
+	private TaskDataManager taskDataManager;
+
+	private TaskRepository repository;
+
+	private Set<RepositoryQuery> queries;
+
+	private File dataPath;
+
+	@Override
+	protected void setUp() throws Exception {
+		taskList = new TaskList();
+		repositoryManager = new TaskRepositoryManager();
+		repositoryModel = new RepositoryModel(taskList, repositoryManager);
+		taskDataManager = new TaskDataManager(new TaskDataStore(repositoryManager), repositoryManager, taskList,
+				new TaskActivityManager(repositoryManager, taskList), new SynchronizationManger(repositoryModel) {
+					@Override
+					public synchronized boolean hasParticipants(String connectorKind) {
+						// avoid loading participants from the extension registry
+						return false;
+					}
+				});
+		dataPath = File.createTempFile("mylyn", null); //$NON-NLS-1$
+		dataPath.delete();
+		dataPath.mkdirs();
+		taskDataManager.setDataPath(dataPath.getAbsolutePath());
+		repository = new TaskRepository(MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL);
+		repositoryManager.addRepository(repository);
+		queries = new HashSet<RepositoryQuery>();
+		for (int i = 0; i < 4; i++) {
+			RepositoryQuery query = new RepositoryQuery(MockRepositoryConnector.CONNECTOR_KIND, "query" + i); //$NON-NLS-1$
+			query.setRepositoryUrl(MockRepositoryConnector.REPOSITORY_URL);
+			taskList.addQuery(query);
+			queries.add(query);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(dataPath);
+	}
+
+	public void testQueriesSynchronizedSequentiallyByDefault() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		SynchronizeQueriesJob job = createJob(new MockRepositoryConnector() {
+			@Override
+			public IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+					TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+				maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				running.decrementAndGet();
+				return Status.OK_STATUS;
+			}
+		});
+
+		assertEquals(Status.OK_STATUS, job.run(new NullProgressMonitor()));
+		assertEquals(1, maxRunning.get());
+	}
+
+	public void testQueriesSynchronizedConcurrently() throws Exception {
+		repository.setProperty(IRepositoryConstants.PROPERTY_QUERY_CONCURRENCY, "4"); //$NON-NLS-1$
+		final CountDownLatch queriesStarted = new CountDownLatch(queries.size());
+		final AtomicInteger concurrent = new AtomicInteger();
+		SynchronizeQueriesJob job = createJob(new MockRepositoryConnector() {
+			@Override
+			public IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+					TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+				queriesStarted.countDown();
+				try {
+					// only succeeds if all queries run at the same time
+					if (queriesStarted.await(10, TimeUnit.SECONDS)) {
+						concurrent.incrementAndGet();
+					}
+				} catch (InterruptedException e) {
+					// fail
+				}
+				// all queries return the same new task
+				resultCollector.accept(new TaskData(new TaskAttributeMapper(repository),
+						MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL, "1")); //$NON-NLS-1$
+				return Status.OK_STATUS;
+			}
+		});
+
+		assertEquals(Status.OK_STATUS, job.run(new NullProgressMonitor()));
+		assertEquals(queries.size(), concurrent.get());
+		assertEquals(1, taskList.getAllTasks().size());
+		ITask task = taskList.getTask(MockRepositoryConnector.REPOSITORY_URL, "1"); //$NON-NLS-1$
+		for (RepositoryQuery query : queries) {
+			assertEquals(1, query.getChildren().size());
+			assertSame(task, query.getChildren().iterator().next());
+		}
+	}
+
+	public void testQueryResultsAddedInBatches() throws Exception {
+		final RepositoryQuery query = queries.iterator().next();
+		queries.clear();
+		queries.add(query);
+		final AtomicInteger deltaCount = new AtomicInteger();
+		taskList.addChangeListener(new ITaskListChangeListener() {
+			public void containersChanged(Set<TaskContainerDelta> containers) {
+				deltaCount.incrementAndGet();
+			}
+		});
+		final AtomicInteger eventCount = new AtomicInteger();
+		final AtomicInteger batchCount = new AtomicInteger();
+		taskDataManager.addListener(new ITaskDataManagerBatchListener() {
+			public void taskDataUpdated(List<TaskDataManagerEvent> events) {
+				eventCount.addAndGet(events.size());
+				batchCount.incrementAndGet();
+			}
+
+			public void taskDataUpdated(TaskDataManagerEvent event) {
+				eventCount.incrementAndGet();
+				batchCount.incrementAndGet();
+			}
+
+			public void editsDiscarded(TaskDataManagerEvent event) {
+			}
+		});
+		SynchronizeQueriesJob job = createJob(new MockRepositoryConnector() {
+			@Override
+			public IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+					TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+				for (int i = 0; i < 250; i++) {
+					resultCollector.accept(new TaskData(new TaskAttributeMapper(repository),
+							MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL,
+							Integer.toString(i)));
+				}
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean hasTaskChanged(TaskRepository taskRepository, ITask task, TaskData taskData) {
+				return true;
+			}
+		});
+
+		assertEquals(Status.OK_STATUS, job.run(new NullProgressMonitor()));
+		assertEquals(250, query.getChildren().size());
+		assertEquals(250, eventCount.get());
+		assertEquals(3, batchCount.get());
+		// one delta for adding tasks and one for updating tasks per batch plus the final query update
+		assertTrue("Expected less than 10 deltas, got " + deltaCount.get(), deltaCount.get() < 10); //$NON-NLS-1$
+	}
+
+	public void testChangedPartialTaskMarkedStale() throws Exception {
+		final RepositoryQuery query = queries.iterator().next();
+		queries.clear();
+		queries.add(query);
+		ITask changedTask = new TaskTask(MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL,
+				"1"); //$NON-NLS-1$
+		taskList.addTask(changedTask);
+		taskList.addTask(new TaskTask(MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL,
+				"2")); //$NON-NLS-1$
+		final Set<ITask> staleTasks = new HashSet<ITask>();
+		SynchronizeQueriesJob job = createJob(new MockRepositoryConnector() {
+			@Override
+			public IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+					TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+				for (String taskId : new String[] { "1", "2" }) { //$NON-NLS-1$ //$NON-NLS-2$
+					TaskData taskData = new TaskData(new TaskAttributeMapper(repository),
+							MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL, taskId);
+					taskData.setPartial(true);
+					resultCollector.accept(taskData);
+				}
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean hasTaskChanged(TaskRepository taskRepository, ITask task, TaskData taskData) {
+				return "1".equals(task.getTaskId()); //$NON-NLS-1$
+			}
+
+			@Override
+			public TaskData getTaskData(TaskRepository taskRepository, String taskId, IProgressMonitor monitor) {
+				return new TaskData(new TaskAttributeMapper(taskRepository), MockRepositoryConnector.CONNECTOR_KIND,
+						MockRepositoryConnector.REPOSITORY_URL, taskId);
+			}
+
+			@Override
+			public void postSynchronization(ISynchronizationSession event, IProgressMonitor monitor) {
+				staleTasks.addAll(event.getStaleTasks());
+			}
+		});
+
+		assertEquals(Status.OK_STATUS, job.run(new NullProgressMonitor()));
+		assertEquals(Collections.singleton(changedTask), staleTasks);
+	}
+
+	public void testRelationsApplied() throws Exception {
+		final RepositoryQuery query = queries.iterator().next();
+		queries.clear();
+		queries.add(query);
+		ITask subtask = new TaskTask(MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL,
+				"2"); //$NON-NLS-1$
+		taskList.addTask(subtask);
+		SynchronizeQueriesJob job = createJob(new MockRepositoryConnector() {
+			@Override
+			public IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+					TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+				resultCollector.accept(new TaskData(new TaskAttributeMapper(repository),
+						MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL, "1")); //$NON-NLS-1$
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public Collection<TaskRelation> getTaskRelations(TaskData taskData) {
+				if ("1".equals(taskData.getTaskId())) { //$NON-NLS-1$
+					return Collections.singleton(TaskRelation.subtask("2")); //$NON-NLS-1$
+				}
+				return null;
+			}
+		});
+
+		assertEquals(Status.OK_STATUS, job.run(new NullProgressMonitor()));
+		ITask task = taskList.getTask(MockRepositoryConnector.REPOSITORY_URL, "1"); //$NON-NLS-1$
+		assertNotNull(task);
+		assertEquals(Collections.singleton(subtask), new HashSet<ITask>(((ITaskContainer) task).getChildren()));
+	}
+
+	public void testMetricsCollected() throws Exception {
+		SynchronizeQueriesJob job = createJob(new MockRepositoryConnector() {
+			@Override
+			public IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+					TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+				for (int i = 0; i < 10; i++) {
+					resultCollector.accept(new TaskData(new TaskAttributeMapper(repository),
+							MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL,
+							Integer.toString(i)));
+				}
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean hasTaskChanged(TaskRepository taskRepository, ITask task, TaskData taskData) {
+				return true;
+			}
+		});
+
+		assertEquals(Status.OK_STATUS, job.run(new NullProgressMonitor()));
+		RepositoryMetrics metrics = taskDataManager.getMetrics().getRepositoryMetrics(
+				MockRepositoryConnector.REPOSITORY_URL);
+		assertEquals(1, metrics.getTimer(SynchronizationMetrics.PHASE_SYNCHRONIZATION).getCount());
+		assertEquals(1, metrics.getTimer(SynchronizationMetrics.PHASE_PRE_SYNCHRONIZATION).getCount());
+		assertEquals(1, metrics.getTimer(SynchronizationMetrics.PHASE_POST_SYNCHRONIZATION).getCount());
+		assertEquals(queries.size(), metrics.getTimer(SynchronizationMetrics.PHASE_QUERY).getCount());
+		assertEquals(queries.size(), metrics.getCounter(SynchronizationMetrics.COUNTER_QUERIES));
+		assertEquals(queries.size() * 10, metrics.getCounter(SynchronizationMetrics.COUNTER_QUERY_RESULTS));
+		// each query writes the same tasks, only the first write of a task changes the task data
+		assertEquals(queries.size() * 10, metrics.getTimer(SynchronizationMetrics.PHASE_WRITE_TASK_DATA).getCount());
+		assertEquals((queries.size() - 1) * 10, metrics.getCounter(SynchronizationMetrics.COUNTER_TASKS_UNCHANGED));
+		assertEquals(10, metrics.getCounter(SynchronizationMetrics.COUNTER_TASKS_CHANGED));
+		assertTrue(sum(metrics.getLockWaits(SynchronizationMetrics.LOCK_TASK_LIST).getCounts()) > 0);
+		assertTrue(sum(metrics.getLockWaits(SynchronizationMetrics.LOCK_REPOSITORY).getCounts()) > 0);
+
+		String json = taskDataManager.getMetrics().toJson();
+		assertTrue(json, json.contains("\"repositoryUrl\": \"" + MockRepositoryConnector.REPOSITORY_URL + "\"")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(json, json.contains("\"queryResults\": " + queries.size() * 10)); //$NON-NLS-1$
+
+		taskDataManager.getMetrics().reset();
+		assertTrue(taskDataManager.getMetrics().getAllRepositoryMetrics().isEmpty());
+	}
+
+	private long sum(long[] values) {
+		long sum = 0;
+		for (long value : values) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	private SynchronizeQueriesJob createJob(MockRepositoryConnector connector) {
+		repositoryManager.addRepositoryConnector(connector);
+		SynchronizeQueriesJob job = new SynchronizeQueriesJob(taskList, taskDataManager, repositoryModel, connector,
+				repository, queries);
+		job.setUser(false);
+		return job;
+	}
+
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.tests.core;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
+import org.eclipse.mylyn.internal.tasks.core.TaskActivityManager;
+import org.eclipse.mylyn.internal.tasks.core.TaskList;
+import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryManager;
+import org.eclipse.mylyn.internal.tasks.core.data.SynchronizationManger;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataStore;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizeRepositoriesJob;
+import org.eclipse.mylyn.tasks.core.IRepositoryQuery;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+import org.eclipse.mylyn.tasks.core.sync.ISynchronizationSession;
+import org.eclipse.mylyn.tasks.tests.connector.MockRepositoryConnector;
+
+public class SynchronizeRepositoriesJobTest extends TestCase {
+
+	private static final String REPOSITORY_URL_1 = "http://mockrepository.test/1"; //$NON-NLS-1$
+
+	private static final String REPOSITORY_URL_2 = "http://mockrepository.test/2"; //$NON-NLS-1$
+
+	private TaskList taskList;
+
+	private TaskRepositoryManager repositoryManager;
+
+	private SynchronizeRepositoriesJob job;
+
+	@Override
+	protected void setUp() throws Exception {
+		taskList = new TaskList();
+		repositoryManager = new TaskRepositoryManager();
+		RepositoryModel repositoryModel = new RepositoryModel(taskList, repositoryManager);
+		TaskDataManager taskDataManager = new TaskDataManager(new TaskDataStore(repositoryManager), repositoryManager,
+				taskList, new TaskActivityManager(repositoryManager, taskList), new SynchronizationManger(
+						repositoryModel));
+		job = new SynchronizeRepositoriesJob(taskList, taskDataManager, repositoryModel, repositoryManager);
+		job.setUser(false);
+	}
+
+	public void testRepositoriesSynchronizedConcurrently() throws Exception {
+		final CountDownLatch queriesStarted = new CountDownLatch(2);
+		final boolean[] concurrent = new boolean[2];
+		addConnector(new MockRepositoryConnector() {
+			@Override
+			public IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+					TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+				queriesStarted.countDown();
+				try {
+					// only succeeds if the other repository is synchronized at the same time
+					concurrent[repository.getRepositoryUrl().equals(REPOSITORY_URL_1) ? 0 : 1] = queriesStarted.await(
+							10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// fail
+				}
+				return Status.OK_STATUS;
+			}
+		});
+
+		assertEquals(Status.OK_STATUS, job.run(new NullProgressMonitor()));
+		assertTrue(concurrent[0]);
+		assertTrue(concurrent[1]);
+	}
+
+	public void testRepositoryTimeout() throws Exception {
+		final CountDownLatch completed = new CountDownLatch(1);
+		final boolean[] canceled = new boolean[1];
+		addConnector(new MockRepositoryConnector() {
+			@Override
+			public IStatus performQuery(TaskRepository repository, IRepositoryQuery query,
+					TaskDataCollector resultCollector, ISynchronizationSession event, IProgressMonitor monitor) {
+				if (repository.getRepositoryUrl().equals(REPOSITORY_URL_1)) {
+					// block until the synchronization is canceled
+					long start = System.currentTimeMillis();
+					while (!monitor.isCanceled() && System.currentTimeMillis() - start < 10000) {
+						try {
+							Thread.sleep(10);
+						} catch (InterruptedException e) {
+							break;
+						}
+					}
+					canceled[0] = monitor.isCanceled();
+				} else {
+					completed.countDown();
+				}
+				return Status.OK_STATUS;
+			}
+		});
+		job.setRepositoryTimeout(500);
+
+		IProgressMonitor monitor = new NullProgressMonitor();
+		long start = System.currentTimeMillis();
+		assertEquals(Status.OK_STATUS, job.run(monitor));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(0, completed.getCount());
+		// canceling a single repository does not cancel the job
+		assertFalse(monitor.isCanceled());
+		Thread.sleep(500);
+		assertTrue(canceled[0]);
+	}
+
+	private void addConnector(MockRepositoryConnector connector) {
+		repositoryManager.addRepositoryConnector(connector);
+		for (String url : Arrays.asList(REPOSITORY_URL_1, REPOSITORY_URL_2)) {
+			repositoryManager.addRepository(new TaskRepository(MockRepositoryConnector.CONNECTOR_KIND, url));
+			RepositoryQuery query = new RepositoryQuery(MockRepositoryConnector.CONNECTOR_KIND, url + "/query"); //$NON-NLS-1$
+			query.setRepositoryUrl(url);
+			query.setAutoUpdate(true);
+			taskList.addQuery(query);
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.tests.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
+import org.eclipse.mylyn.internal.tasks.core.TaskCategory;
+import org.eclipse.mylyn.internal.tasks.core.TaskList;
+import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryManager;
+import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.internal.tasks.core.externalization.ExternalizationManager;
+import org.eclipse.mylyn.internal.tasks.core.externalization.TaskListExternalizationParticipant;
+import org.eclipse.mylyn.internal.tasks.core.externalization.TaskListExternalizer;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.tests.connector.MockRepositoryConnector;
+
+public class TaskListExternalizationParticipantTest extends TestCase {
+
+	private class Fixture {
+
+		final TaskList taskList;
+
+		final ExternalizationManager manager;
+
+		final TaskListExternalizationParticipant participant;
+
+		Fixture() {
+			taskList = new TaskList();
+			RepositoryModel repositoryModel = new RepositoryModel(taskList, repositoryManager);
+			manager = new ExternalizationManager(folder.getAbsolutePath());
+			participant = new TaskListExternalizationParticipant(repositoryModel, taskList, new TaskListExternalizer(
+					repositoryModel, repositoryManager), manager, repositoryManager);
+			manager.addParticipant(participant);
+			taskList.addChangeListener(participant);
+			participant.resetTaskList();
+		}
+
+	}
+
+	private TaskRepositoryManager repositoryManager;
+
+	private File folder;
+
+	private File taskListFile;
+
+	private File journalFile;
+
+	private Fixture fixture;
+
+	@Override
+	protected void setUp() throws Exception {
+		repositoryManager = new TaskRepositoryManager();
+		repositoryManager.addRepositoryConnector(new MockRepositoryConnector());
+		repositoryManager.addRepository(new TaskRepository(MockRepositoryConnector.CONNECTOR_KIND,
+				MockRepositoryConnector.REPOSITORY_URL));
+
+		folder = File.createTempFile("tasklist", null); //$NON-NLS-1$
+		folder.delete();
+		folder.mkdirs();
+		taskListFile = new File(folder, ITasksCoreConstants.DEFAULT_TASK_LIST_FILE);
+		journalFile = TaskListExternalizationParticipant.getJournalFile(taskListFile);
+
+		fixture = new Fixture();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		folder.delete();
+	}
+
+	public void testSaveAppendsJournal() throws Exception {
+		TaskTask task1 = createTask("1"); //$NON-NLS-1$
+		TaskTask task2 = createTask("2"); //$NON-NLS-1$
+		fixture.manager.save(true);
+		assertFalse(journalFile.exists());
+		long length = taskListFile.length();
+		long lastModified = taskListFile.lastModified();
+
+		task1.setSummary("changed"); //$NON-NLS-1$
+		fixture.taskList.notifyElementChanged(task1);
+		fixture.taskList.deleteTask(task2);
+		TaskTask task3 = createTask("3"); //$NON-NLS-1$
+		TaskCategory category = new TaskCategory("category"); //$NON-NLS-1$
+		fixture.taskList.addCategory(category);
+		fixture.taskList.addTask(task3, category);
+		assertTrue(fixture.participant.isDirty());
+		fixture.manager.save(false);
+
+		assertFalse(fixture.participant.isDirty());
+		assertTrue(journalFile.exists());
+		assertEquals(length, taskListFile.length());
+		assertEquals(lastModified, taskListFile.lastModified());
+
+		Fixture loaded = load();
+		assertEquals("changed", loaded.taskList.getTask(task1.getHandleIdentifier()).getSummary()); //$NON-NLS-1$
+		assertNull(loaded.taskList.getTask(task2.getHandleIdentifier()));
+		assertNotNull(loaded.taskList.getTask(task3.getHandleIdentifier()));
+		assertEquals(1, loaded.taskList.getContainerForHandle("category").getChildren().size()); //$NON-NLS-1$
+	}
+
+	public void testJournalReplayedInOrder() throws Exception {
+		TaskTask task = createTask("1"); //$NON-NLS-1$
+		fixture.manager.save(true);
+
+		task.setSummary("first"); //$NON-NLS-1$
+		fixture.taskList.notifyElementChanged(task);
+		fixture.manager.save(false);
+		task.setSummary("second"); //$NON-NLS-1$
+		fixture.taskList.notifyElementChanged(task);
+		fixture.manager.save(false);
+
+		assertEquals("second", load().taskList.getTask(task.getHandleIdentifier()).getSummary()); //$NON-NLS-1$
+	}
+
+	public void testFullSaveMergesJournal() throws Exception {
+		TaskTask task = createTask("1"); //$NON-NLS-1$
+		fixture.manager.save(true);
+		task.setSummary("changed"); //$NON-NLS-1$
+		fixture.taskList.notifyElementChanged(task);
+		fixture.manager.save(false);
+		assertTrue(journalFile.exists());
+
+		fixture.manager.save(true);
+		assertFalse(journalFile.exists());
+		assertEquals("changed", load().taskList.getTask(task.getHandleIdentifier()).getSummary()); //$NON-NLS-1$
+	}
+
+	public void testIncompleteJournal() throws Exception {
+		TaskTask task1 = createTask("1"); //$NON-NLS-1$
+		fixture.manager.save(true);
+		task1.setSummary("changed"); //$NON-NLS-1$
+		fixture.taskList.notifyElementChanged(task1);
+		fixture.manager.save(false);
+
+		// simulate an append that did not complete
+		FileOutputStream out = new FileOutputStream(journalFile, true);
+		try {
+			out.write("<Delta><Task Handle=\"".getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			out.close();
+		}
+
+		Fixture loaded = load();
+		assertEquals("changed", loaded.taskList.getTask(task1.getHandleIdentifier()).getSummary()); //$NON-NLS-1$
+
+		// the next save merges the journal since further deltas would not be readable
+		TaskTask task2 = new TaskTask(MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL,
+				"2"); //$NON-NLS-1$
+		loaded.taskList.addTask(task2);
+		loaded.manager.save(false);
+		assertFalse(journalFile.exists());
+		assertNotNull(load().taskList.getTask(task2.getHandleIdentifier()));
+	}
+
+	private TaskTask createTask(String taskId) {
+		TaskTask task = new TaskTask(MockRepositoryConnector.CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL,
+				taskId);
+		task.setSummary("summary " + taskId); //$NON-NLS-1$
+		fixture.taskList.addTask(task);
+		return task;
+	}
+
+	private Fixture load() throws Exception {
+		Fixture loaded = new Fixture();
+		assertNull(loaded.manager.load());
+		return loaded;
+	}
+
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.tests.core;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import junit.framework.TestCase;
+
+import org.eclipse.mylyn.internal.tasks.core.AbstractTask;
+import org.eclipse.mylyn.internal.tasks.core.AbstractTaskCategory;
+import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
+import org.eclipse.mylyn.internal.tasks.core.LocalRepositoryConnector;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryModel;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
+import org.eclipse.mylyn.internal.tasks.core.TaskCategory;
+import org.eclipse.mylyn.internal.tasks.core.TaskList;
+import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryManager;
+import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.internal.tasks.core.UnmatchedTaskContainer;
+import org.eclipse.mylyn.internal.tasks.core.externalization.DelegatingTaskExternalizer;
+import org.eclipse.mylyn.internal.tasks.core.externalization.TaskListExternalizer;
+import org.eclipse.mylyn.tasks.tests.connector.MockRepositoryConnector;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Compares time and peak heap usage of the streaming {@link TaskListExternalizer} with writing and reading the task
+ * list through a DOM of the entire document. Not part of the regular test suite, the number of tasks can be set
+ * through the <code>mylyn.tests.taskListSize</code> system property, results are printed if the
+ * <code>mylyn.tests.verbose</code> system property is set.
+ */
+public class TaskListExternalizerPerformanceTest extends TestCase {
+
+	private static final int TASK_COUNT = Integer.getInteger("mylyn.tests.taskListSize", 20000); //$NON-NLS-1$
+
+	private static final boolean VERBOSE = Boolean.getBoolean("mylyn.tests.verbose"); //$NON-NLS-1$
+
+	private static final String UNKNOWN_CONNECTOR_KIND = "unknown"; //$NON-NLS-1$
+
+	private TaskRepositoryManager repositoryManager;
+
+	private TaskList taskList;
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		repositoryManager = new TaskRepositoryManager();
+		repositoryManager.addRepositoryConnector(new MockRepositoryConnector());
+		repositoryManager.addRepositoryConnector(new LocalRepositoryConnector());
+
+		taskList = createTaskList();
+		TaskCategory category = new TaskCategory("category", "Category"); //$NON-NLS-1$ //$NON-NLS-2$
+		taskList.addCategory(category);
+		RepositoryQuery query = new RepositoryQuery(MockRepositoryConnector.CONNECTOR_KIND, "query"); //$NON-NLS-1$
+		query.setRepositoryUrl(MockRepositoryConnector.REPOSITORY_URL);
+		query.setUrl(MockRepositoryConnector.REPOSITORY_URL + "/query"); //$NON-NLS-1$
+		query.setSummary("Query"); //$NON-NLS-1$
+		taskList.addQuery(query);
+
+		TaskTask parent = null;
+		for (int i = 0; i < TASK_COUNT; i++) {
+			TaskTask task = new TaskTask(MockRepositoryConnector.CONNECTOR_KIND,
+					MockRepositoryConnector.REPOSITORY_URL, Integer.toString(i));
+			task.setSummary("Summary of task " + i); //$NON-NLS-1$
+			task.setNotes("Notes of task " + i); //$NON-NLS-1$
+			task.setAttribute("key", "value " + i); //$NON-NLS-1$ //$NON-NLS-2$
+			if (i % 10 == 0) {
+				taskList.addTask(task, category);
+				parent = task;
+			} else if (i % 10 == 1) {
+				taskList.addTask(task, parent);
+			} else {
+				taskList.addTask(task, query);
+			}
+		}
+		// written by the externalizer but orphaned on read since no connector is available
+		taskList.addTask(new TaskTask(UNKNOWN_CONNECTOR_KIND, MockRepositoryConnector.REPOSITORY_URL, "orphan")); //$NON-NLS-1$
+
+		file = File.createTempFile("tasklist", ITasksCoreConstants.FILE_EXTENSION); //$NON-NLS-1$
+		file.deleteOnExit();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testWriteAndRead() throws Exception {
+		TaskListExternalizer externalizer = createExternalizer(taskList);
+
+		long start = System.currentTimeMillis();
+		resetPeakUsage();
+		externalizer.writeTaskList(taskList, file);
+		report("streaming write", start);
+
+		start = System.currentTimeMillis();
+		resetPeakUsage();
+		writeDom(taskList, file);
+		report("dom write", start);
+
+		TaskList readTaskList = createTaskList();
+		externalizer = createExternalizer(readTaskList);
+		start = System.currentTimeMillis();
+		resetPeakUsage();
+		externalizer.readTaskList(readTaskList, file);
+		report("streaming read", start);
+
+		start = System.currentTimeMillis();
+		resetPeakUsage();
+		int elementCount = readDom(createTaskList(), file);
+		report("dom read", start);
+
+		// the orphaned task is retained by the externalizer
+		assertEquals(taskList.getAllTasks().size() - 1, readTaskList.getAllTasks().size());
+		assertEquals(taskList.getAllTasks().size() + taskList.getCategories().size() + taskList.getQueries().size(),
+				elementCount);
+		assertEquals(TASK_COUNT / 10, readTaskList.getContainerForHandle("category").getChildren().size()); //$NON-NLS-1$
+		AbstractTask task = (AbstractTask) readTaskList.getTask(MockRepositoryConnector.REPOSITORY_URL, "0"); //$NON-NLS-1$
+		assertEquals("Summary of task 0", task.getSummary()); //$NON-NLS-1$
+		assertEquals("value 0", task.getAttribute("key")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(1, task.getChildren().size());
+
+		externalizer.writeTaskList(readTaskList, file);
+		TaskList rereadTaskList = createTaskList();
+		createExternalizer(rereadTaskList).readTaskList(rereadTaskList, file);
+		assertEquals(readTaskList.getAllTasks().size(), rereadTaskList.getAllTasks().size());
+		assertEquals(taskList.getAllTasks().size() + taskList.getCategories().size() + taskList.getQueries().size(),
+				readDom(createTaskList(), file));
+	}
+
+	private TaskList createTaskList() {
+		TaskList taskList = new TaskList();
+		taskList.addUnmatchedContainer(new UnmatchedTaskContainer(MockRepositoryConnector.CONNECTOR_KIND,
+				MockRepositoryConnector.REPOSITORY_URL));
+		return taskList;
+	}
+
+	private TaskListExternalizer createExternalizer(TaskList taskList) {
+		return new TaskListExternalizer(new RepositoryModel(taskList, repositoryManager), repositoryManager);
+	}
+
+	private void writeDom(TaskList taskList, File file) throws Exception {
+		DelegatingTaskExternalizer delegatingExternalizer = new DelegatingTaskExternalizer(new RepositoryModel(
+				taskList, repositoryManager), repositoryManager);
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		Element root = doc.createElement(TaskListExternalizer.ELEMENT_TASK_LIST);
+		root.setAttribute(TaskListExternalizer.ATTRIBUTE_VERSION, "2.0"); //$NON-NLS-1$
+		doc.appendChild(root);
+		for (AbstractTask task : taskList.getAllTasks()) {
+			delegatingExternalizer.createTaskElement(task, doc, root);
+		}
+		for (AbstractTaskCategory category : taskList.getCategories()) {
+			delegatingExternalizer.createCategoryElement(category, doc, root);
+		}
+		for (RepositoryQuery query : taskList.getQueries()) {
+			delegatingExternalizer.createQueryElement(query, doc, root);
+		}
+
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			out.putNextEntry(new ZipEntry(ITasksCoreConstants.OLD_TASK_LIST_FILE));
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.transform(new DOMSource(doc), new StreamResult((OutputStream) out));
+			out.closeEntry();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Parses <code>file</code> into a DOM, reads all tasks and returns the number of top-level elements.
+	 */
+	private int readDom(TaskList taskList, File file) throws Exception {
+		DelegatingTaskExternalizer delegatingExternalizer = new DelegatingTaskExternalizer(new RepositoryModel(
+				taskList, repositoryManager), repositoryManager);
+		Document doc;
+		InputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			((ZipInputStream) in).getNextEntry();
+			doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+		} finally {
+			in.close();
+		}
+		int count = 0;
+		for (Node child = doc.getDocumentElement().getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child instanceof Element) {
+				if ("Task".equals(child.getNodeName())) { //$NON-NLS-1$
+					AbstractTask task = delegatingExternalizer.readTask(child, null, null);
+					if (task != null) {
+						taskList.addTask(task);
+					}
+				}
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void resetPeakUsage() {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private void report(String label, long start) {
+		if (!VERBOSE) {
+			return;
+		}
+		long time = System.currentTimeMillis() - start;
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		System.out.println(TASK_COUNT + " tasks, " + label + ": " + time + " ms, peak heap " + (peak / 1024 / 1024) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ " MB"); //$NON-NLS-1$
+	}
+
+}
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.tests.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.mylyn.internal.tasks.core.TaskAttachment;
+import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskAttachmentCache;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+
+public class TaskAttachmentCacheTest extends TestCase {
+
+	private File directory;
+
+	private TaskAttachmentCache cache;
+
+	private TaskRepository repository;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("attachments", null);
+		directory.delete();
+		cache = new TaskAttachmentCache(directory, 100);
+		repository = new TaskRepository("kind", "http://repository");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.clear();
+		directory.delete();
+	}
+
+	public void testPut() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 10);
+		assertNull(cache.getFile(attachment));
+
+		File file = put(attachment, "file.txt", 10);
+		assertEquals("file.txt", file.getName());
+		assertEquals(file, cache.getFile(attachment));
+		assertEquals(10, cache.getSize());
+		assertEquals(createContent(10), read(file));
+	}
+
+	public void testPutDefaultFileName() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 10);
+		File file = cache.put(attachment, null, new ByteArrayInputStream(createContent(10).getBytes()), null);
+		assertEquals("attachment", file.getName());
+	}
+
+	public void testKey() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 10);
+		put(attachment, "file.txt", 10);
+		assertNull(cache.getFile(createAttachment("2", 10)));
+		assertNull(cache.getFile(createAttachment("1", 20)));
+		TaskAttachment changedAttachment = createAttachment("1", 10);
+		changedAttachment.setCreationDate(new Date(1));
+		assertNull(cache.getFile(changedAttachment));
+		TaskAttachment otherRepositoryAttachment = new TaskAttachment(new TaskRepository("kind", "http://other"),
+				new TaskTask("kind", "http://other", "1"), attachment.getTaskAttribute());
+		otherRepositoryAttachment.setLength(10);
+		assertNull(cache.getFile(otherRepositoryAttachment));
+		assertNotNull(cache.getFile(createAttachment("1", 10)));
+	}
+
+	public void testPutRetainsCachedFile() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 10);
+		File file = put(attachment, "file.txt", 10);
+		FileInputStream in = new FileInputStream(file);
+		try {
+			// simulates a concurrent download of the same attachment while the first file is open
+			assertEquals(file, put(attachment, "file.txt", 10));
+			assertTrue(file.exists());
+			assertEquals(10, cache.getSize());
+			assertEquals(1, directory.listFiles().length);
+			assertEquals(1, file.getParentFile().listFiles().length);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testPutReplacesRemovedFile() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 10);
+		put(attachment, "file.txt", 10).delete();
+		File file = put(attachment, "file.log", 20);
+		assertEquals("file.log", file.getName());
+		assertEquals(20, cache.getSize());
+		assertEquals(1, directory.listFiles().length);
+	}
+
+	public void testEvictLeastRecentlyUsed() throws Exception {
+		TaskAttachment attachment1 = createAttachment("1", 40);
+		TaskAttachment attachment2 = createAttachment("2", 40);
+		TaskAttachment attachment3 = createAttachment("3", 40);
+		File file1 = put(attachment1, "1.txt", 40);
+		File file2 = put(attachment2, "2.txt", 40);
+		assertNotNull(cache.getFile(attachment1));
+		put(attachment3, "3.txt", 40);
+		assertEquals(80, cache.getSize());
+		assertNotNull(cache.getFile(attachment1));
+		assertNull(cache.getFile(attachment2));
+		assertNotNull(cache.getFile(attachment3));
+		assertTrue(file1.exists());
+		assertFalse(file2.exists());
+	}
+
+	public void testEvictRetainsLargeAttachment() throws Exception {
+		TaskAttachment attachment1 = createAttachment("1", 10);
+		TaskAttachment attachment2 = createAttachment("2", 200);
+		put(attachment1, "1.txt", 10);
+		File file = put(attachment2, "2.txt", 200);
+		assertNull(cache.getFile(attachment1));
+		assertEquals(file, cache.getFile(attachment2));
+		assertEquals(200, cache.getSize());
+	}
+
+	public void testRemove() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 10);
+		File file = put(attachment, "file.txt", 10);
+		cache.remove(attachment);
+		assertNull(cache.getFile(attachment));
+		assertFalse(file.exists());
+		assertEquals(0, cache.getSize());
+	}
+
+	public void testFileRemovedExternally() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 10);
+		File file = put(attachment, "file.txt", 10);
+		file.delete();
+		assertNull(cache.getFile(attachment));
+		assertEquals(0, cache.getSize());
+	}
+
+	public void testReload() throws Exception {
+		TaskAttachment attachment1 = createAttachment("1", 40);
+		TaskAttachment attachment2 = createAttachment("2", 40);
+		File file1 = put(attachment1, "1.txt", 40);
+		File file2 = put(attachment2, "2.txt", 40);
+		file1.setLastModified(System.currentTimeMillis());
+		file2.setLastModified(System.currentTimeMillis() - 60 * 1000);
+		// left over from an interrupted download
+		new File(directory, "download.tmp").createNewFile();
+
+		cache = new TaskAttachmentCache(directory, 100);
+		assertEquals(80, cache.getSize());
+		assertEquals(file1, cache.getFile(attachment1));
+		assertFalse(new File(directory, "download.tmp").exists());
+
+		// file2 is least recently used
+		put(createAttachment("3", 40), "3.txt", 40);
+		assertNotNull(cache.getFile(attachment1));
+		assertNull(cache.getFile(attachment2));
+	}
+
+	public void testPutCanceled() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 10);
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			cache.put(attachment, "file.txt", new ByteArrayInputStream(createContent(10).getBytes()), monitor);
+			fail("Expected OperationCanceledException");
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+		assertNull(cache.getFile(attachment));
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	public void testPutFromFile() throws Exception {
+		File source = File.createTempFile("source", null);
+		try {
+			FileOutputStream out = new FileOutputStream(source);
+			try {
+				out.write(createContent(50).getBytes());
+			} finally {
+				out.close();
+			}
+			TaskAttachment attachment = createAttachment("1", 50);
+			FileInputStream in = new FileInputStream(source);
+			try {
+				File file = cache.put(attachment, "file.txt", in, null);
+				assertEquals(createContent(50), read(file));
+			} finally {
+				in.close();
+			}
+		} finally {
+			source.delete();
+		}
+	}
+
+	public void testCopy() throws Exception {
+		TaskAttachment attachment = createAttachment("1", 50);
+		File file = put(attachment, "file.txt", 50);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TaskAttachmentCache.copy(file, out, null);
+		assertEquals(createContent(50), out.toString());
+
+		File target = File.createTempFile("target", null);
+		try {
+			FileOutputStream fileOut = new FileOutputStream(target);
+			try {
+				TaskAttachmentCache.copy(file, fileOut, null);
+			} finally {
+				fileOut.close();
+			}
+			assertEquals(createContent(50), read(target));
+		} finally {
+			target.delete();
+		}
+	}
+
+	private TaskAttachment createAttachment(String id, long length) {
+		TaskData taskData = new TaskData(new TaskAttributeMapper(repository), "kind", "http://repository", "1");
+		TaskAttribute attribute = taskData.getRoot().createAttribute(TaskAttribute.PREFIX_ATTACHMENT + id);
+		attribute.setValue(id);
+		TaskAttachment attachment = new TaskAttachment(repository, new TaskTask("kind", "http://repository", "1"),
+				attribute);
+		attachment.setLength(length);
+		return attachment;
+	}
+
+	private File put(TaskAttachment attachment, String fileName, int length) throws IOException {
+		return cache.put(attachment, fileName, new ByteArrayInputStream(createContent(length).getBytes()), null);
+	}
+
+	private String createContent(int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append((char) ('a' + i % 26));
+		}
+		return sb.toString();
+	}
+
+	private String read(File file) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TaskAttachmentCache.copy(file, out, null);
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.tests.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskCommentMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+
+/**
+ * Measures the retained heap of task data that resembles a Bugzilla bug with 500 attributes and of working copies
+ * created through {@link TaskAttribute#deepAddCopy(TaskAttribute)}. Not part of the regular test suite, the number of
+ * tasks can be set through the <code>mylyn.tests.taskDataCount</code> system property, results are printed if the
+ * <code>mylyn.tests.verbose</code> system property is set.
+ */
+public class TaskAttributePerformanceTest extends TestCase {
+
+	private static final int TASK_COUNT = Integer.getInteger("mylyn.tests.taskDataCount", 200); //$NON-NLS-1$
+
+	private static final boolean VERBOSE = Boolean.getBoolean("mylyn.tests.verbose"); //$NON-NLS-1$
+
+	private static final int COMMENT_COUNT = 90;
+
+	private static final int ATTACHMENT_COUNT = 10;
+
+	private static final String[] SINGLE_SELECT_FIELDS = { "product", "component", "version", "target_milestone", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"bug_status", "resolution", "priority", "bug_severity", "op_sys", "rep_platform" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+
+	private static final String[] TEXT_FIELDS = { "short_desc", "bug_file_loc", "status_whiteboard", "keywords", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"assigned_to", "reporter", "qa_contact", "creation_ts", "delta_ts", "dependson", "blocked", "votes", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+			"estimated_time", "remaining_time", "actual_time", "deadline", "alias", "classification", "cf_custom" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+
+	private TaskAttributeMapper mapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		mapper = new TaskAttributeMapper(new TaskRepository("kind", "http://repository")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testRetainedHeap() throws Exception {
+		List<TaskData> repositoryData = new ArrayList<TaskData>(TASK_COUNT);
+		List<TaskData> workingCopies = new ArrayList<TaskData>(TASK_COUNT);
+
+		long start = usedHeap();
+		for (int i = 0; i < TASK_COUNT; i++) {
+			repositoryData.add(createTaskData(Integer.toString(i)));
+		}
+		long afterRead = usedHeap();
+		for (TaskData taskData : repositoryData) {
+			workingCopies.add(copy(taskData));
+		}
+		long afterCopy = usedHeap();
+
+		report("task data", afterRead - start); //$NON-NLS-1$
+		report("working copy", afterCopy - afterRead); //$NON-NLS-1$
+
+		TaskData taskData = repositoryData.get(0);
+		assertEquals(500, countAttributes(taskData.getRoot()));
+		TaskData workingCopy = workingCopies.get(0);
+		assertEquals(500, countAttributes(workingCopy.getRoot()));
+		assertEquals(taskData.getRoot().getAttribute("product").getOptions(), //$NON-NLS-1$
+				workingCopy.getRoot().getAttribute("product").getOptions()); //$NON-NLS-1$
+
+		// modifying the copy does not affect the original
+		workingCopy.getRoot().getAttribute("product").putOption("new", "New"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		workingCopy.getRoot().getAttribute("short_desc").setValue("changed"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNull(taskData.getRoot().getAttribute("product").getOption("new")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("summary 0", taskData.getRoot().getAttribute("short_desc").getValue()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private TaskData createTaskData(String taskId) {
+		TaskData taskData = new TaskData(mapper, "kind", "http://repository", taskId); //$NON-NLS-1$ //$NON-NLS-2$
+		TaskAttribute root = taskData.getRoot();
+		for (String field : SINGLE_SELECT_FIELDS) {
+			TaskAttribute attribute = root.createAttribute(field);
+			attribute.getMetaData().defaults().setType(TaskAttribute.TYPE_SINGLE_SELECT).setLabel(field + ":") //$NON-NLS-1$
+					.setKind(TaskAttribute.KIND_DEFAULT);
+			// option sets are the same for all tasks of a repository
+			for (int i = 0; i < 20; i++) {
+				attribute.putOption(field + i, field + " " + i); //$NON-NLS-1$
+			}
+			attribute.setValue(field + 1);
+		}
+		for (String field : TEXT_FIELDS) {
+			TaskAttribute attribute = root.createAttribute(field);
+			attribute.getMetaData().defaults().setType(TaskAttribute.TYPE_SHORT_TEXT).setLabel(field + ":"); //$NON-NLS-1$
+			attribute.setValue(field.equals("short_desc") ? "summary " + taskId : field + " value"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		TaskAttribute cc = root.createAttribute("cc"); //$NON-NLS-1$
+		cc.getMetaData().defaults().setType(TaskAttribute.TYPE_MULTI_SELECT).setLabel("CC:"); //$NON-NLS-1$
+		for (int i = 0; i < 10; i++) {
+			cc.addValue("user" + i + "@example.com"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for (int i = 0; i < COMMENT_COUNT; i++) {
+			TaskAttribute attribute = root.createAttribute(TaskAttribute.PREFIX_COMMENT + i);
+			TaskCommentMapper comment = new TaskCommentMapper();
+			comment.setCommentId(Integer.toString(i));
+			comment.setNumber(i);
+			comment.setText("Text of comment " + i + " on task " + taskId); //$NON-NLS-1$ //$NON-NLS-2$
+			comment.applyTo(attribute);
+			attribute.createAttribute("is_private").setValue("0"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for (int i = 0; i < ATTACHMENT_COUNT; i++) {
+			TaskAttribute attribute = root.createAttribute(TaskAttribute.PREFIX_ATTACHMENT + i);
+			attribute.getMetaData().defaults().setType(TaskAttribute.TYPE_ATTACHMENT);
+			String[] keys = { TaskAttribute.ATTACHMENT_ID, TaskAttribute.ATTACHMENT_AUTHOR,
+					TaskAttribute.ATTACHMENT_DATE, TaskAttribute.ATTACHMENT_DESCRIPTION,
+					TaskAttribute.ATTACHMENT_FILENAME, TaskAttribute.ATTACHMENT_CONTENT_TYPE,
+					TaskAttribute.ATTACHMENT_SIZE, TaskAttribute.ATTACHMENT_IS_PATCH,
+					TaskAttribute.ATTACHMENT_IS_DEPRECATED, TaskAttribute.ATTACHMENT_URL };
+			for (String key : keys) {
+				TaskAttribute child = attribute.createAttribute(key);
+				child.getMetaData().defaults().setType(TaskAttribute.TYPE_SHORT_TEXT).setReadOnly(true);
+				child.setValue(key + " " + i); //$NON-NLS-1$
+			}
+		}
+		return taskData;
+	}
+
+	private TaskData copy(TaskData source) {
+		TaskData target = new TaskData(source.getAttributeMapper(), source.getConnectorKind(),
+				source.getRepositoryUrl(), source.getTaskId());
+		for (TaskAttribute child : source.getRoot().getAttributes().values()) {
+			target.getRoot().deepAddCopy(child);
+		}
+		return target;
+	}
+
+	private int countAttributes(TaskAttribute attribute) {
+		int count = attribute.getAttributes().size();
+		for (TaskAttribute child : attribute.getAttributes().values()) {
+			count += countAttributes(child);
+		}
+		return count;
+	}
+
+	private long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private void report(String label, long bytes) {
+		if (!VERBOSE) {
+			return;
+		}
+		System.out.println(TASK_COUNT + " tasks, " + label + ": " + (bytes / TASK_COUNT / 1024) + " KB per task"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+}
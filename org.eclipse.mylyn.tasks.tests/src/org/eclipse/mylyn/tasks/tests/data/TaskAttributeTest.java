@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012 Tasktop Technologies and others.
+ * Copyright (c) 2012, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,8 +11,10 @@
 
 package org.eclipse.mylyn.tasks.tests.data;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -103,4 +105,77 @@ public class TaskAttributeTest extends TestCase {
 		}
 	}
 
+	public void testDeepAddCopy() throws Exception {
+		attribute.setValues(Arrays.asList("a", "b"));
+		attribute.putOption("key", "value");
+		attribute.getMetaData().setLabel("label");
+		attribute.createAttribute("child").setValue("childValue");
+
+		TaskAttribute copy = new TaskAttribute(attribute.getTaskData().getRoot(), "copy");
+		copy.deepAddCopy(attribute);
+		TaskAttribute target = copy.getAttribute("test");
+		assertEquals(Arrays.asList("a", "b"), target.getValues());
+		assertEquals(Collections.singletonMap("key", "value"), target.getOptions());
+		assertEquals("label", target.getMetaData().getLabel());
+		assertEquals("childValue", target.getAttribute("child").getValue());
+
+		target.addValue("c");
+		target.putOption("key", "changed");
+		target.getMetaData().setLabel("changed");
+		assertEquals(Arrays.asList("a", "b"), attribute.getValues());
+		assertEquals("value", attribute.getOption("key"));
+		assertEquals("label", attribute.getMetaData().getLabel());
+
+		attribute.removeValue("a");
+		attribute.putOption("other", "value");
+		assertEquals(Arrays.asList("a", "b", "c"), target.getValues());
+		assertNull(target.getOption("other"));
+	}
+
+	public void testCopyOptions() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			attribute.putOption("key" + i, "value" + i);
+		}
+		TaskAttribute target = new TaskAttribute(attribute.getTaskData().getRoot(), "target");
+		target.putOption("old", "value");
+		target.copyOptions(attribute);
+		assertEquals(attribute.getOptions(), target.getOptions());
+		assertEquals("value99", target.getOption("key99"));
+		assertNull(target.getOption("old"));
+
+		target.putOption("key0", "changed");
+		assertEquals("value0", attribute.getOption("key0"));
+		assertEquals("changed", target.getOption("key0"));
+
+		target.copyOptions(new TaskAttribute(attribute.getTaskData().getRoot(), "empty"));
+		assertTrue(target.getOptions().isEmpty());
+	}
+
+	public void testGetValuesReflectsChanges() throws Exception {
+		attribute.setValue("a");
+		List<String> values = attribute.getValues();
+		attribute.addValue("b");
+		assertEquals(Arrays.asList("a", "b"), values);
+		attribute.clearValues();
+		assertTrue(values.isEmpty());
+	}
+
+	public void testAttributesOrder() throws Exception {
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			attribute.createAttribute("child" + i);
+			ids.add("child" + i);
+		}
+		attribute.removeAttribute("child5");
+		ids.remove("child5");
+		assertEquals(ids, new ArrayList<String>(attribute.getAttributes().keySet()));
+		assertNull(attribute.getAttribute("child5"));
+		assertEquals("child19", attribute.getAttribute("child19").getId());
+
+		attribute.createAttribute("child5");
+		ids.add("child5");
+		assertEquals(ids, new ArrayList<String>(attribute.getAttributes().keySet()));
+		assertNotNull(attribute.getAttribute("child5"));
+	}
+
 }
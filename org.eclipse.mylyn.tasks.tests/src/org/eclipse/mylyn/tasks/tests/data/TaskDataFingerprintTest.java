@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.tasks.tests.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataExternalizer;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataFingerprint;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskDataState;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+
+public class TaskDataFingerprintTest extends TestCase {
+
+	private TaskAttributeMapper mapper;
+
+	@Override
+	protected void setUp() throws Exception {
+		mapper = new TaskAttributeMapper(new TaskRepository("kind", "repository"));
+	}
+
+	public void testEqual() {
+		assertEquals(TaskDataFingerprint.compute(createData("value")), TaskDataFingerprint.compute(createData("value")));
+		assertEquals(TaskDataFingerprint.compute(createData("value")).toString(),
+				TaskDataFingerprint.compute(createData("value")).toString());
+	}
+
+	public void testValueChanged() {
+		assertFalse(TaskDataFingerprint.compute(createData("value")).equals(
+				TaskDataFingerprint.compute(createData("changed"))));
+	}
+
+	public void testVersionChanged() {
+		TaskData data = createData("value");
+		data.setVersion("1");
+		assertFalse(TaskDataFingerprint.compute(data).equals(TaskDataFingerprint.compute(createData("value"))));
+	}
+
+	public void testValuesNotConcatenated() {
+		TaskData data1 = createData("value");
+		data1.getRoot().getAttribute("attribute").addValue("ab");
+		data1.getRoot().getAttribute("attribute").addValue("c");
+		TaskData data2 = createData("value");
+		data2.getRoot().getAttribute("attribute").addValue("a");
+		data2.getRoot().getAttribute("attribute").addValue("bc");
+		assertFalse(TaskDataFingerprint.compute(data1).equals(TaskDataFingerprint.compute(data2)));
+	}
+
+	public void testOptionAndMetaDataChanged() {
+		TaskData data = createData("value");
+		long value = TaskDataFingerprint.compute(data).getValue();
+		TaskAttribute attribute = data.getRoot().getAttribute("attribute");
+		attribute.putOption("key", "option");
+		assertFalse(value == TaskDataFingerprint.compute(data).getValue());
+
+		value = TaskDataFingerprint.compute(data).getValue();
+		attribute.getMetaData().setLabel("label");
+		assertFalse(value == TaskDataFingerprint.compute(data).getValue());
+	}
+
+	public void testNestedAttributeChanged() {
+		TaskData data1 = createData("value");
+		data1.getRoot().getAttribute("attribute").createAttribute("child").setValue("child");
+		TaskData data2 = createData("value");
+		data2.getRoot().getAttribute("attribute").createAttribute("child").setValue("changed");
+		TaskDataFingerprint fingerprint1 = TaskDataFingerprint.compute(data1);
+		TaskDataFingerprint fingerprint2 = TaskDataFingerprint.compute(data2);
+		assertFalse(fingerprint1.equals(fingerprint2));
+		assertFalse(fingerprint1.getAttributeValue("attribute").equals(fingerprint2.getAttributeValue("attribute")));
+		assertEquals(fingerprint1.getAttributeValue("other"), fingerprint2.getAttributeValue("other"));
+		assertNull(fingerprint1.getAttributeValue("child"));
+	}
+
+	public void testComputeAttribute() {
+		TaskData data = createData("value");
+		assertEquals(TaskDataFingerprint.compute(data.getRoot().getAttribute("attribute")), TaskDataFingerprint
+				.compute(data)
+				.getAttributeValue("attribute")
+				.longValue());
+	}
+
+	public void testReadFingerprint() throws Exception {
+		TaskData data = createData("value");
+		TaskDataState state = new TaskDataState("kind", "repository", "1");
+		state.setRepositoryData(data);
+		state.setLastReadData(createData("old"));
+		state.setEditsData(createData("edits"));
+
+		TaskDataExternalizer externalizer = new TaskDataExternalizer(null);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		externalizer.writeState(out, state);
+
+		assertEquals(TaskDataFingerprint.compute(data).toString(),
+				externalizer.readFingerprint(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	public void testSetDataResetsFingerprint() {
+		TaskDataState state = new TaskDataState("kind", "repository", "1");
+		state.setRepositoryData(createData("value"));
+		state.setRepositoryDataFingerprint("1");
+		state.setLastReadData(createData("value"));
+		state.setLastReadDataFingerprint("1");
+		state.setRepositoryData(createData("changed"));
+		state.setLastReadData(createData("changed"));
+		assertNull(state.getRepositoryDataFingerprint());
+		assertNull(state.getLastReadDataFingerprint());
+	}
+
+	private TaskData createData(String value) {
+		TaskData data = new TaskData(mapper, "kind", "repository", "1");
+		data.getRoot().createAttribute("attribute").setValue(value);
+		data.getRoot().createAttribute("other").setValue("other");
+		return data;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010 Peter Stibrany and others.
+ * Copyright (c) 2010, 2013 Peter Stibrany and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -7,6 +7,7 @@
  *
  * Contributors:
  *     Peter Stibrany - initial API and implementation
+ *     Tasktop Technologies - improvements
  *******************************************************************************/
 
 package org.eclipse.mylyn.internal.tasks.ui;
@@ -39,6 +40,11 @@ public class AttachmentFileStorage extends PlatformObject implements IStorage {
 	}
 
 	public InputStream getContents() throws CoreException {
+		if (!file.exists()) {
+			// the file has been evicted from the attachment cache, retrieving it here would block the caller
+			throw new CoreException(new Status(IStatus.ERROR, TasksUiPlugin.ID_PLUGIN,
+					Messages.FileStorage_attachmentNoLongerAvailable));
+		}
 		try {
 			return new FileInputStream(file);
 		} catch (FileNotFoundException e) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010 Peter Stibrany and others.
+ * Copyright (c) 2010, 2013 Peter Stibrany and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -7,13 +7,12 @@
  *
  * Contributors:
  *     Peter Stibrany - initial API and implementation
+ *     Tasktop Technologies - improvements
  *******************************************************************************/
 
 package org.eclipse.mylyn.internal.tasks.ui;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -69,28 +68,10 @@ class DownloadAndOpenTaskAttachmentJob implements ICoreRunnable {
 	protected IStatus execute(IProgressMonitor monitor) {
 		final String attachmentFilename = AttachmentUtil.getAttachmentFilename(attachment);
 
-		File file = null;
+		File file;
 		try {
-			// create temporary filename like 'attach-127562364-attachment-name.txt'
-			// This has correct extension based on attachment filename, resembles attachment name, but
-			// also indicates that it is temporary file
-			file = File.createTempFile("tmpattach-", "-" + attachmentFilename); //$NON-NLS-1$ //$NON-NLS-2$
-		} catch (IOException e) {
-			return new Status(IStatus.ERROR, TasksUiPlugin.ID_PLUGIN,
-					Messages.DownloadAndOpenTaskAttachmentJob_failedToDownloadAttachment, e);
-		}
-		file.deleteOnExit();
-
-		boolean ok = false;
-		FileOutputStream fos = null;
-		try {
-			fos = new FileOutputStream(file);
-			AttachmentUtil.downloadAttachment(attachment, fos, monitor);
-			ok = true;
-
-		} catch (IOException e) {
-			return new Status(IStatus.ERROR, TasksUiPlugin.ID_PLUGIN,
-					Messages.DownloadAndOpenTaskAttachmentJob_failedToDownloadAttachment, e);
+			// the cached file is named after the attachment and has the correct extension
+			file = AttachmentUtil.getAttachmentFile(attachment, monitor);
 		} catch (CoreException e) {
 			int s = IStatus.ERROR;
 			if (e.getStatus() != null && e.getStatus().getCode() == IStatus.CANCEL) {
@@ -98,28 +79,8 @@ class DownloadAndOpenTaskAttachmentJob implements ICoreRunnable {
 			}
 			return new Status(s, TasksUiPlugin.ID_PLUGIN,
 					Messages.DownloadAndOpenTaskAttachmentJob_failedToDownloadAttachment, e);
-		} finally {
-			// (fos != null) only when there is some problem, in other cases we nulled fos already
-			if (fos != null) {
-				try {
-					fos.close();
-				} catch (IOException e) {
-					if (ok) {
-						file.delete();
-						return new Status(IStatus.ERROR, TasksUiPlugin.ID_PLUGIN,
-								Messages.DownloadAndOpenTaskAttachmentJob_failedToDownloadAttachment, e);
-					}
-				}
-			}
-
-			if (!ok) {
-				file.delete();
-			}
 		}
 
-		// mark file read-only to warn user that he is working with local copy
-		file.setReadOnly();
-
 		Display disp = page.getWorkbenchWindow().getWorkbench().getDisplay();
 		if (disp.isDisposed()) {
 			return new Status(IStatus.WARNING, TasksUiPlugin.ID_PLUGIN,
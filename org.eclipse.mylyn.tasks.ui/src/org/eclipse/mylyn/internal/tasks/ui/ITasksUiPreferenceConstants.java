@@ -91,6 +91,13 @@ public interface ITasksUiPreferenceConstants {
 
 	public static final String TASK_LIST_TOOL_TIPS_ENABLED = "org.eclipse.mylyn.tasks.ui.task.list.tool.tip"; //$NON-NLS-1$
 
+	/**
+	 * If true, offline task data is stored in one segment file per repository instead of one file per task. Takes
+	 * effect on restart. Existing task data is migrated when a repository folder is first accessed, in either
+	 * direction.
+	 */
+	public static final String TASK_DATA_SEGMENTED = "org.eclipse.mylyn.tasks.ui.task.data.segmented"; //$NON-NLS-1$
+
 	// NOTE: legacy name, do not change
 	public static final String PREF_DATA_DIR = "org.eclipse.mylyn.data.dir"; //$NON-NLS-1$
 
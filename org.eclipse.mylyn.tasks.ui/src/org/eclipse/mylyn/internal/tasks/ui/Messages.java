@@ -151,6 +151,8 @@ public class Messages extends NLS {
 
 	public static String AbstractRetrieveTitleFromUrlJob_Retrieving_summary_from_URL;
 
+	public static String FileStorage_attachmentNoLongerAvailable;
+
 	public static String FileStorage_unableToReadAttachmentFile;
 
 }
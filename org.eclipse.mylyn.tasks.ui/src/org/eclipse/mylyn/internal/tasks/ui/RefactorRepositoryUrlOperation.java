@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2009 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -46,13 +46,18 @@ public class RefactorRepositoryUrlOperation extends TaskListModifyOperation {
 		this.newUrl = newUrl;
 	}
 
+	@Override
+	protected void prepareOperations(IProgressMonitor monitor) throws CoreException {
+		// moves the task data under the repository locks which must be acquired before the task list lock
+		refactorOfflineHandles(oldUrl, newUrl);
+	}
+
 	@Override
 	protected void operations(IProgressMonitor monitor) throws CoreException, InvocationTargetException,
 			InterruptedException {
 		try {
 			//TasksUiPlugin.getTaskListManager().deactivateAllTasks();
 			monitor.beginTask(Messages.RefactorRepositoryUrlOperation_Repository_URL_update, IProgressMonitor.UNKNOWN);
-			refactorOfflineHandles(oldUrl, newUrl);
 			getTaskList().refactorRepositoryUrl(oldUrl, newUrl);
 			TasksUiPlugin.getContextStore().refactorRepositoryUrl(repository, oldUrl, newUrl);
 			TasksUiPlugin.getTaskActivityMonitor().reloadActivityTime();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2008 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -44,9 +44,19 @@ public abstract class TaskListModifyOperation implements IRunnableWithProgress {
 	protected abstract void operations(IProgressMonitor monitor) throws CoreException, InvocationTargetException,
 			InterruptedException;
 
+	/**
+	 * Invoked before the task list lock is acquired. Repository locks must not be acquired while holding the task list
+	 * lock, subclasses override this to modify task data.
+	 * 
+	 * @see TaskList#runForRepository(String, ITaskListRunnable)
+	 */
+	protected void prepareOperations(IProgressMonitor monitor) throws CoreException {
+	}
+
 	final public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
 		final InvocationTargetException[] ite = new InvocationTargetException[1];
 		try {
+			prepareOperations(monitor);
 			ITaskListRunnable runnable = new ITaskListRunnable() {
 
 				public void execute(IProgressMonitor monitor) throws CoreException {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -76,6 +76,7 @@ import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryDelta;
 import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryDelta.Type;
 import org.eclipse.mylyn.internal.tasks.core.TaskRepositoryManager;
 import org.eclipse.mylyn.internal.tasks.core.data.SynchronizationManger;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskAttachmentCache;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataManager;
 import org.eclipse.mylyn.internal.tasks.core.data.TaskDataStore;
 import org.eclipse.mylyn.internal.tasks.core.externalization.ExternalizationManager;
@@ -139,6 +140,8 @@ public class TasksUiPlugin extends AbstractUIPlugin {
 
 	private static final int NOTIFICATION_DELAY = 5000;
 
+	private static final long ATTACHMENT_CACHE_SIZE = 100 * 1024 * 1024;
+
 	private static TasksUiPlugin INSTANCE;
 
 	private static ExternalizationManager externalizationManager;
@@ -183,6 +186,8 @@ public class TasksUiPlugin extends AbstractUIPlugin {
 
 	private static AbstractTaskContextStore contextStore;
 
+	private static TaskAttachmentCache attachmentCache;
+
 	private final List<AbstractSearchHandler> searchHandlers = new ArrayList<AbstractSearchHandler>();
 
 	private static final boolean DEBUG_HTTPCLIENT = "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.mylyn.tasks.ui/debug/httpclient")); //$NON-NLS-1$ //$NON-NLS-2$
@@ -583,7 +588,8 @@ public class TasksUiPlugin extends AbstractUIPlugin {
 			TasksUiExtensionReader.initStartupExtensions(taskListExternalizer, repositoryManager);
 
 			// instantiate taskDataManager
-			TaskDataStore taskDataStore = new TaskDataStore(repositoryManager);
+			TaskDataStore taskDataStore = new TaskDataStore(repositoryManager, getPreferenceStore().getBoolean(
+					ITasksUiPreferenceConstants.TASK_DATA_SEGMENTED));
 			synchronizationManger = new SynchronizationManger(repositoryModel);
 			taskDataManager = new TaskDataManager(taskDataStore, repositoryManager, taskList, taskActivityManager,
 					synchronizationManger);
@@ -957,6 +963,7 @@ public class TasksUiPlugin extends AbstractUIPlugin {
 
 		store.setDefault(ITasksUiPreferenceConstants.AUTO_EXPAND_TASK_LIST, true);
 		store.setDefault(ITasksUiPreferenceConstants.TASK_LIST_TOOL_TIPS_ENABLED, true);
+		store.setDefault(ITasksUiPreferenceConstants.TASK_DATA_SEGMENTED, false);
 
 		store.setDefault(ITasksUiPreferenceConstants.SERVICE_MESSAGE_URL, "http://eclipse.org/mylyn/updates.xml"); //$NON-NLS-1$
 	}
@@ -1399,4 +1406,16 @@ public class TasksUiPlugin extends AbstractUIPlugin {
 		return contextStore;
 	}
 
+	/**
+	 * Returns the cache for downloaded attachments. The cache is stored in the state location of the plug-in since
+	 * cached attachments can be retrieved from the repository again.
+	 */
+	public static synchronized TaskAttachmentCache getAttachmentCache() {
+		if (attachmentCache == null) {
+			File directory = Platform.getStateLocation(INSTANCE.getBundle()).append("attachments").toFile(); //$NON-NLS-1$
+			attachmentCache = new TaskAttachmentCache(directory, ATTACHMENT_CACHE_SIZE);
+		}
+		return attachmentCache;
+	}
+
 }
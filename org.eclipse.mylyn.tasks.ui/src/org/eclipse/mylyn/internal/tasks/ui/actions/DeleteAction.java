@@ -150,15 +150,17 @@ public class DeleteAction extends BaseSelectionListenerAction {
 				try {
 					monitor.beginTask(Messages.DeleteAction_Delete_in_progress, IProgressMonitor.UNKNOWN);
 					prepareDeletion(toDelete);
+					final List<AbstractTask> deletedTasks = new ArrayList<AbstractTask>();
 					TasksUiPlugin.getTaskList().run(new ITaskListRunnable() {
 						public void execute(IProgressMonitor monitor) throws CoreException {
-							performDeletion(toDelete);
+							deletedTasks.addAll(performDeletion(toDelete));
 							if (deleteOnServer) {
 								performDeletionFromServer(toDelete);
 							}
 						}
 
 					}, monitor);
+					deleteTaskData(deletedTasks);
 				} finally {
 					monitor.done();
 				}
@@ -247,17 +249,25 @@ public class DeleteAction extends BaseSelectionListenerAction {
 		}
 	}
 
-	public static void performDeletion(Collection<?> toDelete) {
+	/**
+	 * Removes <code>toDelete</code> from the task list. Invoked while holding the task list lock, the task data of the
+	 * deleted tasks is therefore not deleted and needs to be passed to {@link #deleteTaskData(Collection)} after the
+	 * lock has been released.
+	 * 
+	 * @return the deleted tasks
+	 */
+	public static List<AbstractTask> performDeletion(Collection<?> toDelete) {
+		List<AbstractTask> deletedTasks = new ArrayList<AbstractTask>();
+		performDeletion(toDelete, deletedTasks);
+		return deletedTasks;
+	}
+
+	private static void performDeletion(Collection<?> toDelete, List<AbstractTask> deletedTasks) {
 		for (Object selectedObject : toDelete) {
 			if (selectedObject instanceof AbstractTask) {
 				AbstractTask task = (AbstractTask) selectedObject;
 				TasksUiInternal.getTaskList().deleteTask(task);
-				try {
-					TasksUiPlugin.getTaskDataManager().deleteTaskData(task);
-				} catch (CoreException e) {
-					StatusHandler.log(new Status(IStatus.ERROR, TasksUiPlugin.ID_PLUGIN, "Failed to delete task data", //$NON-NLS-1$
-							e));
-				}
+				deletedTasks.add(task);
 				TasksUiPlugin.getContextStore().deleteContext(task);
 			} else if (selectedObject instanceof IRepositoryQuery) {
 				TasksUiInternal.getTaskList().deleteQuery((RepositoryQuery) selectedObject);
@@ -272,13 +282,28 @@ public class DeleteAction extends BaseSelectionListenerAction {
 						if (children.isEmpty()) {
 							break;
 						}
-						performDeletion(children);
+						performDeletion(children, deletedTasks);
 					}
 				}
 			}
 		}
 	}
 
+	/**
+	 * Deletes the task data of <code>tasks</code>. Must not be invoked while holding the task list lock since the
+	 * repository lock of each task is acquired.
+	 */
+	public static void deleteTaskData(Collection<AbstractTask> tasks) {
+		for (AbstractTask task : tasks) {
+			try {
+				TasksUiPlugin.getTaskDataManager().deleteTaskData(task);
+			} catch (CoreException e) {
+				StatusHandler.log(new Status(IStatus.ERROR, TasksUiPlugin.ID_PLUGIN, "Failed to delete task data", //$NON-NLS-1$
+						e));
+			}
+		}
+	}
+
 	private void performDeletionFromServer(List<?> toDelete) {
 		List<ITask> tasksToDelete = new ArrayList<ITask>();
 		for (Object element : toDelete) {
@@ -130,10 +130,11 @@ public class DeleteTaskRepositoryAction extends AbstractTaskRepositoryAction {
 								IProgressMonitor.UNKNOWN);
 						DeleteAction.prepareDeletion(tasksToDelete);
 						DeleteAction.prepareDeletion(queriesToDelete);
+						final List<AbstractTask> deletedTasks = new ArrayList<AbstractTask>();
 						TasksUiPlugin.getTaskList().run(new ITaskListRunnable() {
 							public void execute(IProgressMonitor monitor) throws CoreException {
 								// delete tasks
-								DeleteAction.performDeletion(tasksToDelete);
+								deletedTasks.addAll(DeleteAction.performDeletion(tasksToDelete));
 								// delete queries
 								DeleteAction.performDeletion(queriesToDelete);
 								// delete repository
@@ -142,6 +143,8 @@ public class DeleteTaskRepositoryAction extends AbstractTaskRepositoryAction {
 								TaskRepositoryUtil.disableAddAutomatically(repositoryToDelete.getRepositoryUrl());
 							}
 						}, monitor);
+						// acquires the repository lock which must not be taken while holding the task list lock
+						DeleteAction.deleteTaskData(deletedTasks);
 					} finally {
 						monitor.done();
 					}
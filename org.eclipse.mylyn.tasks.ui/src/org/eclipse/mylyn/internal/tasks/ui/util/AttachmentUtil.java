@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,7 @@ import org.eclipse.mylyn.commons.net.Policy;
 import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
 import org.eclipse.mylyn.internal.tasks.core.TaskAttachment;
 import org.eclipse.mylyn.internal.tasks.core.data.FileTaskAttachmentSource;
+import org.eclipse.mylyn.internal.tasks.core.data.TaskAttachmentCache;
 import org.eclipse.mylyn.internal.tasks.core.sync.SubmitTaskAttachmentJob;
 import org.eclipse.mylyn.internal.tasks.ui.TasksUiPlugin;
 import org.eclipse.mylyn.tasks.core.AbstractRepositoryConnector;
@@ -265,16 +266,7 @@ public class AttachmentUtil {
 		try {
 			monitor.beginTask(Messages.AttachmentUtil_Downloading_attachment, IProgressMonitor.UNKNOWN);
 
-			AbstractRepositoryConnector connector = TasksUi.getRepositoryManager().getRepositoryConnector(
-					attachment.getConnectorKind());
-			AbstractTaskAttachmentHandler handler = connector.getTaskAttachmentHandler();
-			if (handler == null) {
-				throw new CoreException(new RepositoryStatus(IStatus.INFO, TasksUiPlugin.ID_PLUGIN,
-						RepositoryStatus.ERROR_INTERNAL, "The repository does not support attachments.")); //$NON-NLS-1$
-			}
-
-			InputStream in = handler.getContent(attachment.getTaskRepository(), attachment.getTask(),
-					attachment.getTaskAttribute(), monitor);
+			InputStream in = getContent(attachment, monitor);
 			try {
 				byte[] buffer = new byte[BUFFER_SIZE];
 				while (true) {
@@ -290,18 +282,59 @@ public class AttachmentUtil {
 						TasksUiPlugin.ID_PLUGIN, RepositoryStatus.ERROR_IO, "IO error reading attachment: " //$NON-NLS-1$
 								+ e.getMessage(), e));
 			} finally {
-				try {
-					in.close();
-				} catch (IOException e) {
-					StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
-							"Error closing attachment stream", e)); //$NON-NLS-1$
-				}
+				close(in);
 			}
 		} finally {
 			monitor.done();
 		}
 	}
 
+	/**
+	 * Returns a local file with the contents of <code>attachment</code> for opening in an editor. The attachment is
+	 * retrieved from the repository unless it is present in the attachment cache. The returned file is owned by the
+	 * cache and must not be modified.
+	 */
+	public static File getAttachmentFile(ITaskAttachment attachment, IProgressMonitor monitor) throws CoreException {
+		TaskAttachmentCache cache = TasksUiPlugin.getAttachmentCache();
+		File file = cache.getFile(attachment);
+		if (file != null) {
+			return file;
+		}
+
+		InputStream in = getContent(attachment, monitor);
+		try {
+			Policy.checkCanceled(monitor);
+			return cache.put(attachment, getAttachmentFilename(attachment), in, monitor);
+		} catch (IOException e) {
+			throw new CoreException(new RepositoryStatus(attachment.getTaskRepository(), IStatus.ERROR,
+					TasksUiPlugin.ID_PLUGIN, RepositoryStatus.ERROR_IO, "IO error reading attachment: " //$NON-NLS-1$
+							+ e.getMessage(), e));
+		} finally {
+			close(in);
+		}
+	}
+
+	private static InputStream getContent(ITaskAttachment attachment, IProgressMonitor monitor) throws CoreException {
+		AbstractRepositoryConnector connector = TasksUi.getRepositoryManager().getRepositoryConnector(
+				attachment.getConnectorKind());
+		AbstractTaskAttachmentHandler handler = connector.getTaskAttachmentHandler();
+		if (handler == null) {
+			throw new CoreException(new RepositoryStatus(IStatus.INFO, TasksUiPlugin.ID_PLUGIN,
+					RepositoryStatus.ERROR_INTERNAL, "The repository does not support attachments.")); //$NON-NLS-1$
+		}
+		return handler.getContent(attachment.getTaskRepository(), attachment.getTask(), attachment.getTaskAttribute(),
+				monitor);
+	}
+
+	private static void close(InputStream in) {
+		try {
+			in.close();
+		} catch (IOException e) {
+			StatusHandler.log(new Status(IStatus.ERROR, ITasksCoreConstants.ID_PLUGIN,
+					"Error closing attachment stream", e)); //$NON-NLS-1$
+		}
+	}
+
 	public static ITaskAttachment getSelectedAttachment() {
 		List<ITaskAttachment> attachments = getSelectedAttachments(null);
 		if (attachments.isEmpty()) {
@@ -14,6 +14,9 @@ package org.eclipse.mylyn.internal.tasks.ui.util;
 import java.io.File;
 import java.util.Set;
 
+import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
+import org.eclipse.mylyn.internal.tasks.core.externalization.TaskListExternalizationParticipant;
+
 /**
  * @author Robert Elves
  */
@@ -29,6 +32,13 @@ public class TaskDataSnapshotOperation extends TaskDataExportOperation {
 		filesToExport.add(new File(getSourceFolder(), "tasks.xml.zip")); //$NON-NLS-1$
 		filesToExport.add(new File(getSourceFolder(), "repositories.xml.zip")); //$NON-NLS-1$
 		filesToExport.add(new File(getSourceFolder(), "contexts/activity.xml.zip")); //$NON-NLS-1$
+
+		// changes that have not been merged into the task list yet
+		File journalFile = TaskListExternalizationParticipant.getJournalFile(new File(getSourceFolder(),
+				ITasksCoreConstants.DEFAULT_TASK_LIST_FILE));
+		if (journalFile.exists()) {
+			filesToExport.add(journalFile);
+		}
 	}
 
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2010 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,9 +14,11 @@ package org.eclipse.mylyn.internal.tasks.ui.views;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.jface.viewers.TreePath;
@@ -24,8 +26,10 @@ import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.mylyn.internal.tasks.core.AbstractTask;
 import org.eclipse.mylyn.internal.tasks.core.AbstractTaskCategory;
 import org.eclipse.mylyn.internal.tasks.core.AbstractTaskContainer;
+import org.eclipse.mylyn.internal.tasks.core.ITaskListChangeListener;
 import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
 import org.eclipse.mylyn.internal.tasks.core.TaskCategory;
+import org.eclipse.mylyn.internal.tasks.core.TaskContainerDelta;
 import org.eclipse.mylyn.internal.tasks.core.UnmatchedTaskContainer;
 import org.eclipse.mylyn.internal.tasks.ui.AbstractTaskListFilter;
 import org.eclipse.mylyn.internal.tasks.ui.TasksUiPlugin;
@@ -45,19 +49,73 @@ public class TaskListContentProvider extends AbstractTaskListContentProvider {
 
 	protected static Object[] EMPTY_ARRRY = new Object[0];
 
+	/**
+	 * Caches the filtered children of elements that have been expanded. Entries are only valid for
+	 * {@link #cachedFilterState} and removed when the task list reports a change of the element or its children. The
+	 * filter state only reflects the filter text and which filters are active, filters that change their settings,
+	 * e.g. the priority filter, are followed by a refresh of the entire viewer which discards all entries.
+	 */
+	private final Map<Object, List<IRepositoryElement>> filteredChildrenCache = new HashMap<Object, List<IRepositoryElement>>();
+
+	private List<Object> cachedFilterState;
+
+	private final ITaskListChangeListener taskListChangeListener = new ITaskListChangeListener() {
+		public void containersChanged(Set<TaskContainerDelta> deltas) {
+			synchronized (filteredChildrenCache) {
+				for (TaskContainerDelta delta : deltas) {
+					if (delta.isTransient()) {
+						// changes of the synchronizing flag do not affect filtering
+						continue;
+					}
+					IRepositoryElement element = delta.getElement();
+					if (delta.getKind() == TaskContainerDelta.Kind.ROOT || element == null) {
+						filteredChildrenCache.clear();
+						return;
+					}
+					filteredChildrenCache.remove(element);
+					if (delta.getParent() != null) {
+						filteredChildrenCache.remove(delta.getParent());
+					}
+					if (element instanceof AbstractTask) {
+						// the task may be shown or hidden in any of its containers or as a subtask of other tasks
+						for (AbstractTaskContainer container : ((AbstractTask) element).getParentContainers()) {
+							filteredChildrenCache.remove(container);
+						}
+						for (Iterator<Object> it = filteredChildrenCache.keySet().iterator(); it.hasNext();) {
+							if (it.next() instanceof ITask) {
+								it.remove();
+							}
+						}
+					}
+				}
+			}
+		}
+	};
+
 	public TaskListContentProvider(TaskListView taskListView) {
 		super(taskListView);
 	}
 
 	public void inputChanged(Viewer v, Object oldInput, Object newInput) {
+		// providers are reused when the presentation changes, only listen while connected to a viewer
+		if (newInput != null) {
+			TasksUiPlugin.getTaskList().addChangeListener(taskListChangeListener);
+		} else {
+			TasksUiPlugin.getTaskList().removeChangeListener(taskListChangeListener);
+		}
+		clearCache();
 		this.taskListView.expandToActiveTasks();
 	}
 
 	public void dispose() {
+		TasksUiPlugin.getTaskList().removeChangeListener(taskListChangeListener);
+		clearCache();
 	}
 
 	public Object[] getElements(Object parent) {
 		if (parent.equals(this.taskListView.getViewSite())) {
+			// the viewer is refreshed entirely, filters may have changed without notice
+			clearCache();
 			return applyFilter(TasksUiPlugin.getTaskList().getRootElements()).toArray();
 		}
 		return getChildren(parent);
@@ -93,8 +151,17 @@ public class TaskListContentProvider extends AbstractTaskListContentProvider {
 	 * NOTE: If parent is an ITask, this method checks if parent has unfiltered children (see bug 145194).
 	 */
 	public boolean hasChildren(Object parent) {
-		Object[] children = getChildren(parent);
-		return children != null && children.length > 0;
+		List<Object> filterState = getFilterState();
+		synchronized (filteredChildrenCache) {
+			if (filterState.equals(cachedFilterState)) {
+				List<IRepositoryElement> children = filteredChildrenCache.get(parent);
+				if (children != null) {
+					return !children.isEmpty();
+				}
+			}
+		}
+		// stop at the first child that is not filtered
+		return !computeFilteredChildren(parent, 1).isEmpty();
 
 //		if (parent instanceof AbstractRepositoryQuery) {
 //			AbstractRepositoryQuery query = (AbstractRepositoryQuery) parent;
@@ -135,7 +202,65 @@ public class TaskListContentProvider extends AbstractTaskListContentProvider {
 		return true;
 	}
 
+	/**
+	 * Returns the children of <code>parent</code> that pass the filters. The returned list may be modified by the
+	 * caller.
+	 */
 	protected List<IRepositoryElement> getFilteredChildrenFor(Object parent) {
+		List<Object> filterState = getFilterState();
+		synchronized (filteredChildrenCache) {
+			if (filterState.equals(cachedFilterState)) {
+				List<IRepositoryElement> children = filteredChildrenCache.get(parent);
+				if (children != null) {
+					return new ArrayList<IRepositoryElement>(children);
+				}
+			} else {
+				filteredChildrenCache.clear();
+				cachedFilterState = filterState;
+			}
+		}
+		List<IRepositoryElement> children = computeFilteredChildren(parent, Integer.MAX_VALUE);
+		synchronized (filteredChildrenCache) {
+			if (filterState.equals(cachedFilterState)) {
+				filteredChildrenCache.put(parent, children);
+			}
+		}
+		return new ArrayList<IRepositoryElement>(children);
+	}
+
+	/**
+	 * Discards the cached children of <code>element</code>.
+	 */
+	public void invalidate(Object element) {
+		synchronized (filteredChildrenCache) {
+			filteredChildrenCache.remove(element);
+		}
+	}
+
+	/**
+	 * Discards the cached children of all elements.
+	 */
+	protected void clearCache() {
+		synchronized (filteredChildrenCache) {
+			filteredChildrenCache.clear();
+		}
+	}
+
+	/**
+	 * Returns the state that determines the result of filtering: the filter text and the active filters.
+	 */
+	private List<Object> getFilterState() {
+		Set<AbstractTaskListFilter> filters = this.taskListView.getFilters();
+		List<Object> filterState = new ArrayList<Object>(filters.size() + 1);
+		filterState.add(this.taskListView.getFilteredTree().getFilterString());
+		filterState.addAll(filters);
+		return filterState;
+	}
+
+	/**
+	 * Returns up to <code>limit</code> children of <code>parent</code> that pass the filters.
+	 */
+	private List<IRepositoryElement> computeFilteredChildren(Object parent, int limit) {
 		if (containsNoFilterText(this.taskListView.getFilteredTree().getFilterString())) {
 			List<IRepositoryElement> children = new ArrayList<IRepositoryElement>();
 			if (parent instanceof ITask) {
@@ -143,11 +268,14 @@ public class TaskListContentProvider extends AbstractTaskListContentProvider {
 				for (ITask task : subTasks) {
 					if (!filter(parent, task)) {
 						children.add(task);
+						if (children.size() >= limit) {
+							break;
+						}
 					}
 				}
 				return children;
 			} else if (parent instanceof ITaskContainer) {
-				return getFilteredRootChildren((ITaskContainer) parent);
+				return getFilteredRootChildren((ITaskContainer) parent, limit);
 			}
 		} else {
 			List<IRepositoryElement> children = new ArrayList<IRepositoryElement>();
@@ -162,11 +290,10 @@ public class TaskListContentProvider extends AbstractTaskListContentProvider {
 	/**
 	 * @return all children who aren't already revealed as a sub task
 	 */
-	private List<IRepositoryElement> getFilteredRootChildren(ITaskContainer parent) {
+	private List<IRepositoryElement> getFilteredRootChildren(ITaskContainer parent, int limit) {
 		List<IRepositoryElement> result = new ArrayList<IRepositoryElement>();
 		if (TasksUiPlugin.getDefault().groupSubtasks(parent)) {
 			Collection<ITask> parentTasks = parent.getChildren();
-			Set<IRepositoryElement> parents = new HashSet<IRepositoryElement>();
 			Set<ITask> children = new HashSet<ITask>();
 			// get all children
 			for (ITask element : parentTasks) {
@@ -177,15 +304,21 @@ public class TaskListContentProvider extends AbstractTaskListContentProvider {
 				}
 			}
 			for (ITask task : parentTasks) {
-				if (!filter(parent, task) && !children.contains(task)) {
-					parents.add(task);
+				// check the cheap condition first
+				if (!children.contains(task) && !filter(parent, task)) {
+					result.add(task);
+					if (result.size() >= limit) {
+						break;
+					}
 				}
 			}
-			result.addAll(parents);
 		} else {
 			for (IRepositoryElement element : parent.getChildren()) {
 				if (!filter(parent, element)) {
 					result.add(element);
+					if (result.size() >= limit) {
+						break;
+					}
 				}
 			}
 		}
@@ -253,7 +386,14 @@ public class TaskListContentProvider extends AbstractTaskListContentProvider {
 	}
 
 	public boolean hasChildren(TreePath path) {
-		return getChildren(path).length > 0;
+		if (PresentationFilter.getInstance().isFilterNonMatching()) {
+			Object container = path.getFirstSegment();
+			if (container instanceof IRepositoryQuery || container instanceof UnmatchedTaskContainer) {
+				// children may be scoped by the query
+				return getChildren(path).length > 0;
+			}
+		}
+		return hasChildren(path.getLastSegment());
 	}
 
 	public TreePath[] getParents(Object element) {
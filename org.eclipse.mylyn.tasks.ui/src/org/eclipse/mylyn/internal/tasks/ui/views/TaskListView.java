@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2011 Tasktop Technologies and others.
+ * Copyright (c) 2004, 2013 Tasktop Technologies and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -205,8 +205,11 @@ public class TaskListView extends ViewPart implements IPropertyChangeListener, I
 			TreePath selection = preserveSelection();
 
 			if (items == null) {
+				// filters may have changed their settings
+				clearCache();
 				viewer.refresh(true);
 			} else if (items.length > 0) {
+				invalidate(items);
 				try {
 					if (TaskListView.this.isFocusedMode()) {
 						Set<Object> children = new HashSet<Object>(Arrays.asList(items));
@@ -256,6 +259,27 @@ public class TaskListView extends ViewPart implements IPropertyChangeListener, I
 			restoreSelection(selection);
 		}
 
+		private void clearCache() {
+			if (viewer.getContentProvider() instanceof TaskListContentProvider) {
+				((TaskListContentProvider) viewer.getContentProvider()).clearCache();
+			}
+		}
+
+		private void invalidate(Object[] items) {
+			if (viewer.getContentProvider() instanceof TaskListContentProvider) {
+				TaskListContentProvider contentProvider = (TaskListContentProvider) viewer.getContentProvider();
+				for (Object item : items) {
+					contentProvider.invalidate(item);
+					if (item instanceof AbstractTask) {
+						// the visibility of the item in its parents may have changed
+						for (AbstractTaskContainer parent : ((AbstractTask) item).getParentContainers()) {
+							contentProvider.invalidate(parent);
+						}
+					}
+				}
+			}
+		}
+
 		private TreePath preserveSelection() {
 			if (viewer instanceof TreeViewer) {
 				TreeViewer treeViewer = (TreeViewer) viewer;
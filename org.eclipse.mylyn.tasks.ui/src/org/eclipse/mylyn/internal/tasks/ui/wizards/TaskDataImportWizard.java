@@ -37,6 +37,7 @@ import org.eclipse.mylyn.commons.workbench.WorkbenchUtil;
 import org.eclipse.mylyn.internal.commons.core.ZipFileUtil;
 import org.eclipse.mylyn.internal.tasks.core.ITasksCoreConstants;
 import org.eclipse.mylyn.internal.tasks.core.externalization.AbstractExternalizationParticipant;
+import org.eclipse.mylyn.internal.tasks.core.externalization.TaskListExternalizationParticipant;
 import org.eclipse.mylyn.internal.tasks.ui.TasksUiPlugin;
 import org.eclipse.mylyn.internal.tasks.ui.util.TasksUiInternal;
 import org.eclipse.mylyn.internal.tasks.ui.workingsets.TaskWorkingSetUpdater;
@@ -151,6 +152,7 @@ public class TaskDataImportWizard extends Wizard implements IImportWizard {
 		public void run(final IProgressMonitor monitor) throws CoreException {
 			try {
 				boolean hasDefaultTaskList = false;
+				boolean hasTaskListJournal = false;
 				int numEntries = 0;
 
 				// determine properties of backup
@@ -161,6 +163,10 @@ public class TaskDataImportWizard extends Wizard implements IImportWizard {
 						ZipEntry entry = entries.nextElement();
 						if (entry.getName().equals(ITasksCoreConstants.DEFAULT_TASK_LIST_FILE)) {
 							hasDefaultTaskList = true;
+						} else if (entry.getName().equals(
+								ITasksCoreConstants.DEFAULT_TASK_LIST_FILE
+										+ TaskListExternalizationParticipant.JOURNAL_SUFFIX)) {
+							hasTaskListJournal = true;
 						}
 						numEntries++;
 					}
@@ -176,6 +182,13 @@ public class TaskDataImportWizard extends Wizard implements IImportWizard {
 						return;
 					}
 
+					if (hasDefaultTaskList && !hasTaskListJournal) {
+						// the journal of the current task list does not apply to the restored one
+						TaskListExternalizationParticipant.getJournalFile(
+								new File(TasksUiPlugin.getDefault().getDataDirectory(),
+										ITasksCoreConstants.DEFAULT_TASK_LIST_FILE)).delete();
+					}
+
 					ZipFileUtil.unzipFiles(sourceZipFile, TasksUiPlugin.getDefault().getDataDirectory(), monitor);
 
 					if (!hasDefaultTaskList) {
@@ -219,16 +232,18 @@ public class TaskDataImportWizard extends Wizard implements IImportWizard {
 
 			File taskListFile = new File(TasksUiPlugin.getDefault().getDataDirectory(),
 					ITasksCoreConstants.DEFAULT_TASK_LIST_FILE);
-			if (taskListFile.exists()) {
-				taskListFile.renameTo(new File(taskListFile.getParentFile(), taskListFile.getName() + PREFIX_BACKUP
-						+ date));
-			}
+			renameFile(taskListFile, date);
+			renameFile(TaskListExternalizationParticipant.getJournalFile(taskListFile), date);
 
 			File taskListFileSnapshot = new File(TasksUiPlugin.getDefault().getDataDirectory(),
 					AbstractExternalizationParticipant.SNAPSHOT_PREFIX + ITasksCoreConstants.DEFAULT_TASK_LIST_FILE);
-			if (taskListFileSnapshot.exists()) {
-				taskListFileSnapshot.renameTo(new File(taskListFile.getParentFile(), taskListFileSnapshot.getName()
-						+ PREFIX_BACKUP + date));
+			renameFile(taskListFileSnapshot, date);
+			renameFile(TaskListExternalizationParticipant.getJournalFile(taskListFileSnapshot), date);
+		}
+
+		private void renameFile(File file, String date) {
+			if (file.exists()) {
+				file.renameTo(new File(file.getParentFile(), file.getName() + PREFIX_BACKUP + date));
 			}
 		}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2010 Steffen Pingel and others.
+ * Copyright (c) 2006, 2013 Steffen Pingel and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,7 @@ import org.eclipse.mylyn.commons.net.Policy;
 import org.eclipse.mylyn.internal.trac.core.client.AbstractWikiHandler;
 import org.eclipse.mylyn.internal.trac.core.client.ITracClient;
 import org.eclipse.mylyn.internal.trac.core.client.ITracClient.Version;
+import org.eclipse.mylyn.internal.trac.core.client.ITracTicketCollector;
 import org.eclipse.mylyn.internal.trac.core.client.ITracWikiClient;
 import org.eclipse.mylyn.internal.trac.core.client.TracException;
 import org.eclipse.mylyn.internal.trac.core.model.TracComment;
@@ -446,8 +447,8 @@ public class TracRepositoryConnector extends AbstractRepositoryConnector {
 	}
 
 	@Override
-	public IStatus performQuery(TaskRepository repository, IRepositoryQuery query, TaskDataCollector resultCollector,
-			ISynchronizationSession session, IProgressMonitor monitor) {
+	public IStatus performQuery(final TaskRepository repository, IRepositoryQuery query,
+			final TaskDataCollector resultCollector, final ISynchronizationSession session, IProgressMonitor monitor) {
 		try {
 			monitor.beginTask(Messages.TracRepositoryConnector_Querying_repository, IProgressMonitor.UNKNOWN);
 
@@ -486,27 +487,43 @@ public class TracRepositoryConnector extends AbstractRepositoryConnector {
 						resultCollector.accept(taskData);
 					}
 				} else {
-					List<TracTicket> tickets = new ArrayList<TracTicket>();
-					client.search(search, tickets, monitor);
-
-					for (TracTicket ticket : tickets) {
-						TaskData taskData = taskDataHandler.createTaskDataFromTicket(client, repository, ticket,
-								monitor);
-						taskData.setPartial(true);
-						if (session != null && !session.isFullSynchronization() && hasRichEditor(repository)) {
-							if (taskById == null) {
-								taskById = new HashMap<String, ITask>();
-								for (ITask task : session.getTasks()) {
-									taskById.put(task.getTaskId(), task);
+					// tickets are passed on as they are retrieved
+					final ITracClient searchClient = client;
+					final IProgressMonitor searchMonitor = monitor;
+					final Map<String, ITask> tasksById = new HashMap<String, ITask>();
+					if (session != null && !session.isFullSynchronization() && hasRichEditor(repository)) {
+						for (ITask task : session.getTasks()) {
+							tasksById.put(task.getTaskId(), task);
+						}
+					}
+					final CoreException[] failure = new CoreException[1];
+					client.search(search, new ITracTicketCollector() {
+						public void accept(TracTicket ticket) {
+							TaskData taskData;
+							try {
+								taskData = taskDataHandler.createTaskDataFromTicket(searchClient, repository, ticket,
+										searchMonitor);
+							} catch (CoreException e) {
+								if (failure[0] == null) {
+									failure[0] = e;
 								}
+								return;
 							}
+							taskData.setPartial(true);
 							// preSyncronization() only handles full synchronizations
-							ITask task = taskById.get(ticket.getId() + ""); //$NON-NLS-1$
+							ITask task = tasksById.get(ticket.getId() + ""); //$NON-NLS-1$
 							if (task != null && hasTaskChanged(repository, task, taskData)) {
 								session.markStale(task);
 							}
+							resultCollector.accept(taskData);
 						}
-						resultCollector.accept(taskData);
+
+						public void failed(int id, TracException e) {
+							resultCollector.failed(id + "", TracCorePlugin.toStatus(e, repository)); //$NON-NLS-1$
+						}
+					}, monitor);
+					if (failure[0] != null) {
+						throw failure[0];
 					}
 				}
 			} catch (OperationCanceledException e) {
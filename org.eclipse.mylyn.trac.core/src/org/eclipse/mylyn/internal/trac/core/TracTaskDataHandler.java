@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2012 Steffen Pingel and others.
+ * Copyright (c) 2006, 2013 Steffen Pingel and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,7 +28,9 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.mylyn.commons.net.Policy;
 import org.eclipse.mylyn.internal.trac.core.client.ITracClient;
+import org.eclipse.mylyn.internal.trac.core.client.ITracTicketCollector;
 import org.eclipse.mylyn.internal.trac.core.client.InvalidTicketException;
+import org.eclipse.mylyn.internal.trac.core.client.TracException;
 import org.eclipse.mylyn.internal.trac.core.model.TracAction;
 import org.eclipse.mylyn.internal.trac.core.model.TracAttachment;
 import org.eclipse.mylyn.internal.trac.core.model.TracComment;
@@ -49,6 +51,7 @@ import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
 import org.eclipse.mylyn.tasks.core.data.TaskAttributeMetaData;
 import org.eclipse.mylyn.tasks.core.data.TaskCommentMapper;
 import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
 import org.eclipse.mylyn.tasks.core.data.TaskMapper;
 import org.eclipse.mylyn.tasks.core.data.TaskOperation;
 import org.eclipse.osgi.util.NLS;
@@ -106,6 +109,53 @@ public class TracTaskDataHandler extends AbstractTaskDataHandler {
 		return createTaskDataFromTicket(client, repository, ticket, monitor);
 	}
 
+	/**
+	 * Multiple tasks are retrieved in batches which is only supported by the XML-RPC API.
+	 */
+	@Override
+	public boolean canGetMultiTaskData(TaskRepository repository) {
+		return TracRepositoryConnector.hasRichEditor(repository);
+	}
+
+	@Override
+	public void getMultiTaskData(final TaskRepository repository, Set<String> taskIds,
+			final TaskDataCollector collector, IProgressMonitor monitor) throws CoreException {
+		monitor = Policy.monitorFor(monitor);
+		try {
+			monitor.beginTask("Task Download", taskIds.size()); //$NON-NLS-1$
+			List<Integer> ids = new ArrayList<Integer>(taskIds.size());
+			for (String taskId : taskIds) {
+				ids.add(TracRepositoryConnector.getTicketId(taskId));
+			}
+			final ITracClient client = connector.getClientManager().getTracClient(repository);
+			final IProgressMonitor progress = monitor;
+			try {
+				client.updateAttributes(monitor, false);
+				client.getTickets(ids, new ITracTicketCollector() {
+					public void accept(TracTicket ticket) {
+						try {
+							collector.accept(createTaskDataFromTicket(client, repository, ticket, progress));
+						} catch (CoreException e) {
+							collector.failed(ticket.getId() + "", e.getStatus()); //$NON-NLS-1$
+						}
+						progress.worked(1);
+					}
+
+					public void failed(int id, TracException e) {
+						collector.failed(id + "", TracCorePlugin.toStatus(e, repository)); //$NON-NLS-1$
+						progress.worked(1);
+					}
+				}, monitor);
+			} catch (OperationCanceledException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new CoreException(TracCorePlugin.toStatus(e, repository));
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
 	public TaskData createTaskDataFromTicket(ITracClient client, TaskRepository repository, TracTicket ticket,
 			IProgressMonitor monitor) throws CoreException {
 		TaskData taskData = new TaskData(getAttributeMapper(repository), TracCorePlugin.CONNECTOR_KIND,
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2010 Steffen Pingel and others.
+ * Copyright (c) 2006, 2013 Steffen Pingel and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import java.net.HttpURLConnection;
 import java.net.Proxy;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 
 import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.HostConfiguration;
@@ -32,7 +33,9 @@ import org.eclipse.mylyn.commons.net.WebUtil;
 import org.eclipse.mylyn.internal.trac.core.model.TracComponent;
 import org.eclipse.mylyn.internal.trac.core.model.TracMilestone;
 import org.eclipse.mylyn.internal.trac.core.model.TracPriority;
+import org.eclipse.mylyn.internal.trac.core.model.TracSearch;
 import org.eclipse.mylyn.internal.trac.core.model.TracSeverity;
+import org.eclipse.mylyn.internal.trac.core.model.TracTicket;
 import org.eclipse.mylyn.internal.trac.core.model.TracTicketField;
 import org.eclipse.mylyn.internal.trac.core.model.TracTicketResolution;
 import org.eclipse.mylyn.internal.trac.core.model.TracTicketStatus;
@@ -206,6 +209,24 @@ public abstract class AbstractTracClient implements ITracClient {
 		return (data.versions != null) ? data.versions.toArray(new TracVersion[0]) : null;
 	}
 
+	public void search(TracSearch query, final List<TracTicket> result, IProgressMonitor monitor) throws TracException {
+		final TracException[] failure = new TracException[1];
+		search(query, new ITracTicketCollector() {
+			public void accept(TracTicket ticket) {
+				result.add(ticket);
+			}
+
+			public void failed(int id, TracException e) {
+				if (failure[0] == null) {
+					failure[0] = e;
+				}
+			}
+		}, monitor);
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
 	public boolean hasAttributes() {
 		return (data.lastUpdate != 0);
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2010 Steffen Pingel and others.
+ * Copyright (c) 2006, 2013 Steffen Pingel and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@
 package org.eclipse.mylyn.internal.trac.core.client;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -108,6 +109,21 @@ public interface ITracClient {
 	 */
 	TracTicket getTicket(int id, IProgressMonitor monitor) throws TracException;
 
+	/**
+	 * Gets tickets with <code>ids</code> from repository. Each ticket is retrieved with the same details as returned
+	 * by {@link #getTicket(int, IProgressMonitor)} and passed to <code>collector</code> as soon as it is available.
+	 * Tickets that can not be retrieved are reported through {@link ITracTicketCollector#failed(int, TracException)}.
+	 * 
+	 * @param ids
+	 *            the ids of the tickets to get
+	 * @param collector
+	 *            receives the tickets
+	 * @throws TracException
+	 *             thrown in case of a connection error
+	 */
+	void getTickets(Collection<Integer> ids, ITracTicketCollector collector, IProgressMonitor monitor)
+			throws TracException;
+
 	/**
 	 * Returns the access type.
 	 */
@@ -130,6 +146,19 @@ public interface ITracClient {
 	 */
 	void search(TracSearch query, List<TracTicket> result, IProgressMonitor monitor) throws TracException;
 
+	/**
+	 * Queries tickets from repository. Found tickets are passed to <code>collector</code> as soon as they have been
+	 * retrieved.
+	 * 
+	 * @param query
+	 *            the search criteria
+	 * @param collector
+	 *            receives the found tickets
+	 * @throws TracException
+	 *             thrown in case of a connection error
+	 */
+	void search(TracSearch query, ITracTicketCollector collector, IProgressMonitor monitor) throws TracException;
+
 	/**
 	 * Queries ticket id from repository. All found tickets are added to <code>result</code>.
 	 * 
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.internal.trac.core.client;
+
+import org.eclipse.mylyn.internal.trac.core.model.TracTicket;
+
+/**
+ * Receives tickets retrieved by
+ * {@link ITracClient#getTickets(java.util.Collection, ITracTicketCollector, org.eclipse.core.runtime.IProgressMonitor)}
+ * as soon as they become available.
+ */
+public interface ITracTicketCollector {
+
+	/**
+	 * Invoked for each ticket that was retrieved successfully.
+	 */
+	void accept(TracTicket ticket);
+
+	/**
+	 * Invoked for each ticket that could not be retrieved, e.g. because it does not exist.
+	 */
+	void failed(int id, TracException e);
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2010 Steffen Pingel and others.
+ * Copyright (c) 2006, 2013 Steffen Pingel and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,7 @@ import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -480,7 +481,7 @@ public class TracWebClient extends AbstractTracClient {
 		}
 	}
 
-	public void search(TracSearch query, List<TracTicket> tickets, IProgressMonitor monitor) throws TracException {
+	public void search(TracSearch query, ITracTicketCollector collector, IProgressMonitor monitor) throws TracException {
 		GetMethod method = connect(repositoryUrl + ITracClient.QUERY_URL + query.toUrl(), monitor);
 		try {
 			InputStream in = WebUtil.getResponseBodyAsStream(method, monitor);
@@ -531,7 +532,7 @@ public class TracWebClient extends AbstractTracClient {
 							ticket.putValue(key, parseTicketValue(constantValues.get(key)));
 						}
 
-						tickets.add(ticket);
+						collector.accept(ticket);
 					}
 				}
 			} finally {
@@ -927,6 +928,20 @@ public class TracWebClient extends AbstractTracClient {
 		return null;
 	}
 
+	/**
+	 * Fetches the web site of each ticket. The web interface does not support retrieving several tickets at once.
+	 */
+	public void getTickets(Collection<Integer> ids, ITracTicketCollector collector, IProgressMonitor monitor)
+			throws TracException {
+		for (int id : ids) {
+			try {
+				collector.accept(getTicket(id, monitor));
+			} catch (InvalidTicketException e) {
+				collector.failed(id, e);
+			}
+		}
+	}
+
 	public Date getTicketLastChanged(Integer id, IProgressMonitor monitor) {
 		throw new UnsupportedOperationException();
 	}
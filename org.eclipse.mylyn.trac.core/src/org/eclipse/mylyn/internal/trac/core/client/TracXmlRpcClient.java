@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2010 Steffen Pingel and others.
+ * Copyright (c) 2006, 2013 Steffen Pingel and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -26,6 +27,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Pattern;
 
 import org.apache.commons.httpclient.Credentials;
@@ -45,6 +52,7 @@ import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.client.XmlRpcClient;
 import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
 import org.apache.xmlrpc.serializer.CharSetXmlWriterFactory;
+import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -268,6 +276,23 @@ public class TracXmlRpcClient extends AbstractTracClient implements ITracWikiCli
 
 	public static final int REQUIRED_WIKI_RPC_VERSION = 2;
 
+	/**
+	 * The number of tickets that are retrieved in a single multicall by
+	 * {@link #getTickets(Collection, ITracTicketCollector, IProgressMonitor)}.
+	 */
+	public static final int TICKET_BATCH_SIZE = 50;
+
+	/**
+	 * The number of calls that are required to retrieve a ticket with all details.
+	 */
+	private static final int CALLS_PER_TICKET = 4;
+
+	/**
+	 * The default number of tickets that are retrieved in a single multicall by
+	 * {@link #search(TracSearch, ITracTicketCollector, IProgressMonitor)}.
+	 */
+	public static final int DEFAULT_SEARCH_BATCH_SIZE = 100;
+
 	private XmlRpcClient xmlrpc;
 
 	private TracHttpClientTransportFactory factory;
@@ -288,6 +313,8 @@ public class TracXmlRpcClient extends AbstractTracClient implements ITracWikiCli
 
 	private TracRepositoryInfo info = new TracRepositoryInfo();
 
+	private volatile int searchBatchSize = DEFAULT_SEARCH_BATCH_SIZE;
+
 	public TracXmlRpcClient(AbstractWebLocation location, Version version) {
 		super(location, version);
 		this.httpClient = createHttpClient();
@@ -608,18 +635,100 @@ public class TracXmlRpcClient extends AbstractTracClient implements ITracWikiCli
 		ticket.setActions(actions);
 
 		updateAttributes(new NullProgressMonitor(), false);
+		ticket.setResolutions(getResolutionNames());
+
+		return ticket;
+	}
+
+	/**
+	 * Retrieves tickets in batches of {@link #TICKET_BATCH_SIZE}. Each batch is fetched in a single
+	 * <code>system.multicall</code> request that combines the calls made by {@link #getTicket(int, IProgressMonitor)}
+	 * for all tickets of the batch.
+	 */
+	public void getTickets(Collection<Integer> ids, ITracTicketCollector collector, IProgressMonitor monitor)
+			throws TracException {
+		monitor = Policy.monitorFor(monitor);
+		boolean supportsWorkFlow = supportsWorkFlow(monitor);
+		updateAttributes(new NullProgressMonitor(), false);
+		String[] resolutions = getResolutionNames();
+
+		List<Integer> batch = new ArrayList<Integer>(TICKET_BATCH_SIZE);
+		for (Integer id : ids) {
+			batch.add(id);
+			if (batch.size() == TICKET_BATCH_SIZE) {
+				getTicketBatch(batch, supportsWorkFlow, resolutions, collector, monitor);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			getTicketBatch(batch, supportsWorkFlow, resolutions, collector, monitor);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void getTicketBatch(List<Integer> ids, boolean supportsWorkFlow, String[] resolutions,
+			ITracTicketCollector collector, IProgressMonitor monitor) throws TracException {
+		Policy.checkCanceled(monitor);
+		Map<String, Object>[] calls = new Map[ids.size() * CALLS_PER_TICKET];
+		for (int i = 0; i < ids.size(); i++) {
+			Integer id = ids.get(i);
+			calls[i * CALLS_PER_TICKET] = createMultiCall("ticket.get", id); //$NON-NLS-1$
+			calls[i * CALLS_PER_TICKET + 1] = createMultiCall("ticket.changeLog", id, 0); //$NON-NLS-1$
+			calls[i * CALLS_PER_TICKET + 2] = createMultiCall("ticket.listAttachments", id); //$NON-NLS-1$
+			calls[i * CALLS_PER_TICKET + 3] = createMultiCall(
+					(supportsWorkFlow) ? "ticket.getActions" : "ticket.getAvailableActions", id); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		// faults are reported for each ticket, unlike multicall() which fails the whole request
+		Object[] result = (Object[]) call(monitor, "system.multicall", new Object[] { calls }); //$NON-NLS-1$
+		if (result.length != calls.length) {
+			throw new TracException("Unexpected number of results for multicall: " + result.length); //$NON-NLS-1$
+		}
+
+		for (int i = 0; i < ids.size(); i++) {
+			int id = ids.get(i);
+			int offset = i * CALLS_PER_TICKET;
+			TracTicket ticket;
+			try {
+				for (int j = 0; j < CALLS_PER_TICKET; j++) {
+					checkForException(result[offset + j]);
+				}
+				ticket = parseTicket((Object[]) getMultiCallResult(result[offset]));
+				for (Object item : (Object[]) getMultiCallResult(result[offset + 1])) {
+					ticket.addComment(parseChangeLogEntry((Object[]) item));
+				}
+				for (Object item : (Object[]) getMultiCallResult(result[offset + 2])) {
+					ticket.addAttachment(parseAttachment((Object[]) item));
+				}
+				ticket.setActions(parseActions((Object[]) getMultiCallResult(result[offset + 3]), supportsWorkFlow));
+				ticket.setResolutions(resolutions);
+			} catch (XmlRpcException e) {
+				collector.failed(id, new TracRemoteException(e));
+				continue;
+			} catch (TracException e) {
+				collector.failed(id, e);
+				continue;
+			} catch (RuntimeException e) {
+				// unexpected response format
+				collector.failed(id, new TracException(e));
+				continue;
+			}
+			// exceptions thrown by the collector, e.g. on cancellation, are propagated
+			collector.accept(ticket);
+		}
+	}
+
+	private String[] getResolutionNames() {
 		TracTicketResolution[] resolutions = getTicketResolutions();
 		if (resolutions != null) {
 			String[] resolutionStrings = new String[resolutions.length];
 			for (int i = 0; i < resolutions.length; i++) {
 				resolutionStrings[i] = resolutions[i].getName();
 			}
-			ticket.setResolutions(resolutionStrings);
+			return resolutionStrings;
 		} else {
-			ticket.setResolutions(getDefaultTicketResolutions());
+			return getDefaultTicketResolutions();
 		}
-
-		return ticket;
 	}
 
 	private TracAttachment parseAttachment(Object[] entry) {
@@ -671,24 +780,134 @@ public class TracXmlRpcClient extends AbstractTracClient implements ITracWikiCli
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	public void search(TracSearch query, List<TracTicket> tickets, IProgressMonitor monitor) throws TracException {
+	/**
+	 * Retrieves the tickets matching <code>query</code> in batches of {@link #getSearchBatchSize()} tickets. The
+	 * request for the next batch is sent while the previous batch is parsed and passed to <code>collector</code>,
+	 * hence at most two batches are held in memory at a time.
+	 * <p>
+	 * Batches are requested from a separate thread that only checks <code>monitor</code> for cancellation. The
+	 * collector may use this client concurrently, requests are independent of each other as when the client is shared
+	 * by several synchronization jobs.
+	 */
+	public void search(TracSearch query, ITracTicketCollector collector, IProgressMonitor monitor)
+			throws TracException {
+		monitor = Policy.monitorFor(monitor);
 		// an empty query string is not valid, therefore prepend order
-		Object[] result = (Object[]) call(monitor,
+		Object[] ids = (Object[]) call(monitor,
 				"ticket.query", "order=id" + query.toQuery(supportsMaxSearchResults(monitor))); //$NON-NLS-1$ //$NON-NLS-2$
+		int batchSize = searchBatchSize;
+		if (ids.length <= batchSize) {
+			if (ids.length > 0) {
+				parseQueryBatch(ids, 0, queryTicketBatch(ids, 0, ids.length, monitor), collector);
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Trac Search (" + repositoryUrl + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// progress monitors are not thread-safe, the prefetching thread only checks for cancellation
+		final IProgressMonitor searchMonitor = monitor;
+		IProgressMonitor prefetchMonitor = new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				return searchMonitor.isCanceled();
+			}
+		};
+		try {
+			Future<Object[]> next = submitQueryBatch(executor, ids, 0, batchSize, prefetchMonitor);
+			for (int offset = 0; offset < ids.length; offset += batchSize) {
+				Object[] result = getResult(next);
+				int end = Math.min(offset + batchSize, ids.length);
+				if (end < ids.length) {
+					next = submitQueryBatch(executor, ids, end, Math.min(end + batchSize, ids.length),
+							prefetchMonitor);
+				}
+				parseQueryBatch(ids, offset, result, collector);
+				Policy.checkCanceled(monitor);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
-		Map<String, Object>[] calls = new Map[result.length];
+	private Future<Object[]> submitQueryBatch(ExecutorService executor, final Object[] ids, final int start,
+			final int end, final IProgressMonitor monitor) {
+		return executor.submit(new Callable<Object[]>() {
+			public Object[] call() throws Exception {
+				return queryTicketBatch(ids, start, end, monitor);
+			}
+		});
+	}
+
+	private Object[] getResult(Future<Object[]> future) throws TracException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TracException) {
+				throw (TracException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new TracException(cause);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object[] queryTicketBatch(Object[] ids, int start, int end, IProgressMonitor monitor) throws TracException {
+		Map<String, Object>[] calls = new Map[end - start];
 		for (int i = 0; i < calls.length; i++) {
-			calls[i] = createMultiCall("ticket.get", result[i]); //$NON-NLS-1$
+			calls[i] = createMultiCall("ticket.get", ids[start + i]); //$NON-NLS-1$
 		}
-		result = multicall(monitor, calls);
+		Object[] result = (Object[]) call(monitor, "system.multicall", new Object[] { calls }); //$NON-NLS-1$
+		if (result.length != calls.length) {
+			throw new TracException("Unexpected number of results for multicall: " + result.length); //$NON-NLS-1$
+		}
+		return result;
+	}
 
-		for (Object item : result) {
-			Object[] ticketResult = (Object[]) getMultiCallResult(item);
-			tickets.add(parseTicket(ticketResult));
+	private void parseQueryBatch(Object[] ids, int offset, Object[] result, ITracTicketCollector collector) {
+		for (int i = 0; i < result.length; i++) {
+			int id = (Integer) ids[offset + i];
+			TracTicket ticket;
+			try {
+				checkForException(result[i]);
+				ticket = parseTicket((Object[]) getMultiCallResult(result[i]));
+			} catch (XmlRpcException e) {
+				collector.failed(id, new TracRemoteException(e));
+				continue;
+			} catch (TracException e) {
+				collector.failed(id, e);
+				continue;
+			} catch (RuntimeException e) {
+				// unexpected response format
+				collector.failed(id, new TracException(e));
+				continue;
+			}
+			// exceptions thrown by the collector, e.g. on cancellation, are propagated
+			collector.accept(ticket);
 		}
 	}
 
+	/**
+	 * Returns the maximum number of tickets that are retrieved in a single request when searching.
+	 */
+	public int getSearchBatchSize() {
+		return searchBatchSize;
+	}
+
+	public void setSearchBatchSize(int searchBatchSize) {
+		Assert.isLegal(searchBatchSize > 0);
+		this.searchBatchSize = searchBatchSize;
+	}
+
 	private boolean supportsWorkFlow(IProgressMonitor monitor) throws TracException {
 		return isApiVersionOrHigher(1, 0, 1, monitor);
 	}
@@ -1014,6 +1233,15 @@ public class TracXmlRpcClient extends AbstractTracClient implements ITracWikiCli
 	public TracAction[] getActions(int id, IProgressMonitor monitor) throws TracException {
 		if (supportsWorkFlow(monitor)) {
 			Object[] actions = (Object[]) call(monitor, "ticket.getActions", id); //$NON-NLS-1$
+			return parseActions(actions, true);
+		} else {
+			Object[] actions = (Object[]) call(monitor, "ticket.getAvailableActions", id); //$NON-NLS-1$
+			return parseActions(actions, false);
+		}
+	}
+
+	private TracAction[] parseActions(Object[] actions, boolean supportsWorkFlow) {
+		if (supportsWorkFlow) {
 			TracAction[] result = new TracAction[actions.length];
 			for (int i = 0; i < result.length; i++) {
 				Object[] entry = (Object[]) actions[i];
@@ -1043,7 +1271,6 @@ public class TracXmlRpcClient extends AbstractTracClient implements ITracWikiCli
 			}
 			return result;
 		} else {
-			Object[] actions = (Object[]) call(monitor, "ticket.getAvailableActions", id); //$NON-NLS-1$
 			TracAction[] result = new TracAction[actions.length];
 			for (int i = 0; i < result.length; i++) {
 				result[i] = new TracAction((String) actions[i]);
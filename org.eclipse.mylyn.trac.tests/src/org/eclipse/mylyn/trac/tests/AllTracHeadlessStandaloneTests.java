@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2009 Steffen Pingel and others.
+ * Copyright (c) 2006, 2013 Steffen Pingel and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,8 +22,10 @@ import org.eclipse.mylyn.trac.tests.client.TracClientTest;
 import org.eclipse.mylyn.trac.tests.client.TracRepositoryInfoTest;
 import org.eclipse.mylyn.trac.tests.client.TracSearchTest;
 import org.eclipse.mylyn.trac.tests.client.TracTicketTest;
+import org.eclipse.mylyn.trac.tests.client.TracXmlRpcClientSearchTest;
 import org.eclipse.mylyn.trac.tests.client.TracXmlRpcClientTest;
 import org.eclipse.mylyn.trac.tests.core.TracClientManagerTest;
+import org.eclipse.mylyn.trac.tests.core.TracTaskDataHandlerMulticallTest;
 import org.eclipse.mylyn.trac.tests.support.TracFixture;
 
 /**
@@ -42,8 +44,10 @@ public class AllTracHeadlessStandaloneTests {
 		suite.addTestSuite(TracTicketTest.class);
 		suite.addTestSuite(TracRepositoryInfoTest.class);
 		suite.addTestSuite(TracClientProxyTest.class);
+		suite.addTestSuite(TracXmlRpcClientSearchTest.class);
 		// core tests
 		suite.addTestSuite(TracClientManagerTest.class);
+		suite.addTestSuite(TracTaskDataHandlerMulticallTest.class);
 		// network tests
 		if (!configuration.isLocalOnly()) {
 			if (configuration.isDefaultOnly()) {
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.trac.tests.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlrpc.XmlRpcException;
+import org.eclipse.mylyn.commons.net.WebLocation;
+import org.eclipse.mylyn.internal.trac.core.client.ITracClient.Version;
+import org.eclipse.mylyn.internal.trac.core.client.ITracTicketCollector;
+import org.eclipse.mylyn.internal.trac.core.client.TracException;
+import org.eclipse.mylyn.internal.trac.core.client.TracRemoteException;
+import org.eclipse.mylyn.internal.trac.core.client.TracXmlRpcClient;
+import org.eclipse.mylyn.internal.trac.core.model.TracSearch;
+import org.eclipse.mylyn.internal.trac.core.model.TracTicket;
+import org.eclipse.mylyn.internal.trac.core.model.TracTicket.Key;
+import org.eclipse.mylyn.trac.tests.support.XmlRpcStubServer;
+
+/**
+ * Searches a local stub server that simulates the Trac XML-RPC API.
+ */
+public class TracXmlRpcClientSearchTest extends TestCase {
+
+	private static final int TICKET_COUNT = 250;
+
+	private XmlRpcStubServer server;
+
+	private TracXmlRpcClient client;
+
+	private final AtomicInteger ticketCalls = new AtomicInteger();
+
+	private final List<Integer> deletedTickets = Collections.synchronizedList(new ArrayList<Integer>());
+
+	private CountDownLatch secondBatchRequested;
+
+	@Override
+	protected void setUp() throws Exception {
+		secondBatchRequested = new CountDownLatch(1);
+		server = new XmlRpcStubServer() {
+			@Override
+			protected Object call(String method, Object[] params) throws XmlRpcException {
+				if ("system.getAPIVersion".equals(method)) {
+					return new Object[] { 1, 1, 2 };
+				} else if ("ticket.query".equals(method)) {
+					Object[] ids = new Object[TICKET_COUNT];
+					for (int i = 0; i < ids.length; i++) {
+						ids[i] = i + 1;
+					}
+					return ids;
+				} else if ("ticket.get".equals(method)) {
+					int id = (Integer) params[0];
+					if (ticketCalls.incrementAndGet() > client.getSearchBatchSize()) {
+						secondBatchRequested.countDown();
+					}
+					if (deletedTickets.contains(id)) {
+						throw new XmlRpcException(404, "Ticket " + id + " does not exist.");
+					}
+					Map<String, Object> attributes = new HashMap<String, Object>();
+					attributes.put("summary", "summary " + id);
+					return new Object[] { id, 1000, 2000, attributes };
+				}
+				throw new XmlRpcException(1, "RPC method \"" + method + "\" not found");
+			}
+		};
+		server.start();
+		client = new TracXmlRpcClient(new WebLocation(server.getUrl()), Version.XML_RPC);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop();
+	}
+
+	public void testSearch() throws Exception {
+		List<TracTicket> result = new ArrayList<TracTicket>();
+		client.search(new TracSearch(), result, null);
+		assertEquals(TICKET_COUNT, result.size());
+		for (int i = 0; i < TICKET_COUNT; i++) {
+			assertEquals(i + 1, result.get(i).getId());
+			assertEquals("summary " + (i + 1), result.get(i).getValue(Key.SUMMARY));
+		}
+		assertEquals(TICKET_COUNT, ticketCalls.get());
+		assertEquals(3, countRequests("system.multicall"));
+	}
+
+	public void testSearchBatchSize() throws Exception {
+		client.setSearchBatchSize(TICKET_COUNT);
+		List<TracTicket> result = new ArrayList<TracTicket>();
+		client.search(new TracSearch(), result, null);
+		assertEquals(TICKET_COUNT, result.size());
+		assertEquals(1, countRequests("system.multicall"));
+	}
+
+	public void testSearchNextBatchRequestedWhileCollecting() throws Exception {
+		final boolean[] pipelined = new boolean[1];
+		final List<TracTicket> result = new ArrayList<TracTicket>();
+		client.search(new TracSearch(), new ITracTicketCollector() {
+			public void accept(TracTicket ticket) {
+				if (result.isEmpty()) {
+					try {
+						pipelined[0] = secondBatchRequested.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						// fail
+					}
+				}
+				result.add(ticket);
+			}
+
+			public void failed(int id, TracException e) {
+				fail("Unexpected failure for ticket " + id);
+			}
+		}, null);
+		assertTrue(pipelined[0]);
+		assertEquals(TICKET_COUNT, result.size());
+	}
+
+	public void testSearchDeletedTicket() throws Exception {
+		deletedTickets.add(150);
+		final List<TracTicket> result = new ArrayList<TracTicket>();
+		final Map<Integer, TracException> failed = new HashMap<Integer, TracException>();
+		client.search(new TracSearch(), new ITracTicketCollector() {
+			public void accept(TracTicket ticket) {
+				result.add(ticket);
+			}
+
+			public void failed(int id, TracException e) {
+				failed.put(id, e);
+			}
+		}, null);
+		assertEquals(TICKET_COUNT - 1, result.size());
+		assertEquals(1, failed.size());
+		assertTrue(failed.get(150) instanceof TracRemoteException);
+
+		try {
+			client.search(new TracSearch(), new ArrayList<TracTicket>(), null);
+			fail("Expected TracRemoteException");
+		} catch (TracRemoteException e) {
+		}
+	}
+
+	private int countRequests(String method) {
+		int count = 0;
+		for (String request : server.getRequests()) {
+			if (request.equals(method)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
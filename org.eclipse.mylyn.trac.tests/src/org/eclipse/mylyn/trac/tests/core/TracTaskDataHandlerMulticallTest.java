@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.trac.tests.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.xmlrpc.XmlRpcException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.internal.trac.core.TracCorePlugin;
+import org.eclipse.mylyn.internal.trac.core.TracRepositoryConnector;
+import org.eclipse.mylyn.internal.trac.core.TracTaskDataHandler;
+import org.eclipse.mylyn.internal.trac.core.client.ITracClient.Version;
+import org.eclipse.mylyn.internal.trac.core.client.TracXmlRpcClient;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+import org.eclipse.mylyn.trac.tests.support.XmlRpcStubServer;
+
+/**
+ * Retrieves tickets from a local stub server that simulates the Trac XML-RPC API.
+ */
+public class TracTaskDataHandlerMulticallTest extends TestCase {
+
+	private static final int TICKET_COUNT = 120;
+
+	private XmlRpcStubServer server;
+
+	private TaskRepository repository;
+
+	private TracTaskDataHandler taskDataHandler;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new XmlRpcStubServer() {
+			@Override
+			protected Object call(String method, Object[] params) throws XmlRpcException {
+				if ("system.getAPIVersion".equals(method)) {
+					return new Object[] { 1, 1, 2 };
+				} else if (method.endsWith(".getAll") || "ticket.getTicketFields".equals(method)) {
+					return new Object[0];
+				}
+				int id = (Integer) params[0];
+				if (id > TICKET_COUNT) {
+					throw new XmlRpcException(404, "Ticket " + id + " does not exist.");
+				}
+				if ("ticket.get".equals(method)) {
+					Map<String, Object> attributes = new HashMap<String, Object>();
+					attributes.put("summary", "summary " + id);
+					attributes.put("status", "new");
+					return new Object[] { id, 1000, 2000, attributes };
+				} else if ("ticket.changeLog".equals(method)) {
+					return new Object[] { new Object[] { 1500, "author", "comment", "1", "comment " + id } };
+				} else if ("ticket.listAttachments".equals(method)) {
+					return new Object[] { new Object[] { "file.txt", "description", 10, 1500, "author" } };
+				} else if ("ticket.getActions".equals(method)) {
+					return new Object[] { new Object[] { "leave", "leave", "", new Object[0] } };
+				}
+				throw new XmlRpcException(1, "RPC method \"" + method + "\" not found");
+			}
+		};
+		server.start();
+		repository = new TaskRepository(TracCorePlugin.CONNECTOR_KIND, server.getUrl());
+		repository.setVersion(Version.XML_RPC.name());
+		taskDataHandler = new TracRepositoryConnector(null).getTaskDataHandler();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop();
+	}
+
+	public void testCanGetMultiTaskData() {
+		assertTrue(taskDataHandler.canGetMultiTaskData(repository));
+		repository.setVersion(Version.TRAC_0_9.name());
+		assertFalse(taskDataHandler.canGetMultiTaskData(repository));
+	}
+
+	public void testGetMultiTaskData() throws Exception {
+		Set<String> taskIds = new LinkedHashSet<String>();
+		for (int i = 1; i <= TICKET_COUNT; i++) {
+			taskIds.add(Integer.toString(i));
+		}
+		Collector collector = new Collector();
+		taskDataHandler.getMultiTaskData(repository, taskIds, collector, new NullProgressMonitor());
+
+		assertEquals(0, collector.failed.size());
+		assertEquals(TICKET_COUNT, collector.taskData.size());
+		TaskData taskData = collector.taskData.get(TICKET_COUNT - 1);
+		assertEquals(Integer.toString(TICKET_COUNT), taskData.getTaskId());
+		assertEquals("summary " + TICKET_COUNT, taskData.getRoot()
+				.getMappedAttribute(TaskAttribute.SUMMARY)
+				.getValue());
+		TaskAttributeMapper mapper = taskData.getAttributeMapper();
+		assertEquals(1, mapper.getAttributesByType(taskData, TaskAttribute.TYPE_COMMENT).size());
+		assertEquals(1, mapper.getAttributesByType(taskData, TaskAttribute.TYPE_ATTACHMENT).size());
+		assertEquals(1, mapper.getTaskOperations(taskData.getRoot()).size());
+		// one request per batch of tickets
+		int batches = (TICKET_COUNT + TracXmlRpcClient.TICKET_BATCH_SIZE - 1) / TracXmlRpcClient.TICKET_BATCH_SIZE;
+		assertEquals(batches, countTicketRequests());
+	}
+
+	public void testGetMultiTaskDataInvalidTicket() throws Exception {
+		Set<String> taskIds = new LinkedHashSet<String>();
+		taskIds.add("1");
+		taskIds.add(Integer.toString(TICKET_COUNT + 1));
+		taskIds.add("2");
+		Collector collector = new Collector();
+		taskDataHandler.getMultiTaskData(repository, taskIds, collector, new NullProgressMonitor());
+
+		assertEquals(2, collector.taskData.size());
+		assertEquals("1", collector.taskData.get(0).getTaskId());
+		assertEquals("2", collector.taskData.get(1).getTaskId());
+		assertEquals(1, collector.failed.size());
+		assertEquals(IStatus.ERROR, collector.failed.get(Integer.toString(TICKET_COUNT + 1)).getSeverity());
+		assertEquals(1, countTicketRequests());
+	}
+
+	private int countTicketRequests() {
+		List<String> requests = server.getRequests();
+		// skip requests for updating repository attributes which end with retrieving ticket fields
+		int count = 0;
+		for (String request : requests.subList(requests.lastIndexOf("ticket.getTicketFields") + 1, requests.size())) {
+			assertEquals("system.multicall", request);
+			count++;
+		}
+		return count;
+	}
+
+	private static class Collector extends TaskDataCollector {
+
+		final List<TaskData> taskData = new ArrayList<TaskData>();
+
+		final Map<String, IStatus> failed = new HashMap<String, IStatus>();
+
+		@Override
+		public void accept(TaskData data) {
+			taskData.add(data);
+		}
+
+		@Override
+		public void failed(String taskId, IStatus status) {
+			failed.put(taskId, status);
+		}
+
+	}
+
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Tasktop Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Tasktop Technologies - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.mylyn.trac.tests.support;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.common.TypeFactory;
+import org.apache.xmlrpc.common.TypeFactoryImpl;
+import org.apache.xmlrpc.common.XmlRpcHttpRequestConfigImpl;
+import org.apache.xmlrpc.parser.XmlRpcRequestParser;
+import org.apache.xmlrpc.serializer.DefaultXMLWriterFactory;
+import org.apache.xmlrpc.serializer.XmlRpcWriter;
+import org.apache.xmlrpc.util.SAXParsers;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * A minimal HTTP server that answers XML-RPC requests on a local port. Calls are dispatched to
+ * {@link #call(String, Object[])}, calls to <code>system.multicall</code> are dispatched individually and faults are
+ * returned for each call.
+ */
+public abstract class XmlRpcStubServer {
+
+	private final XmlRpcHttpRequestConfigImpl config = new XmlRpcHttpRequestConfigImpl();
+
+	private final TypeFactory typeFactory = new TypeFactoryImpl(null);
+
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+	private ServerSocket serverSocket;
+
+	private Thread thread;
+
+	private volatile Exception failure;
+
+	public XmlRpcStubServer() {
+		config.setEncoding("UTF-8");
+	}
+
+	public void start() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+		thread = new Thread("XmlRpcStubServer") {
+			@Override
+			public void run() {
+				while (!serverSocket.isClosed()) {
+					try {
+						Socket socket = serverSocket.accept();
+						try {
+							handle(socket);
+						} finally {
+							socket.close();
+						}
+					} catch (Exception e) {
+						if (!serverSocket.isClosed() && failure == null) {
+							failure = e;
+						}
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Shuts the server down. Rethrows the first exception that occurred while handling a request so that failures on
+	 * the server thread are reported by the test.
+	 */
+	public void stop() throws Exception {
+		if (serverSocket != null) {
+			serverSocket.close();
+			thread.join(5000);
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	public String getUrl() {
+		return "http://localhost:" + serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Returns the names of the methods of all requests received so far, multicalls are listed as
+	 * <code>system.multicall</code>.
+	 */
+	public List<String> getRequests() {
+		synchronized (requests) {
+			return new ArrayList<String>(requests);
+		}
+	}
+
+	protected abstract Object call(String method, Object[] params) throws XmlRpcException;
+
+	private void handle(Socket socket) throws Exception {
+		InputStream in = new BufferedInputStream(socket.getInputStream());
+		int contentLength = -1;
+		String line = readLine(in);
+		if (line == null) {
+			return;
+		}
+		boolean post = line.startsWith("POST");
+		while ((line = readLine(in)) != null && line.length() > 0) {
+			if (line.toLowerCase().startsWith("content-length:")) {
+				contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+			}
+		}
+
+		OutputStream out = socket.getOutputStream();
+		if (!post) {
+			// authentication probes
+			out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("US-ASCII"));
+			out.flush();
+			return;
+		}
+
+		byte[] body = new byte[contentLength];
+		int offset = 0;
+		while (offset < contentLength) {
+			int count = in.read(body, offset, contentLength - offset);
+			if (count == -1) {
+				throw new IOException("Unexpected end of request");
+			}
+			offset += count;
+		}
+
+		XmlRpcRequestParser parser = new XmlRpcRequestParser(config, typeFactory);
+		XMLReader reader = SAXParsers.newXMLReader();
+		reader.setContentHandler(parser);
+		reader.parse(new InputSource(new ByteArrayInputStream(body)));
+		String method = parser.getMethodName();
+		Object[] params = parser.getParams().toArray();
+		requests.add(method);
+
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		ContentHandler handler = new DefaultXMLWriterFactory().getXmlWriter(config, response);
+		XmlRpcWriter writer = new XmlRpcWriter(config, handler, typeFactory);
+		try {
+			Object result = ("system.multicall".equals(method)) ? multicall((Object[]) params[0]) : call(method,
+					params);
+			writer.write(config, result);
+		} catch (XmlRpcException e) {
+			writer.write(config, e.code, e.getMessage());
+		}
+
+		out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/xml\r\nContent-Length: " + response.size() + "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+		response.writeTo(out);
+		out.flush();
+	}
+
+	private Object[] multicall(Object[] calls) {
+		Object[] result = new Object[calls.length];
+		for (int i = 0; i < calls.length; i++) {
+			Map<?, ?> call = (Map<?, ?>) calls[i];
+			try {
+				result[i] = new Object[] { call((String) call.get("methodName"), (Object[]) call.get("params")) };
+			} catch (XmlRpcException e) {
+				Map<String, Object> fault = new HashMap<String, Object>();
+				fault.put("faultCode", e.code);
+				fault.put("faultString", e.getMessage());
+				result[i] = fault;
+			}
+		}
+		return result;
+	}
+
+	private String readLine(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == '\n') {
+				int length = sb.length();
+				if (length > 0 && sb.charAt(length - 1) == '\r') {
+					sb.setLength(length - 1);
+				}
+				return sb.toString();
+			}
+			sb.append((char) c);
+		}
+		return (sb.length() > 0) ? sb.toString() : null;
+	}
+
+}